@@ -0,0 +1,90 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.RedeliveryPolicy;
+import org.apache.activemq.pool.PooledConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.DependsOn;
+
+/**
+ * Spring configuration for the pooled JMS connection factory shared by the
+ * transport service configurations in Message Cowboy.<br/>
+ * The connection factory connects to the ActiveMQ broker at the configured
+ * ActiveMQ URI, which may be the embedded broker or an external broker.
+ * Connector and component configurations of the transport services may
+ * refer to the connection factory using the bean name
+ * {@value #POOLED_JMS_CONNECTION_FACTORY_BEAN_NAME}. Since the connection
+ * factory is not part of the transport service configurations, connections
+ * to the broker are retained when these configurations are refreshed.
+ * 
+ * @author Ivan Krizsan
+ */
+public class JmsConnectionFactoryConfiguration {
+    /* Constant(s): */
+    /** Name of the pooled JMS connection factory bean. */
+    public static final String POOLED_JMS_CONNECTION_FACTORY_BEAN_NAME = "pooledJmsConnectionFactory";
+
+    /* Property value(s): */
+    @Value("${ACTIVEMQ_URI}")
+    protected String mActiveMqUri;
+    @Value("${JMS_POOL_MAX_CONNECTIONS}")
+    protected int mMaxConnections;
+    @Value("${JMS_POOL_MAX_SESSIONS_PER_CONNECTION}")
+    protected int mMaxSessionsPerConnection;
+    @Value("${JMS_POOL_IDLE_TIMEOUT}")
+    protected int mIdleTimeout;
+
+    /**
+     * Pooled JMS connection factory shared by the transport service
+     * configurations.
+     * Created after, and thus stopped before, any embedded ActiveMQ broker.
+     * 
+     * @return Pooled JMS connection factory bean.
+     */
+    @Bean(name = POOLED_JMS_CONNECTION_FACTORY_BEAN_NAME, initMethod = "start", destroyMethod = "stop")
+    @DependsOn("embeddedActiveMqBroker")
+    public PooledConnectionFactory pooledJmsConnectionFactory() {
+        final ActiveMQConnectionFactory theConnectionFactory = new ActiveMQConnectionFactory(mActiveMqUri);
+        theConnectionFactory.setRedeliveryPolicy(jmsRedeliveryPolicy());
+
+        final PooledConnectionFactory thePooledConnectionFactory = new PooledConnectionFactory();
+        thePooledConnectionFactory.setConnectionFactory(theConnectionFactory);
+        thePooledConnectionFactory.setMaxConnections(mMaxConnections);
+        thePooledConnectionFactory.setMaximumActiveSessionPerConnection(mMaxSessionsPerConnection);
+        thePooledConnectionFactory.setIdleTimeout(mIdleTimeout);
+        return thePooledConnectionFactory;
+    }
+
+    /**
+     * Redelivery policy of the shared JMS connection factory.
+     * 
+     * @return ActiveMQ redelivery policy bean.
+     */
+    @Bean
+    public RedeliveryPolicy jmsRedeliveryPolicy() {
+        final RedeliveryPolicy theRedeliveryPolicy = new RedeliveryPolicy();
+        theRedeliveryPolicy.setMaximumRedeliveries(-1);
+        theRedeliveryPolicy.setInitialRedeliveryDelay(500L);
+        theRedeliveryPolicy.setUseExponentialBackOff(false);
+        theRedeliveryPolicy.setBackOffMultiplier(5);
+        theRedeliveryPolicy.setMaximumRedeliveryDelay(-1L);
+        return theRedeliveryPolicy;
+    }
+}
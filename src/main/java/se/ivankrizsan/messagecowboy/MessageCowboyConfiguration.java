@@ -42,8 +42,8 @@ import se.ivankrizsan.messagecowboy.services.transport.TransportServiceConfigura
 @Configuration
 @PropertySource("file:message-cowboy-configuration.properties")
 @EnableTransactionManagement
-@Import({PersistenceConfiguration.class, EmbeddedActiveMQConfiguration.class, TransportServiceConfiguration.class,
-    SchedulingServiceConfiguration.class, MessageCowboyStarterServiceConfiguration.class,
+@Import({PersistenceConfiguration.class, EmbeddedActiveMQConfiguration.class, JmsConnectionFactoryConfiguration.class,
+    TransportServiceConfiguration.class, SchedulingServiceConfiguration.class, MessageCowboyStarterServiceConfiguration.class,
     TaskConfigurationServiceConfiguration.class, TaskExecutionStatusServiceConfiguration.class})
 public class MessageCowboyConfiguration {
 
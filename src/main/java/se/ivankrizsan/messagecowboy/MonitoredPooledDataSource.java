@@ -0,0 +1,198 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
+/**
+ * Data source that obtains connections from a c3p0 connection pool and
+ * keeps metrics on the pool.<br/>
+ * In addition to the number of active, idle and waiting connections
+ * reported by the pool, the time that callers have to wait for a connection
+ * is measured. The pool itself is also registered as a JMX bean by c3p0.
+ *
+ * @author Ivan Krizsan
+ */
+public class MonitoredPooledDataSource extends DelegatingDataSource {
+    /* Constant(s): */
+    /** Class logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MonitoredPooledDataSource.class);
+
+    /* Instance variable(s): */
+    /** Connection pool from which connections are obtained. */
+    protected final ComboPooledDataSource mConnectionPool;
+    /** Number of successful connection requests. */
+    protected final AtomicLong mConnectionRequestCount = new AtomicLong();
+    /** Total time, in nanoseconds, spent waiting for connections. */
+    protected final AtomicLong mTotalConnectionWaitTime = new AtomicLong();
+    /** Longest time, in nanoseconds, spent waiting for a connection. */
+    protected final AtomicLong mMaxConnectionWaitTime = new AtomicLong();
+    /** Number of connection requests that failed. */
+    protected final AtomicLong mFailedConnectionRequestCount = new AtomicLong();
+
+    /**
+     * Creates a data source obtaining connections from the supplied pool.
+     *
+     * @param inConnectionPool Connection pool.
+     */
+    public MonitoredPooledDataSource(final ComboPooledDataSource inConnectionPool) {
+        super(inConnectionPool);
+        mConnectionPool = inConnectionPool;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        final long theStartTime = System.nanoTime();
+        try {
+            final Connection theConnection = super.getConnection();
+            recordConnectionWaitTime(System.nanoTime() - theStartTime);
+            return theConnection;
+        } catch (final SQLException theException) {
+            mFailedConnectionRequestCount.incrementAndGet();
+            throw theException;
+        }
+    }
+
+    @Override
+    public Connection getConnection(final String inUserName, final String inPassword) throws SQLException {
+        final long theStartTime = System.nanoTime();
+        try {
+            final Connection theConnection = super.getConnection(inUserName, inPassword);
+            recordConnectionWaitTime(System.nanoTime() - theStartTime);
+            return theConnection;
+        } catch (final SQLException theException) {
+            mFailedConnectionRequestCount.incrementAndGet();
+            throw theException;
+        }
+    }
+
+    /**
+     * Closes the connection pool, logging the pool metrics.
+     */
+    public void close() {
+        LOGGER.info("Closing database connection pool. Connection requests: {}, failed: {}, "
+            + "average wait time: {} ms, max wait time: {} ms", getConnectionRequestCount(),
+            getFailedConnectionRequestCount(), getAverageConnectionWaitTime(), getMaxConnectionWaitTime());
+        mConnectionPool.close();
+    }
+
+    /**
+     * Retrieves the number of connections currently in use.
+     *
+     * @return Number of active connections.
+     * @throws SQLException If error occurs retrieving value from pool.
+     */
+    public int getActiveConnectionCount() throws SQLException {
+        return mConnectionPool.getNumBusyConnectionsDefaultUser();
+    }
+
+    /**
+     * Retrieves the number of connections currently idle in the pool.
+     *
+     * @return Number of idle connections.
+     * @throws SQLException If error occurs retrieving value from pool.
+     */
+    public int getIdleConnectionCount() throws SQLException {
+        return mConnectionPool.getNumIdleConnectionsDefaultUser();
+    }
+
+    /**
+     * Retrieves the total number of connections in the pool, active and idle.
+     *
+     * @return Number of connections.
+     * @throws SQLException If error occurs retrieving value from pool.
+     */
+    public int getConnectionCount() throws SQLException {
+        return mConnectionPool.getNumConnectionsDefaultUser();
+    }
+
+    /**
+     * Retrieves the number of threads currently waiting for a connection.
+     *
+     * @return Number of waiting threads.
+     * @throws SQLException If error occurs retrieving value from pool.
+     */
+    public int getWaitingThreadCount() throws SQLException {
+        return mConnectionPool.getNumThreadsAwaitingCheckoutDefaultUser();
+    }
+
+    /**
+     * Retrieves the number of successful connection requests.
+     *
+     * @return Number of connection requests.
+     */
+    public long getConnectionRequestCount() {
+        return mConnectionRequestCount.get();
+    }
+
+    /**
+     * Retrieves the number of connection requests that failed, for instance
+     * due to a connection not becoming available before the checkout timeout.
+     *
+     * @return Number of failed connection requests.
+     */
+    public long getFailedConnectionRequestCount() {
+        return mFailedConnectionRequestCount.get();
+    }
+
+    /**
+     * Retrieves the average time successful connection requests have waited
+     * for a connection.
+     *
+     * @return Average wait time in milliseconds.
+     */
+    public long getAverageConnectionWaitTime() {
+        final long theRequestCount = mConnectionRequestCount.get();
+        if (theRequestCount == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(mTotalConnectionWaitTime.get() / theRequestCount);
+    }
+
+    /**
+     * Retrieves the longest time a successful connection request has waited
+     * for a connection.
+     *
+     * @return Maximum wait time in milliseconds.
+     */
+    public long getMaxConnectionWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(mMaxConnectionWaitTime.get());
+    }
+
+    /**
+     * Records the time a successful connection request waited for a connection.
+     *
+     * @param inWaitTime Wait time in nanoseconds.
+     */
+    protected void recordConnectionWaitTime(final long inWaitTime) {
+        mConnectionRequestCount.incrementAndGet();
+        mTotalConnectionWaitTime.addAndGet(inWaitTime);
+        long theMaxWaitTime = mMaxConnectionWaitTime.get();
+        while (inWaitTime > theMaxWaitTime && !mMaxConnectionWaitTime.compareAndSet(theMaxWaitTime, inWaitTime)) {
+            theMaxWaitTime = mMaxConnectionWaitTime.get();
+        }
+    }
+}
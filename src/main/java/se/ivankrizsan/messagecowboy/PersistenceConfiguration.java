@@ -16,6 +16,7 @@
  */
 package se.ivankrizsan.messagecowboy;
 
+import java.beans.PropertyVetoException;
 import java.util.Properties;
 
 import javax.persistence.EntityManagerFactory;
@@ -28,15 +29,16 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.dao.annotation.PersistenceExceptionTranslationPostProcessor;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.EclipseLinkJpaVendorAdapter;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
 /**
  * Spring configuration for persistence in Message Cowboy.
- * Includes configuration for a database data source as well as an
+ * Includes configuration for a pooled database data source as well as an
  * optional embedded HSQLDB database server.
  * 
  * @author Ivan Krizsan
@@ -52,6 +54,21 @@ public class PersistenceConfiguration {
     private String dataSourceUserName;
     @Value("${DATASOURCE_PASSWORD}")
     private String dataSourcePassword;
+    @Value("${DATASOURCE_POOL_MIN_SIZE:2}")
+    private int dataSourcePoolMinSize;
+    @Value("${DATASOURCE_POOL_MAX_SIZE:20}")
+    private int dataSourcePoolMaxSize;
+    @Value("${DATASOURCE_POOL_CHECKOUT_TIMEOUT:30000}")
+    private int dataSourcePoolCheckoutTimeout;
+    /* Database specific, thus connections are validated using database metadata if not set. */
+    @Value("${DATASOURCE_POOL_VALIDATION_QUERY:}")
+    private String dataSourcePoolValidationQuery;
+    @Value("${DATASOURCE_POOL_VALIDATE_ON_CHECKOUT_FLAG:false}")
+    private boolean dataSourcePoolValidateOnCheckoutFlag;
+    @Value("${DATASOURCE_POOL_IDLE_VALIDATION_PERIOD:60}")
+    private int dataSourcePoolIdleValidationPeriod;
+    @Value("${DATASOURCE_POOL_LEAK_DETECTION_TIMEOUT:0}")
+    private int dataSourcePoolLeakDetectionTimeout;
     @Value("${DATABASE_USE_EMBEDDED_FLAG}")
     private boolean databaseUseEmbeddedFlag;
     @Value("${DATABASE_DIRECTORY_PATH}")
@@ -65,16 +82,54 @@ public class PersistenceConfiguration {
 
     /**
      * Datasource used by the Message Cowboy application.
+     * Connections are obtained from a connection pool, which is validated
+     * and checked for connections not returned to the pool as configured.
+     * Depends on the hsqlDbServer bean, in order for the connection pool
+     * to be closed before any embedded database is shut down.
      */
-    @Bean
-    public DataSource dataSource() {
-        final DriverManagerDataSource theDataSource =
-            new DriverManagerDataSource();
-        theDataSource.setDriverClassName(dataSourceDriverClassName);
-        theDataSource.setUrl(dataSourceUrl);
-        theDataSource.setUsername(dataSourceUserName);
-        theDataSource.setPassword(dataSourcePassword);
-        return theDataSource;
+    @Bean(destroyMethod = "close")
+    @DependsOn("hsqlDbServer")
+    public MonitoredPooledDataSource dataSource() {
+        final ComboPooledDataSource theConnectionPool = new ComboPooledDataSource();
+        try {
+            theConnectionPool.setDriverClass(dataSourceDriverClassName);
+        } catch (final PropertyVetoException theException) {
+            throw new Error("Error setting datasource driver class", theException);
+        }
+        theConnectionPool.setJdbcUrl(dataSourceUrl);
+        theConnectionPool.setUser(dataSourceUserName);
+        theConnectionPool.setPassword(dataSourcePassword);
+
+        /* Pool size and time to wait for a connection. */
+        theConnectionPool.setMinPoolSize(dataSourcePoolMinSize);
+        theConnectionPool.setInitialPoolSize(dataSourcePoolMinSize);
+        theConnectionPool.setMaxPoolSize(dataSourcePoolMaxSize);
+        theConnectionPool.setCheckoutTimeout(dataSourcePoolCheckoutTimeout);
+
+        /*
+         * Connections are validated when returned to the pool and while idle,
+         * and optionally also before being handed out.
+         */
+        if (dataSourcePoolValidationQuery != null && !dataSourcePoolValidationQuery.trim().isEmpty()) {
+            theConnectionPool.setPreferredTestQuery(dataSourcePoolValidationQuery);
+        }
+        theConnectionPool.setTestConnectionOnCheckin(true);
+        theConnectionPool.setTestConnectionOnCheckout(dataSourcePoolValidateOnCheckoutFlag);
+        theConnectionPool.setIdleConnectionTestPeriod(dataSourcePoolIdleValidationPeriod);
+
+        /*
+         * If leak detection is enabled, connections not returned within the leak
+         * detection timeout are closed and the stack trace of the code that
+         * obtained them is logged. Leak detection is intended for diagnosing
+         * connection leaks, since recording stack traces adds to the cost of
+         * each checkout and connections still in use by long operations are closed.
+         */
+        if (dataSourcePoolLeakDetectionTimeout > 0) {
+            theConnectionPool.setUnreturnedConnectionTimeout(dataSourcePoolLeakDetectionTimeout);
+            theConnectionPool.setDebugUnreturnedConnectionStackTraces(true);
+        }
+
+        return new MonitoredPooledDataSource(theConnectionPool);
     }
 
     /**
@@ -132,9 +187,12 @@ public class PersistenceConfiguration {
     Properties jpaProperties() {
         final Properties theJpaProperties = new Properties();
         theJpaProperties.setProperty("eclipselink.ddl-generation",
-            "create-tables");
+            "create-or-extend-tables");
         theJpaProperties.setProperty("eclipselink.ddl-generation.output-mode",
             "database");
+        /* Insert batches of entities, such as task execution status reports, using JDBC batches. */
+        theJpaProperties.setProperty("eclipselink.jdbc.batch-writing", "JDBC");
+        theJpaProperties.setProperty("eclipselink.jdbc.batch-writing.size", "100");
         theJpaProperties.setProperty("eclipselink.logging.level", "INFO");
         theJpaProperties.setProperty("eclipselink.weaving", "false");
 
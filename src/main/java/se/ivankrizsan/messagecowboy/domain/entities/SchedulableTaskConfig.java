@@ -24,8 +24,8 @@ import se.ivankrizsan.messagecowboy.domain.valueobjects.TransportProperty;
 
 /**
  * Holds the configuration for a schedulable task.<br/>
- * Such a task is scheduled using a cron expression, an optional start date
- * and an optional end date.
+ * Such a task is scheduled using either a cron expression or an interval
+ * in milliseconds, an optional start date and an optional end date.
  *
  * @author Ivan Krizsan
  */
@@ -72,6 +72,42 @@ public interface SchedulableTaskConfig extends Serializable {
      */
     abstract void setCronExpression(String inCronExpression);
 
+    /**
+     * Retrieves the interval in milliseconds between executions of the task.<br/>
+     * If greater than zero, the task is scheduled at this interval and the cron
+     * expression is not used. Allows for scheduling tasks at sub-second intervals.
+     *
+     * @return Interval in milliseconds, zero or less if the task is scheduled
+     * using its cron expression.
+     */
+    abstract long getIntervalMillis();
+
+    /**
+     * Sets the interval in milliseconds between executions of the task.
+     *
+     * @param inIntervalMillis Interval in milliseconds, zero or less if the
+     * task is to be scheduled using its cron expression.
+     */
+    abstract void setIntervalMillis(long inIntervalMillis);
+
+    /**
+     * Retrieves the flag indicating whether the interval of the task is a fixed
+     * delay between the end of an execution and the start of the next execution,
+     * as opposed to a fixed rate at which executions start.<br/>
+     * Only used if the task is scheduled at an interval.
+     *
+     * @return Fixed delay flag.
+     */
+    abstract boolean getFixedDelayFlag();
+
+    /**
+     * Sets the flag indicating whether the interval of the task is a fixed delay
+     * between the end of an execution and the start of the next execution.
+     *
+     * @param inFixedDelayFlag Fixed delay flag.
+     */
+    abstract void setFixedDelayFlag(boolean inFixedDelayFlag);
+
     /**
      * Retrieves the optional start date after which the task will be scheduled
      * for execution.<br/>
@@ -23,8 +23,11 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToMany;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
@@ -40,7 +43,8 @@ import se.ivankrizsan.messagecowboy.domain.valueobjects.TransportProperty;
  * @author Ivan Krizsan
  */
 @Entity(name = "MessageCowboySchedulableTaskConfig")
-@Table(name = "SchedulableTaskConfigurations")
+@Table(name = "SchedulableTaskConfigurations",
+    indexes = { @Index(name = "TaskConfigLastModifiedIndex", columnList = "lastModified") })
 public class MessageCowboySchedulableTaskConfig implements
 SchedulableTaskConfig {
 
@@ -65,9 +69,29 @@ SchedulableTaskConfig {
     /** Timeout time in milliseconds requesting message from inbound endpoint. */
     @Column(nullable = false)
     protected long inboundTimeout;
-    /** Cron expression determining when the task will be run. */
-    @Column(nullable = false)
+    /**
+     * Cron expression determining when the task will be run.
+     * Not used, and may be null, if the task is scheduled at an interval.
+     */
+    @Column(nullable = true)
     protected String cronExpression;
+    /**
+     * Interval in milliseconds at which the task will be run.
+     * If greater than zero, the task is scheduled at this interval instead
+     * of using the cron expression.
+     * Null, as in the case of tasks created before intervals were introduced,
+     * is treated as zero.
+     */
+    @Column(nullable = true)
+    protected Long intervalMillis;
+    /**
+     * Flag indicating whether the interval is the delay between the end of
+     * one execution and the start of the next execution, instead of the time
+     * between the start of two consecutive executions.
+     * Null is treated as false.
+     */
+    @Column(nullable = true)
+    protected Boolean fixedDelayFlag;
     /**
      * Start date after the scheduled task will start executing, or null
      * if task will start executing immediately after having been scheduled.
@@ -85,6 +109,41 @@ SchedulableTaskConfig {
     /** Flag indicating whether task is enabled. */
     @Column(nullable = false)
     protected boolean taskEnabledFlag;
+    /**
+     * Flag indicating whether task is to move messages continuously, as they
+     * arrive at the inbound endpoint, instead of polling the inbound endpoint
+     * at the times determined by the cron expression.
+     * Null is treated as false.
+     */
+    @Column(nullable = true)
+    protected Boolean continuousModeFlag;
+    /**
+     * Maximum number of messages moved during one execution of the task.
+     * The task will keep moving messages until no message is received from
+     * the inbound endpoint or a limit is reached.
+     * Values less than one are treated as one.
+     * Null, as in the case of tasks created before this limit was introduced,
+     * is treated as one.
+     */
+    @Column(nullable = true)
+    protected Integer maxMessagesPerExecution = Integer.valueOf(1);
+    /**
+     * Maximum duration in milliseconds of one execution of the task.
+     * No further messages will be requested after the duration has elapsed.
+     * Zero or less, or null, means that the duration of an execution is not limited.
+     */
+    @Column(nullable = true)
+    protected Long maxExecutionDuration;
+    /**
+     * Point in time at which the task configuration was last modified.
+     * Used to detect changed task configurations and maintained automatically
+     * when the task configuration is saved.
+     * Programs modifying task configurations directly in the database must
+     * update this column, or set it to null, in order for changes to be detected.
+     */
+    @Column(nullable = true)
+    @Temporal(TemporalType.TIMESTAMP)
+    protected Date lastModified;
     /**
      * Properties that will enclosed when receiving and dispatching messages
      * for this task.
@@ -143,6 +202,44 @@ SchedulableTaskConfig {
         outboundEndpointURI = inOutboundEndpointURI;
     }
 
+    public boolean getContinuousModeFlag() {
+        return continuousModeFlag != null && continuousModeFlag.booleanValue();
+    }
+
+    public void setContinuousModeFlag(final boolean inContinuousModeFlag) {
+        continuousModeFlag = Boolean.valueOf(inContinuousModeFlag);
+    }
+
+    public int getMaxMessagesPerExecution() {
+        return maxMessagesPerExecution == null ? 1 : maxMessagesPerExecution.intValue();
+    }
+
+    public void setMaxMessagesPerExecution(final int inMaxMessagesPerExecution) {
+        maxMessagesPerExecution = Integer.valueOf(inMaxMessagesPerExecution);
+    }
+
+    public long getMaxExecutionDuration() {
+        return maxExecutionDuration == null ? 0L : maxExecutionDuration.longValue();
+    }
+
+    public void setMaxExecutionDuration(final long inMaxExecutionDuration) {
+        maxExecutionDuration = Long.valueOf(inMaxExecutionDuration);
+    }
+
+    public Date getLastModified() {
+        return (Date) (lastModified == null ? null : lastModified.clone());
+    }
+
+    /**
+     * Updates the last modified time of the task configuration.
+     * Invoked when the task configuration is persisted or updated.
+     */
+    @PrePersist
+    @PreUpdate
+    protected void updateLastModified() {
+        lastModified = new Date();
+    }
+
     @Override
     public Class<? extends TaskJob> getTaskJobType() {
         return QuartzTaskJob.class;
@@ -158,6 +255,26 @@ SchedulableTaskConfig {
         cronExpression = inCronExpression;
     }
 
+    @Override
+    public long getIntervalMillis() {
+        return intervalMillis == null ? 0L : intervalMillis.longValue();
+    }
+
+    @Override
+    public void setIntervalMillis(final long inIntervalMillis) {
+        intervalMillis = Long.valueOf(inIntervalMillis);
+    }
+
+    @Override
+    public boolean getFixedDelayFlag() {
+        return fixedDelayFlag != null && fixedDelayFlag.booleanValue();
+    }
+
+    @Override
+    public void setFixedDelayFlag(final boolean inFixedDelayFlag) {
+        fixedDelayFlag = Boolean.valueOf(inFixedDelayFlag);
+    }
+
     @Override
     public Date getStartDate() {
         return (Date) (startDate == null ? null : startDate.clone());
@@ -228,4 +345,36 @@ SchedulableTaskConfig {
             mTaskExecutionStatuses.get(mTaskExecutionStatuses.size() - 1);
         return theTaskExecutionStatus;
     }
+
+    /**
+     * Creates a copy of the task configuration, including its last modified
+     * time, that can be modified without affecting the original.<br/>
+     * The list of transport properties is copied, while the transport
+     * properties themselves are shared. The task execution statuses are
+     * shared with the original, since they are loaded lazily and may be
+     * numerous.
+     *
+     * @return Copy of task configuration.
+     */
+    public MessageCowboySchedulableTaskConfig copy() {
+        final MessageCowboySchedulableTaskConfig theCopy = new MessageCowboySchedulableTaskConfig();
+        theCopy.name = name;
+        theCopy.inboundEndpointURI = inboundEndpointURI;
+        theCopy.outboundEndpointURI = outboundEndpointURI;
+        theCopy.taskGroupName = taskGroupName;
+        theCopy.inboundTimeout = inboundTimeout;
+        theCopy.cronExpression = cronExpression;
+        theCopy.intervalMillis = intervalMillis;
+        theCopy.fixedDelayFlag = fixedDelayFlag;
+        theCopy.setStartDate(startDate);
+        theCopy.setEndDate(endDate);
+        theCopy.taskEnabledFlag = taskEnabledFlag;
+        theCopy.continuousModeFlag = continuousModeFlag;
+        theCopy.maxMessagesPerExecution = maxMessagesPerExecution;
+        theCopy.maxExecutionDuration = maxExecutionDuration;
+        theCopy.lastModified = getLastModified();
+        theCopy.mTransportProperties = new ArrayList<TransportProperty>(mTransportProperties);
+        theCopy.mTaskExecutionStatuses = mTaskExecutionStatuses;
+        return theCopy;
+    }
 }
@@ -16,12 +16,14 @@
  */
 package se.ivankrizsan.messagecowboy.domain.entities.impl;
 
+import java.io.IOException;
 import java.util.Date;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import se.ivankrizsan.messagecowboy.domain.entities.MoverMessage;
 import se.ivankrizsan.messagecowboy.domain.entities.TaskJob;
 import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
@@ -29,12 +31,18 @@ import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusError
 import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusNoMessageReceived;
 import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusSuccess;
 import se.ivankrizsan.messagecowboy.services.taskconfiguration.TaskConfigurationService;
+import se.ivankrizsan.messagecowboy.services.taskexecutionstatus.TaskExecutionStatusService;
+import se.ivankrizsan.messagecowboy.services.transport.NativeFileMover;
 import se.ivankrizsan.messagecowboy.services.transport.TransportService;
 
 /**
  * Implements a task job that moves messages from a source endpoint to a
  * destination endpoint.<br/>
  * The task job is implemented to use the Quartz scheduler and available {@link TransportService}.
+ * The services used by the task job are injected when the job is created.
+ * The job data map only holds the name of the task, which is used to retrieve
+ * the current task configuration from the task configuration service each
+ * time the job is executed.
  *
  * @author Ivan Krizsan
  */
@@ -42,15 +50,24 @@ public class QuartzTaskJob implements Job, TaskJob {
     /* Constant(s): */
     /** Class logger. */
     private static final Logger LOGGER = LoggerFactory.getLogger(QuartzTaskJob.class);
-    /** Key used to locate task configuration in Quartz job data map. */
-    public static final String TASK_CONFIGURATION_JOB_DATA_KEY = "qMoverTask";
-    /** Key used to locate transport service in Quartz job data map. */
-    public static final String TRANSPORT_SERVICE_JOB_DATA_KEY = "qTransportService";
-    /** Key used to locate task configuration service in Quartz job data map. */
-    public static final String TASK_CONFIGURATION_SERVICE_JOB_DATA_KEY =
-        "qTaskConfigurationService";
+    /** Key used to locate name of task to execute in Quartz job data map. */
+    public static final String TASK_NAME_JOB_DATA_KEY = "qTaskName";
+    /** Maximum number of messages requested from transport service in one batch. */
+    public static final int MAX_MESSAGES_PER_BATCH = 100;
 
     /* Instance variable(s): */
+    /** Transport service used to request and dispatch messages. */
+    @Autowired(required = false)
+    protected TransportService mTransportService;
+    /** Task execution status service used to record task execution statuses. */
+    @Autowired(required = false)
+    protected TaskExecutionStatusService mTaskExecutionStatusService;
+    /** Task configuration service from which the task configuration is retrieved. */
+    @Autowired(required = false)
+    protected TaskConfigurationService mTaskConfigurationService;
+    /** Moves files between file endpoints bypassing the transport service, may be null. */
+    @Autowired(required = false)
+    protected NativeFileMover mNativeFileMover;
 
     @Override
     public void execute(final JobExecutionContext inJobExecutionContext)
@@ -60,137 +77,101 @@ public class QuartzTaskJob implements Job, TaskJob {
 
         LOGGER.debug("Started executing job {} in group {}", theJobName, theJobGroup);
 
-        /* Proceed only if there is a mover task in the job data map. */
-        final MessageCowboySchedulableTaskConfig theMoverTaskConfig =
-            findMoverTaskConfigInJobdata(inJobExecutionContext);
-        final TransportService theTransportService =
-            findTransportServiceInJobdata(inJobExecutionContext);
-        final TaskConfigurationService theTaskConfigurationService =
-            findTaskConfigurationServiceInJobdata(inJobExecutionContext);
-
-        if (theMoverTaskConfig != null && theTransportService != null
-            && theTaskConfigurationService != null) {
-            executeMoverTaskJob(theMoverTaskConfig, theTransportService,
-                theTaskConfigurationService);
-        } else {
-            if (theMoverTaskConfig == null) {
-                LOGGER.error("Job data map did not contain mover task configuration");
+        if (mTransportService == null || mTaskExecutionStatusService == null
+            || mTaskConfigurationService == null) {
+            if (mTransportService == null) {
+                LOGGER.error("No transport service available to job {} in group {}", theJobName, theJobGroup);
             }
-            if (theTransportService == null) {
-                LOGGER.error("Job data map did not contain transport service");
+            if (mTaskExecutionStatusService == null) {
+                LOGGER.error("No task execution status service available to job {} in group {}", theJobName,
+                    theJobGroup);
             }
-            if (theTaskConfigurationService == null) {
-                LOGGER.error("Job data map did not contain task configuration service");
+            if (mTaskConfigurationService == null) {
+                LOGGER.error("No task configuration service available to job {} in group {}", theJobName,
+                    theJobGroup);
             }
+            return;
         }
-    }
-
-    /**
-     * Finds the transport service object in the job data of the supplied
-     * job execution context.
-     *
-     * @param inJobExecutionContext Job execution context in which to look for
-     * transport service..
-     * @return Transport service, or null if no object found.
-     */
-    protected TransportService findTransportServiceInJobdata(
-        final JobExecutionContext inJobExecutionContext) {
-        TransportService theTransportService = null;
-        final Object theObject =
-            inJobExecutionContext.getJobDetail().getJobDataMap()
-                .get(TRANSPORT_SERVICE_JOB_DATA_KEY);
-        if (theObject != null && theObject instanceof TransportService) {
-            theTransportService = (TransportService) theObject;
-        }
-        return theTransportService;
-    }
 
-    /**
-     * Finds the task configuration service object in the job data of the
-     * supplied job execution context.
-     *
-     * @param inJobExecutionContext Job execution context in which to look for
-     * task configuration service..
-     * @return Taskj configuration service, or null if no object found.
-     */
-    protected TaskConfigurationService findTaskConfigurationServiceInJobdata(
-        final JobExecutionContext inJobExecutionContext) {
-        TaskConfigurationService theTransportService = null;
-        final Object theObject =
-            inJobExecutionContext.getJobDetail().getJobDataMap().get(
-                TASK_CONFIGURATION_SERVICE_JOB_DATA_KEY);
-        if (theObject != null && theObject instanceof TaskConfigurationService) {
-            theTransportService = (TaskConfigurationService) theObject;
+        /* Proceed only if there is a configuration for the task. */
+        final String theTaskName = findTaskNameInJobdata(inJobExecutionContext);
+        final MessageCowboySchedulableTaskConfig theMoverTaskConfig = mTaskConfigurationService.find(theTaskName);
+        if (theMoverTaskConfig != null) {
+            executeMoverTaskJob(theMoverTaskConfig, mTransportService, mTaskExecutionStatusService);
+        } else {
+            LOGGER.warn("No configuration found for task {} in group {}", theTaskName, theJobGroup);
         }
-        return theTransportService;
     }
 
     /**
-     * Finds the mover task configuration object in the job data of the supplied
-     * job execution context.
+     * Finds the name of the task to execute in the job data of the supplied
+     * job execution context.<br/>
+     * If the job data does not contain a task name, the name of the job is used,
+     * since tasks are scheduled using the task name as job name.
      *
      * @param inJobExecutionContext Job execution context in which to look for
-     * mover task configuration.
-     * @return Mover task configuration, or null if no object found.
+     * task name.
+     * @return Task name.
      */
-    protected MessageCowboySchedulableTaskConfig findMoverTaskConfigInJobdata(
-        final JobExecutionContext inJobExecutionContext) {
-        MessageCowboySchedulableTaskConfig theMoverTask = null;
-        final Object theConfigObject =
-            inJobExecutionContext.getJobDetail().getJobDataMap().get(
-                TASK_CONFIGURATION_JOB_DATA_KEY);
-        if (theConfigObject != null
-            && theConfigObject instanceof MessageCowboySchedulableTaskConfig) {
-            theMoverTask = (MessageCowboySchedulableTaskConfig) theConfigObject;
+    protected String findTaskNameInJobdata(final JobExecutionContext inJobExecutionContext) {
+        final Object theTaskName =
+            inJobExecutionContext.getJobDetail().getJobDataMap().get(TASK_NAME_JOB_DATA_KEY);
+        if (theTaskName instanceof String) {
+            return (String) theTaskName;
         }
-        return theMoverTask;
+        return inJobExecutionContext.getJobDetail().getKey().getName();
     }
 
     /**
-     * Executes a mover task job with the supplied mover task configuration.
+     * Executes a mover task job with the supplied mover task configuration.<br/>
+     * Messages are moved until no message is received from the inbound
+     * endpoint, the maximum number of messages per execution has been moved
+     * or the maximum execution duration has elapsed. One task execution
+     * status is recorded for the entire execution. The task configuration
+     * itself is not modified.
      *
      * @param inMoverTask Mover task configuration.
      * @param inTransportService Transport service used to request and
      * dispatch messages when execution task.
-     * @param inTaskConfigurationService Task configuration service used
-     * to update task status after task execution.
+     * @param inTaskExecutionStatusService Task execution status service used
+     * to record the task status after task execution.
      * @throws JobExecutionException If error occurs executing job.
      */
     protected void executeMoverTaskJob(final MessageCowboySchedulableTaskConfig inMoverTask,
         final TransportService inTransportService,
-        final TaskConfigurationService inTaskConfigurationService) throws JobExecutionException {
-        @SuppressWarnings("rawtypes")
-        MoverMessage theInboundMessage;
+        final TaskExecutionStatusService inTaskExecutionStatusService) throws JobExecutionException {
         JobExecutionException theJobExecutionException = null;
+        TaskExecutionStatus theTaskStatus;
         final long theTaskStartTime = System.currentTimeMillis();
+        final int theMaxMessageCount = Math.max(1, inMoverTask.getMaxMessagesPerExecution());
+        final long theMaxExecutionDuration = inMoverTask.getMaxExecutionDuration();
+        int theMessageCount = 0;
+        int theMovedMessageCount;
 
         LOGGER.debug("Executing mover task job {}", inMoverTask.getName());
 
         try {
-            theInboundMessage = requestInboundMessage(inTransportService, inMoverTask);
-
-            LOGGER.debug("Message received from {}: {}", inMoverTask.getInboundEndpointURI(),
-                theInboundMessage);
+            do {
+                theMovedMessageCount = moveMessages(inTransportService, inMoverTask,
+                    Math.min(theMaxMessageCount - theMessageCount, MAX_MESSAGES_PER_BATCH));
+                theMessageCount += theMovedMessageCount;
+            } while (theMovedMessageCount > 0 && theMessageCount < theMaxMessageCount
+                && !hasExecutionDurationElapsed(theTaskStartTime, theMaxExecutionDuration));
 
-            if (theInboundMessage != null) {
-                /* Received a message. Now try to dispatch it. */
-                LOGGER.debug("Dispatching message to {}", inMoverTask.getOutboundEndpointURI());
-                dispatchOutboundMessage(inTransportService, inMoverTask, theInboundMessage);
-
-                addTaskExecutionSuccessToTask(inMoverTask, theTaskStartTime);
+            if (theMessageCount > 0) {
+                theTaskStatus = createTaskExecutionSuccess(inMoverTask, theTaskStartTime, theMessageCount);
             } else {
                 /* No message received, nothing to dispatch. */
-                addTaskExecutionNoMessageReceivedToTask(inMoverTask);
+                theTaskStatus = createTaskExecutionNoMessageReceived(inMoverTask, theTaskStartTime);
             }
-
         } catch (final JobExecutionException theException) {
             /* Error occurred during task execution. */
             theJobExecutionException = theException;
 
-            addTaskExecutionErrorToTask(inMoverTask, theException);
+            theTaskStatus = createTaskExecutionError(inMoverTask, theException, theTaskStartTime, theMessageCount);
         }
 
-        inTaskConfigurationService.save(inMoverTask);
+        inTaskExecutionStatusService.save(theTaskStatus);
 
         /* Re-throw any exceptions thrown during execution of task. */
         if (theJobExecutionException != null) {
@@ -199,55 +180,150 @@ public class QuartzTaskJob implements Job, TaskJob {
     }
 
     /**
-     * Adds a task execution status to the supplied task indicating that no
+     * Moves up to the supplied maximum number of messages from the inbound
+     * endpoint to the outbound endpoint of the supplied task.
+     * Unless the task moves at most one message per execution, the messages
+     * are moved in batches. A batch received in a transaction is not
+     * committed until it has been dispatched.
+     * Files moved between two file endpoints are moved by the native file
+     * mover, if available, without involving the transport service.
+     *
+     * @param inTransportService Transport service used to request and
+     * dispatch messages.
+     * @param inMoverTask Task configuration holding endpoints etc.
+     * @param inMaxMessages Maximum number of messages to move.
+     * @return Number of moved messages.
+     * @throws JobExecutionException If error occurs receiving or dispatching
+     * messages.
+     */
+    @SuppressWarnings("rawtypes")
+    protected int moveMessages(final TransportService inTransportService,
+        final MessageCowboySchedulableTaskConfig inMoverTask, final int inMaxMessages)
+        throws JobExecutionException {
+        if (mNativeFileMover != null && mNativeFileMover.isFileToFileMove(inMoverTask.getInboundEndpointURI(),
+            inMoverTask.getOutboundEndpointURI())) {
+            return moveFiles(inMoverTask, inMaxMessages);
+        }
+
+        if (inMoverTask.getMaxMessagesPerExecution() <= 1) {
+            final MoverMessage theInboundMessage = requestInboundMessage(inTransportService, inMoverTask);
+
+            LOGGER.debug("Message received from {}: {}", inMoverTask.getInboundEndpointURI(),
+                theInboundMessage);
+
+            if (theInboundMessage == null) {
+                return 0;
+            }
+
+            /* Received a message. Now try to dispatch it. */
+            LOGGER.debug("Dispatching message to {}", inMoverTask.getOutboundEndpointURI());
+            dispatchOutboundMessage(inTransportService, inMoverTask, theInboundMessage);
+            return 1;
+        }
+
+        final int theMovedMessageCount = moveMessageBatch(inTransportService, inMoverTask, inMaxMessages);
+
+        LOGGER.debug("{} messages moved from {} to {}", theMovedMessageCount,
+            inMoverTask.getInboundEndpointURI(), inMoverTask.getOutboundEndpointURI());
+        return theMovedMessageCount;
+    }
+
+    /**
+     * Moves up to the supplied maximum number of files from the inbound
+     * file endpoint to the outbound file endpoint of the supplied task
+     * using the native file mover.
+     *
+     * @param inMoverTask Task configuration holding endpoints.
+     * @param inMaxFiles Maximum number of files to move.
+     * @return Number of moved files.
+     * @throws JobExecutionException If error occurs moving files.
+     */
+    protected int moveFiles(final MessageCowboySchedulableTaskConfig inMoverTask, final int inMaxFiles)
+        throws JobExecutionException {
+        try {
+            return mNativeFileMover.moveFiles(inMoverTask.getInboundEndpointURI(),
+                inMoverTask.getOutboundEndpointURI(), inMaxFiles);
+        } catch (final IOException theException) {
+            LOGGER.error("An error occurred when the task {} in group {} "
+                + "moved files", inMoverTask.getName(), inMoverTask.getTaskGroupName());
+
+            throw new JobExecutionException(theException);
+        }
+    }
+
+    /**
+     * Determines whether the supplied maximum execution duration has elapsed
+     * since the supplied start time.
+     *
+     * @param inTaskStartTime Task execution start time in milliseconds.
+     * @param inMaxExecutionDuration Maximum execution duration in milliseconds,
+     * zero or less if the execution duration is unlimited.
+     * @return True if maximum execution duration has elapsed, false otherwise.
+     */
+    protected boolean hasExecutionDurationElapsed(final long inTaskStartTime,
+        final long inMaxExecutionDuration) {
+        return inMaxExecutionDuration > 0
+            && (System.currentTimeMillis() - inTaskStartTime) >= inMaxExecutionDuration;
+    }
+
+    /**
+     * Creates a task execution status for the supplied task indicating that no
      * message was received during the last execution of the task.
      *
-     * @param inMoverTask Task to add execution status to.
+     * @param inMoverTask Task to create execution status for.
+     * @param inTaskStartTime Task execution start time in milliseconds.
+     * @return New task execution status.
      */
-    protected void addTaskExecutionNoMessageReceivedToTask(
-        final MessageCowboySchedulableTaskConfig inMoverTask) {
-        final TaskExecutionStatus theTaskStatus =
-            new TaskExecutionStatusNoMessageReceived(inMoverTask, "", new Date());
-        inMoverTask.addTaskExecutionStatus(theTaskStatus);
+    protected TaskExecutionStatus createTaskExecutionNoMessageReceived(
+        final MessageCowboySchedulableTaskConfig inMoverTask, final long inTaskStartTime) {
+        final long theTaskEndTime = System.currentTimeMillis();
+        return new TaskExecutionStatusNoMessageReceived(inMoverTask, "", new Date(theTaskEndTime),
+            theTaskEndTime - inTaskStartTime);
     }
 
     /**
-     * Adds a task execution status to the supplied task indicating that
+     * Creates a task execution status for the supplied task indicating that
      * an error occurred during the last execution of the task.
      *
-     * @param inMoverTask Task to add execution status to.
+     * @param inMoverTask Task to create execution status for.
      * @param inException Exception that occurred during task execution, or
      * null if no exception occurred.
+     * @param inTaskStartTime Task execution start time in milliseconds.
+     * @param inMessageCount Number of messages moved before the error occurred.
+     * @return New task execution status.
      */
-    protected void addTaskExecutionErrorToTask(
+    protected TaskExecutionStatus createTaskExecutionError(
         final MessageCowboySchedulableTaskConfig inMoverTask,
-        final JobExecutionException inException) {
+        final JobExecutionException inException, final long inTaskStartTime, final int inMessageCount) {
         String theTaskStatusMsg = "";
         if (inException != null) {
             theTaskStatusMsg = inException.getLocalizedMessage();
         }
 
-        final TaskExecutionStatus theTaskStatus =
-            new TaskExecutionStatusError(inMoverTask, theTaskStatusMsg, new Date());
-        inMoverTask.addTaskExecutionStatus(theTaskStatus);
+        final long theTaskEndTime = System.currentTimeMillis();
+        return new TaskExecutionStatusError(inMoverTask, theTaskStatusMsg, new Date(theTaskEndTime), inMessageCount,
+            theTaskEndTime - inTaskStartTime);
     }
 
     /**
-     * Adds a task execution status to the supplied task indicating that the
+     * Creates a task execution status for the supplied task indicating that the
      * last execution of the task had a successful outcome.
      *
-     * @param inMoverTask Task to add execution status to.
+     * @param inMoverTask Task to create execution status for.
      * @param inTaskStartTime Task execution start time in milliseconds.
+     * @param inMessageCount Number of messages moved during the execution.
+     * @return New task execution status.
      */
-    protected void addTaskExecutionSuccessToTask(
-        final MessageCowboySchedulableTaskConfig inMoverTask, final long inTaskStartTime) {
+    protected TaskExecutionStatus createTaskExecutionSuccess(
+        final MessageCowboySchedulableTaskConfig inMoverTask, final long inTaskStartTime,
+        final int inMessageCount) {
         final long theTaskEndTime = System.currentTimeMillis();
         final long theTaskExecutionTime = theTaskEndTime - inTaskStartTime;
-        final String theTaskStatusMsg = "Executed in " + theTaskExecutionTime + " milliseconds";
+        final String theTaskStatusMsg =
+            "Moved " + inMessageCount + " message(s) in " + theTaskExecutionTime + " milliseconds";
 
-        final TaskExecutionStatus theTaskStatus =
-            new TaskExecutionStatusSuccess(inMoverTask, theTaskStatusMsg, new Date());
-        inMoverTask.addTaskExecutionStatus(theTaskStatus);
+        return new TaskExecutionStatusSuccess(inMoverTask, theTaskStatusMsg, new Date(theTaskEndTime), inMessageCount,
+            theTaskExecutionTime);
     }
 
     /**
@@ -274,6 +350,35 @@ public class QuartzTaskJob implements Job, TaskJob {
         }
     }
 
+    /**
+     * Moves a batch of messages using supplied transport service from the
+     * inbound endpoint to the outbound endpoint in supplied task configuration.
+     * The request will timeout after the amount of time specified in the
+     * supplied task configuration.
+     *
+     * @param inTransportService Transport service to move messages.
+     * @param inMoverTask Task configuration holding request and dispatch
+     * parameters.
+     * @param inMaxMessages Maximum number of messages to move.
+     * @return Number of moved messages, zero if request timed out.
+     * @throws JobExecutionException If error occurs receiving or dispatching
+     * messages.
+     */
+    protected int moveMessageBatch(final TransportService inTransportService,
+        final MessageCowboySchedulableTaskConfig inMoverTask, final int inMaxMessages)
+        throws JobExecutionException {
+        try {
+            return inTransportService.moveBatch(inMoverTask.getInboundEndpointURI(),
+                inMoverTask.getOutboundEndpointURI(), inMoverTask.getInboundTimeout(), inMaxMessages);
+        } catch (final Throwable theException) {
+            LOGGER.error("An error occurred when the task {} in group {} "
+                + "moved a batch of messages", inMoverTask.getName(), inMoverTask
+                .getTaskGroupName());
+
+            throw new JobExecutionException(theException);
+        }
+    }
+
     /**
      * Requests a message using supplied transport service from the inbound
      * endpoint in supplied task configuration.
@@ -303,4 +408,36 @@ public class QuartzTaskJob implements Job, TaskJob {
 
         return theInboundMessage;
     }
+
+    public TransportService getTransportService() {
+        return mTransportService;
+    }
+
+    public void setTransportService(final TransportService inTransportService) {
+        mTransportService = inTransportService;
+    }
+
+    public TaskExecutionStatusService getTaskExecutionStatusService() {
+        return mTaskExecutionStatusService;
+    }
+
+    public void setTaskExecutionStatusService(final TaskExecutionStatusService inTaskExecutionStatusService) {
+        mTaskExecutionStatusService = inTaskExecutionStatusService;
+    }
+
+    public TaskConfigurationService getTaskConfigurationService() {
+        return mTaskConfigurationService;
+    }
+
+    public void setTaskConfigurationService(final TaskConfigurationService inTaskConfigurationService) {
+        mTaskConfigurationService = inTaskConfigurationService;
+    }
+
+    public NativeFileMover getNativeFileMover() {
+        return mNativeFileMover;
+    }
+
+    public void setNativeFileMover(final NativeFileMover inNativeFileMover) {
+        mNativeFileMover = inNativeFileMover;
+    }
 }
@@ -0,0 +1,214 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.domain.valueobjects;
+
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * Holds counters summarizing the executions of one task during one period
+ * of time, for instance one minute.<br/>
+ * Rollups are accumulated in memory and written when their period has ended,
+ * in order for frequently executed tasks not to produce one row for each
+ * execution. Should accumulation be interrupted, for instance when Message
+ * Cowboy is stopped, there may be more than one rollup for a task and
+ * period, in which case the counters of these rollups are to be summed.
+ *
+ * @author Ivan Krizsan
+ */
+@Entity
+@Table(name = "TaskExecutionRollups", indexes = {
+    @Index(name = "TaskExecutionRollupPeriodIndex", columnList = "periodStartTime"),
+    @Index(name = "TaskExecutionRollupTaskIndex", columnList = "TaskName") })
+public class TaskExecutionRollup implements Serializable {
+    /* Constant(s): */
+    private static final long serialVersionUID = 2361547326491236731L;
+
+    /* Instance variable(s): */
+    /** Generated numeric id of the entity. */
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    protected Long id;
+    /** Name of the task configuration which executions are summarized. */
+    @Column(name = "TaskName", nullable = true)
+    protected String taskName;
+    /** Start of the period during which the summarized executions took place. */
+    @Column(nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    protected Date periodStartTime;
+    /** Length of the period in milliseconds. */
+    @Column(nullable = false)
+    protected long periodLength;
+    /** Number of successful executions during which messages were moved. */
+    @Column(nullable = false)
+    protected int successCount;
+    /** Number of successful executions during which no message was received. */
+    @Column(nullable = false)
+    protected int noMessageReceivedCount;
+    /** Number of executions that failed. */
+    @Column(nullable = false)
+    protected int errorCount;
+    /** Total number of messages moved. */
+    @Column(nullable = false)
+    protected long messageCount;
+    /** Number of executions for which the execution duration is known. */
+    @Column(nullable = false)
+    protected int timedExecutionCount;
+    /** Sum of known execution durations in milliseconds. */
+    @Column(nullable = false)
+    protected long totalExecutionDuration;
+    /** Shortest known execution duration in milliseconds, null if none known. */
+    @Column(nullable = true)
+    protected Long minExecutionDuration;
+    /** Longest known execution duration in milliseconds, null if none known. */
+    @Column(nullable = true)
+    protected Long maxExecutionDuration;
+
+    /**
+     * Creates an empty rollup.
+     */
+    public TaskExecutionRollup() {
+    }
+
+    /**
+     * Creates an empty rollup for the task with supplied name and the period
+     * starting at the supplied time and having the supplied length.
+     *
+     * @param inTaskName Task configuration name.
+     * @param inPeriodStartTime Period start time.
+     * @param inPeriodLength Period length in milliseconds.
+     */
+    public TaskExecutionRollup(final String inTaskName, final Date inPeriodStartTime, final long inPeriodLength) {
+        taskName = inTaskName;
+        periodStartTime = (Date) inPeriodStartTime.clone();
+        periodLength = inPeriodLength;
+    }
+
+    /**
+     * Adds the outcome of the task execution described by the supplied
+     * task execution status to the counters of this rollup.
+     *
+     * @param inTaskExecutionStatus Task execution status to add.
+     */
+    public void add(final TaskExecutionStatus inTaskExecutionStatus) {
+        if (inTaskExecutionStatus instanceof TaskExecutionStatusNoMessageReceived) {
+            noMessageReceivedCount++;
+        } else if (inTaskExecutionStatus.getTaskSuccessfulFlag()) {
+            successCount++;
+        } else {
+            errorCount++;
+        }
+        messageCount += inTaskExecutionStatus.getMessageCount();
+
+        final Long theExecutionDuration = inTaskExecutionStatus.getExecutionDuration();
+        if (theExecutionDuration != null) {
+            timedExecutionCount++;
+            totalExecutionDuration += theExecutionDuration;
+            if (minExecutionDuration == null || theExecutionDuration < minExecutionDuration) {
+                minExecutionDuration = theExecutionDuration;
+            }
+            if (maxExecutionDuration == null || theExecutionDuration > maxExecutionDuration) {
+                maxExecutionDuration = theExecutionDuration;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the total number of executions summarized by this rollup.
+     *
+     * @return Number of executions.
+     */
+    public int getExecutionCount() {
+        return successCount + noMessageReceivedCount + errorCount;
+    }
+
+    /**
+     * Retrieves the average execution duration of the executions for which
+     * the execution duration is known.
+     *
+     * @return Average execution duration in milliseconds, or null if no
+     * execution duration is known.
+     */
+    public Long getAverageExecutionDuration() {
+        if (timedExecutionCount == 0) {
+            return null;
+        }
+        return totalExecutionDuration / timedExecutionCount;
+    }
+
+    /**
+     * Retrieves the time at which the period of this rollup ends.
+     *
+     * @return Period end time.
+     */
+    public Date getPeriodEndTime() {
+        return new Date(periodStartTime.getTime() + periodLength);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    public Date getPeriodStartTime() {
+        return (Date) periodStartTime.clone();
+    }
+
+    public long getPeriodLength() {
+        return periodLength;
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public int getNoMessageReceivedCount() {
+        return noMessageReceivedCount;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public long getTotalExecutionDuration() {
+        return totalExecutionDuration;
+    }
+
+    public Long getMinExecutionDuration() {
+        return minExecutionDuration;
+    }
+
+    public Long getMaxExecutionDuration() {
+        return maxExecutionDuration;
+    }
+}
@@ -22,14 +22,12 @@ import javax.persistence.Column;
 import javax.persistence.DiscriminatorColumn;
 import javax.persistence.DiscriminatorType;
 import javax.persistence.Entity;
-import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
-import javax.persistence.JoinColumn;
-import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
@@ -43,7 +41,8 @@ import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulabl
  * @author Ivan Krizsan
  */
 @Entity
-@Table(name = "TaskExecutionStatuses")
+@Table(name = "TaskExecutionStatuses",
+    indexes = { @Index(name = "TaskExecutionTimeIndex", columnList = "taskExecutionTime") })
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "resultStatus",
     discriminatorType = DiscriminatorType.STRING, length = 15)
@@ -56,10 +55,13 @@ public abstract class TaskExecutionStatus implements Serializable {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     protected Long id;
-    /** Task configuration for which this is a execution status. */
-    @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "TaskName")
-    protected MessageCowboySchedulableTaskConfig taskConfiguration;
+    /**
+     * Name of the task configuration for which this is a execution status.
+     * References the task configuration by key, in order for execution statuses
+     * to be inserted without loading or updating the task configuration.
+     */
+    @Column(name = "TaskName", nullable = true)
+    protected String taskName;
     /** Message conveying additional status information. */
     @Column(nullable = true)
     protected String statusMessage;
@@ -67,6 +69,16 @@ public abstract class TaskExecutionStatus implements Serializable {
     @Column(nullable = false)
     @Temporal(TemporalType.TIMESTAMP)
     protected Date taskExecutionTime;
+    /**
+     * Number of messages moved during the task execution.
+     * Null, as in the case of statuses saved before message counts were
+     * introduced, is treated as zero.
+     */
+    @Column(nullable = true)
+    protected Integer messageCount;
+    /** Duration of the task execution in milliseconds, null if not known. */
+    @Column(nullable = true)
+    protected Long executionDuration;
 
     /**
      * Creates an instance setting the status message to the empty string.
@@ -88,10 +100,32 @@ public abstract class TaskExecutionStatus implements Serializable {
     public TaskExecutionStatus(
         final MessageCowboySchedulableTaskConfig inTaskConfiguration,
         final String inStatusMessage, final Date inTaskExecutionTime) {
+        if (inTaskConfiguration != null) {
+            taskName = inTaskConfiguration.getName();
+        }
         statusMessage = inStatusMessage;
         taskExecutionTime = inTaskExecutionTime;
     }
 
+    /**
+     * Creates an instance representing a status for the supplied task
+     * configuration having the supplied status message and execution duration.
+     * Sets the task execution time to the supplied time.
+     *
+     * @param inTaskConfiguration Task configuration for which to create
+     * execution status.
+     * @param inStatusMessage Status message.
+     * @param inTaskExecutionTime Task execution time.
+     * @param inExecutionDuration Task execution duration in milliseconds.
+     */
+    public TaskExecutionStatus(
+        final MessageCowboySchedulableTaskConfig inTaskConfiguration,
+        final String inStatusMessage, final Date inTaskExecutionTime,
+        final long inExecutionDuration) {
+        this(inTaskConfiguration, inStatusMessage, inTaskExecutionTime);
+        executionDuration = inExecutionDuration;
+    }
+
     /**
      * Retrieves the outcome of the execution of a task.
      *
@@ -119,13 +153,33 @@ public abstract class TaskExecutionStatus implements Serializable {
     }
 
     /**
-     * Retrieves the task configuration for which this object represent
-     * an execution outcome.
+     * Retrieves the number of messages moved during the task execution
+     * for which this object represent the execution outcome.
+     *
+     * @return Number of moved messages.
+     */
+    public int getMessageCount() {
+        return messageCount == null ? 0 : messageCount.intValue();
+    }
+
+    /**
+     * Retrieves the duration of the task execution for which this object
+     * represent the execution outcome.
+     *
+     * @return Task execution duration in milliseconds, or null if not known.
+     */
+    public Long getExecutionDuration() {
+        return executionDuration;
+    }
+
+    /**
+     * Retrieves the name of the task configuration for which this object
+     * represent an execution outcome.
      *
-     * @return Task configuration.
+     * @return Task configuration name.
      */
-    public MessageCowboySchedulableTaskConfig getTaskConfiguration() {
-        return taskConfiguration;
+    public String getTaskName() {
+        return taskName;
     }
 
     /**
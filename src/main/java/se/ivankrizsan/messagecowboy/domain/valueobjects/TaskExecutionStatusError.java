@@ -55,8 +55,44 @@ public class TaskExecutionStatusError extends TaskExecutionStatus {
      */
     public TaskExecutionStatusError(final MessageCowboySchedulableTaskConfig inTaskConfiguration,
         final String inStatusMessage, final Date inTaskExecutionTime) {
-        statusMessage = inStatusMessage;
-        taskExecutionTime = inTaskExecutionTime;
+        super(inTaskConfiguration, inStatusMessage, inTaskExecutionTime);
+    }
+
+    /**
+     * Creates an instance representing the unsuccessful outcome of an
+     * execution of the supplied task having the supplied configuration
+     * during which the supplied number of messages were moved.
+     *
+     * @param inTaskConfiguration Task configuration for which to create
+     * execution status.
+     * @param inStatusMessage Status message.
+     * @param inTaskExecutionTime Task execution time.
+     * @param inMessageCount Number of messages moved during task execution.
+     */
+    public TaskExecutionStatusError(final MessageCowboySchedulableTaskConfig inTaskConfiguration,
+        final String inStatusMessage, final Date inTaskExecutionTime, final int inMessageCount) {
+        this(inTaskConfiguration, inStatusMessage, inTaskExecutionTime);
+        messageCount = Integer.valueOf(inMessageCount);
+    }
+
+    /**
+     * Creates an instance representing the unsuccessful outcome of an
+     * execution of the supplied task having the supplied configuration
+     * during which the supplied number of messages were moved in the
+     * supplied duration.
+     *
+     * @param inTaskConfiguration Task configuration for which to create
+     * execution status.
+     * @param inStatusMessage Status message.
+     * @param inTaskExecutionTime Task execution time.
+     * @param inMessageCount Number of messages moved during task execution.
+     * @param inExecutionDuration Task execution duration in milliseconds.
+     */
+    public TaskExecutionStatusError(final MessageCowboySchedulableTaskConfig inTaskConfiguration,
+        final String inStatusMessage, final Date inTaskExecutionTime, final int inMessageCount,
+        final long inExecutionDuration) {
+        super(inTaskConfiguration, inStatusMessage, inTaskExecutionTime, inExecutionDuration);
+        messageCount = Integer.valueOf(inMessageCount);
     }
 
     @Override
@@ -55,8 +55,23 @@ public class TaskExecutionStatusNoMessageReceived extends TaskExecutionStatus {
      */
     public TaskExecutionStatusNoMessageReceived(final MessageCowboySchedulableTaskConfig inTaskConfiguration,
         final String inStatusMessage, final Date inTaskExecutionTime) {
-        statusMessage = inStatusMessage;
-        taskExecutionTime = inTaskExecutionTime;
+        super(inTaskConfiguration, inStatusMessage, inTaskExecutionTime);
+    }
+
+    /**
+     * Creates an instance representing the no message received outcome of an
+     * execution of the supplied task having the supplied configuration
+     * that lasted the supplied duration.
+     *
+     * @param inTaskConfiguration Task configuration for which to create
+     * execution status.
+     * @param inStatusMessage Status message.
+     * @param inTaskExecutionTime Task execution time.
+     * @param inExecutionDuration Task execution duration in milliseconds.
+     */
+    public TaskExecutionStatusNoMessageReceived(final MessageCowboySchedulableTaskConfig inTaskConfiguration,
+        final String inStatusMessage, final Date inTaskExecutionTime, final long inExecutionDuration) {
+        super(inTaskConfiguration, inStatusMessage, inTaskExecutionTime, inExecutionDuration);
     }
 
     @Override
@@ -0,0 +1,52 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.scheduling;
+
+import org.quartz.spi.TriggerFiredBundle;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.scheduling.quartz.AdaptableJobFactory;
+
+/**
+ * Quartz job factory that injects Spring beans into the job instances
+ * it creates.<br/>
+ * Jobs thus obtain the services they need by dependency injection and the
+ * job data maps of the jobs need only hold serializable data identifying
+ * the task to execute.
+ *
+ * @author Ivan Krizsan
+ */
+class AutowiringJobFactory extends AdaptableJobFactory implements ApplicationContextAware {
+    /* Instance variable(s): */
+    /** Application context from which dependencies of jobs are obtained. */
+    protected ApplicationContext mApplicationContext;
+
+    @Override
+    protected Object createJobInstance(final TriggerFiredBundle inBundle) throws Exception {
+        final Object theJob = super.createJobInstance(inBundle);
+        if (mApplicationContext != null) {
+            mApplicationContext.getAutowireCapableBeanFactory().autowireBean(theJob);
+        }
+        return theJob;
+    }
+
+    @Override
+    public void setApplicationContext(final ApplicationContext inApplicationContext) throws BeansException {
+        mApplicationContext = inApplicationContext;
+    }
+}
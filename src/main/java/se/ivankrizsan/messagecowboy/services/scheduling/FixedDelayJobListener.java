@@ -0,0 +1,96 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.scheduling;
+
+import java.util.Date;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Quartz job listener that reschedules tasks scheduled with a fixed delay
+ * after each execution.<br/>
+ * The trigger of such a task fires once and holds the fixed delay in its
+ * job data map. When the task has been executed, the trigger is replaced
+ * by a trigger firing once after the fixed delay has elapsed.
+ * Triggers that have been unscheduled or replaced while the task executed
+ * are left as they are.
+ *
+ * @author Ivan Krizsan
+ */
+class FixedDelayJobListener implements JobListener {
+    /* Constant(s): */
+    /** Class logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(FixedDelayJobListener.class);
+    /** Name of the job listener. */
+    public static final String LISTENER_NAME = "MessageCowboyFixedDelayJobListener";
+
+    @Override
+    public String getName() {
+        return LISTENER_NAME;
+    }
+
+    @Override
+    public void jobToBeExecuted(final JobExecutionContext inContext) {
+        /* Nothing to do before executing a job. */
+    }
+
+    @Override
+    public void jobExecutionVetoed(final JobExecutionContext inContext) {
+        /* Nothing to do when a job execution is vetoed. */
+    }
+
+    @Override
+    public void jobWasExecuted(final JobExecutionContext inContext,
+        final JobExecutionException inJobException) {
+        final Trigger theFiredTrigger = inContext.getTrigger();
+        final Object theFixedDelay =
+            theFiredTrigger.getJobDataMap().get(QuartzSchedulerHelper.FIXED_DELAY_TRIGGER_DATA_KEY);
+        if (!(theFixedDelay instanceof Long)) {
+            return;
+        }
+
+        try {
+            final Scheduler theScheduler = inContext.getScheduler();
+            final Trigger theStoredTrigger = theScheduler.getTrigger(theFiredTrigger.getKey());
+            if (theStoredTrigger == null || theStoredTrigger.getNextFireTime() != null) {
+                /* Task unscheduled or rescheduled during execution. */
+                return;
+            }
+
+            final Date theNextFireTime = new Date(System.currentTimeMillis() + (Long) theFixedDelay);
+            if (theStoredTrigger.getEndTime() != null && theNextFireTime.after(theStoredTrigger.getEndTime())) {
+                LOGGER.debug("Fixed-delay task {} in group {} has reached its end time",
+                    theFiredTrigger.getKey().getName(), theFiredTrigger.getKey().getGroup());
+                return;
+            }
+
+            final Trigger theNextTrigger = theStoredTrigger.getTriggerBuilder().startAt(theNextFireTime).build();
+            theScheduler.rescheduleJob(theStoredTrigger.getKey(), theNextTrigger);
+        } catch (final SchedulerException theException) {
+            LOGGER.error("An error occurred rescheduling the fixed-delay task "
+                + theFiredTrigger.getKey().getName() + " in group " + theFiredTrigger.getKey().getGroup(),
+                theException);
+        }
+    }
+}
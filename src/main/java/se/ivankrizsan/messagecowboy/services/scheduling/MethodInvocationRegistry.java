@@ -0,0 +1,95 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.scheduling;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.quartz.JobKey;
+
+/**
+ * In-process registry of the method invocations of scheduled
+ * {@link MethodInvokingJob}s, keyed by the keys of the jobs.<br/>
+ * Keeping the target objects of method invocations in this registry
+ * instead of in the job data maps allows the job data maps to hold
+ * serializable data only.
+ *
+ * @author Ivan Krizsan
+ */
+class MethodInvocationRegistry {
+    /* Instance variable(s): */
+    /** Method invocations keyed by job key. */
+    protected final ConcurrentMap<JobKey, ScheduledMethodInvocation> mMethodInvocations =
+        new ConcurrentHashMap<JobKey, ScheduledMethodInvocation>();
+
+    /**
+     * Registers the supplied method invocation for the job with the
+     * supplied key, replacing any previously registered method invocation.
+     *
+     * @param inJobKey Key of job that is to perform method invocation.
+     * @param inMethodInvocation Method invocation.
+     * @return Previously registered method invocation, or null if none
+     * registered for the job.
+     */
+    public ScheduledMethodInvocation register(final JobKey inJobKey,
+        final ScheduledMethodInvocation inMethodInvocation) {
+        return mMethodInvocations.put(inJobKey, inMethodInvocation);
+    }
+
+    /**
+     * Restores the supplied method invocation, previously registered for
+     * the job with the supplied key, removing the method invocation
+     * currently registered for the job if there was none.
+     *
+     * @param inJobKey Key of job that is to perform method invocation.
+     * @param inPreviousMethodInvocation Method invocation previously
+     * registered for the job, or null if none.
+     */
+    public void restore(final JobKey inJobKey, final ScheduledMethodInvocation inPreviousMethodInvocation) {
+        if (inPreviousMethodInvocation == null) {
+            mMethodInvocations.remove(inJobKey);
+        } else {
+            mMethodInvocations.put(inJobKey, inPreviousMethodInvocation);
+        }
+    }
+
+    /**
+     * Finds the method invocation of the job with the supplied key.
+     *
+     * @param inJobKey Job key.
+     * @return Method invocation, or null if none registered for the job.
+     */
+    public ScheduledMethodInvocation find(final JobKey inJobKey) {
+        return mMethodInvocations.get(inJobKey);
+    }
+
+    /**
+     * Removes the method invocation of the job with the supplied key.
+     *
+     * @param inJobKey Job key.
+     */
+    public void remove(final JobKey inJobKey) {
+        mMethodInvocations.remove(inJobKey);
+    }
+
+    /**
+     * Removes all method invocations.
+     */
+    public void clear() {
+        mMethodInvocations.clear();
+    }
+}
@@ -19,23 +19,23 @@ package se.ivankrizsan.messagecowboy.services.scheduling;
 import java.util.Arrays;
 
 import org.quartz.Job;
-import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.util.MethodInvoker;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import se.ivankrizsan.messagecowboy.domain.entities.TaskJob;
 
 /**
  * Task scheduled by the Message Cowboy starter service that invokes
  * a named method on an object with zero or more parameters.<br/>
- * Method name and target object, which both are required, are passed
- * in the job data map. The array of parameters to the target method is,
- * if the target method takes parameters, passed in the job data map.
- * If the target method takes no parameters, no entry need to be specified
- * in the job data map.<br/>
+ * Target object, method name and parameters are registered in the
+ * method invocation registry, which is injected into the job when it is
+ * created, under the key of the job. The job data map of the job is not used.
+ * The target method is resolved when the method invocation is registered,
+ * so executing the job only invokes the method.<br/>
  * All types of exceptions that occur when the target method is invoked are
  * caught by this job.<br/>
  * This class must be public since otherwise Spring cannot instantiate
@@ -47,37 +47,31 @@ public class MethodInvokingJob implements TaskJob, Job {
     /* Constant(s): */
     /** Class logger. */
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodInvokingJob.class);
-    /** Key to entry in job data map to object on which method is to be invoked on. */
-    public final static String TARGET_OBJECT_KEY = "_methodinvokingjob_targetobject";
-    /** Key to entry in job data map to name of method to be invoked. */
-    public final static String TARGET_METHOD_KEY = "_methodinvokingjob_targetmethod";
-    /** Key to entry in job data map to array of parameters to method to invoke. */
-    public final static String TARGET_METHOD_PARAMETERS_KEY = "_methodinvokingjob_targetmethodparams";
+
+    /* Instance variable(s): */
+    /** Registry holding the method invocations of scheduled jobs. */
+    @Autowired(required = false)
+    protected MethodInvocationRegistry mMethodInvocationRegistry;
 
     @Override
     public void execute(final JobExecutionContext inContext) throws JobExecutionException {
-        final JobDataMap theJobDataMap = inContext.getJobDetail().getJobDataMap();
-        final String theTaskName = inContext.getJobDetail().getKey().getName();
-        final String theTaskGroupName = inContext.getJobDetail().getKey().getGroup();
+        final JobKey theJobKey = inContext.getJobDetail().getKey();
+        final String theTaskName = theJobKey.getName();
+        final String theTaskGroupName = theJobKey.getGroup();
 
-        LOGGER.info("Started executing task {} in group {}", theTaskName, theTaskGroupName);
+        LOGGER.debug("Started executing task {} in group {}", theTaskName, theTaskGroupName);
 
-        final Object theTargetObject = theJobDataMap.get(TARGET_OBJECT_KEY);
-        final Object theTargetMethodNameObject = theJobDataMap.get(TARGET_METHOD_KEY);
-        final Object theTargetMethodParamsObject = theJobDataMap.get(TARGET_METHOD_PARAMETERS_KEY);
+        if (mMethodInvocationRegistry == null) {
+            LOGGER.error("No method invocation registry available to task {} in group {}", theTaskName,
+                theTaskGroupName);
+            return;
+        }
+        final ScheduledMethodInvocation theMethodInvocation = mMethodInvocationRegistry.find(theJobKey);
 
-        if (theTargetObject != null && theTargetMethodNameObject != null) {
-            /* Cast parameters to appropriate types. */
-            final String theTargetMethodName = (String) theTargetMethodNameObject;
-            Object[] theTargetMethodParams = new Object[0];
-
-            /*
-             * Parameter array may be null, in which a no-params method
-             * invocation will be performed.
-             */
-            if (theTargetMethodParamsObject != null) {
-                theTargetMethodParams = (Object[]) theTargetMethodParamsObject;
-            }
+        if (theMethodInvocation != null) {
+            final Object theTargetObject = theMethodInvocation.getTargetObject();
+            final String theTargetMethodName = theMethodInvocation.getTargetMethodName();
+            final Object[] theTargetMethodParams = theMethodInvocation.getTargetMethodParameters();
 
             /*
              * Check if logging is enabled before applying conversions only
@@ -93,13 +87,7 @@ public class MethodInvokingJob implements TaskJob, Job {
 
             /* Invoke the target method. */
             try {
-                MethodInvoker theMethodInvoker = new MethodInvoker();
-                theMethodInvoker.setTargetObject(theTargetObject);
-                theMethodInvoker.setTargetMethod(theTargetMethodName);
-                theMethodInvoker.setArguments(theTargetMethodParams);
-                theMethodInvoker.prepare();
-
-                theMethodInvoker.invoke();
+                theMethodInvocation.invoke();
             } catch (final Throwable theException) {
                 /*
                  * Catch all exceptions, in order to allow the program to
@@ -111,7 +99,9 @@ public class MethodInvokingJob implements TaskJob, Job {
                         + Arrays.asList(theTargetMethodParams).toString(), theException);
             }
 
-            LOGGER.info("Successfully completed executing task {} in group {}", theTaskName, theTaskGroupName);
+            LOGGER.debug("Successfully completed executing task {} in group {}", theTaskName, theTaskGroupName);
+        } else {
+            LOGGER.warn("No method invocation registered for task {} in group {}", theTaskName, theTaskGroupName);
         }
     }
 }
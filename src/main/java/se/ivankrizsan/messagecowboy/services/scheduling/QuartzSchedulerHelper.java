@@ -17,6 +17,7 @@
 package se.ivankrizsan.messagecowboy.services.scheduling;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -25,10 +26,14 @@ import org.quartz.CronScheduleBuilder;
 import org.quartz.CronTrigger;
 import org.quartz.Job;
 import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobKey;
+import org.quartz.ScheduleBuilder;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.SimpleTrigger;
 import org.quartz.Trigger;
 import org.quartz.TriggerBuilder;
 import org.quartz.TriggerKey;
@@ -41,7 +46,13 @@ import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskKey;
 
 /**
  * Helper class that simplifies the programmatic creation and management of
- * scheduled Quartz jobs.
+ * scheduled Quartz jobs.<br/>
+ * Tasks are scheduled using either cron triggers or simple triggers.
+ * A task with a fixed delay between executions is scheduled using a simple
+ * trigger that fires once and that is rescheduled, by the
+ * {@link FixedDelayJobListener}, each time the task has been executed.<br/>
+ * Tasks may be staggered, that is scheduled to fire a fixed offset after
+ * the times determined by their schedule.
  *
  * @author Ivan Krizsan
  */
@@ -49,6 +60,12 @@ class QuartzSchedulerHelper {
     /* Constant(s): */
     /** Class logger. */
     private static final Logger LOGGER = LoggerFactory.getLogger(QuartzSchedulerHelper.class);
+    /** Key to entry in trigger job data map holding fixed delay in milliseconds of a fixed-delay task. */
+    public static final String FIXED_DELAY_TRIGGER_DATA_KEY = "_fixeddelay_millis";
+    /** Key to entry in trigger job data map holding the start time, if any, of a fixed-delay task. */
+    public static final String FIXED_DELAY_START_TIME_TRIGGER_DATA_KEY = "_fixeddelay_starttime";
+    /** Key to entry in trigger job data map holding the stagger offset, if any, of an interval task. */
+    public static final String STAGGER_OFFSET_TRIGGER_DATA_KEY = "_stagger_offset";
 
     /* Instance variable(s): */
     /** Quartz scheduler. */
@@ -66,6 +83,8 @@ class QuartzSchedulerHelper {
      * @param inJobClass The job class that will be executed when the new task triggers.
      * @param inCronExpression Cron expression specifying when task is to be
      * executed.
+     * @param inStaggerOffset Offset in milliseconds after the times determined
+     * by the cron expression at which the task is to be executed, zero if none.
      * @param inJobDataMap Map holding information to be passed to the
      * job being executed. Contents of map will be copied.
      * @param inStartDate Point in time after which task is to start being
@@ -76,25 +95,116 @@ class QuartzSchedulerHelper {
      * @throws Exception If error occurs scheduling task.
      */
     public void scheduleCronTask(final String inJobName, final String inTriggerName, final String inGroupName,
-        final Class<? extends Job> inJobClass, final String inCronExpression, final Map<String, Object> inJobDataMap,
-        final Date inStartDate, final Date inEndDate) throws Exception {
-        final JobDetail theJob = JobBuilder.newJob(inJobClass).withIdentity(inJobName, inGroupName).build();
-
-        /* Copy job data from the supplied map to the actual job data map. */
-        theJob.getJobDataMap().putAll(inJobDataMap);
-
+        final Class<? extends Job> inJobClass, final String inCronExpression, final long inStaggerOffset,
+        final Map<String, Object> inJobDataMap, final Date inStartDate, final Date inEndDate) throws Exception {
         /*
          * Create builder that will create a schedule for the new task using
          * the supplied cron expression.
          */
-        final CronScheduleBuilder theScheduleBuilder = CronScheduleBuilder.cronSchedule(inCronExpression);
+        if (inStaggerOffset > 0) {
+            final StaggeredCronScheduleBuilder theScheduleBuilder =
+                new StaggeredCronScheduleBuilder(inCronExpression, inStaggerOffset);
+            scheduleTask(inJobName, inTriggerName, inGroupName, inJobClass, theScheduleBuilder, inJobDataMap, null,
+                inStartDate, inEndDate);
+        } else {
+            final CronScheduleBuilder theScheduleBuilder = CronScheduleBuilder.cronSchedule(inCronExpression);
+            scheduleTask(inJobName, inTriggerName, inGroupName, inJobClass, theScheduleBuilder, inJobDataMap, null,
+                inStartDate, inEndDate);
+        }
+    }
+
+    /**
+     * Schedules a new task that is executed at the supplied interval.<br/>
+     * With a fixed rate, executions start at the supplied interval. Executions
+     * missed, for instance due to all threads being busy, are skipped.
+     * With a fixed delay, the supplied interval is the time between the end of
+     * an execution and the start of the next execution.
+     *
+     * @param inJobName Name of new task.
+     * @param inTriggerName Name of trigger for the new task.
+     * @param inGroupName Name of group to which new task and trigger is to belong.
+     * @param inJobClass The job class that will be executed when the new task triggers.
+     * @param inIntervalMillis Interval in milliseconds. Must be greater than zero.
+     * @param inFixedDelayFlag True if the interval is a fixed delay, false if
+     * the interval is a fixed rate.
+     * @param inStaggerOffset Offset in milliseconds by which the first execution
+     * of the task is delayed, zero if none.
+     * @param inJobDataMap Map holding information to be passed to the
+     * job being executed. Contents of map will be copied.
+     * @param inStartDate Point in time after which task is to start being
+     * scheduled for execution, or null if task is to be scheduled now.
+     * @param inEndDate Point in time after which the task will no longer
+     * be scheduled for execution, or null if task is to be scheduled
+     * indefinitely.
+     * @throws Exception If error occurs scheduling task.
+     */
+    public void scheduleIntervalTask(final String inJobName, final String inTriggerName, final String inGroupName,
+        final Class<? extends Job> inJobClass, final long inIntervalMillis, final boolean inFixedDelayFlag,
+        final long inStaggerOffset, final Map<String, Object> inJobDataMap, final Date inStartDate,
+        final Date inEndDate) throws Exception {
+        final SimpleScheduleBuilder theScheduleBuilder;
+        final Map<String, Object> theTriggerDataMap = new HashMap<String, Object>();
+        if (inFixedDelayFlag) {
+            /* Fire once, the trigger is rescheduled after each execution of the task. */
+            theScheduleBuilder = SimpleScheduleBuilder.simpleSchedule().withMisfireHandlingInstructionFireNow();
+            theTriggerDataMap.put(FIXED_DELAY_TRIGGER_DATA_KEY, Long.valueOf(inIntervalMillis));
+            if (inStartDate != null) {
+                theTriggerDataMap.put(FIXED_DELAY_START_TIME_TRIGGER_DATA_KEY, Long.valueOf(inStartDate.getTime()));
+            }
+        } else {
+            theScheduleBuilder = SimpleScheduleBuilder.simpleSchedule().withIntervalInMilliseconds(inIntervalMillis)
+                .repeatForever().withMisfireHandlingInstructionNextWithRemainingCount();
+        }
+
+        /* Staggered tasks start the stagger offset after the start date or after now. */
+        Date theStartDate = inStartDate;
+        if (inStaggerOffset > 0) {
+            theTriggerDataMap.put(STAGGER_OFFSET_TRIGGER_DATA_KEY, Long.valueOf(inStaggerOffset));
+            final long theStartTime = inStartDate == null ? System.currentTimeMillis() : inStartDate.getTime();
+            theStartDate = new Date(theStartTime + inStaggerOffset);
+        }
+
+        scheduleTask(inJobName, inTriggerName, inGroupName, inJobClass, theScheduleBuilder, inJobDataMap,
+            theTriggerDataMap, theStartDate, inEndDate);
+    }
+
+    /**
+     * Schedules a new task using the supplied schedule builder.
+     *
+     * @param inJobName Name of new task.
+     * @param inTriggerName Name of trigger for the new task.
+     * @param inGroupName Name of group to which new task and trigger is to belong.
+     * @param inJobClass The job class that will be executed when the new task triggers.
+     * @param inScheduleBuilder Builder creating the schedule of the trigger.
+     * @param inJobDataMap Map holding information to be passed to the
+     * job being executed. Contents of map will be copied.
+     * @param inTriggerDataMap Map holding information associated with the
+     * trigger, or null if none. Contents of map will be copied.
+     * @param inStartDate Point in time after which task is to start being
+     * scheduled for execution, or null if task is to be scheduled now.
+     * @param inEndDate Point in time after which the task will no longer
+     * be scheduled for execution, or null if task is to be scheduled
+     * indefinitely.
+     * @throws SchedulerException If error occurs scheduling task.
+     */
+    protected <T extends Trigger> void scheduleTask(final String inJobName, final String inTriggerName,
+        final String inGroupName, final Class<? extends Job> inJobClass, final ScheduleBuilder<T> inScheduleBuilder,
+        final Map<String, Object> inJobDataMap, final Map<String, Object> inTriggerDataMap, final Date inStartDate,
+        final Date inEndDate) throws SchedulerException {
+        final JobDetail theJob = JobBuilder.newJob(inJobClass).withIdentity(inJobName, inGroupName).build();
+
+        /* Copy job data from the supplied map to the actual job data map. */
+        theJob.getJobDataMap().putAll(inJobDataMap);
 
         /*
          * Create a trigger builder using the schedule builder,
          * the start and end dates, if supplied.
          */
-        TriggerBuilder<CronTrigger> theTriggerBuilder =
-            TriggerBuilder.newTrigger().withIdentity(inTriggerName, inGroupName).withSchedule(theScheduleBuilder);
+        TriggerBuilder<T> theTriggerBuilder =
+            TriggerBuilder.newTrigger().withIdentity(inTriggerName, inGroupName).withSchedule(inScheduleBuilder);
+        if (inTriggerDataMap != null && !inTriggerDataMap.isEmpty()) {
+            theTriggerBuilder = theTriggerBuilder.usingJobData(new JobDataMap(inTriggerDataMap));
+        }
         /* If no start date supplied, start now, else start at start date. */
         if (inStartDate == null) {
             theTriggerBuilder = theTriggerBuilder.startNow();
@@ -110,6 +220,224 @@ class QuartzSchedulerHelper {
         LOGGER.debug("Scheduled task {} in group {}", inJobName, inGroupName);
     }
 
+    /**
+     * Replaces the job data of an existing task, provided that the task is
+     * scheduled with a cron trigger matching the supplied cron expression, start
+     * and end dates and that the job class of the task is the supplied job class.<br/>
+     * The trigger of the task is retained and thus also its next fire time.
+     * If there is no matching task, nothing is done and false is returned.
+     *
+     * @param inJobName Name of task.
+     * @param inTriggerName Name of trigger of the task.
+     * @param inGroupName Name of group to which task and trigger belong.
+     * @param inJobClass The job class that is executed when the task triggers.
+     * @param inCronExpression Cron expression specifying when task is to be
+     * executed.
+     * @param inStaggerOffset Offset in milliseconds after the times determined
+     * by the cron expression at which the task is to be executed, zero if none.
+     * @param inJobDataMap Map holding information to be passed to the
+     * job being executed. Contents of map will be copied.
+     * @param inStartDate Point in time after which task is to start being
+     * scheduled for execution, or null if task is to be scheduled now.
+     * @param inEndDate Point in time after which the task will no longer
+     * be scheduled for execution, or null if task is to be scheduled
+     * indefinitely.
+     * @return True if the job data of an existing task with an unchanged
+     * schedule was replaced, false otherwise.
+     * @throws SchedulerException If error occurs retrieving or updating task.
+     */
+    public boolean updateCronTaskJobData(final String inJobName, final String inTriggerName,
+        final String inGroupName, final Class<? extends Job> inJobClass, final String inCronExpression,
+        final long inStaggerOffset, final Map<String, Object> inJobDataMap, final Date inStartDate,
+        final Date inEndDate) throws SchedulerException {
+        final Trigger theTrigger = findTrigger(inGroupName, inTriggerName);
+        if (!isSameCronSchedule(theTrigger, inCronExpression, inStaggerOffset, inStartDate, inEndDate)) {
+            return false;
+        }
+        return replaceJobData(inJobName, inGroupName, inJobClass, theTrigger, inJobDataMap);
+    }
+
+    /**
+     * Replaces the job data of an existing task, provided that the task is
+     * scheduled with a simple trigger matching the supplied interval, fixed
+     * delay flag, start and end dates and that the job class of the task is
+     * the supplied job class.<br/>
+     * The trigger of the task is retained and thus also its next fire time.
+     * If there is no matching task, nothing is done and false is returned.
+     *
+     * @param inJobName Name of task.
+     * @param inTriggerName Name of trigger of the task.
+     * @param inGroupName Name of group to which task and trigger belong.
+     * @param inJobClass The job class that is executed when the task triggers.
+     * @param inIntervalMillis Interval in milliseconds.
+     * @param inFixedDelayFlag True if the interval is a fixed delay, false if
+     * the interval is a fixed rate.
+     * @param inStaggerOffset Offset in milliseconds by which the first execution
+     * of the task is delayed, zero if none.
+     * @param inJobDataMap Map holding information to be passed to the
+     * job being executed. Contents of map will be copied.
+     * @param inStartDate Point in time after which task is to start being
+     * scheduled for execution, or null if task is to be scheduled now.
+     * @param inEndDate Point in time after which the task will no longer
+     * be scheduled for execution, or null if task is to be scheduled
+     * indefinitely.
+     * @return True if the job data of an existing task with an unchanged
+     * schedule was replaced, false otherwise.
+     * @throws SchedulerException If error occurs retrieving or updating task.
+     */
+    public boolean updateIntervalTaskJobData(final String inJobName, final String inTriggerName,
+        final String inGroupName, final Class<? extends Job> inJobClass, final long inIntervalMillis,
+        final boolean inFixedDelayFlag, final long inStaggerOffset, final Map<String, Object> inJobDataMap,
+        final Date inStartDate, final Date inEndDate) throws SchedulerException {
+        final Trigger theTrigger = findTrigger(inGroupName, inTriggerName);
+        if (!isSameIntervalSchedule(theTrigger, inIntervalMillis, inFixedDelayFlag, inStaggerOffset, inStartDate,
+            inEndDate)) {
+            return false;
+        }
+        return replaceJobData(inJobName, inGroupName, inJobClass, theTrigger, inJobDataMap);
+    }
+
+    /**
+     * Replaces the job data of the existing task triggered by the supplied
+     * trigger, provided that the job class of the task is the supplied job class.
+     *
+     * @param inJobName Name of task.
+     * @param inGroupName Name of group to which task belongs.
+     * @param inJobClass The job class that is executed when the task triggers.
+     * @param inTrigger Existing trigger of the task.
+     * @param inJobDataMap Map holding information to be passed to the
+     * job being executed. Contents of map will be copied.
+     * @return True if the job data was replaced, false otherwise.
+     * @throws SchedulerException If error occurs retrieving or updating task.
+     */
+    protected boolean replaceJobData(final String inJobName, final String inGroupName,
+        final Class<? extends Job> inJobClass, final Trigger inTrigger, final Map<String, Object> inJobDataMap)
+        throws SchedulerException {
+        final JobKey theJobKey = new JobKey(inJobName, inGroupName);
+        final JobDetail theExistingJob = mTaskScheduler.getJobDetail(theJobKey);
+        if (theExistingJob == null || !theJobKey.equals(inTrigger.getJobKey())
+            || !inJobClass.equals(theExistingJob.getJobClass())) {
+            return false;
+        }
+
+        /*
+         * Replace the job, keeping its trigger. The replacement job is non-durable
+         * just like the original job, which requires it to be stored while
+         * being associated with the existing trigger.
+         */
+        final JobDetail theJob = JobBuilder.newJob(inJobClass).withIdentity(theJobKey).build();
+        theJob.getJobDataMap().putAll(inJobDataMap);
+        mTaskScheduler.addJob(theJob, true, true);
+
+        LOGGER.debug("Updated job data of task {} in group {}", inJobName, inGroupName);
+        return true;
+    }
+
+    /**
+     * Determines whether the supplied trigger is a cron trigger with the supplied
+     * cron expression, stagger offset, start date and end date.<br/>
+     * A null start date matches any trigger start time, since such triggers
+     * start at the time they were scheduled.
+     *
+     * @param inTrigger Trigger to examine. May be null.
+     * @param inCronExpression Cron expression.
+     * @param inStaggerOffset Stagger offset in milliseconds, zero if none.
+     * @param inStartDate Start date, or null if the task starts when scheduled.
+     * @param inEndDate End date, or null if the task is scheduled indefinitely.
+     * @return True if the trigger has the supplied schedule, false otherwise.
+     */
+    protected boolean isSameCronSchedule(final Trigger inTrigger, final String inCronExpression,
+        final long inStaggerOffset, final Date inStartDate, final Date inEndDate) {
+        if (!(inTrigger instanceof CronTrigger)) {
+            return false;
+        }
+        final CronTrigger theCronTrigger = (CronTrigger) inTrigger;
+        if (!theCronTrigger.getCronExpression().equals(inCronExpression)) {
+            return false;
+        }
+        long theTriggerStaggerOffset = 0;
+        if (theCronTrigger instanceof StaggeredCronTrigger) {
+            theTriggerStaggerOffset = ((StaggeredCronTrigger) theCronTrigger).getStaggerOffset();
+        }
+        if (theTriggerStaggerOffset != Math.max(0, inStaggerOffset)) {
+            return false;
+        }
+        if (inStartDate != null && !isSameTime(theCronTrigger.getStartTime(), inStartDate)) {
+            return false;
+        }
+        return isSameTime(theCronTrigger.getEndTime(), inEndDate);
+    }
+
+    /**
+     * Determines whether the supplied trigger is a simple trigger scheduling a
+     * task at the supplied interval, with or without fixed delay, and with the
+     * supplied start date and end date.<br/>
+     * A null start date matches any trigger start time, since such triggers
+     * start at the time they were scheduled.
+     *
+     * @param inTrigger Trigger to examine. May be null.
+     * @param inIntervalMillis Interval in milliseconds.
+     * @param inFixedDelayFlag True if the interval is a fixed delay, false if
+     * the interval is a fixed rate.
+     * @param inStaggerOffset Stagger offset in milliseconds, zero if none.
+     * @param inStartDate Start date, or null if the task starts when scheduled.
+     * @param inEndDate End date, or null if the task is scheduled indefinitely.
+     * @return True if the trigger has the supplied schedule, false otherwise.
+     */
+    protected boolean isSameIntervalSchedule(final Trigger inTrigger, final long inIntervalMillis,
+        final boolean inFixedDelayFlag, final long inStaggerOffset, final Date inStartDate, final Date inEndDate) {
+        if (!(inTrigger instanceof SimpleTrigger)) {
+            return false;
+        }
+        final SimpleTrigger theSimpleTrigger = (SimpleTrigger) inTrigger;
+        final JobDataMap theTriggerDataMap = theSimpleTrigger.getJobDataMap();
+        final long theStaggerOffset = Math.max(0, inStaggerOffset);
+        final Object theTriggerStaggerOffset = theTriggerDataMap.get(STAGGER_OFFSET_TRIGGER_DATA_KEY);
+        if (theTriggerStaggerOffset == null ? theStaggerOffset != 0
+            : !Long.valueOf(theStaggerOffset).equals(theTriggerStaggerOffset)) {
+            return false;
+        }
+        if (inFixedDelayFlag) {
+            /*
+             * The start time of a fixed-delay trigger changes with every execution,
+             * so the start date of the task is kept in the trigger data.
+             */
+            if (!Long.valueOf(inIntervalMillis).equals(theTriggerDataMap.get(FIXED_DELAY_TRIGGER_DATA_KEY))) {
+                return false;
+            }
+            if (inStartDate != null && !Long.valueOf(inStartDate.getTime())
+                .equals(theTriggerDataMap.get(FIXED_DELAY_START_TIME_TRIGGER_DATA_KEY))) {
+                return false;
+            }
+        } else {
+            if (theTriggerDataMap.containsKey(FIXED_DELAY_TRIGGER_DATA_KEY)
+                || theSimpleTrigger.getRepeatInterval() != inIntervalMillis) {
+                return false;
+            }
+            if (inStartDate != null && !isSameTime(theSimpleTrigger.getStartTime(),
+                new Date(inStartDate.getTime() + theStaggerOffset))) {
+                return false;
+            }
+        }
+        return isSameTime(theSimpleTrigger.getEndTime(), inEndDate);
+    }
+
+    /**
+     * Compares the two supplied points in time, either of which may be null.<br/>
+     * Instances of subclasses of {@code Date}, such as SQL timestamps, are
+     * compared by their millisecond time only.
+     *
+     * @param inFirstDate First point in time.
+     * @param inSecondDate Second point in time.
+     * @return True if both are null or both represent the same millisecond.
+     */
+    protected static boolean isSameTime(final Date inFirstDate, final Date inSecondDate) {
+        if (inFirstDate == null || inSecondDate == null) {
+            return inFirstDate == inSecondDate;
+        }
+        return inFirstDate.getTime() == inSecondDate.getTime();
+    }
+
     /**
      * Unschedules the trigger with supplied trigger name in the group with
      * the supplied group name.
@@ -217,7 +545,7 @@ class QuartzSchedulerHelper {
      * @throws SchedulerException If an error occurred retrieving trigger.
      */
     public Trigger findTrigger(final String inGroupName, final String inTriggerName) throws SchedulerException {
-        final TriggerKey theTriggerKey = new TriggerKey(inGroupName, inTriggerName);
+        final TriggerKey theTriggerKey = new TriggerKey(inTriggerName, inGroupName);
         final Trigger theTrigger = mTaskScheduler.getTrigger(theTriggerKey);
         return theTrigger;
     }
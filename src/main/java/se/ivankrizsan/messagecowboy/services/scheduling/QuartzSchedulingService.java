@@ -16,12 +16,15 @@
  */
 package se.ivankrizsan.messagecowboy.services.scheduling;
 
+import java.text.ParseException;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.quartz.CronExpression;
 import org.quartz.Job;
+import org.quartz.JobKey;
 import org.quartz.SchedulerException;
 import org.springframework.stereotype.Service;
 
@@ -31,6 +34,15 @@ import se.ivankrizsan.messagecowboy.services.scheduling.exceptions.SchedulingExc
 
 /**
  * Scheduling service implementation using the Quartz scheduler.<br/>
+ * Tasks with an interval are scheduled using Quartz simple triggers, which
+ * allow for sub-second intervals, other tasks using Quartz cron triggers.<br/>
+ * If staggering is enabled, each task is scheduled to fire an offset after
+ * the times determined by its schedule. The offset is derived from the
+ * group and name of the task and is less than the period of the schedule
+ * and, if set, the maximum stagger offset of the group of the task or the
+ * default maximum stagger offset. Tasks sharing the same schedule are thus
+ * spread across the period of the schedule, instead of all firing at the
+ * same time.<br/>
  * Information on how to construct Quartz cron expressions can be found here:
  * http://www.quartz-scheduler.org/documentation/quartz-2.2.x/tutorials/crontrigger
  *
@@ -39,10 +51,24 @@ import se.ivankrizsan.messagecowboy.services.scheduling.exceptions.SchedulingExc
 @Service
 class QuartzSchedulingService implements SchedulingService {
     /* Constant(s): */
+    /** Number of consecutive cron expression fire time intervals examined to find the period. */
+    protected static final int CRON_PERIOD_SAMPLE_COUNT = 4;
+    /** Multiplier spreading task name hash codes over the range of long values. */
+    protected static final long HASH_SPREAD_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    /** Default maximum stagger offset in milliseconds. */
+    public static final long DEFAULT_MAX_STAGGER_OFFSET = 10000L;
 
     /* Instance variable(s): */
     /** Helper object that schedules tasks using the Quartz scheduler. */
     protected QuartzSchedulerHelper mQuartzSchedulerHelper;
+    /** Registry holding the method invocations performed by method invoking jobs. */
+    protected MethodInvocationRegistry mMethodInvocationRegistry;
+    /** Flag indicating whether tasks are staggered. */
+    protected boolean mStaggeringFlag;
+    /** Default maximum stagger offset in milliseconds, zero or less if limited only by the schedule. */
+    protected long mMaxStaggerOffset = DEFAULT_MAX_STAGGER_OFFSET;
+    /** Maximum stagger offsets in milliseconds keyed by task group name, overriding the default. */
+    protected Map<String, Long> mGroupMaxStaggerOffsets = new HashMap<String, Long>();
 
     /**
      * Schedules a task according to supplied task configuration,
@@ -61,49 +87,234 @@ class QuartzSchedulingService implements SchedulingService {
         final SchedulableTaskConfig inTaskConfiguration,
         final Map<String, Object> inJobDataMap) {
         if (inTaskConfiguration.getTaskEnabledFlag()) {
-            /*
-             * Scheduling a task using Quartz require the job class to implement
-             * the Quartz Job interface.
-             */
-            final boolean theGotJobInterfaceFlag =
-                Job.class
-                .isAssignableFrom(inTaskConfiguration.getTaskJobType());
-            if (theGotJobInterfaceFlag == false) {
-                throw new IllegalArgumentException(
-                    "Job class must implement the Quartz Job interface");
-            }
-            @SuppressWarnings("unchecked")
             final Class<? extends Job> theQuartzJobClass =
-            (Class<? extends Job>) inTaskConfiguration.getTaskJobType();
-
-            /* Validate cron expression before trying to schedule the task. */
-            if (!CronExpression.isValidExpression(inTaskConfiguration
-                .getCronExpression())) {
-                throw new SchedulingException("'"
-                    + inTaskConfiguration.getCronExpression()
-                    + "'  is not a valid cron expression. "
-                    + "Unable to schedule task "
-                    + inTaskConfiguration.getName() + " in group "
-                    + inTaskConfiguration.getTaskGroupName());
-            }
+                findQuartzJobClass(inTaskConfiguration);
+            validateCronExpression(inTaskConfiguration);
 
             try {
                 /*
                  * Note that task name is used both as job and as trigger name
                  * when scheduling the task.
                  */
-                mQuartzSchedulerHelper.scheduleCronTask(
+                if (isIntervalTask(inTaskConfiguration)) {
+                    mQuartzSchedulerHelper.scheduleIntervalTask(
+                        inTaskConfiguration.getName(),
+                        inTaskConfiguration.getName(),
+                        inTaskConfiguration.getTaskGroupName(), theQuartzJobClass,
+                        inTaskConfiguration.getIntervalMillis(),
+                        inTaskConfiguration.getFixedDelayFlag(),
+                        calculateStaggerOffset(inTaskConfiguration), inJobDataMap,
+                        inTaskConfiguration.getStartDate(),
+                        inTaskConfiguration.getEndDate());
+                } else {
+                    mQuartzSchedulerHelper.scheduleCronTask(
+                        inTaskConfiguration.getName(),
+                        inTaskConfiguration.getName(),
+                        inTaskConfiguration.getTaskGroupName(), theQuartzJobClass,
+                        inTaskConfiguration.getCronExpression(),
+                        calculateStaggerOffset(inTaskConfiguration), inJobDataMap,
+                        inTaskConfiguration.getStartDate(),
+                        inTaskConfiguration.getEndDate());
+                }
+            } catch (final Exception theException) {
+                throw new SchedulingException(
+                    "An error occurred trying to schedule a task", theException);
+            }
+        }
+    }
+
+    /**
+     * Schedules a task according to supplied task configuration, unless
+     * the task already is scheduled with the same schedule, using the Quartz
+     * scheduler.<br/>
+     * If the task is scheduled with an unchanged cron expression or interval,
+     * start and end date, only the job data of the task is replaced and the trigger of the
+     * task, and thus its next fire time, is retained. Tasks with a changed
+     * schedule are rescheduled and tasks that are disabled are unscheduled.
+     *
+     * @param inTaskConfiguration Configuration of task to schedule.
+     * Must also implement the Quartz{@code Job} interface when used with
+     * this service implementation.
+     * @param inJobDataMap Map holding information to be passed to the
+     * job being executed. Contents of map will be copied.
+     * @return True if the task was scheduled or rescheduled, false if the
+     * existing schedule of the task was retained or the task is disabled.
+     */
+    @Override
+    public boolean scheduleOrUpdateTask(
+        final SchedulableTaskConfig inTaskConfiguration,
+        final Map<String, Object> inJobDataMap) {
+        if (!inTaskConfiguration.getTaskEnabledFlag()) {
+            unscheduleTask(inTaskConfiguration.getTaskGroupName(),
+                inTaskConfiguration.getName());
+            return false;
+        }
+
+        final Class<? extends Job> theQuartzJobClass =
+            findQuartzJobClass(inTaskConfiguration);
+        validateCronExpression(inTaskConfiguration);
+
+        boolean theJobDataUpdatedFlag = false;
+        try {
+            if (isIntervalTask(inTaskConfiguration)) {
+                theJobDataUpdatedFlag = mQuartzSchedulerHelper.updateIntervalTaskJobData(
+                    inTaskConfiguration.getName(),
+                    inTaskConfiguration.getName(),
+                    inTaskConfiguration.getTaskGroupName(), theQuartzJobClass,
+                    inTaskConfiguration.getIntervalMillis(),
+                    inTaskConfiguration.getFixedDelayFlag(),
+                    calculateStaggerOffset(inTaskConfiguration), inJobDataMap,
+                    inTaskConfiguration.getStartDate(),
+                    inTaskConfiguration.getEndDate());
+            } else {
+                theJobDataUpdatedFlag = mQuartzSchedulerHelper.updateCronTaskJobData(
                     inTaskConfiguration.getName(),
                     inTaskConfiguration.getName(),
                     inTaskConfiguration.getTaskGroupName(), theQuartzJobClass,
-                    inTaskConfiguration.getCronExpression(), inJobDataMap,
+                    inTaskConfiguration.getCronExpression(),
+                    calculateStaggerOffset(inTaskConfiguration), inJobDataMap,
                     inTaskConfiguration.getStartDate(),
                     inTaskConfiguration.getEndDate());
+            }
+        } catch (final Exception theException) {
+            throw new SchedulingException(
+                "An error occurred trying to update the task "
+                    + inTaskConfiguration.getName() + " in group "
+                    + inTaskConfiguration.getTaskGroupName(), theException);
+        }
 
-            } catch (final Exception theException) {
-                throw new SchedulingException(
-                    "An error occurred trying to schedule a task", theException);
+        if (!theJobDataUpdatedFlag) {
+            /* New task or task with changed schedule. */
+            unscheduleTask(inTaskConfiguration.getTaskGroupName(),
+                inTaskConfiguration.getName());
+            scheduleTask(inTaskConfiguration, inJobDataMap);
+        }
+        return !theJobDataUpdatedFlag;
+    }
+
+    /**
+     * Retrieves the job class of the supplied task configuration.<br/>
+     * Scheduling a task using Quartz require the job class to implement
+     * the Quartz Job interface.
+     *
+     * @param inTaskConfiguration Task configuration.
+     * @return Quartz job class.
+     * @throws IllegalArgumentException If the job class does not implement
+     * the Quartz Job interface.
+     */
+    protected Class<? extends Job> findQuartzJobClass(
+        final SchedulableTaskConfig inTaskConfiguration) {
+        final boolean theGotJobInterfaceFlag =
+            Job.class
+            .isAssignableFrom(inTaskConfiguration.getTaskJobType());
+        if (theGotJobInterfaceFlag == false) {
+            throw new IllegalArgumentException(
+                "Job class must implement the Quartz Job interface");
+        }
+        @SuppressWarnings("unchecked")
+        final Class<? extends Job> theQuartzJobClass =
+        (Class<? extends Job>) inTaskConfiguration.getTaskJobType();
+        return theQuartzJobClass;
+    }
+
+    /**
+     * Determines whether the supplied task is to be scheduled at an interval,
+     * as opposed to using a cron expression.
+     *
+     * @param inTaskConfiguration Task configuration.
+     * @return True if task is to be scheduled at an interval, false otherwise.
+     */
+    protected boolean isIntervalTask(final SchedulableTaskConfig inTaskConfiguration) {
+        return inTaskConfiguration.getIntervalMillis() > 0;
+    }
+
+    /**
+     * Calculates the stagger offset of the supplied task.<br/>
+     * The offset is derived from the group and name of the task and is thus
+     * the same each time the task is scheduled. It is less than the period
+     * of the schedule of the task and less than the maximum stagger offset
+     * of the group of the task or, if no such is set, the default maximum
+     * stagger offset.
+     *
+     * @param inTaskConfiguration Task configuration.
+     * @return Stagger offset in milliseconds, zero if the task is not to be staggered.
+     */
+    protected long calculateStaggerOffset(final SchedulableTaskConfig inTaskConfiguration) {
+        if (!mStaggeringFlag) {
+            return 0;
+        }
+
+        long theMaxStaggerOffset;
+        if (isIntervalTask(inTaskConfiguration)) {
+            theMaxStaggerOffset = inTaskConfiguration.getIntervalMillis();
+        } else {
+            theMaxStaggerOffset = findCronPeriod(inTaskConfiguration.getCronExpression());
+        }
+        Long theConfiguredMaxStaggerOffset = mGroupMaxStaggerOffsets.get(inTaskConfiguration.getTaskGroupName());
+        if (theConfiguredMaxStaggerOffset == null) {
+            theConfiguredMaxStaggerOffset = mMaxStaggerOffset;
+        }
+        if (theConfiguredMaxStaggerOffset > 0) {
+            theMaxStaggerOffset = Math.min(theMaxStaggerOffset, theConfiguredMaxStaggerOffset);
+        }
+        if (theMaxStaggerOffset <= 1) {
+            return 0;
+        }
+
+        /* Spread hash codes of similar task names, which are close to each other. */
+        final String theTaskKey = inTaskConfiguration.getTaskGroupName() + "." + inTaskConfiguration.getName();
+        long theHash = theTaskKey.hashCode() * HASH_SPREAD_MULTIPLIER;
+        theHash = theHash ^ (theHash >>> 32);
+        return Math.floorMod(theHash, theMaxStaggerOffset);
+    }
+
+    /**
+     * Finds the period of the supplied cron expression, that is the shortest
+     * time between two consecutive fire times.<br/>
+     * A fixed number of fire times after a fixed point in time are examined,
+     * so the same period is found each time for a cron expression.
+     *
+     * @param inCronExpression Cron expression.
+     * @return Period in milliseconds, zero if the cron expression fires at
+     * most once or is not valid.
+     */
+    protected long findCronPeriod(final String inCronExpression) {
+        final CronExpression theCronExpression;
+        try {
+            theCronExpression = new CronExpression(inCronExpression);
+        } catch (final ParseException theException) {
+            return 0;
+        }
+
+        long thePeriod = Long.MAX_VALUE;
+        Date theFireTime = theCronExpression.getNextValidTimeAfter(new Date(0));
+        for (int i = 0; i < CRON_PERIOD_SAMPLE_COUNT && theFireTime != null; i++) {
+            final Date theNextFireTime = theCronExpression.getNextValidTimeAfter(theFireTime);
+            if (theNextFireTime != null) {
+                thePeriod = Math.min(thePeriod, theNextFireTime.getTime() - theFireTime.getTime());
             }
+            theFireTime = theNextFireTime;
+        }
+        return thePeriod == Long.MAX_VALUE ? 0 : thePeriod;
+    }
+
+    /**
+     * Validates the cron expression of the supplied task configuration.
+     * Tasks scheduled at an interval need no cron expression.
+     *
+     * @param inTaskConfiguration Task configuration.
+     * @throws SchedulingException If the cron expression is not valid.
+     */
+    protected void validateCronExpression(
+        final SchedulableTaskConfig inTaskConfiguration) {
+        if (!isIntervalTask(inTaskConfiguration) && !CronExpression.isValidExpression(inTaskConfiguration
+            .getCronExpression())) {
+            throw new SchedulingException("'"
+                + inTaskConfiguration.getCronExpression()
+                + "'  is not a valid cron expression. "
+                + "Unable to schedule task "
+                + inTaskConfiguration.getName() + " in group "
+                + inTaskConfiguration.getTaskGroupName());
         }
     }
 
@@ -122,10 +333,16 @@ class QuartzSchedulingService implements SchedulingService {
                 + inTaskGroupName);
         }
 
+        /*
+         * The method invocation must be registered before the task is
+         * scheduled, since the task may fire immediately. Should scheduling
+         * fail, the previously registered method invocation is restored.
+         */
+        final JobKey theJobKey = new JobKey(inTaskName, inTaskGroupName);
+        final ScheduledMethodInvocation thePreviousMethodInvocation =
+            registerMethodInvocation(inTargetObject, inTargetMethodName,
+                inTargetMethodParameters, inTaskName, inTaskGroupName);
         final Map<String, Object> theJobDataMap = new HashMap<String, Object>();
-        theJobDataMap.put(MethodInvokingJob.TARGET_OBJECT_KEY, inTargetObject);
-        theJobDataMap.put(MethodInvokingJob.TARGET_METHOD_KEY, inTargetMethodName);
-        theJobDataMap.put(MethodInvokingJob.TARGET_METHOD_PARAMETERS_KEY, inTargetMethodParameters);
 
         try {
             /*
@@ -136,15 +353,81 @@ class QuartzSchedulingService implements SchedulingService {
                 inTaskName,
                 inTaskName,
                 inTaskGroupName, MethodInvokingJob.class,
-                inCronExpression, theJobDataMap,
+                inCronExpression, 0L, theJobDataMap,
                 null, null);
 
         } catch (final Exception theException) {
+            mMethodInvocationRegistry.restore(theJobKey, thePreviousMethodInvocation);
             throw new SchedulingException(
                 "An error occurred trying to schedule a task", theException);
         }
     }
 
+    @Override
+    public void scheduleMethodInvocation(final Object inTargetObject,
+        final String inTargetMethodName,
+        final Object[] inTargetMethodParameters, final long inIntervalMillis,
+        final boolean inFixedDelayFlag, final String inTaskName,
+        final String inTaskGroupName) {
+        if (inIntervalMillis <= 0) {
+            throw new SchedulingException("The interval " + inIntervalMillis
+                + " is not greater than zero. Unable to schedule task "
+                + inTaskName + " in group " + inTaskGroupName);
+        }
+
+        /* Previously registered method invocation restored if scheduling fails. */
+        final JobKey theJobKey = new JobKey(inTaskName, inTaskGroupName);
+        final ScheduledMethodInvocation thePreviousMethodInvocation =
+            registerMethodInvocation(inTargetObject, inTargetMethodName,
+                inTargetMethodParameters, inTaskName, inTaskGroupName);
+        final Map<String, Object> theJobDataMap = new HashMap<String, Object>();
+
+        try {
+            mQuartzSchedulerHelper.scheduleIntervalTask(
+                inTaskName,
+                inTaskName,
+                inTaskGroupName, MethodInvokingJob.class,
+                inIntervalMillis, inFixedDelayFlag, 0L, theJobDataMap,
+                null, null);
+        } catch (final Exception theException) {
+            mMethodInvocationRegistry.restore(theJobKey, thePreviousMethodInvocation);
+            throw new SchedulingException(
+                "An error occurred trying to schedule a task", theException);
+        }
+    }
+
+    /**
+     * Resolves the supplied method invocation and registers it in the method
+     * invocation registry, from which the method invoking job with the
+     * supplied task and group names will retrieve it.<br/>
+     * The method is resolved once, when scheduling the task, and the job data
+     * map of the job can thus be empty.
+     *
+     * @param inTargetObject Object on which the method is to be invoked.
+     * @param inTargetMethodName Name of method to be invoked.
+     * @param inTargetMethodParameters Parameter(s) that are to be passed to
+     * the method, or null if the method does not take any parameters.
+     * @param inTaskName Name of task that invokes the method.
+     * @param inTaskGroupName Name of group of task that invokes the method.
+     * @return Method invocation previously registered for the task, or null
+     * if none.
+     * @throws SchedulingException If the method cannot be resolved.
+     */
+    protected ScheduledMethodInvocation registerMethodInvocation(final Object inTargetObject,
+        final String inTargetMethodName,
+        final Object[] inTargetMethodParameters, final String inTaskName,
+        final String inTaskGroupName) {
+        final ScheduledMethodInvocation theMethodInvocation;
+        try {
+            theMethodInvocation =
+                new ScheduledMethodInvocation(inTargetObject, inTargetMethodName, inTargetMethodParameters);
+        } catch (final ReflectiveOperationException theException) {
+            throw new SchedulingException("Unable to resolve the method " + inTargetMethodName
+                + " to invoke in task " + inTaskName + " in group " + inTaskGroupName, theException);
+        }
+        return mMethodInvocationRegistry.register(new JobKey(inTaskName, inTaskGroupName), theMethodInvocation);
+    }
+
     public QuartzSchedulerHelper getQuartzSchedulerHelper() {
         return mQuartzSchedulerHelper;
     }
@@ -154,6 +437,39 @@ class QuartzSchedulingService implements SchedulingService {
         mQuartzSchedulerHelper = inQuartzSchedulerHelper;
     }
 
+    public boolean getStaggeringFlag() {
+        return mStaggeringFlag;
+    }
+
+    public void setStaggeringFlag(final boolean inStaggeringFlag) {
+        mStaggeringFlag = inStaggeringFlag;
+    }
+
+    public long getMaxStaggerOffset() {
+        return mMaxStaggerOffset;
+    }
+
+    public void setMaxStaggerOffset(final long inMaxStaggerOffset) {
+        mMaxStaggerOffset = inMaxStaggerOffset;
+    }
+
+    public Map<String, Long> getGroupMaxStaggerOffsets() {
+        return mGroupMaxStaggerOffsets;
+    }
+
+    public void setGroupMaxStaggerOffsets(final Map<String, Long> inGroupMaxStaggerOffsets) {
+        mGroupMaxStaggerOffsets = inGroupMaxStaggerOffsets;
+    }
+
+    public MethodInvocationRegistry getMethodInvocationRegistry() {
+        return mMethodInvocationRegistry;
+    }
+
+    public void setMethodInvocationRegistry(
+        final MethodInvocationRegistry inMethodInvocationRegistry) {
+        mMethodInvocationRegistry = inMethodInvocationRegistry;
+    }
+
     @Override
     public Map<String, Object> findJobDataMap(
         final String inGroupName, final String inJobName) {
@@ -182,6 +498,7 @@ class QuartzSchedulingService implements SchedulingService {
             theTaskUnscheduledFlag =
                 mQuartzSchedulerHelper.unscheduleTask(inTaskGroupName,
                     inTaskName);
+            mMethodInvocationRegistry.remove(new JobKey(inTaskName, inTaskGroupName));
         } catch (final Exception theException) {
             throw new SchedulingException(
                 "An error occurred trying to unschedule the task " + inTaskName
@@ -195,6 +512,7 @@ class QuartzSchedulingService implements SchedulingService {
     public void unscheduleAllTasks() {
         try {
             mQuartzSchedulerHelper.unscheduleAllTasks();
+            mMethodInvocationRegistry.clear();
         } catch (final Exception theException) {
             throw new SchedulingException(
                 "An error occurred trying to unschedule all tasks",
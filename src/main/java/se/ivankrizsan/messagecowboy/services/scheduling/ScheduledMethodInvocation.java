@@ -0,0 +1,120 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.scheduling;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.springframework.util.MethodInvoker;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Method invocation performed by a scheduled {@link MethodInvokingJob}.<br/>
+ * The method to invoke is resolved when the method invocation is created
+ * and bound, together with the target object and the parameters, to a
+ * method handle. Invoking the method is thus a direct call without any
+ * reflective lookup of the method.
+ *
+ * @author Ivan Krizsan
+ */
+class ScheduledMethodInvocation {
+    /* Instance variable(s): */
+    /** Object on which the method is to be invoked. */
+    protected final Object mTargetObject;
+    /** Name of method to invoke. */
+    protected final String mTargetMethodName;
+    /** Parameters to the method, empty array if the method takes no parameters. */
+    protected final Object[] mTargetMethodParameters;
+    /** Method handle invoking the method, bound to target object and parameters. */
+    protected final MethodHandle mMethodHandle;
+
+    /**
+     * Creates a method invocation invoking the method with supplied name
+     * on the supplied object with the supplied parameters.
+     *
+     * @param inTargetObject Object on which to invoke method.
+     * @param inTargetMethodName Name of method to invoke.
+     * @param inTargetMethodParameters Parameters to the method, or null if
+     * the method takes no parameters.
+     * @throws ReflectiveOperationException If no method matching the supplied
+     * name and parameters is found or the method cannot be accessed.
+     */
+    public ScheduledMethodInvocation(final Object inTargetObject, final String inTargetMethodName,
+        final Object[] inTargetMethodParameters) throws ReflectiveOperationException {
+        mTargetObject = inTargetObject;
+        mTargetMethodName = inTargetMethodName;
+        if (inTargetMethodParameters != null) {
+            mTargetMethodParameters = inTargetMethodParameters;
+        } else {
+            mTargetMethodParameters = new Object[0];
+        }
+        mMethodHandle = createMethodHandle();
+    }
+
+    /**
+     * Resolves the target method and creates a method handle, taking no
+     * parameters, that invokes the target method on the target object with
+     * the target method parameters.
+     *
+     * @return Method handle.
+     * @throws ReflectiveOperationException If no matching method is found or
+     * the method cannot be accessed.
+     */
+    protected MethodHandle createMethodHandle() throws ReflectiveOperationException {
+        /* Find method matching the parameters, allowing for primitive parameters. */
+        final MethodInvoker theMethodInvoker = new MethodInvoker();
+        theMethodInvoker.setTargetObject(mTargetObject);
+        theMethodInvoker.setTargetMethod(mTargetMethodName);
+        theMethodInvoker.setArguments(mTargetMethodParameters);
+        theMethodInvoker.prepare();
+        final Method theMethod = theMethodInvoker.getPreparedMethod();
+
+        /* Target classes, for instance services, need not be public. */
+        ReflectionUtils.makeAccessible(theMethod);
+        MethodHandle theMethodHandle = MethodHandles.lookup().unreflect(theMethod);
+        if (!Modifier.isStatic(theMethod.getModifiers())) {
+            theMethodHandle = theMethodHandle.bindTo(mTargetObject);
+        }
+        theMethodHandle = MethodHandles.insertArguments(theMethodHandle, 0, mTargetMethodParameters);
+        return theMethodHandle.asType(MethodType.methodType(void.class));
+    }
+
+    /**
+     * Invokes the target method on the target object with the target method
+     * parameters. Any return value is discarded.
+     *
+     * @throws Throwable If an error occurs or the target method throws an exception.
+     */
+    public void invoke() throws Throwable {
+        mMethodHandle.invokeExact();
+    }
+
+    public Object getTargetObject() {
+        return mTargetObject;
+    }
+
+    public String getTargetMethodName() {
+        return mTargetMethodName;
+    }
+
+    public Object[] getTargetMethodParameters() {
+        return mTargetMethodParameters;
+    }
+}
@@ -33,6 +33,8 @@ public interface SchedulingService {
     /**
      * Schedules a task according to supplied task configuration,
      * passing in supplied job data map, using the Quartz scheduler.<br/>
+     * The task is scheduled at the interval of the task configuration, if
+     * there is one, otherwise using the cron expression of the task configuration.
      * If the supplied task configuration indicates that the task is disabled,
      * then the task will not be scheduled.
      *
@@ -45,6 +47,24 @@ public interface SchedulingService {
         final Map<String, Object> inJobDataMap);
 
 
+    /**
+     * Schedules a task according to supplied task configuration, unless
+     * the task already is scheduled with the same schedule.<br/>
+     * A task that is scheduled with an unchanged schedule retains its trigger
+     * and next fire time, only its job data is replaced. A task which schedule
+     * has changed is rescheduled. If the supplied task configuration indicates
+     * that the task is disabled, then the task will be unscheduled.
+     *
+     * @param inTask Configuration of task to schedule.
+     * @param inJobDataMap Map holding information to be passed to the
+     * job being executed. Contents of map will be copied.
+     * @return True if the task was scheduled or rescheduled, false if the
+     * existing schedule of the task was retained or the task is disabled.
+     */
+    abstract boolean scheduleOrUpdateTask(
+        final SchedulableTaskConfig inTask,
+        final Map<String, Object> inJobDataMap);
+
     /**
      * Schedules an invocation of a method with the supplied name on the supplied target object
      * with the supplied parameters according to the supplied cron expression.
@@ -64,6 +84,30 @@ public interface SchedulingService {
         final Object[] inTargetMethodParameters, final String inCronExpression,
         final String inTaskName, final String inTaskGroupName);
 
+    /**
+     * Schedules an invocation of a method with the supplied name on the supplied target object
+     * with the supplied parameters at the supplied interval.
+     * The task created has the supplied task name and will belong to the task group with the
+     * supplied name.
+     *
+     * @param inTargetObject Object on which the method is to be invoked.
+     * @param inTargetMethodName Name of method to be invoked.
+     * @param inTargetMethodParameters Parameter(s) that are to be passed to the method,
+     * or null if the method does not take any parameters.
+     * @param inIntervalMillis Interval in milliseconds between method invocations.
+     * Must be greater than zero.
+     * @param inFixedDelayFlag True if the interval is the delay between the end of
+     * one invocation and the start of the next, false if invocations are to start
+     * at the interval.
+     * @param inTaskName Name of the task that is to be created.
+     * @param inTaskGroupName Task group to which the task is to belong.
+     */
+    abstract void scheduleMethodInvocation(final Object inTargetObject,
+        final String inTargetMethodName,
+        final Object[] inTargetMethodParameters, final long inIntervalMillis,
+        final boolean inFixedDelayFlag, final String inTaskName,
+        final String inTaskGroupName);
+
     /**
      * Finds the job data map for the job with the supplied name in the group
      * with supplied name.
@@ -16,19 +16,56 @@
  */
 package se.ivankrizsan.messagecowboy.services.scheduling;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.quartz.SchedulerFactoryBean;
 
 /**
- * Spring configuration class for the scheduling service.
+ * Spring configuration class for the scheduling service.<br/>
+ * Tasks are staggered if the {@value #STAGGERING_FLAG_PROPERTY_NAME} property
+ * is true. The stagger offset is limited for all task groups by the
+ * {@value #MAX_STAGGER_OFFSET_PROPERTY_NAME} property, by default to
+ * {@value QuartzSchedulingService#DEFAULT_MAX_STAGGER_OFFSET} milliseconds,
+ * and for individual task groups by the
+ * {@value #GROUP_MAX_STAGGER_OFFSETS_PROPERTY_NAME} property,
+ * which holds comma-separated pairs of task group name and maximum offset,
+ * for example "GroupA=500,GroupB=2000".
  *
  * @author Ivan Krizsan
  */
 @Configuration
 public class SchedulingServiceConfiguration {
+    /* Constant(s): */
+    /** Quartz jobs are executed by the default, fixed size, Quartz thread pool. */
+    public static final String FIXED_EXECUTOR_MODE = "fixed";
+    /** Quartz jobs are executed by an executor that creates threads as needed. */
+    public static final String ELASTIC_EXECUTOR_MODE = "elastic";
+    /** Time in seconds after which idle threads of the elastic executor terminate. */
+    protected static final int ELASTIC_EXECUTOR_KEEP_ALIVE_SECONDS = 60;
+    /** Name of property holding flag indicating whether tasks are staggered. */
+    public static final String STAGGERING_FLAG_PROPERTY_NAME = "TASK_STAGGERING_FLAG";
+    /** Name of property holding default maximum stagger offset in milliseconds. */
+    public static final String MAX_STAGGER_OFFSET_PROPERTY_NAME = "TASK_STAGGERING_MAX_OFFSET";
+    /** Name of property holding maximum stagger offsets in milliseconds of task groups. */
+    public static final String GROUP_MAX_STAGGER_OFFSETS_PROPERTY_NAME = "TASK_STAGGERING_GROUP_MAX_OFFSETS";
+
+    /* Instance variable(s): */
+    /** Possible values: {@value #FIXED_EXECUTOR_MODE}, {@value #ELASTIC_EXECUTOR_MODE}. */
+    @Value("${QUARTZ_EXECUTOR_MODE:" + FIXED_EXECUTOR_MODE + "}")
+    protected String mExecutorMode = FIXED_EXECUTOR_MODE;
+    @Value("${" + STAGGERING_FLAG_PROPERTY_NAME + ":false}")
+    protected boolean mStaggeringFlag;
+    @Value("${" + MAX_STAGGER_OFFSET_PROPERTY_NAME + ":" + QuartzSchedulingService.DEFAULT_MAX_STAGGER_OFFSET + "}")
+    protected long mMaxStaggerOffset = QuartzSchedulingService.DEFAULT_MAX_STAGGER_OFFSET;
+    @Value("${" + GROUP_MAX_STAGGER_OFFSETS_PROPERTY_NAME + ":}")
+    protected String mGroupMaxStaggerOffsets = "";
 
     /**
      * Scheduling service implemented using Quartz.
@@ -39,10 +76,40 @@ public class SchedulingServiceConfiguration {
         final QuartzSchedulingService theService =
             new QuartzSchedulingService();
         theService.setQuartzSchedulerHelper(quartzSchedulerHelper());
+        theService.setMethodInvocationRegistry(methodInvocationRegistry());
+        theService.setStaggeringFlag(mStaggeringFlag);
+        theService.setMaxStaggerOffset(mMaxStaggerOffset);
+        theService.setGroupMaxStaggerOffsets(parseGroupMaxStaggerOffsets(mGroupMaxStaggerOffsets));
 
         return theService;
     }
 
+    /**
+     * Parses the supplied comma-separated pairs of task group name and maximum
+     * stagger offset in milliseconds, separated by an equal sign.
+     *
+     * @param inGroupMaxStaggerOffsets Maximum stagger offsets of task groups,
+     * for example "GroupA=500,GroupB=2000".
+     * @return Map holding maximum stagger offsets keyed by task group name.
+     */
+    protected Map<String, Long> parseGroupMaxStaggerOffsets(final String inGroupMaxStaggerOffsets) {
+        final Map<String, Long> theGroupMaxStaggerOffsets = new HashMap<String, Long>();
+        for (String theGroupMaxStaggerOffset : inGroupMaxStaggerOffsets.split(",")) {
+            if (theGroupMaxStaggerOffset.trim().isEmpty()) {
+                continue;
+            }
+            final int theSeparatorIndex = theGroupMaxStaggerOffset.lastIndexOf('=');
+            try {
+                theGroupMaxStaggerOffsets.put(theGroupMaxStaggerOffset.substring(0, theSeparatorIndex).trim(),
+                    Long.valueOf(theGroupMaxStaggerOffset.substring(theSeparatorIndex + 1).trim()));
+            } catch (final RuntimeException theException) {
+                throw new Error("Invalid maximum stagger offset of task group: " + theGroupMaxStaggerOffset,
+                    theException);
+            }
+        }
+        return theGroupMaxStaggerOffsets;
+    }
+
     /**
      * Scheduling service Quartz implementation helper bean.
      */
@@ -55,13 +122,65 @@ public class SchedulingServiceConfiguration {
         return theHelper;
     }
 
+    /**
+     * Registry holding the method invocations of scheduled method invoking jobs.
+     */
+    @Bean
+    @Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+    public MethodInvocationRegistry methodInvocationRegistry() {
+        return new MethodInvocationRegistry();
+    }
+
+    /**
+     * Quartz job factory that injects dependencies into new job instances.
+     */
+    @Bean
+    @Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+    public AutowiringJobFactory quartzJobFactory() {
+        return new AutowiringJobFactory();
+    }
+
     /**
      * Quartz scheduler.
+     * Jobs are created by a job factory that injects the services the jobs
+     * use, so the job data maps of jobs need only identify the tasks.
+     * Tasks scheduled with a fixed delay are rescheduled by a job listener
+     * after each execution.
+     * In the elastic executor mode, each job is executed by a thread of the
+     * elastic executor, allowing any number of jobs to execute concurrently.
+     * Otherwise the default Quartz thread pool with ten threads is used.
      */
     @Bean
     @Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
     public SchedulerFactoryBean quartzScheduler() {
         final SchedulerFactoryBean theQuartzSchedulerFactory = new SchedulerFactoryBean();
+        theQuartzSchedulerFactory.setJobFactory(quartzJobFactory());
+        theQuartzSchedulerFactory.setGlobalJobListeners(new FixedDelayJobListener());
+        if (ELASTIC_EXECUTOR_MODE.equals(mExecutorMode)) {
+            theQuartzSchedulerFactory.setTaskExecutor(quartzElasticTaskExecutor());
+        }
         return theQuartzSchedulerFactory;
     }
+
+    /**
+     * Elastic executor executing Quartz jobs in the elastic executor mode.<br/>
+     * A new thread is created whenever a job is to be executed and there are
+     * no idle threads, thus jobs mostly waiting for messages to arrive will
+     * not delay other jobs. Idle threads are terminated after a while, so no
+     * threads are retained when no jobs execute.
+     */
+    @Bean
+    @Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+    public ThreadPoolTaskExecutor quartzElasticTaskExecutor() {
+        final ThreadPoolTaskExecutor theTaskExecutor = new ThreadPoolTaskExecutor();
+        theTaskExecutor.setCorePoolSize(0);
+        theTaskExecutor.setMaxPoolSize(Integer.MAX_VALUE);
+        /* No queue, a job is handed directly to an idle or new thread. */
+        theTaskExecutor.setQueueCapacity(0);
+        theTaskExecutor.setKeepAliveSeconds(ELASTIC_EXECUTOR_KEEP_ALIVE_SECONDS);
+        theTaskExecutor.setThreadNamePrefix("MessageCowboyJob-");
+        theTaskExecutor.setWaitForTasksToCompleteOnShutdown(true);
+
+        return theTaskExecutor;
+    }
 }
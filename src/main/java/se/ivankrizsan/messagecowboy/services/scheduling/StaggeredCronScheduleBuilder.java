@@ -0,0 +1,86 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.scheduling;
+
+import java.text.ParseException;
+import java.util.TimeZone;
+
+import org.quartz.CronTrigger;
+import org.quartz.ScheduleBuilder;
+import org.quartz.spi.MutableTrigger;
+
+/**
+ * Quartz schedule builder creating {@link StaggeredCronTrigger}s, that is
+ * cron triggers firing a fixed offset after the times determined by their
+ * cron expression.
+ *
+ * @author Ivan Krizsan
+ */
+class StaggeredCronScheduleBuilder extends ScheduleBuilder<CronTrigger> {
+    /* Instance variable(s): */
+    /** Cron expression determining the fire times before offset. */
+    protected final String mCronExpression;
+    /** Offset in milliseconds added to fire times of the cron expression. */
+    protected final long mStaggerOffset;
+    /** Time zone in which the cron expression is evaluated. */
+    protected final TimeZone mTimeZone;
+    /** Misfire instruction of the trigger. */
+    protected final int mMisfireInstruction;
+
+    /**
+     * Creates a schedule builder creating triggers with the supplied cron
+     * expression and offset in the default time zone.
+     *
+     * @param inCronExpression Cron expression.
+     * @param inStaggerOffset Offset in milliseconds.
+     */
+    public StaggeredCronScheduleBuilder(final String inCronExpression, final long inStaggerOffset) {
+        this(inCronExpression, inStaggerOffset, TimeZone.getDefault(), CronTrigger.MISFIRE_INSTRUCTION_SMART_POLICY);
+    }
+
+    /**
+     * Creates a schedule builder creating triggers with the supplied cron
+     * expression, offset, time zone and misfire instruction.
+     *
+     * @param inCronExpression Cron expression.
+     * @param inStaggerOffset Offset in milliseconds.
+     * @param inTimeZone Time zone in which the cron expression is evaluated.
+     * @param inMisfireInstruction Misfire instruction of the trigger.
+     */
+    public StaggeredCronScheduleBuilder(final String inCronExpression, final long inStaggerOffset,
+        final TimeZone inTimeZone, final int inMisfireInstruction) {
+        mCronExpression = inCronExpression;
+        mStaggerOffset = inStaggerOffset;
+        mTimeZone = inTimeZone;
+        mMisfireInstruction = inMisfireInstruction;
+    }
+
+    @Override
+    protected MutableTrigger build() {
+        final StaggeredCronTrigger theTrigger = new StaggeredCronTrigger();
+        try {
+            theTrigger.setCronExpression(mCronExpression);
+        } catch (final ParseException theException) {
+            throw new IllegalArgumentException("'" + mCronExpression + "' is not a valid cron expression",
+                theException);
+        }
+        theTrigger.setTimeZone(mTimeZone);
+        theTrigger.setMisfireInstruction(mMisfireInstruction);
+        theTrigger.setStaggerOffset(mStaggerOffset);
+        return theTrigger;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.scheduling;
+
+import java.util.Date;
+
+import org.quartz.CronTrigger;
+import org.quartz.ScheduleBuilder;
+import org.quartz.impl.triggers.CronTriggerImpl;
+
+/**
+ * Quartz cron trigger that fires a fixed offset after the times determined
+ * by its cron expression.<br/>
+ * Used to stagger tasks that share the same cron expression, so that they
+ * do not all fire at the same time. The offset should be less than the
+ * shortest time between two fire times of the cron expression.
+ *
+ * @author Ivan Krizsan
+ */
+class StaggeredCronTrigger extends CronTriggerImpl {
+    /* Constant(s): */
+    /** Serialization version id of this class. */
+    private static final long serialVersionUID = -1476321860587104455L;
+
+    /* Instance variable(s): */
+    /** Offset in milliseconds added to fire times of the cron expression. */
+    protected long mStaggerOffset;
+
+    /**
+     * Finds the fire time after the supplied time.<br/>
+     * The start and end time checks of the superclass are applied to the fire
+     * times of the cron expression before the offset is added, since the start
+     * time of a cron trigger is truncated to whole seconds and an offset fire
+     * time may thus precede the start time.
+     *
+     * @param inAfterTime Time after which to find fire time, or null for now.
+     * @return Fire time, or null if the trigger will not fire after the supplied time.
+     */
+    @Override
+    public Date getFireTimeAfter(final Date inAfterTime) {
+        final long theAfterTime = inAfterTime == null ? System.currentTimeMillis() : inAfterTime.getTime();
+        final Date theCronTime = super.getFireTimeAfter(new Date(theAfterTime - mStaggerOffset));
+        if (theCronTime == null) {
+            return null;
+        }
+        final Date theFireTime = new Date(theCronTime.getTime() + mStaggerOffset);
+        if (getEndTime() != null && theFireTime.after(getEndTime())) {
+            return null;
+        }
+        return theFireTime;
+    }
+
+    @Override
+    protected Date getTimeBefore(final Date inEndTime) {
+        final Date theCronTime =
+            super.getTimeBefore(inEndTime == null ? null : new Date(inEndTime.getTime() - mStaggerOffset));
+        return theCronTime == null ? null : new Date(theCronTime.getTime() + mStaggerOffset);
+    }
+
+    @Override
+    public ScheduleBuilder<CronTrigger> getScheduleBuilder() {
+        return new StaggeredCronScheduleBuilder(getCronExpression(), mStaggerOffset, getTimeZone(),
+            getMisfireInstruction());
+    }
+
+    public long getStaggerOffset() {
+        return mStaggerOffset;
+    }
+
+    public void setStaggerOffset(final long inStaggerOffset) {
+        mStaggerOffset = inStaggerOffset;
+    }
+}
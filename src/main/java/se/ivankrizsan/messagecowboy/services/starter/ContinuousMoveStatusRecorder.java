@@ -0,0 +1,72 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.starter;
+
+import java.util.Date;
+
+import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusError;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusSuccess;
+import se.ivankrizsan.messagecowboy.services.taskexecutionstatus.TaskExecutionStatusService;
+import se.ivankrizsan.messagecowboy.services.transport.ContinuousMoveListener;
+
+/**
+ * Records a task execution status for each message moved, or failed to be
+ * moved, by the continuous move of a task in continuous mode.<br/>
+ * The task execution statuses are the same as those recorded when a
+ * scheduled task moves one message.
+ *
+ * @author Ivan Krizsan
+ */
+class ContinuousMoveStatusRecorder implements ContinuousMoveListener {
+    /* Constant(s): */
+
+    /* Instance variable(s): */
+    protected final MessageCowboySchedulableTaskConfig mTaskConfiguration;
+    protected final TaskExecutionStatusService mTaskExecutionStatusService;
+
+    /**
+     * Creates a recorder of task execution statuses of the supplied task
+     * saving task execution statuses using the supplied service.
+     *
+     * @param inTaskConfiguration Configuration of task in continuous mode.
+     * @param inTaskExecutionStatusService Service used to save task execution
+     * statuses.
+     */
+    public ContinuousMoveStatusRecorder(final MessageCowboySchedulableTaskConfig inTaskConfiguration,
+        final TaskExecutionStatusService inTaskExecutionStatusService) {
+        mTaskConfiguration = inTaskConfiguration;
+        mTaskExecutionStatusService = inTaskExecutionStatusService;
+    }
+
+    @Override
+    public void messageMoved(final String inMoveId, final long inDuration) {
+        final String theTaskStatusMsg = "Moved 1 message(s) in " + inDuration + " milliseconds";
+        mTaskExecutionStatusService.save(
+            new TaskExecutionStatusSuccess(mTaskConfiguration, theTaskStatusMsg, new Date(), 1, inDuration));
+    }
+
+    @Override
+    public void messageMoveFailed(final String inMoveId, final Throwable inException, final long inDuration) {
+        String theTaskStatusMsg = "";
+        if (inException != null) {
+            theTaskStatusMsg = inException.getLocalizedMessage();
+        }
+        mTaskExecutionStatusService.save(
+            new TaskExecutionStatusError(mTaskConfiguration, theTaskStatusMsg, new Date(), 0, inDuration));
+    }
+}
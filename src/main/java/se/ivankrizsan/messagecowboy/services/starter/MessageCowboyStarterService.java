@@ -37,8 +37,10 @@ public interface MessageCowboyStarterService {
 
     /**
      * Schedules, or re-schedules, all available tasks.<br/>
-     * Any already scheduled tasks will be unscheduled before all available
-     * task configurations are read and a task is scheduled for each of them.
+     * Only task configurations modified since the previous invocation are
+     * read. Tasks that have been removed or disabled are unscheduled, new tasks
+     * are scheduled and tasks which schedule has changed are rescheduled.
+     * Tasks with an unchanged schedule retain their next fire time.
      */
     abstract void scheduleTasks();
 
@@ -45,9 +45,14 @@ public class MessageCowboyStarterServiceConfiguration {
     /** Task name of task scheduling transport service configuration refresh. */
     public static final String MESSAGECOWBOY_TASK_EXECUTION_STATUS_CLEANUP_TASK_NAME =
         "MessageCowboyTaskExecutionStatusCleanupTask";
+    /** Task name of task scheduling task execution rollup cleanup. */
+    public static final String MESSAGECOWBOY_TASK_EXECUTION_ROLLUP_CLEANUP_TASK_NAME =
+        "MessageCowboyTaskExecutionRollupCleanupTask";
     /* Property value(s): */
     @Value("${TASK_EXECUTION_STATUS_DAYS_TO_KEEP}")
     private String taskExecutionStatusDaysToKeep;
+    @Value("${TASK_EXECUTION_ROLLUP_DAYS_TO_KEEP}")
+    private String taskExecutionRollupDaysToKeep;
 
     /**
      * Service that starts and stops the Message Cowboy application.
@@ -64,8 +69,11 @@ public class MessageCowboyStarterServiceConfiguration {
         /* Set a default transport service configuration refresh interval. */
         theService.setTransportServiceConfigurationRefreshCronExpression("0 0/2 * * * ?");
         /* Set cleanup interval and number of days to retain reports for task execution status reports cleanup. */
-        theService.setTaskExecutionStatusCleanupCronExpression("* 0/2 * * * ?");
+        theService.setTaskExecutionStatusCleanupCronExpression("0 0/2 * * * ?");
         theService.setTaskExecutionStatusMaxAgeInDays(Integer.parseInt(taskExecutionStatusDaysToKeep));
+        /* Set cleanup interval and number of days to retain rollups for task execution rollup cleanup. */
+        theService.setTaskExecutionRollupCleanupCronExpression("0 15 * * * ?");
+        theService.setTaskExecutionRollupMaxAgeInDays(Integer.parseInt(taskExecutionRollupDaysToKeep));
         return theService;
     }
 
@@ -90,6 +98,10 @@ public class MessageCowboyStarterServiceConfiguration {
         theDoNotUnscheduleTasksKey =
             new TaskKey(MESSAGECOWBOY_SYSTEMTASKS_GROUPNAME, MESSAGECOWBOY_TASK_EXECUTION_STATUS_CLEANUP_TASK_NAME);
         theNotToRescheduleTasks.add(theDoNotUnscheduleTasksKey);
+        /* Task that cleans up old task execution rollups. */
+        theDoNotUnscheduleTasksKey =
+            new TaskKey(MESSAGECOWBOY_SYSTEMTASKS_GROUPNAME, MESSAGECOWBOY_TASK_EXECUTION_ROLLUP_CLEANUP_TASK_NAME);
+        theNotToRescheduleTasks.add(theDoNotUnscheduleTasksKey);
 
         return theNotToRescheduleTasks;
     }
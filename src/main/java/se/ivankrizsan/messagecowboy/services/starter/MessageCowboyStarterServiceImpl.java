@@ -18,8 +18,10 @@ package se.ivankrizsan.messagecowboy.services.starter;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,20 +29,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.stereotype.Service;
 
-import se.ivankrizsan.messagecowboy.domain.entities.SchedulableTaskConfig;
 import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
 import se.ivankrizsan.messagecowboy.domain.entities.impl.QuartzTaskJob;
 import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskKey;
 import se.ivankrizsan.messagecowboy.services.scheduling.SchedulingService;
+import se.ivankrizsan.messagecowboy.services.taskconfiguration.TaskConfigurationChangeTracker;
 import se.ivankrizsan.messagecowboy.services.taskconfiguration.TaskConfigurationService;
 import se.ivankrizsan.messagecowboy.services.taskexecutionstatus.TaskExecutionStatusService;
 import se.ivankrizsan.messagecowboy.services.transport.TransportService;
+import se.ivankrizsan.messagecowboy.services.transport.exceptions.TransportException;
 
 /**
  * Implements the component responsible for starting and stopping
  * the Message Cowboy application.<br/>
  * This service also schedules the tasks available from the task configuration
- * service and, periodically, refreshes the scheduled tasks.
+ * service and, periodically, refreshes the scheduled tasks.<br/>
+ * Tasks in continuous mode are not scheduled, instead a continuous move is
+ * started in the transport service for each such task. A task execution
+ * status is recorded for each message moved by a continuous move.
  *
  * @author Ivan Krizsan
  */
@@ -63,12 +69,18 @@ class MessageCowboyStarterServiceImpl implements MessageCowboyStarterService {
     protected String mTaskReschedulingCronExpression;
     /** List of tasks that are not to be unscheduled when refreshing task schedules. */
     protected List<TaskKey> mTasksNotToUnschedule = new ArrayList<TaskKey>();
+    /** Tracks modifications of task configurations between refreshes, null if no tasks scheduled. */
+    protected TaskConfigurationChangeTracker mTaskConfigurationChangeTracker;
     /** Cron expression determining when configurations of the transport service will be refreshed. */
     protected String mTransportServiceConfigurationRefreshCronExpression;
     /** Cron expression determining when the task execution status cleanup will be performed. */
     protected String mTaskExecutionStatusCleanupCronExpression;
     /** Maximum age of task execution status reports that are to be retained. */
     protected int mTaskExecutionStatusMaxAgeInDays;
+    /** Cron expression determining when the task execution rollup cleanup will be performed. */
+    protected String mTaskExecutionRollupCleanupCronExpression;
+    /** Maximum age of task execution rollups that are to be retained. */
+    protected int mTaskExecutionRollupMaxAgeInDays;
 
     @Override
     public void start() {
@@ -100,50 +112,134 @@ class MessageCowboyStarterServiceImpl implements MessageCowboyStarterService {
             theDeleteIfOlderThanDaysParameter, mTaskExecutionStatusCleanupCronExpression,
             MessageCowboyStarterServiceConfiguration.MESSAGECOWBOY_TASK_EXECUTION_STATUS_CLEANUP_TASK_NAME,
             MessageCowboyStarterServiceConfiguration.MESSAGECOWBOY_SYSTEMTASKS_GROUPNAME);
+
+        /* Schedule task execution rollup periodic cleanup, retaining rollups longer than reports. */
+        final Object[] theDeleteRollupsIfOlderThanDaysParameter = new Object[1];
+        theDeleteRollupsIfOlderThanDaysParameter[0] = mTaskExecutionRollupMaxAgeInDays;
+        mSchedulingService.scheduleMethodInvocation(mTaskExecutionStatusService, "deleteRollupsIfOlderThanDays",
+            theDeleteRollupsIfOlderThanDaysParameter, mTaskExecutionRollupCleanupCronExpression,
+            MessageCowboyStarterServiceConfiguration.MESSAGECOWBOY_TASK_EXECUTION_ROLLUP_CLEANUP_TASK_NAME,
+            MessageCowboyStarterServiceConfiguration.MESSAGECOWBOY_SYSTEMTASKS_GROUPNAME);
     }
 
     @Override
-    public void stop() {
+    public synchronized void stop() {
         mSchedulingService.unscheduleAllTasks();
+        stopContinuousMoves(new HashSet<String>());
+        mTaskExecutionStatusService.flush();
+
+        /* Make sure all tasks are scheduled if started again. */
+        mTaskConfigurationChangeTracker = null;
 
         LOGGER.info("Message Cowboy stopped");
     }
 
     @Override
-    public void scheduleTasks() {
+    public synchronized void scheduleTasks() {
+        /*
+         * Read task configurations modified since the last refresh from database,
+         * or all task configurations if no tasks have been scheduled.
+         */
+        if (mTaskConfigurationChangeTracker == null) {
+            mTaskConfigurationChangeTracker = mTaskConfigurationService.createChangeTracker();
+        }
+        final List<MessageCowboySchedulableTaskConfig> theModifiedTaskConfigurations =
+            mTaskConfigurationChangeTracker.findModifiedTaskConfigurations();
+        final boolean theTasksRemovedFlag = mTaskConfigurationChangeTracker.forgetRemovedTaskConfigurations();
+        if (theModifiedTaskConfigurations.isEmpty() && !theTasksRemovedFlag) {
+            LOGGER.debug("No Message Cowboy tasks modified or removed");
+            return;
+        }
+
         LOGGER.info("Starting to (re)schedule Message Cowboy tasks");
-        /* First unschedule all non-system tasks, in case tasks have been scheduled earlier. */
-        mSchedulingService.unscheduleOtherTasks(mTasksNotToUnschedule);
-        LOGGER.info("Existing tasks unscheduled");
+        LOGGER.debug("Found {} number of modified tasks", theModifiedTaskConfigurations.size());
+
+        /*
+         * Unschedule tasks that have been removed, disabled or changed to continuous mode.
+         * Other tasks keep their triggers, in order not to disturb their next fire time.
+         */
+        final List<TaskKey> theTasksNotToUnschedule = new ArrayList<TaskKey>(mTasksNotToUnschedule);
+        final Set<String> theContinuousMoveIds = new HashSet<String>();
+        for (MessageCowboySchedulableTaskConfig theTaskConfiguration
+            : mTaskConfigurationChangeTracker.getKnownTaskConfigurations()) {
+            if (theTaskConfiguration.getTaskEnabledFlag() && theTaskConfiguration.getContinuousModeFlag()) {
+                theContinuousMoveIds.add(createContinuousMoveId(theTaskConfiguration));
+            } else if (theTaskConfiguration.getTaskEnabledFlag()) {
+                theTasksNotToUnschedule.add(
+                    new TaskKey(theTaskConfiguration.getTaskGroupName(), theTaskConfiguration.getName()));
+            }
+        }
+        mSchedulingService.unscheduleOtherTasks(theTasksNotToUnschedule);
 
-        /* Read all current task configurations from database. */
-        List<MessageCowboySchedulableTaskConfig> theTaskConfigurations = mTaskConfigurationService.findAll();
-        LOGGER.debug("Found {} number of tasks", theTaskConfigurations.size());
+        /* Schedule new tasks and reschedule or update job data of modified tasks. */
+        int theScheduledTasksCount = 0;
+        for (MessageCowboySchedulableTaskConfig theTaskConfiguration : theModifiedTaskConfigurations) {
+            if (theTaskConfiguration.getTaskEnabledFlag() && theTaskConfiguration.getContinuousModeFlag()) {
+                final String theContinuousMoveId = createContinuousMoveId(theTaskConfiguration);
+                try {
+                    mTransportService.startContinuousMove(theContinuousMoveId,
+                        theTaskConfiguration.getInboundEndpointURI(), theTaskConfiguration.getOutboundEndpointURI(),
+                        new ContinuousMoveStatusRecorder(theTaskConfiguration, mTaskExecutionStatusService));
 
-        /* Schedule all enabled tasks. */
-        for (SchedulableTaskConfig theTaskConfiguration : theTaskConfigurations) {
-            if (theTaskConfiguration.getTaskEnabledFlag()) {
+                    LOGGER.debug("Started continuous task {} in group {}", theTaskConfiguration.getName(),
+                        theTaskConfiguration.getTaskGroupName());
+                } catch (final TransportException theException) {
+                    LOGGER.error("Error starting continuous task " + theTaskConfiguration.getName() + " in group "
+                        + theTaskConfiguration.getTaskGroupName(), theException);
+                }
+            } else if (theTaskConfiguration.getTaskEnabledFlag()) {
                 /*
-                 * Create job data map and fill it with the data and
-                 * references to the services needed when the task is
-                 * executed.
+                 * The job data map only holds the name of the task. Services are
+                 * injected into the job and the current task configuration is
+                 * retrieved by the job when it is executed.
                  */
                 final Map<String, Object> theJobDataMap = new HashMap<String, Object>();
-                theJobDataMap.put(QuartzTaskJob.TASK_CONFIGURATION_JOB_DATA_KEY, theTaskConfiguration);
-                theJobDataMap.put(QuartzTaskJob.TRANSPORT_SERVICE_JOB_DATA_KEY, mTransportService);
-                theJobDataMap.put(QuartzTaskJob.TASK_CONFIGURATION_SERVICE_JOB_DATA_KEY, mTaskConfigurationService);
-
-                mSchedulingService.scheduleTask(theTaskConfiguration, theJobDataMap);
+                theJobDataMap.put(QuartzTaskJob.TASK_NAME_JOB_DATA_KEY, theTaskConfiguration.getName());
 
-                LOGGER.debug("Scheduled task {} in group {}", theTaskConfiguration.getName(),
-                    theTaskConfiguration.getTaskGroupName());
+                if (mSchedulingService.scheduleOrUpdateTask(theTaskConfiguration, theJobDataMap)) {
+                    theScheduledTasksCount++;
+                    LOGGER.debug("Scheduled task {} in group {}", theTaskConfiguration.getName(),
+                        theTaskConfiguration.getTaskGroupName());
+                }
             } else {
                 LOGGER.debug("Task {} in group {} is disabled and thus not scheduled", theTaskConfiguration.getName(),
                     theTaskConfiguration.getTaskGroupName());
             }
         }
 
-        LOGGER.info("Successfully (re)scheduled Message Cowboy tasks");
+        /* Stop continuous moves of tasks that have been removed, disabled or changed mode. */
+        stopContinuousMoves(theContinuousMoveIds);
+
+        LOGGER.info("Successfully (re)scheduled {} Message Cowboy tasks", theScheduledTasksCount);
+    }
+
+    /**
+     * Stops all continuous moves in the transport service except for those
+     * which ids are in the supplied set.
+     *
+     * @param inContinuousMoveIdsToKeep Ids of continuous moves that are not
+     * to be stopped.
+     */
+    protected void stopContinuousMoves(final Set<String> inContinuousMoveIdsToKeep) {
+        for (String theContinuousMoveId : mTransportService.findContinuousMoveIds()) {
+            if (!inContinuousMoveIdsToKeep.contains(theContinuousMoveId)) {
+                try {
+                    mTransportService.stopContinuousMove(theContinuousMoveId);
+                } catch (final TransportException theException) {
+                    LOGGER.error("Error stopping continuous move " + theContinuousMoveId, theException);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the id of the continuous move of the supplied task.
+     *
+     * @param inTaskConfiguration Task configuration.
+     * @return Continuous move id unique for the task.
+     */
+    protected String createContinuousMoveId(final MessageCowboySchedulableTaskConfig inTaskConfiguration) {
+        return inTaskConfiguration.getTaskGroupName() + "." + inTaskConfiguration.getName();
     }
 
     public String getTaskReschedulingCronExpression() {
@@ -186,4 +282,22 @@ class MessageCowboyStarterServiceImpl implements MessageCowboyStarterService {
     public void setTaskExecutionStatusMaxAgeInDays(final int inTaskExecutionStatusMaxAgeInDays) {
         mTaskExecutionStatusMaxAgeInDays = inTaskExecutionStatusMaxAgeInDays;
     }
+
+    public String getTaskExecutionRollupCleanupCronExpression() {
+        return mTaskExecutionRollupCleanupCronExpression;
+    }
+
+    @Required
+    public void setTaskExecutionRollupCleanupCronExpression(final String inTaskExecutionRollupCleanupCronExpression) {
+        mTaskExecutionRollupCleanupCronExpression = inTaskExecutionRollupCleanupCronExpression;
+    }
+
+    public int getTaskExecutionRollupMaxAgeInDays() {
+        return mTaskExecutionRollupMaxAgeInDays;
+    }
+
+    @Required
+    public void setTaskExecutionRollupMaxAgeInDays(final int inTaskExecutionRollupMaxAgeInDays) {
+        mTaskExecutionRollupMaxAgeInDays = inTaskExecutionRollupMaxAgeInDays;
+    }
 }
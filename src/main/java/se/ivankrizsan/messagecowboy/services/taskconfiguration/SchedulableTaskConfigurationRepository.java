@@ -16,10 +16,13 @@
  */
 package se.ivankrizsan.messagecowboy.services.taskconfiguration;
 
+import java.util.Date;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
 
@@ -42,4 +45,36 @@ interface SchedulableTaskConfigurationRepository extends
     abstract
         List<MessageCowboySchedulableTaskConfig> findAllEnabled();
 
+    /**
+     * Finds all task configurations modified after the supplied point in time.
+     * Task configurations without a last modified time are not found.
+     *
+     * @param inModifiedAfter Point in time after which task configurations
+     * are to have been modified.
+     * @return Persisted task configurations modified after the supplied time.
+     */
+    @Query("select t from MessageCowboySchedulableTaskConfig t where t.lastModified > ?1")
+    abstract
+        List<MessageCowboySchedulableTaskConfig> findModifiedAfter(Date inModifiedAfter);
+
+    /**
+     * Sets the last modified time of all task configurations that lack a
+     * last modified time.
+     *
+     * @param inLastModified Last modified time to set.
+     * @return Number of updated task configurations.
+     */
+    @Modifying
+    @Transactional
+    @Query("update MessageCowboySchedulableTaskConfig t set t.lastModified = ?1 where t.lastModified is null")
+    abstract int updateMissingLastModified(Date inLastModified);
+
+    /**
+     * Finds the names of all task configurations.
+     *
+     * @return Names of all persisted task configurations.
+     */
+    @Query("select t.name from MessageCowboySchedulableTaskConfig t")
+    abstract List<String> findAllNames();
+
 }
\ No newline at end of file
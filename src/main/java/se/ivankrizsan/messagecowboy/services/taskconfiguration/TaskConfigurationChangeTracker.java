@@ -0,0 +1,191 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.taskconfiguration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
+
+/**
+ * Keeps track of known task configurations and retrieves the persisted task
+ * configurations that have been added, modified or removed since the
+ * previous retrieval. Task configurations are retrieved from the database,
+ * not from any cache of the task configuration service.<br/>
+ * The first retrieval, and the first retrieval after the tracker has been
+ * cleared, retrieves all task configurations. Subsequent retrievals only
+ * retrieve task configurations modified after the point in time of the
+ * previous retrieval, less an overlap that allows for modifications committed
+ * after the previous retrieval and for differences between clocks. Task
+ * configurations retrieved again due to the overlap are not reported as
+ * modified unless their last modified time has changed, so the set of
+ * modified task configurations becomes empty when no modifications are made.<br/>
+ * Task configurations lacking a last modified time, for instance created
+ * before the last modified time was introduced or modified directly in the
+ * database with the last modified time set to null, are assigned the current
+ * time at each retrieval and are thus retrieved as modified. Task
+ * configurations modified without their last modified time being updated or
+ * set to null are not detected until all task configurations are retrieved
+ * again.<br/>
+ * Instances are obtained from {@link TaskConfigurationService#createChangeTracker()}.
+ *
+ * @author Ivan Krizsan
+ */
+public class TaskConfigurationChangeTracker {
+    /* Constant(s): */
+    /**
+     * Time in milliseconds before the previous retrieval from which modified
+     * task configurations are retrieved.
+     */
+    public static final long MODIFIED_TASKS_OVERLAP_MILLISECONDS = 10000L;
+
+    /* Instance variable(s): */
+    protected final SchedulableTaskConfigurationRepository mTaskConfigurationRepository;
+    /** Known task configurations keyed by task name. */
+    protected final Map<String, MessageCowboySchedulableTaskConfig> mKnownTaskConfigurations =
+        new LinkedHashMap<String, MessageCowboySchedulableTaskConfig>();
+    /** Point in time at which task configurations were last retrieved, null if not retrieved. */
+    protected Date mLastRetrievalTime;
+
+    /**
+     * Creates a tracker retrieving task configurations from the supplied repository.
+     *
+     * @param inTaskConfigurationRepository Task configuration repository.
+     */
+    TaskConfigurationChangeTracker(final SchedulableTaskConfigurationRepository inTaskConfigurationRepository) {
+        mTaskConfigurationRepository = inTaskConfigurationRepository;
+    }
+
+    /**
+     * Retrieves the task configurations that have been added or modified
+     * since the previous retrieval and records them as known task configurations.
+     *
+     * @return Added or modified task configurations.
+     */
+    public synchronized List<MessageCowboySchedulableTaskConfig> findModifiedTaskConfigurations() {
+        final Date theRetrievalTime = new Date();
+        /*
+         * Task configurations without last modified time would not be found by
+         * retrievals of modified task configurations. The retrieval time is after
+         * the point in time from which modified task configurations are retrieved.
+         */
+        mTaskConfigurationRepository.updateMissingLastModified(theRetrievalTime);
+        final List<MessageCowboySchedulableTaskConfig> theTaskConfigurations;
+        if (mLastRetrievalTime == null || mKnownTaskConfigurations.isEmpty()) {
+            theTaskConfigurations = mTaskConfigurationRepository.findAll();
+        } else {
+            final Date theModifiedAfter =
+                new Date(mLastRetrievalTime.getTime() - MODIFIED_TASKS_OVERLAP_MILLISECONDS);
+            theTaskConfigurations = mTaskConfigurationRepository.findModifiedAfter(theModifiedAfter);
+        }
+
+        final List<MessageCowboySchedulableTaskConfig> theModifiedTaskConfigurations =
+            new ArrayList<MessageCowboySchedulableTaskConfig>();
+        for (MessageCowboySchedulableTaskConfig theTaskConfiguration : theTaskConfigurations) {
+            final MessageCowboySchedulableTaskConfig theKnownTaskConfiguration =
+                mKnownTaskConfigurations.put(theTaskConfiguration.getName(), theTaskConfiguration);
+            if (theKnownTaskConfiguration == null
+                || !isSameLastModified(theKnownTaskConfiguration, theTaskConfiguration)) {
+                theModifiedTaskConfigurations.add(theTaskConfiguration);
+            }
+        }
+        mLastRetrievalTime = theRetrievalTime;
+        return theModifiedTaskConfigurations;
+    }
+
+    /**
+     * Detects task configurations that have been removed from the database
+     * and removes them from the known task configurations.<br/>
+     * The names of all task configurations are only retrieved if the number of
+     * task configurations differs from the number of known task configurations.
+     *
+     * @return True if one or more task configurations were removed, false otherwise.
+     */
+    public synchronized boolean forgetRemovedTaskConfigurations() {
+        if (mTaskConfigurationRepository.count() == mKnownTaskConfigurations.size()) {
+            return false;
+        }
+
+        final Set<String> theTaskNames = new HashSet<String>(mTaskConfigurationRepository.findAllNames());
+        return mKnownTaskConfigurations.keySet().retainAll(theTaskNames);
+    }
+
+    /**
+     * Retrieves the known task configurations.
+     *
+     * @return Copy of the known task configurations.
+     */
+    public synchronized Collection<MessageCowboySchedulableTaskConfig> getKnownTaskConfigurations() {
+        return Collections.unmodifiableList(
+            new ArrayList<MessageCowboySchedulableTaskConfig>(mKnownTaskConfigurations.values()));
+    }
+
+    /**
+     * Retrieves the known task configurations keyed by task name.
+     *
+     * @return Unmodifiable copy of the known task configurations keyed by task name.
+     */
+    public synchronized Map<String, MessageCowboySchedulableTaskConfig> getKnownTaskConfigurationsByName() {
+        return Collections.unmodifiableMap(
+            new LinkedHashMap<String, MessageCowboySchedulableTaskConfig>(mKnownTaskConfigurations));
+    }
+
+    /**
+     * Records the supplied task configuration, for instance just saved, as
+     * known, replacing any known task configuration with the same name.<br/>
+     * Does nothing if no task configurations have been retrieved, since all
+     * task configurations are retrieved at the next retrieval.
+     *
+     * @param inTaskConfiguration Task configuration.
+     */
+    public synchronized void addKnownTaskConfiguration(final MessageCowboySchedulableTaskConfig inTaskConfiguration) {
+        if (mLastRetrievalTime != null) {
+            mKnownTaskConfigurations.put(inTaskConfiguration.getName(), inTaskConfiguration);
+        }
+    }
+
+    /**
+     * Forgets all known task configurations, causing all task configurations
+     * to be retrieved at the next retrieval.
+     */
+    public synchronized void clear() {
+        mKnownTaskConfigurations.clear();
+        mLastRetrievalTime = null;
+    }
+
+    /**
+     * Determines whether the supplied task configurations have the same last
+     * modified time.
+     *
+     * @param inTaskConfiguration1 First task configuration.
+     * @param inTaskConfiguration2 Second task configuration.
+     * @return True if last modified times are equal, false otherwise.
+     */
+    protected boolean isSameLastModified(final MessageCowboySchedulableTaskConfig inTaskConfiguration1,
+        final MessageCowboySchedulableTaskConfig inTaskConfiguration2) {
+        final Date theLastModified1 = inTaskConfiguration1.getLastModified();
+        final Date theLastModified2 = inTaskConfiguration2.getLastModified();
+        return theLastModified1 != null && theLastModified1.equals(theLastModified2);
+    }
+}
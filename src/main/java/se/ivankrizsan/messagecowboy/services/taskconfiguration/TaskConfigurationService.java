@@ -16,6 +16,7 @@
  */
 package se.ivankrizsan.messagecowboy.services.taskconfiguration;
 
+import java.util.Date;
 import java.util.List;
 import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
 
@@ -48,6 +49,32 @@ public interface TaskConfigurationService {
      */
     abstract List<MessageCowboySchedulableTaskConfig> findAllEnabled();
 
+    /**
+     * Retrieves all stored task configurations that have been modified after
+     * the supplied point in time. Task configurations for which the point in
+     * time of the last modification is not known are not retrieved.
+     * 
+     * @param inModifiedAfter Point in time after which task configurations
+     * are to have been modified.
+     * @return Task configurations modified after the supplied point in time.
+     */
+    abstract List<MessageCowboySchedulableTaskConfig> findModifiedAfter(
+        Date inModifiedAfter);
+
+    /**
+     * Retrieves the names of all stored task configurations.
+     * 
+     * @return Names of all task configurations.
+     */
+    abstract List<String> findAllNames();
+
+    /**
+     * Retrieves the number of stored task configurations.
+     * 
+     * @return Number of task configurations.
+     */
+    abstract long count();
+
     /**
      * Saves the supplied task configuration, replacing any existing task
      * configuration with the same name.
@@ -58,4 +85,18 @@ public interface TaskConfigurationService {
      */
     abstract MessageCowboySchedulableTaskConfig save(
         MessageCowboySchedulableTaskConfig inTaskConfig);
+
+    /**
+     * Discards any cached task configurations, causing task configurations
+     * to be retrieved from the database at the next lookup.
+     */
+    abstract void invalidateCache();
+
+    /**
+     * Creates a tracker that retrieves the stored task configurations added,
+     * modified or removed since its previous retrieval.
+     * 
+     * @return New task configuration change tracker.
+     */
+    abstract TaskConfigurationChangeTracker createChangeTracker();
 }
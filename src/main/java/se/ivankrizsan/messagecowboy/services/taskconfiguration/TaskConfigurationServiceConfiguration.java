@@ -17,6 +17,7 @@
 package se.ivankrizsan.messagecowboy.services.taskconfiguration;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -24,7 +25,12 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 /**
- * Spring configuration class for the task configuration service.
+ * Spring configuration class for the task configuration service.<br/>
+ * Task configurations are cached in memory if the
+ * {@value #CACHE_TIME_TO_LIVE_PROPERTY_NAME} property is greater than zero.
+ * The {@value #CACHE_INCREMENTAL_REFRESH_PROPERTY_NAME} property selects
+ * whether an expired cache is refreshed by retrieving only modified task
+ * configurations, which is the default, or by reloading all task configurations.
  * 
  * @author Ivan Krizsan
  */
@@ -32,6 +38,19 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 @EnableJpaRepositories(
     basePackages = { "se.ivankrizsan.messagecowboy.services.taskconfiguration" })
 public class TaskConfigurationServiceConfiguration {
+    /* Constant(s): */
+    /** Name of property holding time in milliseconds task configurations are cached. */
+    public static final String CACHE_TIME_TO_LIVE_PROPERTY_NAME = "TASK_CONFIGURATION_CACHE_TIME_TO_LIVE";
+    /** Name of property holding flag selecting incremental refresh of the task configuration cache. */
+    public static final String CACHE_INCREMENTAL_REFRESH_PROPERTY_NAME =
+        "TASK_CONFIGURATION_CACHE_INCREMENTAL_REFRESH_FLAG";
+
+    /* Instance variable(s): */
+    /* Caching is disabled if the cache properties are not available. */
+    @Value("${" + CACHE_TIME_TO_LIVE_PROPERTY_NAME + ":0}")
+    protected long cacheTimeToLive;
+    @Value("${" + CACHE_INCREMENTAL_REFRESH_PROPERTY_NAME + ":true}")
+    protected boolean cacheIncrementalRefreshFlag;
     @Autowired
     protected SchedulableTaskConfigurationRepository taskConfigurationRepository;
 
@@ -44,6 +63,8 @@ public class TaskConfigurationServiceConfiguration {
         final TaskConfigurationServiceImpl theService =
             new TaskConfigurationServiceImpl();
         theService.setTaskConfigurationRepository(taskConfigurationRepository);
+        theService.setCacheTimeToLive(cacheTimeToLive);
+        theService.setIncrementalCacheRefreshFlag(cacheIncrementalRefreshFlag);
 
         return theService;
     }
@@ -16,24 +16,61 @@
  */
 package se.ivankrizsan.messagecowboy.services.taskconfiguration;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
 
 /**
- * Implements service storing and retrieving task configuration data.
+ * Implements service storing and retrieving task configuration data.<br/>
+ * Task configurations may optionally be cached in memory, in which case
+ * lookups do not access the database until the cache has expired.
+ * An expired cache is refreshed either by retrieving task configurations
+ * modified since the last refresh, or by reloading all task configurations,
+ * using a {@link TaskConfigurationChangeTracker}.
+ * Task configurations saved using the service are immediately visible in
+ * the cache, while task configurations modified in the database by other
+ * means become visible at the latest when the cache expires.<br/>
+ * Task configurations retrieved from the cache are copies, in order for
+ * modifications of a retrieved task configuration not to be visible to
+ * other users of the service until it has been saved.
  * 
  * @author Ivan Krizsan
  */
 @Service
 public class TaskConfigurationServiceImpl implements TaskConfigurationService {
     /* Constant(s): */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskConfigurationServiceImpl.class);
 
     /* Instance variable(s): */
     protected SchedulableTaskConfigurationRepository mTaskConfigurationRepository;
+    /** Time in milliseconds cached task configurations are used. Zero or less disables the cache. */
+    protected long mCacheTimeToLive;
+    /**
+     * True if an expired cache is to be refreshed retrieving only modified task configurations,
+     * false if all task configurations are to be reloaded.
+     */
+    protected boolean mIncrementalCacheRefreshFlag = true;
+    /** Cached task configurations keyed by name. Replaced, never modified, when the cache changes. */
+    protected volatile Map<String, MessageCowboySchedulableTaskConfig> mCachedTaskConfigurations;
+    /** Point in time, in milliseconds, after which the cache is to be refreshed. */
+    protected volatile long mCacheExpiryTime;
+    /** Tracks modifications of task configurations between cache refreshes, null until first needed. */
+    protected TaskConfigurationChangeTracker mCacheChangeTracker;
 
     @Override
     public MessageCowboySchedulableTaskConfig find(final String inName) {
+        final Map<String, MessageCowboySchedulableTaskConfig> theCache = obtainCache();
+        if (theCache != null) {
+            final MessageCowboySchedulableTaskConfig theTaskConfiguration = theCache.get(inName);
+            return theTaskConfiguration != null ? theTaskConfiguration.copy() : null;
+        }
+
         final MessageCowboySchedulableTaskConfig theTaskConfiguration =
             mTaskConfigurationRepository.findOne(inName);
         return theTaskConfiguration;
@@ -41,6 +78,16 @@ public class TaskConfigurationServiceImpl implements TaskConfigurationService {
 
     @Override
     public List<MessageCowboySchedulableTaskConfig> findAll() {
+        final Map<String, MessageCowboySchedulableTaskConfig> theCache = obtainCache();
+        if (theCache != null) {
+            final List<MessageCowboySchedulableTaskConfig> theTaskConfigurations =
+                new ArrayList<MessageCowboySchedulableTaskConfig>(theCache.size());
+            for (MessageCowboySchedulableTaskConfig theTaskConfiguration : theCache.values()) {
+                theTaskConfigurations.add(theTaskConfiguration.copy());
+            }
+            return theTaskConfigurations;
+        }
+
         final List<MessageCowboySchedulableTaskConfig> theTaskConfigurations =
             mTaskConfigurationRepository.findAll();
         return theTaskConfigurations;
@@ -48,19 +95,142 @@ public class TaskConfigurationServiceImpl implements TaskConfigurationService {
 
     @Override
     public List<MessageCowboySchedulableTaskConfig> findAllEnabled() {
+        final Map<String, MessageCowboySchedulableTaskConfig> theCache = obtainCache();
+        if (theCache != null) {
+            final List<MessageCowboySchedulableTaskConfig> theEnabledTaskConfigurations =
+                new ArrayList<MessageCowboySchedulableTaskConfig>();
+            for (MessageCowboySchedulableTaskConfig theTaskConfiguration : theCache.values()) {
+                if (theTaskConfiguration.getTaskEnabledFlag()) {
+                    theEnabledTaskConfigurations.add(theTaskConfiguration.copy());
+                }
+            }
+            return theEnabledTaskConfigurations;
+        }
+
         final List<MessageCowboySchedulableTaskConfig> theTaskConfigurations;
         theTaskConfigurations = mTaskConfigurationRepository.findAllEnabled();
         return theTaskConfigurations;
     }
 
+    @Override
+    public List<MessageCowboySchedulableTaskConfig> findModifiedAfter(
+        final Date inModifiedAfter) {
+        final Map<String, MessageCowboySchedulableTaskConfig> theCache = obtainCache();
+        if (theCache != null) {
+            final List<MessageCowboySchedulableTaskConfig> theModifiedTaskConfigurations =
+                new ArrayList<MessageCowboySchedulableTaskConfig>();
+            for (MessageCowboySchedulableTaskConfig theTaskConfiguration : theCache.values()) {
+                final Date theLastModified = theTaskConfiguration.getLastModified();
+                if (theLastModified != null && theLastModified.after(inModifiedAfter)) {
+                    theModifiedTaskConfigurations.add(theTaskConfiguration.copy());
+                }
+            }
+            return theModifiedTaskConfigurations;
+        }
+
+        final List<MessageCowboySchedulableTaskConfig> theTaskConfigurations =
+            mTaskConfigurationRepository.findModifiedAfter(inModifiedAfter);
+        return theTaskConfigurations;
+    }
+
+    @Override
+    public List<String> findAllNames() {
+        final Map<String, MessageCowboySchedulableTaskConfig> theCache = obtainCache();
+        if (theCache != null) {
+            return new ArrayList<String>(theCache.keySet());
+        }
+
+        final List<String> theTaskNames =
+            mTaskConfigurationRepository.findAllNames();
+        return theTaskNames;
+    }
+
+    @Override
+    public long count() {
+        final Map<String, MessageCowboySchedulableTaskConfig> theCache = obtainCache();
+        if (theCache != null) {
+            return theCache.size();
+        }
+
+        return mTaskConfigurationRepository.count();
+    }
+
     @Override
     public MessageCowboySchedulableTaskConfig save(
         final MessageCowboySchedulableTaskConfig inTaskConfig) {
         final MessageCowboySchedulableTaskConfig theSavedTaskConfig =
             mTaskConfigurationRepository.saveAndFlush(inTaskConfig);
+
+        synchronized (this) {
+            if (mCachedTaskConfigurations != null) {
+                /* Cache a copy, since the saved task configuration is returned to the caller. */
+                mCacheChangeTracker.addKnownTaskConfiguration(theSavedTaskConfig.copy());
+                mCachedTaskConfigurations = mCacheChangeTracker.getKnownTaskConfigurationsByName();
+            }
+        }
         return theSavedTaskConfig;
     }
 
+    @Override
+    public synchronized void invalidateCache() {
+        mCachedTaskConfigurations = null;
+        if (mCacheChangeTracker != null) {
+            mCacheChangeTracker.clear();
+        }
+    }
+
+    @Override
+    public TaskConfigurationChangeTracker createChangeTracker() {
+        return new TaskConfigurationChangeTracker(mTaskConfigurationRepository);
+    }
+
+    /**
+     * Retrieves the cached task configurations, refreshing the cache if it
+     * has expired.
+     *
+     * @return Cached task configurations keyed by name, or null if caching
+     * is disabled.
+     */
+    protected Map<String, MessageCowboySchedulableTaskConfig> obtainCache() {
+        if (mCacheTimeToLive <= 0) {
+            return null;
+        }
+
+        final Map<String, MessageCowboySchedulableTaskConfig> theCache = mCachedTaskConfigurations;
+        if (theCache != null && System.currentTimeMillis() < mCacheExpiryTime) {
+            return theCache;
+        }
+        return refreshCache();
+    }
+
+    /**
+     * Refreshes the cache of task configurations, unless it has already been
+     * refreshed by another thread.
+     *
+     * @return Refreshed cached task configurations keyed by name.
+     */
+    protected synchronized Map<String, MessageCowboySchedulableTaskConfig> refreshCache() {
+        if (mCachedTaskConfigurations != null && System.currentTimeMillis() < mCacheExpiryTime) {
+            return mCachedTaskConfigurations;
+        }
+
+        if (mCacheChangeTracker == null) {
+            mCacheChangeTracker = createChangeTracker();
+        }
+        if (mCachedTaskConfigurations == null || !mIncrementalCacheRefreshFlag) {
+            mCacheChangeTracker.clear();
+        }
+        final List<MessageCowboySchedulableTaskConfig> theModifiedTaskConfigurations =
+            mCacheChangeTracker.findModifiedTaskConfigurations();
+        mCacheChangeTracker.forgetRemovedTaskConfigurations();
+
+        mCachedTaskConfigurations = mCacheChangeTracker.getKnownTaskConfigurationsByName();
+        mCacheExpiryTime = System.currentTimeMillis() + mCacheTimeToLive;
+        LOGGER.debug("Refreshed the cache of task configurations, {} modified, {} cached",
+            theModifiedTaskConfigurations.size(), mCachedTaskConfigurations.size());
+        return mCachedTaskConfigurations;
+    }
+
     /**
      * Retrieves the task configuration repository used by the service to store
      * and retrieve persisted task configurations.
@@ -84,4 +254,49 @@ public class TaskConfigurationServiceImpl implements TaskConfigurationService {
             final SchedulableTaskConfigurationRepository inTaskConfigurationRepository) {
         mTaskConfigurationRepository = inTaskConfigurationRepository;
     }
+
+    /**
+     * Retrieves the time in milliseconds cached task configurations are used
+     * before the cache is refreshed.
+     *
+     * @return Cache time to live, zero or less if caching is disabled.
+     */
+    public long getCacheTimeToLive() {
+        return mCacheTimeToLive;
+    }
+
+    /**
+     * Sets the time in milliseconds cached task configurations are used
+     * before the cache is refreshed. Zero or less disables caching.
+     *
+     * @param inCacheTimeToLive Cache time to live.
+     */
+    public synchronized void setCacheTimeToLive(final long inCacheTimeToLive) {
+        mCacheTimeToLive = inCacheTimeToLive;
+        invalidateCache();
+    }
+
+    /**
+     * Retrieves flag indicating whether an expired cache is refreshed by
+     * retrieving only modified task configurations.
+     *
+     * @return True if cache is refreshed incrementally, false if all task
+     * configurations are reloaded.
+     */
+    public boolean getIncrementalCacheRefreshFlag() {
+        return mIncrementalCacheRefreshFlag;
+    }
+
+    /**
+     * Sets flag indicating whether an expired cache is refreshed by
+     * retrieving only modified task configurations.<br/>
+     * Incremental refresh does not detect task configurations modified
+     * in the database without their last modified time being updated.
+     *
+     * @param inIncrementalCacheRefreshFlag True if cache is to be refreshed
+     * incrementally, false if all task configurations are to be reloaded.
+     */
+    public void setIncrementalCacheRefreshFlag(final boolean inIncrementalCacheRefreshFlag) {
+        mIncrementalCacheRefreshFlag = inIncrementalCacheRefreshFlag;
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Deletes entries in chunks, each in a separate transaction, pausing between
+ * chunks in order not to hold locks on the table while other entries are
+ * inserted.<br/>
+ * The ids of the entries of a chunk are found and the entries deleted using
+ * the supplied {@link ChunkOperations}. A deletion started while another
+ * deletion by the same deleter is in progress is skipped.
+ *
+ * @author Ivan Krizsan
+ */
+class ChunkedDeleter {
+    /* Constant(s): */
+    /** Class logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedDeleter.class);
+    /** Default maximum number of entries deleted in one transaction. */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    /** Default pause in milliseconds between deleting two chunks of entries. */
+    public static final long DEFAULT_CHUNK_PAUSE = 100L;
+
+    /* Instance variable(s): */
+    /** Description of the deleted entries, used in log messages. */
+    protected final String mEntriesDescription;
+    /** Maximum number of entries deleted in one transaction. */
+    protected int mChunkSize = DEFAULT_CHUNK_SIZE;
+    /** Pause in milliseconds between deleting two chunks of entries. */
+    protected long mChunkPause = DEFAULT_CHUNK_PAUSE;
+    /** Lock held while entries are deleted. */
+    protected final Lock mLock = new ReentrantLock();
+
+    /**
+     * Operations finding and deleting the entries of one chunk.
+     */
+    interface ChunkOperations {
+        /**
+         * Finds the ids of the entries of the next chunk to delete.
+         *
+         * @param inChunk Page holding the chunk size.
+         * @return Ids of entries to delete, empty list if no more entries.
+         */
+        List<Long> findIds(Pageable inChunk);
+
+        /**
+         * Deletes the entries with the supplied ids.
+         *
+         * @param inIds Ids of entries to delete.
+         * @return Number of deleted entries.
+         */
+        int deleteByIds(List<Long> inIds);
+    }
+
+    /**
+     * Creates a deleter deleting entries described by the supplied description.
+     *
+     * @param inEntriesDescription Description of deleted entries, for
+     * example "Task execution status".
+     */
+    ChunkedDeleter(final String inEntriesDescription) {
+        mEntriesDescription = inEntriesDescription;
+    }
+
+    /**
+     * Deletes all entries found by the supplied operations, one chunk at a
+     * time. Does nothing if another deletion is in progress.
+     *
+     * @param inChunkOperations Operations finding and deleting entries.
+     * @return Number of deleted entries.
+     */
+    public int delete(final ChunkOperations inChunkOperations) {
+        if (!mLock.tryLock()) {
+            LOGGER.info("{} cleanup already in progress, skipping cleanup", mEntriesDescription);
+            return 0;
+        }
+        try {
+            int theDeletedCount = 0;
+            final Pageable theChunk = new PageRequest(0, mChunkSize);
+            List<Long> theIds = inChunkOperations.findIds(theChunk);
+            while (!theIds.isEmpty()) {
+                theDeletedCount += inChunkOperations.deleteByIds(theIds);
+                if (theIds.size() < mChunkSize || !pauseBetweenChunks()) {
+                    break;
+                }
+                theIds = inChunkOperations.findIds(theChunk);
+            }
+            return theDeletedCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Pauses between deleting two chunks of entries.
+     *
+     * @return True if pause completed, false if interrupted.
+     */
+    protected boolean pauseBetweenChunks() {
+        if (mChunkPause > 0) {
+            try {
+                Thread.sleep(mChunkPause);
+            } catch (final InterruptedException theException) {
+                LOGGER.warn("{} cleanup interrupted", mEntriesDescription);
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getChunkSize() {
+        return mChunkSize;
+    }
+
+    public void setChunkSize(final int inChunkSize) {
+        mChunkSize = inChunkSize;
+    }
+
+    public long getChunkPause() {
+        return mChunkPause;
+    }
+
+    public void setChunkPause(final long inChunkPause) {
+        mChunkPause = inChunkPause;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
+
+/**
+ * Task execution status store that keeps all reports in a single table
+ * using JPA.<br/>
+ * Old reports are deleted in chunks by a {@link ChunkedDeleter}, in order not
+ * to hold locks on the table while tasks insert reports.
+ *
+ * @author Ivan Krizsan
+ */
+class JpaTaskExecutionStatusStore implements TaskExecutionStatusStore {
+    /* Instance variable(s): */
+    protected TaskExecutionStatusRepository mTaskExecutionStatusRepository;
+    /** Deletes old task execution status entries in chunks. */
+    protected final ChunkedDeleter mCleanupDeleter = new ChunkedDeleter("Task execution status");
+
+    /**
+     * Creates a store keeping task execution status reports in the supplied repository.
+     *
+     * @param inTaskExecutionStatusRepository Task execution status repository.
+     */
+    public JpaTaskExecutionStatusStore(final TaskExecutionStatusRepository inTaskExecutionStatusRepository) {
+        mTaskExecutionStatusRepository = inTaskExecutionStatusRepository;
+    }
+
+    @Override
+    public void save(final List<TaskExecutionStatus> inTaskExecutionStatuses) {
+        mTaskExecutionStatusRepository.save(inTaskExecutionStatuses);
+    }
+
+    @Override
+    public int deleteOlderThan(final Date inMaxAge) {
+        return mCleanupDeleter.delete(new ChunkedDeleter.ChunkOperations() {
+            @Override
+            public List<Long> findIds(final Pageable inChunk) {
+                return mTaskExecutionStatusRepository.findIdsOlderThan(inMaxAge, inChunk);
+            }
+
+            @Override
+            public int deleteByIds(final List<Long> inIds) {
+                return mTaskExecutionStatusRepository.deleteByIds(inIds);
+            }
+        });
+    }
+
+    @Override
+    public List<TaskExecutionStatus> findByTaskExecutionTime(final Date inFromTime, final Date inToTime) {
+        return mTaskExecutionStatusRepository.findByTaskExecutionTime(inFromTime, inToTime);
+    }
+
+    public int getCleanupChunkSize() {
+        return mCleanupDeleter.getChunkSize();
+    }
+
+    public void setCleanupChunkSize(final int inCleanupChunkSize) {
+        mCleanupDeleter.setChunkSize(inCleanupChunkSize);
+    }
+
+    public long getCleanupChunkPause() {
+        return mCleanupDeleter.getChunkPause();
+    }
+
+    public void setCleanupChunkPause(final long inCleanupChunkPause) {
+        mCleanupDeleter.setChunkPause(inCleanupChunkPause);
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.DatabaseMetaDataCallback;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusError;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusNoMessageReceived;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusSuccess;
+
+/**
+ * Task execution status store that keeps reports in one table per day or
+ * per hour, using JDBC.<br/>
+ * Tables, partitions, are created as needed when reports are saved. Old
+ * reports are deleted by dropping the partitions which entire period is
+ * older than the maximum age, which is considerably cheaper than deleting
+ * rows. Thus reports may be retained up to one partition period longer
+ * than the maximum age. Queries by time range are performed on all
+ * partitions overlapping the time range.<br/>
+ * Daily partitions follow days in the local time zone. Hourly partitions
+ * follow hours in UTC, since an hour in local time is repeated when
+ * daylight saving time ends.
+ *
+ * @author Ivan Krizsan
+ */
+class PartitionedTaskExecutionStatusStore implements TaskExecutionStatusStore {
+    /* Constant(s): */
+    /** Class logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedTaskExecutionStatusStore.class);
+    /** Prefix of the names of partition tables. */
+    public static final String PARTITION_TABLE_NAME_PREFIX = "TaskExecutionStatuses_";
+    /** Maximum length of status messages stored in partition tables. */
+    protected static final int MAX_STATUS_MESSAGE_LENGTH = 4000;
+    /** Result status column values, same as the discriminator values of the task execution status entities. */
+    protected static final String RESULT_STATUS_SUCCESS = "Success";
+    protected static final String RESULT_STATUS_ERROR = "Error";
+    protected static final String RESULT_STATUS_NO_MESSAGE_RECEIVED = "No Incoming";
+    /** Columns of partition tables, in the order used in SQL statements. */
+    protected static final String COLUMNS =
+        "resultStatus, TaskName, statusMessage, taskExecutionTime, messageCount, executionDuration";
+
+    /**
+     * Length of the period of time covered by one partition.
+     */
+    public enum PartitionPeriod {
+        /** One partition per day in the local time zone. */
+        DAY("yyyyMMdd", Calendar.DAY_OF_MONTH, false),
+        /** One partition per hour in UTC. */
+        HOUR("yyyyMMddHH", Calendar.HOUR_OF_DAY, true);
+
+        /** Date pattern of the part of partition table names identifying the period. */
+        private final String mTableNameDatePattern;
+        /** Calendar field that is incremented to go from one period to the next. */
+        private final int mCalendarField;
+        /** Flag indicating whether periods are in UTC instead of the local time zone. */
+        private final boolean mUtcFlag;
+
+        PartitionPeriod(final String inTableNameDatePattern, final int inCalendarField, final boolean inUtcFlag) {
+            mTableNameDatePattern = inTableNameDatePattern;
+            mCalendarField = inCalendarField;
+            mUtcFlag = inUtcFlag;
+        }
+
+        /**
+         * Retrieves the time zone in which periods start and end.
+         *
+         * @return Time zone of periods.
+         */
+        public TimeZone getTimeZone() {
+            return mUtcFlag ? TimeZone.getTimeZone("UTC") : TimeZone.getDefault();
+        }
+
+        /**
+         * Calculates the start of the period containing the supplied time.
+         *
+         * @param inTime Time to calculate period start for.
+         * @return Period start time.
+         */
+        public Date periodStart(final Date inTime) {
+            final Calendar theCalendar = Calendar.getInstance(getTimeZone());
+            theCalendar.setTime(inTime);
+            if (this == DAY) {
+                theCalendar.set(Calendar.HOUR_OF_DAY, 0);
+            }
+            theCalendar.set(Calendar.MINUTE, 0);
+            theCalendar.set(Calendar.SECOND, 0);
+            theCalendar.set(Calendar.MILLISECOND, 0);
+            return theCalendar.getTime();
+        }
+
+        /**
+         * Calculates the start of the period following the period starting
+         * at the supplied time.
+         *
+         * @param inPeriodStart Period start time.
+         * @return Start time of next period.
+         */
+        public Date nextPeriodStart(final Date inPeriodStart) {
+            final Calendar theCalendar = Calendar.getInstance(getTimeZone());
+            theCalendar.setTime(inPeriodStart);
+            theCalendar.add(mCalendarField, 1);
+            return theCalendar.getTime();
+        }
+
+        /**
+         * Creates a date format that formats and parses the part of partition
+         * table names identifying the period.
+         *
+         * @return New date format.
+         */
+        public SimpleDateFormat createTableNameDateFormat() {
+            final SimpleDateFormat theDateFormat = new SimpleDateFormat(mTableNameDatePattern);
+            theDateFormat.setTimeZone(getTimeZone());
+            theDateFormat.setLenient(false);
+            return theDateFormat;
+        }
+    }
+
+    /* Instance variable(s): */
+    protected final JdbcTemplate mJdbcTemplate;
+    protected final TransactionTemplate mTransactionTemplate;
+    protected final PartitionPeriod mPartitionPeriod;
+    /** Names of existing partition tables keyed by partition period start time, null until read from database. */
+    protected TreeMap<Long, String> mPartitions;
+
+    /**
+     * Creates a store keeping task execution status reports in partition
+     * tables in the supplied data source.
+     *
+     * @param inDataSource Data source in which to create partition tables.
+     * @param inPartitionPeriod Period of time covered by one partition.
+     */
+    public PartitionedTaskExecutionStatusStore(final DataSource inDataSource,
+        final PartitionPeriod inPartitionPeriod) {
+        mJdbcTemplate = new JdbcTemplate(inDataSource);
+        mTransactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(inDataSource));
+        mPartitionPeriod = inPartitionPeriod;
+    }
+
+    @Override
+    public void save(final List<TaskExecutionStatus> inTaskExecutionStatuses) {
+        /* Group reports by partition, creating partitions before starting the transaction. */
+        final Map<String, List<TaskExecutionStatus>> thePartitionStatuses =
+            new LinkedHashMap<String, List<TaskExecutionStatus>>();
+        for (TaskExecutionStatus theStatus : inTaskExecutionStatuses) {
+            final String thePartitionTableName = obtainPartition(theStatus.getTaskExecutionTime());
+            List<TaskExecutionStatus> theStatuses = thePartitionStatuses.get(thePartitionTableName);
+            if (theStatuses == null) {
+                theStatuses = new ArrayList<TaskExecutionStatus>();
+                thePartitionStatuses.put(thePartitionTableName, theStatuses);
+            }
+            theStatuses.add(theStatus);
+        }
+
+        mTransactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus inTransactionStatus) {
+                for (Map.Entry<String, List<TaskExecutionStatus>> theEntry : thePartitionStatuses.entrySet()) {
+                    insertStatuses(theEntry.getKey(), theEntry.getValue());
+                }
+            }
+        });
+    }
+
+    @Override
+    public int deleteOlderThan(final Date inMaxAge) {
+        final List<String> theExpiredPartitions = new ArrayList<String>();
+        synchronized (this) {
+            for (Map.Entry<Long, String> thePartition : findPartitions().entrySet()) {
+                final Date thePeriodEnd = mPartitionPeriod.nextPeriodStart(new Date(thePartition.getKey()));
+                if (thePeriodEnd.after(inMaxAge)) {
+                    break;
+                }
+                theExpiredPartitions.add(thePartition.getValue());
+            }
+        }
+
+        int theDeletedCount = 0;
+        for (String thePartitionTableName : theExpiredPartitions) {
+            theDeletedCount += mJdbcTemplate.queryForObject(
+                "select count(*) from " + thePartitionTableName, Integer.class);
+            mJdbcTemplate.execute("drop table " + thePartitionTableName);
+            LOGGER.info("Dropped task execution status partition {}", thePartitionTableName);
+        }
+        synchronized (this) {
+            mPartitions = null;
+        }
+        return theDeletedCount;
+    }
+
+    @Override
+    public List<TaskExecutionStatus> findByTaskExecutionTime(final Date inFromTime, final Date inToTime) {
+        final List<String> thePartitionTableNames = new ArrayList<String>();
+        synchronized (this) {
+            final Long theFirstPeriodStart = mPartitionPeriod.periodStart(inFromTime).getTime();
+            thePartitionTableNames.addAll(
+                findPartitions().subMap(theFirstPeriodStart, true, inToTime.getTime(), false).values());
+        }
+
+        /* Partitions are in chronological order, thus the reports will be as well. */
+        final List<TaskExecutionStatus> theStatuses = new ArrayList<TaskExecutionStatus>();
+        for (String thePartitionTableName : thePartitionTableNames) {
+            theStatuses.addAll(mJdbcTemplate.query("select " + COLUMNS + " from " + thePartitionTableName
+                + " where taskExecutionTime >= ? and taskExecutionTime < ? order by taskExecutionTime",
+                new TaskExecutionStatusRowMapper(), new Timestamp(inFromTime.getTime()),
+                new Timestamp(inToTime.getTime())));
+        }
+        return theStatuses;
+    }
+
+    /**
+     * Retrieves the name of the partition table for the supplied task execution
+     * time, creating the partition table if it does not exist.
+     *
+     * @param inTaskExecutionTime Task execution time.
+     * @return Partition table name.
+     */
+    protected synchronized String obtainPartition(final Date inTaskExecutionTime) {
+        final Date thePeriodStart = mPartitionPeriod.periodStart(inTaskExecutionTime);
+        String thePartitionTableName = findPartitions().get(thePeriodStart.getTime());
+        if (thePartitionTableName == null) {
+            thePartitionTableName =
+                PARTITION_TABLE_NAME_PREFIX + mPartitionPeriod.createTableNameDateFormat().format(thePeriodStart);
+            try {
+                mJdbcTemplate.execute("create table " + thePartitionTableName + " ("
+                    + "resultStatus varchar(15) not null, TaskName varchar(255), "
+                    + "statusMessage varchar(" + MAX_STATUS_MESSAGE_LENGTH + "), "
+                    + "taskExecutionTime timestamp not null, messageCount integer not null, "
+                    + "executionDuration bigint)");
+                mJdbcTemplate.execute("create index " + thePartitionTableName + "_Time on "
+                    + thePartitionTableName + " (taskExecutionTime)");
+                LOGGER.info("Created task execution status partition {}", thePartitionTableName);
+            } catch (final DataAccessException theException) {
+                /* Partition may have been created by another Message Cowboy instance. */
+                mPartitions = null;
+                if (!findPartitions().containsKey(thePeriodStart.getTime())) {
+                    throw theException;
+                }
+                thePartitionTableName = findPartitions().get(thePeriodStart.getTime());
+            }
+            findPartitions().put(thePeriodStart.getTime(), thePartitionTableName);
+        }
+        return thePartitionTableName;
+    }
+
+    /**
+     * Retrieves the existing partition tables, reading them from the database
+     * metadata if not already known.
+     *
+     * @return Partition table names keyed by partition period start time.
+     */
+    protected synchronized TreeMap<Long, String> findPartitions() {
+        if (mPartitions == null) {
+            final TreeMap<Long, String> thePartitions = new TreeMap<Long, String>();
+            final SimpleDateFormat theDateFormat = mPartitionPeriod.createTableNameDateFormat();
+            for (String theTableName : readTableNames()) {
+                if (theTableName.toUpperCase().startsWith(PARTITION_TABLE_NAME_PREFIX.toUpperCase())) {
+                    try {
+                        final String thePeriod = theTableName.substring(PARTITION_TABLE_NAME_PREFIX.length());
+                        thePartitions.put(theDateFormat.parse(thePeriod).getTime(), theTableName);
+                    } catch (final ParseException theException) {
+                        LOGGER.debug("Table {} is not a partition with the configured period", theTableName);
+                    }
+                }
+            }
+            mPartitions = thePartitions;
+        }
+        return mPartitions;
+    }
+
+    /**
+     * Reads the names of all tables in the database.
+     *
+     * @return Table names.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<String> readTableNames() {
+        try {
+            return (List<String>) JdbcUtils.extractDatabaseMetaData(mJdbcTemplate.getDataSource(),
+                new DatabaseMetaDataCallback() {
+                    @Override
+                    public Object processMetaData(final DatabaseMetaData inMetaData) throws SQLException {
+                        final List<String> theTableNames = new ArrayList<String>();
+                        final ResultSet theTables = inMetaData.getTables(null, null, null, new String[] { "TABLE" });
+                        try {
+                            while (theTables.next()) {
+                                theTableNames.add(theTables.getString("TABLE_NAME"));
+                            }
+                        } finally {
+                            theTables.close();
+                        }
+                        return theTableNames;
+                    }
+                });
+        } catch (final MetaDataAccessException theException) {
+            throw new IllegalStateException("Unable to read task execution status partitions", theException);
+        }
+    }
+
+    /**
+     * Inserts the supplied reports into the partition table with supplied name.
+     *
+     * @param inPartitionTableName Partition table name.
+     * @param inStatuses Task execution status reports to insert.
+     */
+    protected void insertStatuses(final String inPartitionTableName, final List<TaskExecutionStatus> inStatuses) {
+        mJdbcTemplate.batchUpdate("insert into " + inPartitionTableName + " (" + COLUMNS
+            + ") values (?, ?, ?, ?, ?, ?)", new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(final PreparedStatement inStatement, final int inIndex) throws SQLException {
+                    final TaskExecutionStatus theStatus = inStatuses.get(inIndex);
+                    String theStatusMessage = theStatus.getStatusMessage();
+                    if (theStatusMessage != null && theStatusMessage.length() > MAX_STATUS_MESSAGE_LENGTH) {
+                        theStatusMessage = theStatusMessage.substring(0, MAX_STATUS_MESSAGE_LENGTH);
+                    }
+                    inStatement.setString(1, resultStatus(theStatus));
+                    inStatement.setString(2, theStatus.getTaskName());
+                    inStatement.setString(3, theStatusMessage);
+                    inStatement.setTimestamp(4, new Timestamp(theStatus.getTaskExecutionTime().getTime()));
+                    inStatement.setInt(5, theStatus.getMessageCount());
+                    if (theStatus.getExecutionDuration() != null) {
+                        inStatement.setLong(6, theStatus.getExecutionDuration());
+                    } else {
+                        inStatement.setNull(6, Types.BIGINT);
+                    }
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return inStatuses.size();
+                }
+            });
+    }
+
+    /**
+     * Determines the result status column value of the supplied report.
+     *
+     * @param inStatus Task execution status report.
+     * @return Result status.
+     */
+    protected static String resultStatus(final TaskExecutionStatus inStatus) {
+        if (inStatus instanceof TaskExecutionStatusNoMessageReceived) {
+            return RESULT_STATUS_NO_MESSAGE_RECEIVED;
+        }
+        return inStatus.getTaskSuccessfulFlag() ? RESULT_STATUS_SUCCESS : RESULT_STATUS_ERROR;
+    }
+
+    /**
+     * Maps rows of partition tables to task execution status reports.
+     */
+    protected static class TaskExecutionStatusRowMapper implements RowMapper<TaskExecutionStatus> {
+        @Override
+        public TaskExecutionStatus mapRow(final ResultSet inResultSet, final int inRowNumber) throws SQLException {
+            /* Task execution status reports refer to their task by name only. */
+            final MessageCowboySchedulableTaskConfig theTaskConfiguration = new MessageCowboySchedulableTaskConfig();
+            theTaskConfiguration.setName(inResultSet.getString("TaskName"));
+            final String theStatusMessage = inResultSet.getString("statusMessage");
+            final Date theTaskExecutionTime = new Date(inResultSet.getTimestamp("taskExecutionTime").getTime());
+            final int theMessageCount = inResultSet.getInt("messageCount");
+            final long theExecutionDuration = inResultSet.getLong("executionDuration");
+            final boolean theExecutionDurationKnownFlag = !inResultSet.wasNull();
+
+            final String theResultStatus = inResultSet.getString("resultStatus");
+            if (RESULT_STATUS_ERROR.equals(theResultStatus)) {
+                return theExecutionDurationKnownFlag
+                    ? new TaskExecutionStatusError(theTaskConfiguration, theStatusMessage, theTaskExecutionTime,
+                        theMessageCount, theExecutionDuration)
+                    : new TaskExecutionStatusError(theTaskConfiguration, theStatusMessage, theTaskExecutionTime,
+                        theMessageCount);
+            }
+            if (RESULT_STATUS_NO_MESSAGE_RECEIVED.equals(theResultStatus)) {
+                return theExecutionDurationKnownFlag
+                    ? new TaskExecutionStatusNoMessageReceived(theTaskConfiguration, theStatusMessage,
+                        theTaskExecutionTime, theExecutionDuration)
+                    : new TaskExecutionStatusNoMessageReceived(theTaskConfiguration, theStatusMessage,
+                        theTaskExecutionTime);
+            }
+            return theExecutionDurationKnownFlag
+                ? new TaskExecutionStatusSuccess(theTaskConfiguration, theStatusMessage, theTaskExecutionTime,
+                    theMessageCount, theExecutionDuration)
+                : new TaskExecutionStatusSuccess(theTaskConfiguration, theStatusMessage, theTaskExecutionTime,
+                    theMessageCount);
+        }
+    }
+}
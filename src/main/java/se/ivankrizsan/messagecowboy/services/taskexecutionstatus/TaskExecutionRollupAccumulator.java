@@ -0,0 +1,153 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionRollup;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
+
+/**
+ * Accumulates task execution statuses into per-task rollups, one for each
+ * period of time of a configured length.<br/>
+ * Rollups are kept in memory until their period has ended, after which they
+ * are written to the database. Thus each rollup is inserted once instead of
+ * inserting one row for each task execution.
+ *
+ * @author Ivan Krizsan
+ */
+class TaskExecutionRollupAccumulator {
+    /* Constant(s): */
+    /** Class logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutionRollupAccumulator.class);
+
+    /* Instance variable(s): */
+    /** Repository to which rollups are written. */
+    protected final TaskExecutionRollupRepository mTaskExecutionRollupRepository;
+    /** Length of rollup periods in milliseconds. */
+    protected final long mPeriodLength;
+    /** Rollups not yet written, keyed by period start time and task name. */
+    protected final TreeMap<Long, Map<String, TaskExecutionRollup>> mRollups =
+        new TreeMap<Long, Map<String, TaskExecutionRollup>>();
+
+    /**
+     * Creates an accumulator writing rollups to the supplied repository.
+     *
+     * @param inTaskExecutionRollupRepository Repository to write rollups to.
+     * @param inPeriodLength Length of rollup periods in milliseconds.
+     */
+    public TaskExecutionRollupAccumulator(final TaskExecutionRollupRepository inTaskExecutionRollupRepository,
+        final long inPeriodLength) {
+        if (inPeriodLength < 1) {
+            throw new IllegalArgumentException("Rollup period length must be at least one millisecond");
+        }
+        mTaskExecutionRollupRepository = inTaskExecutionRollupRepository;
+        mPeriodLength = inPeriodLength;
+    }
+
+    /**
+     * Adds the supplied task execution status to the rollup of its task for
+     * the period in which the task was executed.
+     *
+     * @param inTaskExecutionStatus Task execution status to add.
+     */
+    public void add(final TaskExecutionStatus inTaskExecutionStatus) {
+        final Date theTaskExecutionTime = inTaskExecutionStatus.getTaskExecutionTime();
+        final long theExecutionTime =
+            theTaskExecutionTime != null ? theTaskExecutionTime.getTime() : System.currentTimeMillis();
+        final long thePeriodStartTime = theExecutionTime - (theExecutionTime % mPeriodLength);
+
+        synchronized (mRollups) {
+            Map<String, TaskExecutionRollup> thePeriodRollups = mRollups.get(thePeriodStartTime);
+            if (thePeriodRollups == null) {
+                thePeriodRollups = new HashMap<String, TaskExecutionRollup>();
+                mRollups.put(thePeriodStartTime, thePeriodRollups);
+            }
+            TaskExecutionRollup theRollup = thePeriodRollups.get(inTaskExecutionStatus.getTaskName());
+            if (theRollup == null) {
+                theRollup = new TaskExecutionRollup(inTaskExecutionStatus.getTaskName(),
+                    new Date(thePeriodStartTime), mPeriodLength);
+                thePeriodRollups.put(inTaskExecutionStatus.getTaskName(), theRollup);
+            }
+            theRollup.add(inTaskExecutionStatus);
+        }
+    }
+
+    /**
+     * Writes the rollups which periods have ended.
+     */
+    public void writeEndedPeriods() {
+        final long theCurrentPeriodStartTime =
+            System.currentTimeMillis() - (System.currentTimeMillis() % mPeriodLength);
+        final List<TaskExecutionRollup> theRollups = new ArrayList<TaskExecutionRollup>();
+        synchronized (mRollups) {
+            final Map<Long, Map<String, TaskExecutionRollup>> theEndedPeriods =
+                mRollups.headMap(theCurrentPeriodStartTime);
+            for (Map<String, TaskExecutionRollup> thePeriodRollups : theEndedPeriods.values()) {
+                theRollups.addAll(thePeriodRollups.values());
+            }
+            theEndedPeriods.clear();
+        }
+        write(theRollups);
+    }
+
+    /**
+     * Writes all rollups, including those which periods have not yet ended.
+     * Task executions added after this will be accumulated in new rollups.
+     */
+    public void writeAll() {
+        final List<TaskExecutionRollup> theRollups = new ArrayList<TaskExecutionRollup>();
+        synchronized (mRollups) {
+            for (Map<String, TaskExecutionRollup> thePeriodRollups : mRollups.values()) {
+                theRollups.addAll(thePeriodRollups.values());
+            }
+            mRollups.clear();
+        }
+        write(theRollups);
+    }
+
+    /**
+     * Writes the supplied rollups in one transaction.<br/>
+     * Errors are logged and the rollups are discarded, in order for a failing
+     * database not to stop task execution.
+     *
+     * @param inRollups Rollups to write.
+     */
+    protected void write(final List<TaskExecutionRollup> inRollups) {
+        if (inRollups.isEmpty()) {
+            return;
+        }
+        try {
+            mTaskExecutionRollupRepository.save(inRollups);
+            LOGGER.debug("Wrote {} task execution rollups", inRollups.size());
+        } catch (final Exception theException) {
+            LOGGER.error("An error occurred writing " + inRollups.size() + " task execution rollups", theException);
+        }
+    }
+
+    public long getPeriodLength() {
+        return mPeriodLength;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
+
+import java.util.Date;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionRollup;
+
+/**
+ * Defines the properties of a repository that contains
+ * {@code TaskExecutionRollup} entities.
+ * Spring Data JPA is used to create the repository implementation.
+ *
+ * @author Ivan Krizsan
+ */
+interface TaskExecutionRollupRepository extends JpaRepository<TaskExecutionRollup, Long> {
+
+    /**
+     * Finds the task execution rollups of the task with the supplied name.
+     *
+     * @param inTaskName Task configuration name.
+     * @return Task execution rollups, ordered by period start time.
+     */
+    List<TaskExecutionRollup> findByTaskNameOrderByPeriodStartTimeAsc(final String inTaskName);
+
+    /**
+     * Finds the ids of task execution rollups which period started before the supplied point in time.
+     *
+     * @param inMaxAge Maximum age of task execution rollups that will be retained.
+     * @param inPageable Determines the maximum number of ids to retrieve.
+     * @return Ids of task execution rollups, oldest rollups first.
+     */
+    @Query("select r.id from TaskExecutionRollup r where r.periodStartTime < :maxAge order by r.periodStartTime")
+    List<Long> findIdsOlderThan(@Param("maxAge") final Date inMaxAge, final Pageable inPageable);
+
+    /**
+     * Deletes the task execution rollups with the supplied ids.
+     *
+     * @param inIds Ids of task execution rollups to delete.
+     * @return Number of deleted rollups.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from TaskExecutionRollup r where r.id in :ids")
+    int deleteByIds(@Param("ids") final List<Long> inIds);
+
+}
@@ -17,6 +17,8 @@
 package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
 
 import java.util.Date;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -34,13 +36,36 @@ import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
 interface TaskExecutionStatusRepository extends JpaRepository<TaskExecutionStatus, String> {
 
     /**
-     * Deletes task execution status entries that are older than the supplied point in time.
+     * Finds task execution status entries for task executions that took place in the supplied time range.
+     *
+     * @param inFromTime Start of time range, inclusive.
+     * @param inToTime End of time range, exclusive.
+     * @return Task execution status entries ordered by task execution time.
+     */
+    @Query("select s from TaskExecutionStatus s where s.taskExecutionTime >= :fromTime"
+        + " and s.taskExecutionTime < :toTime order by s.taskExecutionTime")
+    List<TaskExecutionStatus> findByTaskExecutionTime(@Param("fromTime") final Date inFromTime,
+        @Param("toTime") final Date inToTime);
+
+    /**
+     * Finds the ids of task execution status entries that are older than the supplied point in time.
      *
      * @param inMaxAge Maximum age of task execution status entries that will be retained.
+     * @param inPageable Determines the maximum number of ids to retrieve.
+     * @return Ids of task execution status entries, oldest entries first.
+     */
+    @Query("select s.id from TaskExecutionStatus s where s.taskExecutionTime < :maxAge order by s.taskExecutionTime")
+    List<Long> findIdsOlderThan(@Param("maxAge") final Date inMaxAge, final Pageable inPageable);
+
+    /**
+     * Deletes the task execution status entries with the supplied ids.
+     *
+     * @param inIds Ids of task execution status entries to delete.
+     * @return Number of deleted entries.
      */
     @Modifying
     @Transactional
-    @Query("delete from TaskExecutionStatus s where s.taskExecutionTime < :maxAge")
-    void deleteOlderThan(@Param("maxAge") final Date inMaxAge);
+    @Query("delete from TaskExecutionStatus s where s.id in :ids")
+    int deleteByIds(@Param("ids") final List<Long> inIds);
 
 }
\ No newline at end of file
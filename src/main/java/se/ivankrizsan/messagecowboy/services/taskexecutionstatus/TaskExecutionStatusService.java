@@ -16,6 +16,11 @@
  */
 package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
 
+import java.util.Date;
+import java.util.List;
+
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
+
 /**
  * Defines public interface for a service managing task execution status reports.
  *
@@ -25,9 +30,48 @@ public interface TaskExecutionStatusService {
 
     /**
      * Deletes all task execution status reports that are older than the supplied number of days.
+     * Implementations may delete reports in multiple transactions.
      *
      * @param inMaxAgeInDays Maximum age in days of task execution status reports to retain.
+     * @return Number of deleted task execution status reports.
+     */
+    abstract int deleteIfOlderThanDays(final int inMaxAgeInDays);
+
+    /**
+     * Deletes all task execution rollups which period started earlier than
+     * the supplied number of days ago.
+     *
+     * @param inMaxAgeInDays Maximum age in days of task execution rollups to retain.
+     * @return Number of deleted task execution rollups.
+     */
+    abstract int deleteRollupsIfOlderThanDays(final int inMaxAgeInDays);
+
+    /**
+     * Saves the supplied task execution status report.<br/>
+     * The report is inserted independently of the task configuration it
+     * belongs to, which is neither loaded nor updated. Implementations may
+     * write the report asynchronously and may count the task execution in
+     * a rollup instead of writing the individual report.
+     *
+     * @param inTaskExecutionStatus Task execution status report to save.
+     */
+    abstract void save(final TaskExecutionStatus inTaskExecutionStatus);
+
+    /**
+     * Finds task execution status reports for task executions that took
+     * place in the supplied time range.
+     * Reports saved but not yet written will not be found.
+     *
+     * @param inFromTime Start of time range, inclusive.
+     * @param inToTime End of time range, exclusive.
+     * @return Task execution status reports ordered by task execution time.
+     */
+    abstract List<TaskExecutionStatus> findByTaskExecutionTime(final Date inFromTime, final Date inToTime);
+
+    /**
+     * Writes all task execution status reports and rollups saved but not
+     * yet written before returning.
      */
-    abstract void deleteIfOlderThanDays(final int inMaxAgeInDays);
+    abstract void flush();
 
 }
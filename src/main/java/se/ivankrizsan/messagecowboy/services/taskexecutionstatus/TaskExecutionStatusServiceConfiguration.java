@@ -16,7 +16,10 @@
  */
 package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
 
+import javax.sql.DataSource;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -24,7 +27,25 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 /**
- * Spring configuration class for the task execution status service.
+ * Spring configuration class for the task execution status service.<br/>
+ * The storage layout of task execution status reports is selected using the
+ * {@value #STORAGE_PROPERTY_NAME} property. Possible values are:<br/>
+ * {@value #STORAGE_TABLE} - All reports are kept in one table. Default.<br/>
+ * {@value #STORAGE_DAILY_TABLES} - Reports are kept in one table per day.<br/>
+ * {@value #STORAGE_HOURLY_TABLES} - Reports are kept in one table per hour.<br/>
+ * The capacity of the queue of reports waiting to be written, the size of
+ * the batches in which they are written and the maximum time before a
+ * report is written are set using the
+ * TASK_EXECUTION_STATUS_QUEUE_CAPACITY, TASK_EXECUTION_STATUS_BATCH_SIZE and
+ * TASK_EXECUTION_STATUS_FLUSH_INTERVAL properties.<br/>
+ * Whether to write individual reports of successful task executions and
+ * the length of task execution rollup periods are set using the
+ * TASK_EXECUTION_KEEP_SUCCESS_STATUS_REPORTS_FLAG and
+ * TASK_EXECUTION_ROLLUP_PERIOD_LENGTH properties.<br/>
+ * The maximum number of reports or rollups deleted in one transaction and
+ * the pause between two such deletions are set using the
+ * TASK_EXECUTION_STATUS_CLEANUP_CHUNK_SIZE and
+ * TASK_EXECUTION_STATUS_CLEANUP_CHUNK_PAUSE properties.
  *
  * @author Ivan Krizsan
  */
@@ -32,18 +53,89 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 @EnableJpaRepositories(
     basePackages = { "se.ivankrizsan.messagecowboy.services.taskexecutionstatus" })
 public class TaskExecutionStatusServiceConfiguration {
+    /* Constant(s): */
+    /** Name of property selecting the storage layout of task execution status reports. */
+    public static final String STORAGE_PROPERTY_NAME = "TASK_EXECUTION_STATUS_STORAGE";
+    /** Storage layout keeping all task execution status reports in one table. */
+    public static final String STORAGE_TABLE = "table";
+    /** Storage layout keeping task execution status reports in one table per day. */
+    public static final String STORAGE_DAILY_TABLES = "daily-tables";
+    /** Storage layout keeping task execution status reports in one table per hour. */
+    public static final String STORAGE_HOURLY_TABLES = "hourly-tables";
+
+    /* Instance variable(s): */
+    @Value("${" + STORAGE_PROPERTY_NAME + ":" + STORAGE_TABLE + "}")
+    protected String storage;
+    @Autowired
+    protected DataSource dataSource;
     @Autowired
     protected TaskExecutionStatusRepository taskExecutionStatusRepository;
+    @Autowired
+    protected TaskExecutionRollupRepository taskExecutionRollupRepository;
+    @Value("${TASK_EXECUTION_STATUS_QUEUE_CAPACITY:"
+        + TaskExecutionStatusServiceImpl.DEFAULT_STATUS_QUEUE_CAPACITY + "}")
+    protected int statusQueueCapacity;
+    @Value("${TASK_EXECUTION_STATUS_BATCH_SIZE:" + TaskExecutionStatusServiceImpl.DEFAULT_STATUS_BATCH_SIZE + "}")
+    protected int statusBatchSize;
+    @Value("${TASK_EXECUTION_STATUS_FLUSH_INTERVAL:"
+        + TaskExecutionStatusServiceImpl.DEFAULT_STATUS_FLUSH_INTERVAL + "}")
+    protected long statusFlushInterval;
+    @Value("${TASK_EXECUTION_KEEP_SUCCESS_STATUS_REPORTS_FLAG:true}")
+    protected boolean keepSuccessStatusReports;
+    @Value("${TASK_EXECUTION_ROLLUP_PERIOD_LENGTH:"
+        + TaskExecutionStatusServiceImpl.DEFAULT_ROLLUP_PERIOD_LENGTH + "}")
+    protected long rollupPeriodLength;
+    @Value("${TASK_EXECUTION_STATUS_CLEANUP_CHUNK_SIZE:"
+        + ChunkedDeleter.DEFAULT_CHUNK_SIZE + "}")
+    protected int cleanupChunkSize;
+    @Value("${TASK_EXECUTION_STATUS_CLEANUP_CHUNK_PAUSE:"
+        + ChunkedDeleter.DEFAULT_CHUNK_PAUSE + "}")
+    protected long cleanupChunkPause;
 
     /**
      * Service that stores and retrieves task execution status information.
+     * Task execution status reports are written asynchronously while the
+     * service is started.
      */
-    @Bean
+    @Bean(initMethod = "start", destroyMethod = "stop")
     @Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
     public TaskExecutionStatusService taskExecutionStatusService() {
         final TaskExecutionStatusServiceImpl theService = new TaskExecutionStatusServiceImpl();
-        theService.setTaskExecutionStatusRepository(taskExecutionStatusRepository);
+        theService.setTaskExecutionStatusStore(createTaskExecutionStatusStore());
+        theService.setTaskExecutionRollupRepository(taskExecutionRollupRepository);
+        theService.setStatusQueueCapacity(statusQueueCapacity);
+        theService.setStatusBatchSize(statusBatchSize);
+        theService.setStatusFlushInterval(statusFlushInterval);
+        theService.setKeepSuccessStatusReports(keepSuccessStatusReports);
+        theService.setRollupPeriodLength(rollupPeriodLength);
+        theService.setRollupCleanupChunkSize(cleanupChunkSize);
+        theService.setRollupCleanupChunkPause(cleanupChunkPause);
 
         return theService;
     }
+
+    /**
+     * Creates the store in which task execution status reports are kept,
+     * according to the configured storage layout.
+     *
+     * @return Task execution status store.
+     */
+    protected TaskExecutionStatusStore createTaskExecutionStatusStore() {
+        final String theStorage = storage.trim();
+        if (STORAGE_TABLE.equals(theStorage)) {
+            final JpaTaskExecutionStatusStore theStore = new JpaTaskExecutionStatusStore(taskExecutionStatusRepository);
+            theStore.setCleanupChunkSize(cleanupChunkSize);
+            theStore.setCleanupChunkPause(cleanupChunkPause);
+            return theStore;
+        }
+        if (STORAGE_DAILY_TABLES.equals(theStorage)) {
+            return new PartitionedTaskExecutionStatusStore(dataSource,
+                PartitionedTaskExecutionStatusStore.PartitionPeriod.DAY);
+        }
+        if (STORAGE_HOURLY_TABLES.equals(theStorage)) {
+            return new PartitionedTaskExecutionStatusStore(dataSource,
+                PartitionedTaskExecutionStatusStore.PartitionPeriod.HOUR);
+        }
+        throw new Error("Unknown task execution status storage: " + theStorage);
+    }
 }
@@ -17,13 +17,35 @@
 package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
 
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusError;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusNoMessageReceived;
+
 /**
- * Implements service managing task execution status data.
+ * Implements service managing task execution status data.<br/>
+ * Task execution status reports are kept in a {@link TaskExecutionStatusStore},
+ * which determines the storage layout.<br/>
+ * When started, task execution status reports are written asynchronously
+ * in batches by a {@link TaskExecutionStatusWriter}, in order for database
+ * latency not to delay the threads executing tasks.<br/>
+ * All task executions are counted in per-task rollups, one for each rollup
+ * period. Individual reports are only written for errors and, if so
+ * configured, for successful executions during which messages were moved.<br/>
+ * Rollups are written when their period has ended, by the writer when
+ * started and otherwise when a later task execution status is saved.
+ * Rollups which periods have not ended are written when the service is
+ * flushed or stopped.<br/>
+ * Old rollups are deleted in chunks by a {@link ChunkedDeleter}, in the
+ * same manner as old reports kept in a single table.
  *
  * @author Ivan Krizsan
  */
@@ -32,26 +54,232 @@ class TaskExecutionStatusServiceImpl implements TaskExecutionStatusService {
     /* Constant(s): */
     /** Class logger. */
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutionStatusServiceImpl.class);
+    /** Default maximum number of task execution status reports waiting to be written. */
+    public static final int DEFAULT_STATUS_QUEUE_CAPACITY = 10000;
+    /** Default maximum number of task execution status reports written in one batch. */
+    public static final int DEFAULT_STATUS_BATCH_SIZE = 100;
+    /** Default maximum time in milliseconds before a task execution status report is written. */
+    public static final long DEFAULT_STATUS_FLUSH_INTERVAL = 1000L;
+    /** Default length in milliseconds of task execution rollup periods. */
+    public static final long DEFAULT_ROLLUP_PERIOD_LENGTH = 60000L;
 
     /* Instance variable(s): */
-    protected TaskExecutionStatusRepository mTaskExecutionStatusRepository;
+    protected TaskExecutionStatusStore mTaskExecutionStatusStore;
+    protected TaskExecutionRollupRepository mTaskExecutionRollupRepository;
+    /** Maximum number of task execution status reports waiting to be written. */
+    protected int mStatusQueueCapacity = DEFAULT_STATUS_QUEUE_CAPACITY;
+    /** Maximum number of task execution status reports written in one batch. */
+    protected int mStatusBatchSize = DEFAULT_STATUS_BATCH_SIZE;
+    /** Maximum time in milliseconds before a task execution status report is written. */
+    protected long mStatusFlushInterval = DEFAULT_STATUS_FLUSH_INTERVAL;
+    /** Length in milliseconds of task execution rollup periods. */
+    protected long mRollupPeriodLength = DEFAULT_ROLLUP_PERIOD_LENGTH;
+    /** Flag indicating whether to write individual reports of successful task executions. */
+    protected boolean mKeepSuccessStatusReports = true;
+    /** Asynchronous task execution status writer, null if not started. */
+    protected TaskExecutionStatusWriter mStatusWriter;
+    /** Accumulator of task execution rollups, null until first needed. */
+    protected TaskExecutionRollupAccumulator mRollupAccumulator;
+    /** Deletes old task execution rollups in chunks. */
+    protected final ChunkedDeleter mRollupCleanupDeleter = new ChunkedDeleter("Task execution rollup");
+
+    /**
+     * Starts asynchronous writing of task execution status reports.
+     */
+    public synchronized void start() {
+        if (mStatusWriter == null) {
+            mStatusWriter = new TaskExecutionStatusWriter(mTaskExecutionStatusStore,
+                obtainRollupAccumulator(), mStatusQueueCapacity, mStatusBatchSize, mStatusFlushInterval);
+            mStatusWriter.start();
+        }
+    }
+
+    /**
+     * Stops asynchronous writing of task execution status reports after
+     * having written all pending reports.
+     */
+    public synchronized void stop() {
+        if (mStatusWriter != null) {
+            mStatusWriter.stop();
+            mStatusWriter = null;
+        } else {
+            flush();
+        }
+    }
+
+    @Override
+    public int deleteIfOlderThanDays(final int inMaxAgeInDays) {
+        final Calendar theCalendar = Calendar.getInstance();
+        theCalendar.add(Calendar.DAY_OF_YEAR, -inMaxAgeInDays);
+        final Date theMaxAge = theCalendar.getTime();
+        final long theStartTime = System.currentTimeMillis();
+
+        LOGGER.debug("Deleting task execution status entries from earlier than {}", theMaxAge);
+
+        final int theDeletedCount = mTaskExecutionStatusStore.deleteOlderThan(theMaxAge);
+
+        LOGGER.info("Deleted {} task execution status entries from earlier than {} in {} ms", theDeletedCount,
+            theMaxAge, System.currentTimeMillis() - theStartTime);
+        return theDeletedCount;
+    }
 
     @Override
-    public synchronized void deleteIfOlderThanDays(final int inMaxAgeInDays) {
+    public int deleteRollupsIfOlderThanDays(final int inMaxAgeInDays) {
         final Calendar theCalendar = Calendar.getInstance();
         theCalendar.add(Calendar.DAY_OF_YEAR, -inMaxAgeInDays);
+        final long theStartTime = System.currentTimeMillis();
+
+        LOGGER.debug("Deleting task execution rollups from earlier than {}", theCalendar.getTime());
+
+        final int theDeletedCount = mRollupCleanupDeleter.delete(new ChunkedDeleter.ChunkOperations() {
+            @Override
+            public List<Long> findIds(final Pageable inChunk) {
+                return mTaskExecutionRollupRepository.findIdsOlderThan(theCalendar.getTime(), inChunk);
+            }
+
+            @Override
+            public int deleteByIds(final List<Long> inIds) {
+                return mTaskExecutionRollupRepository.deleteByIds(inIds);
+            }
+        });
 
-        LOGGER.debug("Deleting task execution status entries from earlier than {}", theCalendar.getTime());
+        LOGGER.info("Deleted {} task execution rollups from earlier than {} in {} ms", theDeletedCount,
+            theCalendar.getTime(), System.currentTimeMillis() - theStartTime);
+        return theDeletedCount;
+    }
+
+    @Override
+    public void save(final TaskExecutionStatus inTaskExecutionStatus) {
+        final TaskExecutionRollupAccumulator theRollupAccumulator = obtainRollupAccumulator();
+        theRollupAccumulator.add(inTaskExecutionStatus);
+        final boolean theWriteReportFlag = isReportToBeWritten(inTaskExecutionStatus);
+
+        final TaskExecutionStatusWriter theStatusWriter = mStatusWriter;
+        if (theStatusWriter != null) {
+            if (theWriteReportFlag) {
+                theStatusWriter.enqueue(inTaskExecutionStatus);
+            }
+        } else {
+            if (theWriteReportFlag) {
+                mTaskExecutionStatusStore.save(Collections.singletonList(inTaskExecutionStatus));
+            }
+            /* Rollups are written in one batch when their period has ended, not on every save. */
+            theRollupAccumulator.writeEndedPeriods();
+        }
+    }
+
+    @Override
+    public List<TaskExecutionStatus> findByTaskExecutionTime(final Date inFromTime, final Date inToTime) {
+        return mTaskExecutionStatusStore.findByTaskExecutionTime(inFromTime, inToTime);
+    }
+
+    @Override
+    public void flush() {
+        final TaskExecutionStatusWriter theStatusWriter = mStatusWriter;
+        if (theStatusWriter != null) {
+            theStatusWriter.flush();
+        } else if (mRollupAccumulator != null) {
+            mRollupAccumulator.writeAll();
+        }
+    }
+
+    /**
+     * Determines whether an individual report is to be written for the
+     * supplied task execution status, in addition to it being counted in
+     * the rollup of its task.
+     *
+     * @param inTaskExecutionStatus Task execution status.
+     * @return True if report is to be written, false otherwise.
+     */
+    protected boolean isReportToBeWritten(final TaskExecutionStatus inTaskExecutionStatus) {
+        if (inTaskExecutionStatus instanceof TaskExecutionStatusError) {
+            return true;
+        }
+        return mKeepSuccessStatusReports && !(inTaskExecutionStatus instanceof TaskExecutionStatusNoMessageReceived);
+    }
+
+    /**
+     * Retrieves the task execution rollup accumulator, creating it if it
+     * does not exist.
+     *
+     * @return Task execution rollup accumulator.
+     */
+    protected synchronized TaskExecutionRollupAccumulator obtainRollupAccumulator() {
+        if (mRollupAccumulator == null) {
+            mRollupAccumulator = new TaskExecutionRollupAccumulator(mTaskExecutionRollupRepository, mRollupPeriodLength);
+        }
+        return mRollupAccumulator;
+    }
+
+    public TaskExecutionStatusStore getTaskExecutionStatusStore() {
+        return mTaskExecutionStatusStore;
+    }
+
+    public void setTaskExecutionStatusStore(final TaskExecutionStatusStore inTaskExecutionStatusStore) {
+        mTaskExecutionStatusStore = inTaskExecutionStatusStore;
+    }
+
+    public TaskExecutionRollupRepository getTaskExecutionRollupRepository() {
+        return mTaskExecutionRollupRepository;
+    }
+
+    public void setTaskExecutionRollupRepository(final TaskExecutionRollupRepository inTaskExecutionRollupRepository) {
+        mTaskExecutionRollupRepository = inTaskExecutionRollupRepository;
+    }
+
+    public int getStatusQueueCapacity() {
+        return mStatusQueueCapacity;
+    }
+
+    public void setStatusQueueCapacity(final int inStatusQueueCapacity) {
+        mStatusQueueCapacity = inStatusQueueCapacity;
+    }
+
+    public int getStatusBatchSize() {
+        return mStatusBatchSize;
+    }
+
+    public void setStatusBatchSize(final int inStatusBatchSize) {
+        mStatusBatchSize = inStatusBatchSize;
+    }
+
+    public long getStatusFlushInterval() {
+        return mStatusFlushInterval;
+    }
+
+    public void setStatusFlushInterval(final long inStatusFlushInterval) {
+        mStatusFlushInterval = inStatusFlushInterval;
+    }
+
+    public long getRollupPeriodLength() {
+        return mRollupPeriodLength;
+    }
+
+    public void setRollupPeriodLength(final long inRollupPeriodLength) {
+        mRollupPeriodLength = inRollupPeriodLength;
+    }
+
+    public int getRollupCleanupChunkSize() {
+        return mRollupCleanupDeleter.getChunkSize();
+    }
+
+    public void setRollupCleanupChunkSize(final int inRollupCleanupChunkSize) {
+        mRollupCleanupDeleter.setChunkSize(inRollupCleanupChunkSize);
+    }
+
+    public long getRollupCleanupChunkPause() {
+        return mRollupCleanupDeleter.getChunkPause();
+    }
 
-        mTaskExecutionStatusRepository.deleteOlderThan(theCalendar.getTime());
-        mTaskExecutionStatusRepository.flush();
+    public void setRollupCleanupChunkPause(final long inRollupCleanupChunkPause) {
+        mRollupCleanupDeleter.setChunkPause(inRollupCleanupChunkPause);
     }
 
-    public TaskExecutionStatusRepository getTaskExecutionStatusRepository() {
-        return mTaskExecutionStatusRepository;
+    public boolean isKeepSuccessStatusReports() {
+        return mKeepSuccessStatusReports;
     }
 
-    public void setTaskExecutionStatusRepository(final TaskExecutionStatusRepository inTaskExecutionStatusRepository) {
-        mTaskExecutionStatusRepository = inTaskExecutionStatusRepository;
+    public void setKeepSuccessStatusReports(final boolean inKeepSuccessStatusReports) {
+        mKeepSuccessStatusReports = inKeepSuccessStatusReports;
     }
 }
@@ -0,0 +1,58 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
+
+import java.util.Date;
+import java.util.List;
+
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
+
+/**
+ * Defines the properties of a storage in which task execution status
+ * reports are kept.<br/>
+ * Allows for the task execution status service to store reports using
+ * different storage layouts.
+ *
+ * @author Ivan Krizsan
+ */
+interface TaskExecutionStatusStore {
+
+    /**
+     * Saves the supplied task execution status reports in one transaction.
+     *
+     * @param inTaskExecutionStatuses Task execution status reports to save.
+     */
+    abstract void save(final List<TaskExecutionStatus> inTaskExecutionStatuses);
+
+    /**
+     * Deletes task execution status reports that are older than the supplied point in time.
+     *
+     * @param inMaxAge Maximum age of task execution status reports that will be retained.
+     * @return Number of deleted reports.
+     */
+    abstract int deleteOlderThan(final Date inMaxAge);
+
+    /**
+     * Finds task execution status reports for task executions that took
+     * place in the supplied time range.
+     *
+     * @param inFromTime Start of time range, inclusive.
+     * @param inToTime End of time range, exclusive.
+     * @return Task execution status reports ordered by task execution time.
+     */
+    abstract List<TaskExecutionStatus> findByTaskExecutionTime(final Date inFromTime, final Date inToTime);
+}
@@ -0,0 +1,371 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusNoMessageReceived;
+
+/**
+ * Writes task execution status reports to the database asynchronously.<br/>
+ * Reports are placed in a bounded queue from which a writer thread inserts
+ * them in batches. A batch is written when it is full or when the flush
+ * interval has elapsed since the first report of the batch was taken from
+ * the queue.<br/>
+ * When the queue is full, reports indicating that no message was received
+ * are discarded first, since they are the most frequent and least
+ * informative reports. If the queue still is full, the thread enqueuing a
+ * report waits until there is room in the queue.<br/>
+ * Reports enqueued while the writer thread is not running are written
+ * immediately. Stopping the writer waits for reports that are being
+ * enqueued, in order for all reports enqueued before the writer is stopped
+ * to be written by the final flush.<br/>
+ * If the writer has a rollup accumulator, the writer thread also writes the
+ * rollups which periods have ended.
+ *
+ * @author Ivan Krizsan
+ */
+class TaskExecutionStatusWriter implements Runnable {
+    /* Constant(s): */
+    /** Class logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutionStatusWriter.class);
+    /** Name of the writer thread. */
+    public static final String WRITER_THREAD_NAME = "MessageCowboyStatusWriter";
+    /** Maximum time in milliseconds to wait for the writer thread to finish when stopping. */
+    public static final long STOP_TIMEOUT = 30000L;
+
+    /* Instance variable(s): */
+    /** Store to which task execution status reports are written. */
+    protected final TaskExecutionStatusStore mTaskExecutionStatusStore;
+    /** Accumulator which rollups are written by the writer, null if none. */
+    protected final TaskExecutionRollupAccumulator mRollupAccumulator;
+    /** Task execution status reports waiting to be written. */
+    protected final BlockingQueue<TaskExecutionStatus> mQueue;
+    /** Maximum number of reports written in one batch. */
+    protected final int mBatchSize;
+    /** Maximum time in milliseconds a report waits for its batch to fill up. */
+    protected final long mFlushInterval;
+    /** Lock held while reports are taken from the queue and written. */
+    protected final Object mWriteLock = new Object();
+    /**
+     * Lock which read lock is held while reports are enqueued and which write
+     * lock is held while the writer thread is started or stopped.
+     */
+    protected final ReadWriteLock mStateLock = new ReentrantReadWriteLock();
+    /** Number of reports discarded because the queue was full. */
+    protected final AtomicLong mDiscardedCount = new AtomicLong();
+    /** Number of discarded reports last logged. */
+    protected long mLoggedDiscardedCount;
+    /** Thread writing queued reports, null if not running. */
+    protected volatile Thread mWriterThread;
+
+    /**
+     * Creates a writer writing to the supplied store.
+     *
+     * @param inTaskExecutionStatusStore Store to write reports to.
+     * @param inQueueCapacity Maximum number of reports waiting to be written.
+     * @param inBatchSize Maximum number of reports written in one batch.
+     * @param inFlushInterval Maximum time in milliseconds a report waits for its
+     * batch to fill up before being written.
+     */
+    public TaskExecutionStatusWriter(final TaskExecutionStatusStore inTaskExecutionStatusStore,
+        final int inQueueCapacity, final int inBatchSize, final long inFlushInterval) {
+        this(inTaskExecutionStatusStore, null, inQueueCapacity, inBatchSize, inFlushInterval);
+    }
+
+    /**
+     * Creates a writer writing to the supplied store and writing the
+     * rollups of the supplied accumulator.
+     *
+     * @param inTaskExecutionStatusStore Store to write reports to.
+     * @param inRollupAccumulator Accumulator which rollups to write, or null.
+     * @param inQueueCapacity Maximum number of reports waiting to be written.
+     * @param inBatchSize Maximum number of reports written in one batch.
+     * @param inFlushInterval Maximum time in milliseconds a report waits for its
+     * batch to fill up before being written.
+     */
+    public TaskExecutionStatusWriter(final TaskExecutionStatusStore inTaskExecutionStatusStore,
+        final TaskExecutionRollupAccumulator inRollupAccumulator, final int inQueueCapacity,
+        final int inBatchSize, final long inFlushInterval) {
+        if (inQueueCapacity < 1 || inBatchSize < 1) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be at least one");
+        }
+        if (inFlushInterval < 1) {
+            throw new IllegalArgumentException("Flush interval must be at least one millisecond");
+        }
+
+        mTaskExecutionStatusStore = inTaskExecutionStatusStore;
+        mRollupAccumulator = inRollupAccumulator;
+        mQueue = new LinkedBlockingQueue<TaskExecutionStatus>(inQueueCapacity);
+        mBatchSize = inBatchSize;
+        mFlushInterval = inFlushInterval;
+    }
+
+    /**
+     * Starts the writer thread. Does nothing if already started.
+     */
+    public void start() {
+        mStateLock.writeLock().lock();
+        try {
+            if (mWriterThread == null) {
+                mWriterThread = new Thread(this, WRITER_THREAD_NAME);
+                mWriterThread.setDaemon(true);
+                mWriterThread.start();
+            }
+        } finally {
+            mStateLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops the writer thread, waiting for it to write the batch it is
+     * currently assembling, and then writes all remaining queued reports.
+     */
+    public void stop() {
+        final Thread theWriterThread;
+        mStateLock.writeLock().lock();
+        try {
+            theWriterThread = mWriterThread;
+            mWriterThread = null;
+        } finally {
+            mStateLock.writeLock().unlock();
+        }
+
+        if (theWriterThread != null) {
+            try {
+                theWriterThread.join(STOP_TIMEOUT);
+            } catch (final InterruptedException theException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Enqueues the supplied report for writing, or writes it immediately if
+     * the writer thread is not running.
+     *
+     * @param inTaskExecutionStatus Report to write.
+     */
+    public void enqueue(final TaskExecutionStatus inTaskExecutionStatus) {
+        /* Prevents the writer from being stopped between checking that it runs and enqueuing the report. */
+        mStateLock.readLock().lock();
+        try {
+            if (mWriterThread != null && offer(inTaskExecutionStatus)) {
+                return;
+            }
+        } finally {
+            mStateLock.readLock().unlock();
+        }
+        writeBatch(Collections.singletonList(inTaskExecutionStatus));
+    }
+
+    /**
+     * Places the supplied report in the queue, discarding reports indicating
+     * that no message was received or waiting for room in the queue if it is full.
+     *
+     * @param inTaskExecutionStatus Report to enqueue.
+     * @return True if the report was enqueued or discarded, false if it is
+     * to be written immediately since the writer thread no longer runs or
+     * the current thread was interrupted.
+     */
+    protected boolean offer(final TaskExecutionStatus inTaskExecutionStatus) {
+        if (mQueue.offer(inTaskExecutionStatus)) {
+            return true;
+        }
+
+        /* Queue is full, make room by discarding a report that no message was received. */
+        if (inTaskExecutionStatus instanceof TaskExecutionStatusNoMessageReceived) {
+            mDiscardedCount.incrementAndGet();
+            return true;
+        }
+        if (discardNoMessageReceivedStatus() && mQueue.offer(inTaskExecutionStatus)) {
+            return true;
+        }
+
+        /* Wait for the writer thread to make room in the queue. */
+        try {
+            while (mWriterThread != null) {
+                if (mQueue.offer(inTaskExecutionStatus, mFlushInterval, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (final InterruptedException theException) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Removes one report indicating that no message was received from the queue.
+     *
+     * @return True if a report was removed, false if there was no such report in the queue.
+     */
+    protected boolean discardNoMessageReceivedStatus() {
+        final Iterator<TaskExecutionStatus> theIterator = mQueue.iterator();
+        while (theIterator.hasNext()) {
+            final TaskExecutionStatus theQueuedStatus = theIterator.next();
+            if (theQueuedStatus instanceof TaskExecutionStatusNoMessageReceived
+                && mQueue.remove(theQueuedStatus)) {
+                mDiscardedCount.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes all queued reports, including those in the batch the writer
+     * thread currently is assembling, before returning.
+     * All rollups, including those which periods have not ended, are
+     * also written.
+     */
+    public void flush() {
+        synchronized (mWriteLock) {
+            final List<TaskExecutionStatus> theBatch = new ArrayList<TaskExecutionStatus>(mBatchSize);
+            while (mQueue.drainTo(theBatch, mBatchSize) > 0) {
+                writeBatch(theBatch);
+                theBatch.clear();
+            }
+            if (mRollupAccumulator != null) {
+                mRollupAccumulator.writeAll();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        LOGGER.debug("Task execution status writer started");
+
+        final List<TaskExecutionStatus> theBatch = new ArrayList<TaskExecutionStatus>(mBatchSize);
+        while (mWriterThread == Thread.currentThread()) {
+            try {
+                synchronized (mWriteLock) {
+                    final TaskExecutionStatus theFirstStatus = mQueue.poll(mFlushInterval, TimeUnit.MILLISECONDS);
+                    if (theFirstStatus != null) {
+                        theBatch.add(theFirstStatus);
+                        fillBatch(theBatch, System.currentTimeMillis() + mFlushInterval);
+                        writeBatch(theBatch);
+                        theBatch.clear();
+                    }
+                    if (mRollupAccumulator != null) {
+                        mRollupAccumulator.writeEndedPeriods();
+                    }
+                }
+            } catch (final InterruptedException theException) {
+                LOGGER.warn("Task execution status writer interrupted");
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                /* Write any partially assembled batch if interrupted. */
+                if (!theBatch.isEmpty()) {
+                    writeBatch(theBatch);
+                    theBatch.clear();
+                }
+            }
+            logDiscardedStatuses();
+        }
+
+        /*
+         * Reports enqueued after an interruption are to be written immediately.
+         * The state lock is not acquired, since threads waiting for room in the
+         * queue hold its read lock. Reports enqueued concurrently with the
+         * final flush are written when the writer is stopped or flushed.
+         */
+        if (mWriterThread == Thread.currentThread()) {
+            mWriterThread = null;
+            flush();
+        }
+        LOGGER.debug("Task execution status writer stopped");
+    }
+
+    /**
+     * Adds queued reports to the supplied batch until it is full or the supplied
+     * flush time has passed.
+     *
+     * @param inBatch Batch to fill.
+     * @param inFlushTime Time in milliseconds at which the batch is to be written
+     * even if not full.
+     * @throws InterruptedException If interrupted while waiting for reports.
+     */
+    protected void fillBatch(final List<TaskExecutionStatus> inBatch, final long inFlushTime)
+        throws InterruptedException {
+        while (inBatch.size() < mBatchSize) {
+            mQueue.drainTo(inBatch, mBatchSize - inBatch.size());
+            final long theRemainingTime = inFlushTime - System.currentTimeMillis();
+            if (inBatch.size() >= mBatchSize || theRemainingTime <= 0) {
+                break;
+            }
+
+            final TaskExecutionStatus theStatus = mQueue.poll(theRemainingTime, TimeUnit.MILLISECONDS);
+            if (theStatus == null) {
+                break;
+            }
+            inBatch.add(theStatus);
+        }
+    }
+
+    /**
+     * Writes the supplied reports in one transaction.<br/>
+     * Errors are logged and the reports are discarded, in order for a failing
+     * database not to stop task execution.
+     *
+     * @param inBatch Reports to write.
+     */
+    protected void writeBatch(final List<TaskExecutionStatus> inBatch) {
+        try {
+            mTaskExecutionStatusStore.save(inBatch);
+            LOGGER.debug("Wrote {} task execution status reports", inBatch.size());
+        } catch (final Exception theException) {
+            LOGGER.error("An error occurred writing " + inBatch.size() + " task execution status reports",
+                theException);
+        }
+    }
+
+    /**
+     * Logs the number of reports discarded since last logged, if any.
+     */
+    protected void logDiscardedStatuses() {
+        final long theDiscardedCount = mDiscardedCount.get();
+        if (theDiscardedCount != mLoggedDiscardedCount) {
+            LOGGER.warn("Task execution status queue full, discarded {} reports that no message was received",
+                theDiscardedCount - mLoggedDiscardedCount);
+            mLoggedDiscardedCount = theDiscardedCount;
+        }
+    }
+
+    public long getDiscardedCount() {
+        return mDiscardedCount.get();
+    }
+
+    public int getQueueSize() {
+        return mQueue.size();
+    }
+}
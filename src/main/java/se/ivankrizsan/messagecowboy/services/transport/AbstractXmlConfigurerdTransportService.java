@@ -18,26 +18,59 @@ package se.ivankrizsan.messagecowboy.services.transport;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Required;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.util.FileCopyUtils;
 
+import se.ivankrizsan.messagecowboy.domain.entities.MoverMessage;
+import se.ivankrizsan.messagecowboy.services.transport.exceptions.TransportException;
+
 /**
  * Implements an abstract {@link TransportService} based on refreshable XML configuration files.
  * Allows detecting reloading changed configuration files.
+ * If all configuration resources are located using "file:" location patterns,
+ * the directories of the configuration resources are watched for changes and
+ * the configuration resources are only examined after a change.
+ * Otherwise, only configuration resources which length or last modification
+ * time has changed are read in order to calculate their checksums.
+ * Beans in the application context in which the transport service is
+ * defined, such as the shared JMS connection factory, may be referenced
+ * from the XML configuration files.
  */
-public abstract class AbstractXmlConfigurerdTransportService implements TransportService {
+public abstract class AbstractXmlConfigurerdTransportService implements TransportService,
+    ApplicationContextAware {
 
     /* Constant(s): */
     /** Class logger. */
     static final Logger LOGGER = LoggerFactory
         .getLogger(AbstractXmlConfigurerdTransportService.class);
+    /**
+     * Timeout in milliseconds waiting for each message following the first
+     * message when receiving a batch of messages in one transaction.
+     */
+    protected static final long BATCH_NEXT_MESSAGE_TIMEOUT = 100L;
+    /**
+     * Default time in milliseconds without further changes to watched configuration
+     * resources before the changes are reported.
+     */
+    protected static final long DEFAULT_CONFIGURATION_WATCH_DEBOUNCE_PERIOD = 2000L;
 
     /**
      * Location patterns specifying the locations of XML configuration
@@ -47,10 +80,54 @@ public abstract class AbstractXmlConfigurerdTransportService implements Transpor
      */
     protected List<String> mConfigResourcesLocationPatterns;
 
+    /**
+     * Lock guarding the transport engine (client, context etc) of the
+     * transport service.<br/>
+     * The read lock is to be held while dispatching or receiving messages,
+     * which allows multiple tasks to move messages in parallel.
+     * The read lock is also held while continuous moves are activated or
+     * deactivated, so that the transport engine is not replaced meanwhile.
+     * The write lock is to be held while the transport engine is created,
+     * replaced or disposed of.
+     */
+    protected final ReadWriteLock mTransportEngineLock = new ReentrantReadWriteLock();
+
+    /**
+     * Definitions of the currently started continuous moves, keyed by
+     * move id. Used to re-create continuous moves when the transport engine
+     * has been replaced.
+     */
+    protected final Map<String, ContinuousMoveDefinition> mContinuousMoves =
+        new LinkedHashMap<String, ContinuousMoveDefinition>();
+
+    /**
+     * Application context in which the transport service is defined, or null.
+     * To be used as parent of the contexts created from the XML configuration
+     * files, which survives refreshes of the transport service configuration.
+     */
+    protected ApplicationContext mParentApplicationContext;
+
     /** Information about currently used XML configuration resources. */
     protected List<XmlConfigurationResourceInfo> mConfigurationResourceInfos =
         new ArrayList<XmlConfigurationResourceInfo>();
 
+    /**
+     * Information about the configuration resources found when configuration
+     * resources were last examined, keyed by resource URL in the order the
+     * configuration resources were found.
+     */
+    protected Map<String, XmlConfigurationResourceInfo> mConfigurationResourceInfosByURL =
+        new LinkedHashMap<String, XmlConfigurationResourceInfo>();
+
+    /** Watches the configuration resource directories for changes, or null if not watching. */
+    protected ConfigurationResourceWatcher mConfigurationResourceWatcher;
+
+    /**
+     * Time in milliseconds without further changes to watched configuration
+     * resources before the changes are reported.
+     */
+    protected long mConfigurationWatchDebouncePeriod = DEFAULT_CONFIGURATION_WATCH_DEBOUNCE_PERIOD;
+
     /**
      * Sets the configuration resource location patterns that specifies where
      * to look for connector definition resources (commonly files).
@@ -67,6 +144,11 @@ public abstract class AbstractXmlConfigurerdTransportService implements Transpor
         mConfigResourcesLocationPatterns = inConfigurationResourceLocationPatterns;
     }
 
+    @Override
+    public void setApplicationContext(final ApplicationContext inApplicationContext) throws BeansException {
+        mParentApplicationContext = inApplicationContext;
+    }
+
     /**
      * Retrieves the configuration resource location patterns that specifies where
      * to look for connector definition resources (commonly files).
@@ -77,9 +159,181 @@ public abstract class AbstractXmlConfigurerdTransportService implements Transpor
         return mConfigResourcesLocationPatterns;
     }
 
+    /**
+     * Retrieves the time in milliseconds without further changes to watched
+     * configuration resources before the changes are reported.
+     *
+     * @return Debounce period in milliseconds.
+     */
+    public long getConfigurationWatchDebouncePeriod() {
+        return mConfigurationWatchDebouncePeriod;
+    }
+
+    /**
+     * Sets the time in milliseconds without further changes to watched
+     * configuration resources before the changes are reported.
+     *
+     * @param inConfigurationWatchDebouncePeriod Debounce period in milliseconds.
+     */
+    public void setConfigurationWatchDebouncePeriod(final long inConfigurationWatchDebouncePeriod) {
+        mConfigurationWatchDebouncePeriod = inConfigurationWatchDebouncePeriod;
+    }
+
+    /**
+     * Dispatches the supplied messages one by one.
+     * Subclasses override this method for endpoints supporting transactions.
+     */
+    @SuppressWarnings("rawtypes")
+    @Override
+    public void dispatchBatch(final List<MoverMessage> inMessages, final String inEndpointURI)
+        throws TransportException {
+        for (MoverMessage theMessage : inMessages) {
+            dispatch(theMessage, inEndpointURI);
+        }
+    }
+
+    /**
+     * Receives messages one by one until no message is received or the
+     * maximum number of messages has been received.
+     * Subclasses override this method for endpoints supporting transactions.
+     */
+    @SuppressWarnings("rawtypes")
+    @Override
+    public List<MoverMessage> receiveBatch(final String inEndpointURI, final long inTimeout,
+        final int inMaxMessages) throws TransportException {
+        final List<MoverMessage> theReceivedMessages = new ArrayList<MoverMessage>();
+        while (theReceivedMessages.size() < inMaxMessages) {
+            final MoverMessage theMessage = receive(inEndpointURI, inTimeout);
+            if (theMessage == null) {
+                break;
+            }
+            theReceivedMessages.add(theMessage);
+        }
+        return theReceivedMessages;
+    }
+
+    /**
+     * Receives a batch of messages and then dispatches the received messages.
+     * Subclasses override this method for inbound endpoints supporting
+     * transactions.
+     */
+    @SuppressWarnings("rawtypes")
+    @Override
+    public int moveBatch(final String inInboundEndpointURI, final String inOutboundEndpointURI,
+        final long inTimeout, final int inMaxMessages) throws TransportException {
+        final List<MoverMessage> theReceivedMessages = receiveBatch(inInboundEndpointURI, inTimeout, inMaxMessages);
+        if (!theReceivedMessages.isEmpty()) {
+            dispatchBatch(theReceivedMessages, inOutboundEndpointURI);
+        }
+        return theReceivedMessages.size();
+    }
+
+    @Override
+    public synchronized void startContinuousMove(final String inMoveId,
+        final String inInboundEndpointURI, final String inOutboundEndpointURI,
+        final ContinuousMoveListener inListener) throws TransportException {
+        final ContinuousMoveDefinition theNewMove =
+            new ContinuousMoveDefinition(inMoveId, inInboundEndpointURI, inOutboundEndpointURI, inListener);
+        final ContinuousMoveDefinition theExistingMove = mContinuousMoves.get(inMoveId);
+
+        if (!theNewMove.equals(theExistingMove)) {
+            mTransportEngineLock.readLock().lock();
+            try {
+                if (theExistingMove != null) {
+                    LOGGER.debug("Replacing continuous move {}", theExistingMove);
+                    deactivateContinuousMove(theExistingMove);
+                    mContinuousMoves.remove(inMoveId);
+                }
+
+                activateContinuousMove(theNewMove);
+                mContinuousMoves.put(inMoveId, theNewMove);
+            } finally {
+                mTransportEngineLock.readLock().unlock();
+            }
+            LOGGER.info("Started continuous move {}", theNewMove);
+        }
+    }
+
+    @Override
+    public synchronized void stopContinuousMove(final String inMoveId) throws TransportException {
+        final ContinuousMoveDefinition theExistingMove = mContinuousMoves.remove(inMoveId);
+
+        if (theExistingMove != null) {
+            mTransportEngineLock.readLock().lock();
+            try {
+                deactivateContinuousMove(theExistingMove);
+            } finally {
+                mTransportEngineLock.readLock().unlock();
+            }
+            LOGGER.info("Stopped continuous move {}", theExistingMove);
+        }
+    }
+
+    @Override
+    public synchronized Set<String> findContinuousMoveIds() {
+        return new HashSet<String>(mContinuousMoves.keySet());
+    }
+
+    /**
+     * Activates all the currently defined continuous moves.
+     * Used after the transport engine has been replaced, for instance
+     * when configuration resources have been refreshed.
+     * Errors activating a continuous move are logged and does not prevent
+     * other continuous moves from being activated.
+     */
+    protected void activateAllContinuousMoves() {
+        activateContinuousMoves(mContinuousMoves.values());
+    }
+
+    /**
+     * Activates the supplied continuous moves while holding the read lock of
+     * the transport engine lock.
+     * Errors activating a continuous move are logged and does not prevent
+     * other continuous moves from being activated.
+     *
+     * @param inMoves Definitions of continuous moves to activate.
+     */
+    protected void activateContinuousMoves(final Collection<ContinuousMoveDefinition> inMoves) {
+        mTransportEngineLock.readLock().lock();
+        try {
+            for (ContinuousMoveDefinition theMove : inMoves) {
+                try {
+                    activateContinuousMove(theMove);
+                    LOGGER.debug("Re-activated continuous move {}", theMove);
+                } catch (final Exception theException) {
+                    LOGGER.error("Error re-activating continuous move " + theMove, theException);
+                }
+            }
+        } finally {
+            mTransportEngineLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Creates and starts the listener in the transport engine that performs the
+     * supplied continuous move.
+     *
+     * @param inMove Definition of continuous move to activate.
+     * @throws TransportException If error occurs activating continuous move.
+     */
+    protected abstract void activateContinuousMove(final ContinuousMoveDefinition inMove)
+        throws TransportException;
+
+    /**
+     * Stops and removes the listener in the transport engine that performs the
+     * supplied continuous move.
+     *
+     * @param inMove Definition of continuous move to deactivate.
+     * @throws TransportException If error occurs deactivating continuous move.
+     */
+    protected abstract void deactivateContinuousMove(final ContinuousMoveDefinition inMove)
+        throws TransportException;
+
     /**
      * Retrieves configuration resource information for the currently configured
-     * XML configuration resources.
+     * XML configuration resources.<br/>
+     * Configuration resources which length and last modification time are
+     * unchanged since they were last examined are not read again.
      *
      * @return List of configuration resource information.
      * @throws IOException If error occurs discovering or accessing configuration resource.
@@ -90,6 +344,8 @@ public abstract class AbstractXmlConfigurerdTransportService implements Transpor
             new PathMatchingResourcePatternResolver();
         final List<XmlConfigurationResourceInfo> theConfigRsrcInfos =
             new ArrayList<XmlConfigurationResourceInfo>();
+        final Map<String, XmlConfigurationResourceInfo> theConfigRsrcInfosByURL =
+            new LinkedHashMap<String, XmlConfigurationResourceInfo>();
 
         for (String theConfigRsrcsLocationPattern : mConfigResourcesLocationPatterns) {
             final Resource[] theConnectorsConfigurations =
@@ -100,30 +356,112 @@ public abstract class AbstractXmlConfigurerdTransportService implements Transpor
 
             if (theConnectorsConfigurations.length > 0) {
                 for (Resource theResource : theConnectorsConfigurations) {
-
-                    final byte[] theConfigRsrcContents =
-                        FileCopyUtils.copyToByteArray(theResource.getInputStream());
+                    final String theConfigRsrcURL = theResource.getURL().toString();
                     final String theConfigRsrcName = theResource.getFilename();
-                    final String theConfigRsrcChecksum = DigestUtils.md5Hex(theConfigRsrcContents);
+                    final long theConfigRsrcLength = findContentLength(theResource);
+                    final long theConfigRsrcLastModified = findLastModified(theResource);
 
-                    final XmlConfigurationResourceInfo theConfigRsrcInfo =
-                        new XmlConfigurationResourceInfo(theConfigRsrcName, theConfigRsrcChecksum);
+                    XmlConfigurationResourceInfo theConfigRsrcInfo =
+                        mConfigurationResourceInfosByURL.get(theConfigRsrcURL);
+                    if (theConfigRsrcInfo == null
+                        || !theConfigRsrcInfo.hasSameLengthAndLastModified(theConfigRsrcLength,
+                            theConfigRsrcLastModified)) {
+                        final byte[] theConfigRsrcContents =
+                            FileCopyUtils.copyToByteArray(theResource.getInputStream());
+                        final String theConfigRsrcChecksum = DigestUtils.md5Hex(theConfigRsrcContents);
+
+                        theConfigRsrcInfo = new XmlConfigurationResourceInfo(theConfigRsrcName,
+                            theConfigRsrcChecksum, theConfigRsrcLength, theConfigRsrcLastModified);
+                    }
                     theConfigRsrcInfos.add(theConfigRsrcInfo);
+                    theConfigRsrcInfosByURL.put(theConfigRsrcURL, theConfigRsrcInfo);
                 }
             }
         }
+
+        mConfigurationResourceInfosByURL = theConfigRsrcInfosByURL;
         return theConfigRsrcInfos;
     }
 
+    /**
+     * Finds the length of the supplied resource.
+     *
+     * @param inResource Resource which length to find.
+     * @return Length of resource in bytes, or -1 if it cannot be determined.
+     */
+    protected static long findContentLength(final Resource inResource) {
+        try {
+            return inResource.contentLength();
+        } catch (final IOException theException) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Finds the last modification time of the supplied resource.
+     *
+     * @param inResource Resource which last modification time to find.
+     * @return Last modification time in milliseconds, or 0 if it cannot be determined.
+     */
+    protected static long findLastModified(final Resource inResource) {
+        try {
+            return inResource.lastModified();
+        } catch (final IOException theException) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Starts watching the configuration resource directories for changes,
+     * unless already watching or configuration resources cannot be watched.
+     *
+     * @return True if watching configuration resource directories, false otherwise.
+     */
+    protected boolean startWatchingConfigurationResources() {
+        if (mConfigurationResourceWatcher == null) {
+            final ConfigurationResourceWatcher theWatcher =
+                new ConfigurationResourceWatcher(mConfigurationWatchDebouncePeriod);
+            if (theWatcher.start(mConfigResourcesLocationPatterns)) {
+                mConfigurationResourceWatcher = theWatcher;
+            }
+        }
+        return mConfigurationResourceWatcher != null;
+    }
+
+    /**
+     * Stops watching the configuration resource directories for changes.
+     * Configuration resources are examined the next time changes are looked for.
+     */
+    protected void stopWatchingConfigurationResources() {
+        if (mConfigurationResourceWatcher != null) {
+            mConfigurationResourceWatcher.stop();
+            mConfigurationResourceWatcher = null;
+        }
+        mConfigurationResourceInfosByURL.clear();
+    }
+
     /**
      * Determines whether an XML configuration resources have changed since last
      * time the configuration resources were read.
      * If configuration resources has changed, then the current configuration
-     * resource information list will be updated.
+     * resource information list will be updated.<br/>
+     * When the configuration resource directories are watched, configuration
+     * resources are only examined if changes have been detected since the
+     * previous examination.
      *
      * @throws IOException If error occurs accessing configuration resource.
      */
     protected boolean hasConfigurationResourceBeenModified() throws IOException {
+        if (mConfigurationResourceInfos.isEmpty()) {
+            /*
+             * Start watching before the configuration resources are examined,
+             * in order not to miss changes made in between.
+             */
+            startWatchingConfigurationResources();
+        } else if (mConfigurationResourceWatcher != null && !mConfigurationResourceWatcher.consumeChanges()) {
+            return false;
+        }
+
         /* Get configuration resource information for (new) resources. */
         final List<XmlConfigurationResourceInfo> theNewConfigRsrscInfos =
             retrieveXmlConfigResourceInfos();
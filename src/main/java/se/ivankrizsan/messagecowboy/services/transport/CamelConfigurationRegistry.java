@@ -0,0 +1,165 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.camel.Component;
+import org.apache.camel.spi.Registry;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Camel registry looking up beans in the application contexts created from
+ * the configuration resources of the Camel transport service.<br/>
+ * Beans are looked up by name in the application contexts in reverse order,
+ * so that a bean in a later configuration resource overrides a bean with the
+ * same name in an earlier configuration resource, and then in the parent
+ * application context. Beans are looked up by type only in the application
+ * contexts created from the configuration resources.<br/>
+ * The application contexts may be replaced while the registry is in use.<br/>
+ * The names under which Camel components have been looked up in each
+ * application context are recorded, in order for the components supplied
+ * by an application context to be known when it is closed.
+ *
+ * @author Ivan Krizsan
+ */
+class CamelConfigurationRegistry implements Registry {
+    /* Constant(s): */
+
+    /* Instance variable(s): */
+    protected final ApplicationContext mParentApplicationContext;
+    protected volatile List<ApplicationContext> mApplicationContexts = Collections.emptyList();
+    /** Names of components looked up in each configuration resource application context. */
+    protected final Map<ApplicationContext, Set<String>> mComponentNames =
+        new IdentityHashMap<ApplicationContext, Set<String>>();
+
+    /**
+     * Creates a registry using the supplied parent application context.
+     *
+     * @param inParentApplicationContext Application context in which beans
+     * not found in the configuration resource application contexts are
+     * looked up, or null.
+     */
+    public CamelConfigurationRegistry(final ApplicationContext inParentApplicationContext) {
+        mParentApplicationContext = inParentApplicationContext;
+    }
+
+    /**
+     * Sets the application contexts created from configuration resources.
+     *
+     * @param inApplicationContexts Application contexts, in configuration resource order.
+     */
+    public void setApplicationContexts(final List<? extends ApplicationContext> inApplicationContexts) {
+        mApplicationContexts = Collections.unmodifiableList(new ArrayList<ApplicationContext>(inApplicationContexts));
+    }
+
+    /**
+     * Retrieves the names under which components supplied by the supplied
+     * application context have been looked up, and forgets them.
+     *
+     * @param inApplicationContext Configuration resource application context.
+     * @return Names of components, empty if none.
+     */
+    public Set<String> removeComponentNames(final ApplicationContext inApplicationContext) {
+        synchronized (mComponentNames) {
+            final Set<String> theComponentNames = mComponentNames.remove(inApplicationContext);
+            return theComponentNames != null ? theComponentNames : Collections.<String>emptySet();
+        }
+    }
+
+    @Override
+    public Object lookupByName(final String inName) {
+        final List<ApplicationContext> theApplicationContexts = mApplicationContexts;
+        for (int i = theApplicationContexts.size() - 1; i >= 0; i--) {
+            final ApplicationContext theApplicationContext = theApplicationContexts.get(i);
+            if (theApplicationContext.containsLocalBean(inName)) {
+                final Object theBean = theApplicationContext.getBean(inName);
+                if (theBean instanceof Component) {
+                    recordComponentName(theApplicationContext, inName);
+                }
+                return theBean;
+            }
+        }
+        if (mParentApplicationContext != null && mParentApplicationContext.containsBean(inName)) {
+            return mParentApplicationContext.getBean(inName);
+        }
+        return null;
+    }
+
+    /**
+     * Records that a component has been looked up under the supplied name in
+     * the supplied application context.
+     *
+     * @param inApplicationContext Application context supplying the component.
+     * @param inName Name under which the component was looked up.
+     */
+    protected void recordComponentName(final ApplicationContext inApplicationContext, final String inName) {
+        synchronized (mComponentNames) {
+            Set<String> theComponentNames = mComponentNames.get(inApplicationContext);
+            if (theComponentNames == null) {
+                theComponentNames = new HashSet<String>();
+                mComponentNames.put(inApplicationContext, theComponentNames);
+            }
+            theComponentNames.add(inName);
+        }
+    }
+
+    @Override
+    public <T> T lookupByNameAndType(final String inName, final Class<T> inType) {
+        final Object theBean = lookupByName(inName);
+        return inType.isInstance(theBean) ? inType.cast(theBean) : null;
+    }
+
+    @Override
+    public <T> Map<String, T> findByTypeWithName(final Class<T> inType) {
+        final Map<String, T> theBeans = new LinkedHashMap<String, T>();
+        for (ApplicationContext theApplicationContext : mApplicationContexts) {
+            theBeans.putAll(theApplicationContext.getBeansOfType(inType));
+        }
+        return theBeans;
+    }
+
+    @Override
+    public <T> Set<T> findByType(final Class<T> inType) {
+        return new HashSet<T>(findByTypeWithName(inType).values());
+    }
+
+    @Override
+    @Deprecated
+    public Object lookup(final String inName) {
+        return lookupByName(inName);
+    }
+
+    @Override
+    @Deprecated
+    public <T> T lookup(final String inName, final Class<T> inType) {
+        return lookupByNameAndType(inName, inType);
+    }
+
+    @Override
+    @Deprecated
+    public <T> Map<String, T> lookupByType(final Class<T> inType) {
+        return findByTypeWithName(inType);
+    }
+}
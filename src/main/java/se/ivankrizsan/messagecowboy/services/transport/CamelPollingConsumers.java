@@ -0,0 +1,141 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.Endpoint;
+import org.apache.camel.PollingConsumer;
+import org.apache.camel.util.ServiceHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Started Camel polling consumers, one per endpoint URI, shared by all
+ * threads receiving from the endpoint.<br/>
+ * Some polling consumers, such as those of file endpoints, consume messages
+ * into an internal queue ahead of them being received. Messages in the queue
+ * of a polling consumer are lost when the consumer is stopped, so a single
+ * polling consumer is kept per endpoint URI and consumers are only stopped
+ * when they fail, when their endpoint is removed or when the Camel context is
+ * torn down. Polling consumers are thus not pooled, as opposed to producers.
+ *
+ * @author Ivan Krizsan
+ */
+class CamelPollingConsumers {
+    private final static Logger LOGGER = LoggerFactory.getLogger(CamelPollingConsumers.class);
+
+    protected final Map<String, PollingConsumer> mPollingConsumers = new HashMap<String, PollingConsumer>();
+
+    /**
+     * Acquires the started polling consumer of the supplied endpoint,
+     * creating and starting it if the endpoint has no polling consumer.
+     * The polling consumer may be used concurrently by multiple threads and
+     * is not to be released.
+     *
+     * @param inEndpoint Endpoint to acquire polling consumer for.
+     * @return Started polling consumer.
+     * @throws Exception If error occurs creating or starting polling consumer.
+     */
+    public synchronized PollingConsumer acquire(final Endpoint inEndpoint) throws Exception {
+        PollingConsumer theConsumer = mPollingConsumers.get(inEndpoint.getEndpointUri());
+        if (theConsumer == null) {
+            theConsumer = inEndpoint.createPollingConsumer();
+            ServiceHelper.startService(theConsumer);
+            mPollingConsumers.put(inEndpoint.getEndpointUri(), theConsumer);
+            LOGGER.debug("Created polling consumer for {}", inEndpoint.getEndpointUri());
+        }
+        return theConsumer;
+    }
+
+    /**
+     * Discards the supplied polling consumer of the supplied endpoint, which
+     * has failed. The polling consumer is stopped and a new polling consumer
+     * will be created the next time one is acquired for the endpoint.
+     *
+     * @param inEndpoint Endpoint of polling consumer.
+     * @param inConsumer Polling consumer to discard.
+     */
+    public void discard(final Endpoint inEndpoint, final PollingConsumer inConsumer) {
+        synchronized (this) {
+            if (mPollingConsumers.get(inEndpoint.getEndpointUri()) == inConsumer) {
+                mPollingConsumers.remove(inEndpoint.getEndpointUri());
+            }
+        }
+        final List<PollingConsumer> theConsumersToStop = new ArrayList<PollingConsumer>();
+        theConsumersToStop.add(inConsumer);
+        stopConsumers(theConsumersToStop);
+    }
+
+    /**
+     * Stops all polling consumers.
+     */
+    public void clear() {
+        final List<PollingConsumer> theConsumersToStop;
+        synchronized (this) {
+            theConsumersToStop = new ArrayList<PollingConsumer>(mPollingConsumers.values());
+            mPollingConsumers.clear();
+        }
+        stopConsumers(theConsumersToStop);
+    }
+
+    /**
+     * Stops the polling consumers of the supplied endpoints.
+     *
+     * @param inEndpoints Endpoints which polling consumers to stop.
+     */
+    public void clear(final Collection<Endpoint> inEndpoints) {
+        final List<PollingConsumer> theConsumersToStop = new ArrayList<PollingConsumer>();
+        synchronized (this) {
+            for (Endpoint theEndpoint : inEndpoints) {
+                final PollingConsumer theConsumer = mPollingConsumers.remove(theEndpoint.getEndpointUri());
+                if (theConsumer != null) {
+                    theConsumersToStop.add(theConsumer);
+                }
+            }
+        }
+        stopConsumers(theConsumersToStop);
+    }
+
+    /**
+     * Retrieves the number of started polling consumers.
+     *
+     * @return Number of polling consumers.
+     */
+    public synchronized int getConsumerCount() {
+        return mPollingConsumers.size();
+    }
+
+    /**
+     * Stops the supplied polling consumers, logging any errors.
+     *
+     * @param inConsumers Polling consumers to stop.
+     */
+    protected void stopConsumers(final List<PollingConsumer> inConsumers) {
+        for (PollingConsumer theConsumer : inConsumers) {
+            try {
+                ServiceHelper.stopService(theConsumer);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to stop polling consumer", e);
+            }
+        }
+    }
+}
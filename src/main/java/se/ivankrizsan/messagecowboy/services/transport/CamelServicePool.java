@@ -0,0 +1,266 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.Endpoint;
+import org.apache.camel.Service;
+import org.apache.camel.util.ServiceHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of started Camel services, such as producers, per endpoint URI.<br/>
+ * A service acquired from the pool is used exclusively by the acquirer until
+ * it is released back to the pool. At most a configured number of idle
+ * services are retained per endpoint URI, additional released services are
+ * stopped. Idle services that have not been used for longer than the
+ * configured maximum idle time are stopped and removed from the pool when
+ * services are acquired or released and when {@link #evictIdleServices()}
+ * is invoked, which is to be done periodically so that idle services of
+ * endpoints no longer used are stopped.<br/>
+ * Services that consume messages ahead of them being requested, such as
+ * event-driven polling consumers, are not to be pooled, since messages held
+ * by such a service are lost when the service is evicted.
+ *
+ * @param <S> Type of services in the pool.
+ * @author Ivan Krizsan
+ */
+abstract class CamelServicePool<S extends Service> {
+    private final static Logger LOGGER = LoggerFactory.getLogger(CamelServicePool.class);
+
+    protected final Map<String, Deque<IdleService<S>>> mIdleServices = new HashMap<String, Deque<IdleService<S>>>();
+    protected final int mMaxIdlePerEndpoint;
+    protected final long mMaxIdleTime;
+
+    /**
+     * Creates a pool retaining the supplied maximum number of idle services
+     * per endpoint URI for at most the supplied time.
+     *
+     * @param inMaxIdlePerEndpoint Maximum number of idle services per endpoint URI.
+     * @param inMaxIdleTime Maximum time in milliseconds a service may be idle
+     * before being evicted.
+     */
+    public CamelServicePool(final int inMaxIdlePerEndpoint, final long inMaxIdleTime) {
+        mMaxIdlePerEndpoint = inMaxIdlePerEndpoint;
+        mMaxIdleTime = inMaxIdleTime;
+    }
+
+    /**
+     * Creates a new, not started, service for the supplied endpoint.
+     *
+     * @param inEndpoint Endpoint to create service for.
+     * @return New service.
+     * @throws Exception If error occurs creating service.
+     */
+    protected abstract S createService(Endpoint inEndpoint) throws Exception;
+
+    /**
+     * Acquires a started service for the supplied endpoint.
+     * The most recently released idle service for the endpoint is reused,
+     * if there is one, otherwise a new service is created and started.
+     * Also evicts services that have been idle too long.
+     *
+     * @param inEndpoint Endpoint to acquire service for.
+     * @return Started service.
+     * @throws Exception If error occurs creating or starting service.
+     */
+    public S acquire(final Endpoint inEndpoint) throws Exception {
+        final List<S> theServicesToStop = new ArrayList<S>();
+        S theIdleService = null;
+        synchronized (this) {
+            final Deque<IdleService<S>> theIdleServices = mIdleServices.get(inEndpoint.getEndpointUri());
+            if (theIdleServices != null && !theIdleServices.isEmpty()) {
+                theIdleService = theIdleServices.pollFirst().mService;
+            }
+            findEvictableServices(System.currentTimeMillis(), theServicesToStop);
+        }
+        stopServices(theServicesToStop);
+        if (theIdleService != null) {
+            return theIdleService;
+        }
+
+        final S theService = createService(inEndpoint);
+        ServiceHelper.startService(theService);
+        LOGGER.debug("Created pooled service for {}", inEndpoint.getEndpointUri());
+        return theService;
+    }
+
+    /**
+     * Releases the supplied service, previously acquired for the supplied
+     * endpoint, back to the pool.
+     * If the maximum number of idle services for the endpoint has been
+     * reached, the service is stopped instead.
+     * Also evicts services that have been idle too long.
+     *
+     * @param inEndpoint Endpoint for which service was acquired.
+     * @param inService Service to release.
+     */
+    public void release(final Endpoint inEndpoint, final S inService) {
+        final long theCurrentTime = System.currentTimeMillis();
+        final List<S> theServicesToStop = new ArrayList<S>();
+
+        synchronized (this) {
+            Deque<IdleService<S>> theIdleServices = mIdleServices.get(inEndpoint.getEndpointUri());
+            if (theIdleServices == null) {
+                theIdleServices = new ArrayDeque<IdleService<S>>();
+                mIdleServices.put(inEndpoint.getEndpointUri(), theIdleServices);
+            }
+            if (theIdleServices.size() < mMaxIdlePerEndpoint) {
+                theIdleServices.addFirst(new IdleService<S>(inService, theCurrentTime));
+            } else {
+                theServicesToStop.add(inService);
+            }
+            findEvictableServices(theCurrentTime, theServicesToStop);
+        }
+
+        stopServices(theServicesToStop);
+    }
+
+    /**
+     * Discards the supplied service, which will be stopped and not returned
+     * to the pool.
+     * Services that have failed are to be discarded instead of being released.
+     *
+     * @param inService Service to discard.
+     */
+    public void discard(final S inService) {
+        final List<S> theServicesToStop = new ArrayList<S>();
+        theServicesToStop.add(inService);
+        stopServices(theServicesToStop);
+    }
+
+    /**
+     * Stops and removes services that have been idle longer than the maximum
+     * idle time from the pool.
+     */
+    public void evictIdleServices() {
+        final List<S> theServicesToStop = new ArrayList<S>();
+        synchronized (this) {
+            findEvictableServices(System.currentTimeMillis(), theServicesToStop);
+        }
+        stopServices(theServicesToStop);
+    }
+
+    /**
+     * Stops all idle services and empties the pool.
+     */
+    public void clear() {
+        final List<S> theServicesToStop = new ArrayList<S>();
+        synchronized (this) {
+            for (Deque<IdleService<S>> theIdleServices : mIdleServices.values()) {
+                for (IdleService<S> theIdleService : theIdleServices) {
+                    theServicesToStop.add(theIdleService.mService);
+                }
+            }
+            mIdleServices.clear();
+        }
+        stopServices(theServicesToStop);
+    }
+
+    /**
+     * Stops and removes the idle services of the supplied endpoints from the pool.
+     *
+     * @param inEndpoints Endpoints which idle services to remove.
+     */
+    public void clear(final Collection<Endpoint> inEndpoints) {
+        final List<S> theServicesToStop = new ArrayList<S>();
+        synchronized (this) {
+            for (Endpoint theEndpoint : inEndpoints) {
+                final Deque<IdleService<S>> theIdleServices = mIdleServices.remove(theEndpoint.getEndpointUri());
+                if (theIdleServices != null) {
+                    for (IdleService<S> theIdleService : theIdleServices) {
+                        theServicesToStop.add(theIdleService.mService);
+                    }
+                }
+            }
+        }
+        stopServices(theServicesToStop);
+    }
+
+    /**
+     * Retrieves the number of idle services in the pool.
+     *
+     * @return Number of idle services.
+     */
+    public synchronized int getIdleCount() {
+        int theIdleCount = 0;
+        for (Deque<IdleService<S>> theIdleServices : mIdleServices.values()) {
+            theIdleCount += theIdleServices.size();
+        }
+        return theIdleCount;
+    }
+
+    /**
+     * Removes services that have been idle longer than the maximum idle time
+     * from the pool, adding them to the supplied list.
+     * Caller must hold the lock of this pool.
+     *
+     * @param inCurrentTime Current time in milliseconds.
+     * @param outEvictedServices List to add evicted services to.
+     */
+    protected void findEvictableServices(final long inCurrentTime, final List<S> outEvictedServices) {
+        final Iterator<Deque<IdleService<S>>> theIterator = mIdleServices.values().iterator();
+        while (theIterator.hasNext()) {
+            final Deque<IdleService<S>> theIdleServices = theIterator.next();
+            // Least recently released services are last in the deque.
+            while (!theIdleServices.isEmpty()
+                && inCurrentTime - theIdleServices.peekLast().mReleaseTime > mMaxIdleTime) {
+                outEvictedServices.add(theIdleServices.pollLast().mService);
+            }
+            if (theIdleServices.isEmpty()) {
+                theIterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Stops the supplied services, logging any errors.
+     *
+     * @param inServices Services to stop.
+     */
+    protected void stopServices(final List<S> inServices) {
+        for (S theService : inServices) {
+            try {
+                ServiceHelper.stopService(theService);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to stop pooled service", e);
+            }
+        }
+    }
+
+    /**
+     * Idle service in the pool and the time at which it was released.
+     */
+    protected static class IdleService<S> {
+        protected final S mService;
+        protected final long mReleaseTime;
+
+        protected IdleService(final S inService, final long inReleaseTime) {
+            mService = inService;
+            mReleaseTime = inReleaseTime;
+        }
+    }
+}
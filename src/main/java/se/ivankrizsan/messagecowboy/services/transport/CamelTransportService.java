@@ -17,18 +17,42 @@
 package se.ivankrizsan.messagecowboy.services.transport;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
 import org.apache.camel.CamelContext;
-import org.apache.camel.ConsumerTemplate;
+import org.apache.camel.Component;
+import org.apache.camel.Endpoint;
 import org.apache.camel.Exchange;
-import org.apache.camel.ProducerTemplate;
+import org.apache.camel.PollingConsumer;
+import org.apache.camel.Processor;
+import org.apache.camel.Producer;
 import org.apache.camel.StartupListener;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.jms.JmsComponent;
+import org.apache.camel.component.jms.JmsEndpoint;
 import org.apache.camel.spring.SpringCamelContext;
+import org.apache.camel.support.SynchronizationAdapter;
+import org.apache.camel.util.ServiceHelper;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,9 +100,43 @@ import se.ivankrizsan.messagecowboy.services.transport.exceptions.TransportExcep
  * </camel:camelContext>
  * }</pre>
  *
- * Methods accessing the {@link ProducerTemplate} and {@link ConsumerTemplate}
- * instance variables are synchronized in order to prevent any changes to
- * the camel context while dispatching and receiving.
+ * Continuous moves are implemented as Camel routes from the inbound endpoint
+ * to the outbound endpoint, using the id of the continuous move as route id.
+ *
+ * Batches of messages to or from JMS endpoints are dispatched and received
+ * in one transacted JMS session, committing once per batch. When moving a
+ * batch of messages from a JMS endpoint, the receiving JMS session is
+ * committed only after the messages have been dispatched. JMS connections
+ * are obtained from pooled connection factories wrapping the connection
+ * factories of the JMS components.
+ *
+ * Messages are received using started {@link PollingConsumer}s, one per
+ * endpoint URI shared by all receiving threads, and dispatched using started
+ * {@link Producer}s, which are pooled per endpoint URI, so that connections
+ * etc need not be set up for every request. Polling consumers are not pooled
+ * since some polling consumers consume messages ahead of them being received,
+ * which would be lost if idle consumers were stopped. Idle producers are
+ * stopped after some time, checked also each time the connectors are
+ * refreshed. Polling consumers and pooled producers are stopped when the
+ * Camel context is torn down.
+ *
+ * Dispatching and receiving is done while holding the read lock of the
+ * transport engine lock, so that multiple tasks may move messages in
+ * parallel.
+ * Changes to the Camel context are made while holding the write lock in
+ * order to prevent any changes to the camel context while dispatching and
+ * receiving.
+ *
+ * Each configuration file is loaded into an application context of its own,
+ * which beans may refer to beans in the application context of Message Cowboy
+ * but not to beans in other configuration files. When configuration files are
+ * added, modified or removed, only the application contexts of those files are
+ * created or closed and only the components the Camel context obtained from
+ * them, or will obtain from them instead, are removed from the Camel context,
+ * to be resolved anew when next used. The application contexts are created
+ * before the write lock is acquired and a configuration file which
+ * application context cannot be created does not replace a previous version
+ * of the file.
  *
  * @author Petter Nordlander
  */
@@ -86,12 +144,31 @@ import se.ivankrizsan.messagecowboy.services.transport.exceptions.TransportExcep
 public class CamelTransportService extends AbstractXmlConfigurerdTransportService {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(CamelTransportService.class);
+    /** Maximum number of idle producers pooled per endpoint URI. */
+    public static final int POOL_MAX_IDLE_PER_ENDPOINT = 8;
+    /** Time in milliseconds after which idle pooled producers are stopped. */
+    public static final long POOL_MAX_IDLE_TIME = 300000L;
 
     protected SpringCamelContext mCamelContext;
-    protected ProducerTemplate mProducerTemplate;
-    protected ConsumerTemplate mConsumerTemplate;
+    /** Registry looking up beans, such as components, in the configuration resource application contexts. */
+    protected CamelConfigurationRegistry mCamelRegistry;
+    /** Polling consumers shared by threads receiving from the same endpoint. */
+    protected final CamelPollingConsumers mPollingConsumers = new CamelPollingConsumers();
+    protected final CamelServicePool<Producer> mProducerPool =
+        new CamelServicePool<Producer>(POOL_MAX_IDLE_PER_ENDPOINT, POOL_MAX_IDLE_TIME) {
+            @Override
+            protected Producer createService(final Endpoint inEndpoint) throws Exception {
+                return inEndpoint.createProducer();
+            }
+        };
 
-    protected FileSystemXmlApplicationContext mCamelSpringContext;
+    /** Pooled connection factories used when dispatching and receiving batches of JMS messages. */
+    protected final JmsConnectionPools mJmsConnectionPools = new JmsConnectionPools();
+    /** Application contexts created from the configuration resources, keyed by resource URL. */
+    protected final Map<String, FileSystemXmlApplicationContext> mConfigurationContexts =
+        new LinkedHashMap<String, FileSystemXmlApplicationContext>();
+    /** Checksums of the configuration resources the application contexts were created from, keyed by URL. */
+    protected final Map<String, String> mConfigurationContextChecksums = new HashMap<String, String>();
 
     @Override
     public synchronized void start() {
@@ -108,41 +185,71 @@ public class CamelTransportService extends AbstractXmlConfigurerdTransportServic
 
     @Override
     public synchronized void stop() {
+        mTransportEngineLock.writeLock().lock();
         try {
-            mCamelContext.stop();
+            // Make sure a new Camel context is created if the service is started again.
+            mConfigurationResourceInfos.clear();
+            stopWatchingConfigurationResources();
+            killCamelInstance();
         } catch (Exception e) {
             LOGGER.error("Cannot stop Camel", e);
+        } finally {
+            mTransportEngineLock.writeLock().unlock();
         }
     }
 
     @SuppressWarnings("rawtypes")
     @Override
-    public synchronized void dispatch(final MoverMessage inMessage, final String inEndpointURI)
+    public void dispatch(final MoverMessage inMessage, final String inEndpointURI)
         throws TransportException {
+        mTransportEngineLock.readLock().lock();
         try {
             @SuppressWarnings("unchecked")
             final MoverMessage<Exchange> theCamelMoverMessage = inMessage;
-            // TODO if endpoint is JMS, use spring JMS tx manager
-            mProducerTemplate.send(inEndpointURI, theCamelMoverMessage.getMessage());
+            final Endpoint theEndpoint = mCamelContext.getEndpoint(inEndpointURI);
+            final Producer theProducer = mProducerPool.acquire(theEndpoint);
+            try {
+                theProducer.process(theCamelMoverMessage.getMessage());
+            } catch (Exception e) {
+                mProducerPool.discard(theProducer);
+                throw e;
+            }
+            mProducerPool.release(theEndpoint, theProducer);
+
+            // Producers may report failures on the exchange instead of throwing.
+            if (theCamelMoverMessage.getMessage().getException() != null) {
+                throw theCamelMoverMessage.getMessage().getException();
+            }
             LOGGER.debug("Sent message: {}", inMessage);
         } catch (Exception e) {
             throw new TransportException("Error occurred sending message", e);
+        } finally {
+            mTransportEngineLock.readLock().unlock();
         }
     }
 
     @SuppressWarnings("rawtypes")
     @Override
-    public synchronized MoverMessage receive(final String inEndpointURI, final long inTimeout)
+    public MoverMessage receive(final String inEndpointURI, final long inTimeout)
         throws TransportException {
 
         Exchange theReceivedExchange = null;
         MoverMessage<Exchange> theMoverMessage = null;
+        mTransportEngineLock.readLock().lock();
         try {
-            // TODO if endpoint is JMS, use spring JMS Tx manager .
-            theReceivedExchange = mConsumerTemplate.receive(inEndpointURI, inTimeout);
+            final Endpoint theEndpoint = mCamelContext.getEndpoint(inEndpointURI);
+            final PollingConsumer theConsumer = mPollingConsumers.acquire(theEndpoint);
+            try {
+                theReceivedExchange = theConsumer.receive(inTimeout);
+            } catch (Exception e) {
+                mPollingConsumers.discard(theEndpoint, theConsumer);
+                throw e;
+            }
             LOGGER.debug("Received message: {}", theReceivedExchange);
         } catch (Exception e) {
             throw new TransportException("Error occurred receiving message", e);
+        } finally {
+            mTransportEngineLock.readLock().unlock();
         }
 
         if (theReceivedExchange != null) {
@@ -151,70 +258,521 @@ public class CamelTransportService extends AbstractXmlConfigurerdTransportServic
         return theMoverMessage;
     }
 
+    @SuppressWarnings("rawtypes")
+    @Override
+    public void dispatchBatch(final List<MoverMessage> inMessages, final String inEndpointURI)
+        throws TransportException {
+        mTransportEngineLock.readLock().lock();
+        try {
+            final Endpoint theEndpoint = mCamelContext.getEndpoint(inEndpointURI);
+            if (theEndpoint instanceof JmsEndpoint) {
+                dispatchJmsBatch(inMessages, (JmsEndpoint) theEndpoint);
+            } else {
+                super.dispatchBatch(inMessages, inEndpointURI);
+            }
+        } finally {
+            mTransportEngineLock.readLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public List<MoverMessage> receiveBatch(final String inEndpointURI, final long inTimeout,
+        final int inMaxMessages) throws TransportException {
+        mTransportEngineLock.readLock().lock();
+        try {
+            final Endpoint theEndpoint = mCamelContext.getEndpoint(inEndpointURI);
+            if (theEndpoint instanceof JmsEndpoint) {
+                return receiveJmsBatch((JmsEndpoint) theEndpoint, inTimeout, inMaxMessages, null);
+            } else {
+                return super.receiveBatch(inEndpointURI, inTimeout, inMaxMessages);
+            }
+        } finally {
+            mTransportEngineLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int moveBatch(final String inInboundEndpointURI, final String inOutboundEndpointURI,
+        final long inTimeout, final int inMaxMessages) throws TransportException {
+        mTransportEngineLock.readLock().lock();
+        try {
+            final Endpoint theEndpoint = mCamelContext.getEndpoint(inInboundEndpointURI);
+            if (theEndpoint instanceof JmsEndpoint) {
+                return receiveJmsBatch((JmsEndpoint) theEndpoint, inTimeout, inMaxMessages, inOutboundEndpointURI)
+                    .size();
+            } else {
+                return super.moveBatch(inInboundEndpointURI, inOutboundEndpointURI, inTimeout, inMaxMessages);
+            }
+        } finally {
+            mTransportEngineLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Dispatches the supplied messages to the supplied JMS endpoint in one
+     * transacted JMS session.
+     *
+     * @param inMessages Messages to dispatch.
+     * @param inEndpoint JMS endpoint to dispatch messages to.
+     * @throws TransportException If error occurs dispatching messages. No
+     * messages have been dispatched.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected void dispatchJmsBatch(final List<MoverMessage> inMessages, final JmsEndpoint inEndpoint)
+        throws TransportException {
+        Connection theConnection = null;
+        try {
+            theConnection = createJmsConnection(inEndpoint);
+            final Session theSession = theConnection.createSession(true, Session.SESSION_TRANSACTED);
+            try {
+                final MessageProducer theProducer =
+                    theSession.createProducer(createJmsDestination(inEndpoint, theSession));
+                for (MoverMessage theMoverMessage : inMessages) {
+                    final MoverMessage<Exchange> theCamelMoverMessage = theMoverMessage;
+                    theProducer.send(inEndpoint.getBinding().makeJmsMessage(theCamelMoverMessage.getMessage(),
+                        theSession));
+                }
+                theSession.commit();
+            } catch (JMSException e) {
+                theSession.rollback();
+                throw e;
+            } finally {
+                theSession.close();
+            }
+            LOGGER.debug("Sent {} messages to {}", inMessages.size(), inEndpoint.getEndpointUri());
+        } catch (Exception e) {
+            throw new TransportException("Error occurred sending messages", e);
+        } finally {
+            closeJmsConnection(theConnection);
+        }
+    }
+
+    /**
+     * Receives up to the supplied maximum number of messages from the supplied
+     * JMS endpoint in one transacted JMS session.
+     * Waits for the first message at most the supplied timeout, then receives
+     * messages as long as they arrive within a short time.
+     * If an outbound endpoint URI is supplied, the received messages are
+     * dispatched to that endpoint before the JMS session is committed.
+     *
+     * @param inEndpoint JMS endpoint to receive messages from.
+     * @param inTimeout Timeout in milliseconds waiting for the first message.
+     * @param inMaxMessages Maximum number of messages to receive.
+     * @param inOutboundEndpointURI URI of endpoint to dispatch received
+     * messages to, or null if received messages are not to be dispatched.
+     * @return Received messages, or empty list if receiving timed out.
+     * @throws TransportException If error occurs receiving or dispatching
+     * messages. No messages have been consumed.
+     */
+    @SuppressWarnings("rawtypes")
+    protected List<MoverMessage> receiveJmsBatch(final JmsEndpoint inEndpoint, final long inTimeout,
+        final int inMaxMessages, final String inOutboundEndpointURI) throws TransportException {
+        final List<MoverMessage> theReceivedMessages = new ArrayList<MoverMessage>();
+        Connection theConnection = null;
+        try {
+            theConnection = createJmsConnection(inEndpoint);
+            theConnection.start();
+            final Session theSession = theConnection.createSession(true, Session.SESSION_TRANSACTED);
+            try {
+                final MessageConsumer theConsumer =
+                    theSession.createConsumer(createJmsDestination(inEndpoint, theSession));
+                Message theJmsMessage = theConsumer.receive(inTimeout);
+                while (theJmsMessage != null) {
+                    final Exchange theExchange = inEndpoint.createExchange(theJmsMessage);
+                    /* Make sure the message body is extracted before the session is closed. */
+                    theExchange.getIn().getBody();
+                    theReceivedMessages.add(new CamelMoverMessage(theExchange));
+
+                    theJmsMessage = (theReceivedMessages.size() < inMaxMessages)
+                        ? theConsumer.receive(BATCH_NEXT_MESSAGE_TIMEOUT) : null;
+                }
+                if (inOutboundEndpointURI != null && !theReceivedMessages.isEmpty()) {
+                    dispatchBatch(theReceivedMessages, inOutboundEndpointURI);
+                }
+                theSession.commit();
+            } catch (Exception e) {
+                /* Received messages are redelivered, since they were not dispatched. */
+                theSession.rollback();
+                throw e;
+            } finally {
+                theSession.close();
+            }
+            LOGGER.debug("Received {} messages from {}", theReceivedMessages.size(), inEndpoint.getEndpointUri());
+        } catch (TransportException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new TransportException("Error occurred receiving messages", e);
+        } finally {
+            closeJmsConnection(theConnection);
+        }
+        return theReceivedMessages;
+    }
+
+    /**
+     * Creates the JMS destination of the supplied JMS endpoint.
+     *
+     * @param inEndpoint JMS endpoint.
+     * @param inSession JMS session in which to create destination.
+     * @return JMS destination.
+     * @throws JMSException If error occurs creating destination.
+     */
+    protected Destination createJmsDestination(final JmsEndpoint inEndpoint, final Session inSession)
+        throws JMSException {
+        if (inEndpoint.isPubSubDomain()) {
+            return inSession.createTopic(inEndpoint.getDestinationName());
+        }
+        return inSession.createQueue(inEndpoint.getDestinationName());
+    }
+
+    /**
+     * Creates a JMS connection using the pooled connection factory wrapping
+     * the connection factory of the supplied JMS endpoint.
+     *
+     * @param inEndpoint JMS endpoint.
+     * @return JMS connection, to be closed when no longer used.
+     * @throws JMSException If error occurs creating connection.
+     */
+    protected Connection createJmsConnection(final JmsEndpoint inEndpoint) throws JMSException {
+        return mJmsConnectionPools.findPooledConnectionFactory(
+            inEndpoint.getConfiguration().getConnectionFactory()).createConnection();
+    }
+
+    /**
+     * Closes the supplied JMS connection, if any, logging any errors.
+     *
+     * @param inConnection JMS connection to close, or null.
+     */
+    protected void closeJmsConnection(final Connection inConnection) {
+        if (inConnection != null) {
+            try {
+                inConnection.close();
+            } catch (JMSException e) {
+                LOGGER.warn("Failed to close JMS connection", e);
+            }
+        }
+    }
+
+    /**
+     * Refreshes the Camel configuration if the configuration resources have changed.
+     * Only application contexts of configuration resources that have been added,
+     * modified or removed are created or closed. Components obtained from, or
+     * defined in, such configuration resources are removed from the Camel
+     * context, together with their endpoints, polling consumers, pooled
+     * producers and continuous moves, while other components keep their connections.
+     * Pooled producers that have been idle too long are stopped regardless of
+     * whether the configuration resources have changed.
+     */
     @Override
     public synchronized void refreshConnectors() throws IOException {
+        /* Connectors are refreshed periodically, which is used to stop producers that have been idle too long. */
+        mProducerPool.evictIdleServices();
 
         final boolean theConfigRsrcChangedFlag = hasConfigurationResourceBeenModified();
 
         if (theConfigRsrcChangedFlag) {
             LOGGER.debug("Refreshing Camel configuration");
+            if (mCamelContext == null) {
+                createCamelInstance();
+            } else {
+                refreshConfigurationContexts(false);
+            }
+        } else {
+            LOGGER.debug("No changes in configuration resources, skips refresh");
+        }
+    }
+
+    /**
+     * Creates and starts the Camel context and creates the application contexts
+     * of all the configuration resources.
+     * If an application context cannot be created, the Camel context is torn down.
+     */
+    protected void createCamelInstance() {
+        mCamelRegistry = new CamelConfigurationRegistry(mParentApplicationContext);
+        /*
+         * The Camel context is closed when the transport service is stopped, which the Message Cowboy
+         * application context does when closed by its shutdown hook.
+         */
+        mCamelContext = new SpringCamelContext();
+        if (mParentApplicationContext != null) {
+            mCamelContext.setApplicationContext(mParentApplicationContext);
+        }
+        mCamelContext.setRegistry(mCamelRegistry);
+        try {
+            refreshConfigurationContexts(true);
+
+            // Since Camel is used in MC mainly for externally triggered tasks,
+            // we need to get around the standard non-blocking startup behavior.
+            // Starting the Camel Context and wait for it to finish.
+            BlockingCamelStarter theBlockingCamelStarter = new BlockingCamelStarter(mCamelContext);
+            theBlockingCamelStarter.get();
+        } catch (Exception e) {
+            LOGGER.error("Failed to start camel", e);
             try {
-                // Tear down previous Camel and Spring context in order.
                 killCamelInstance();
-            } catch (Exception e) {
-                LOGGER.warn("Failed to stop Camel context to refresh configuration.", e);
+            } catch (Exception theKillException) {
+                LOGGER.warn("Failed to tear down Camel context.", theKillException);
             }
+            throw new IllegalStateException("Failed to create Camel context", e);
+        }
 
-            // Create a new Spring context for Camel to use.
-            LOGGER.debug("Creating a Camel Spring Context with the following files {}",
-                StringUtils.join(mConfigResourcesLocationPatterns, ","));
-            mCamelSpringContext =
-                new FileSystemXmlApplicationContext(
-                    mConfigResourcesLocationPatterns.toArray(new String[mConfigResourcesLocationPatterns.size()]));
-            mCamelSpringContext.start();
-            mCamelSpringContext.registerShutdownHook(); // close with JVM.
-            mCamelContext = new SpringCamelContext(mCamelSpringContext);
+        // Continuous moves are lost with the old Camel context.
+        activateAllContinuousMoves();
 
+        LOGGER.info("Message Cowboy Transport using Apache Camel {} - Status: {}", mCamelContext.getVersion(),
+            mCamelContext.getStatus().toString());
+    }
+
+    /**
+     * Creates application contexts for configuration resources that have been
+     * added or modified and closes application contexts of configuration
+     * resources that have been modified or removed since the application
+     * contexts were created.<br/>
+     * New application contexts are created before the Camel context is
+     * modified. If an application context cannot be created when refreshing,
+     * any previous application context of the configuration resource is retained.
+     *
+     * @param inInitialFlag True if application contexts are created for the
+     * first time, in which case an exception is thrown if an application
+     * context cannot be created.
+     */
+    protected void refreshConfigurationContexts(final boolean inInitialFlag) {
+        final Map<String, XmlConfigurationResourceInfo> theConfigRsrcInfos =
+            new LinkedHashMap<String, XmlConfigurationResourceInfo>(mConfigurationResourceInfosByURL);
+
+        /* Create application contexts of new and modified configuration resources. */
+        final Map<String, FileSystemXmlApplicationContext> theNewContexts =
+            new LinkedHashMap<String, FileSystemXmlApplicationContext>();
+        for (Map.Entry<String, XmlConfigurationResourceInfo> theConfigRsrcEntry : theConfigRsrcInfos.entrySet()) {
+            final String theConfigRsrcURL = theConfigRsrcEntry.getKey();
+            final String theConfigRsrcChecksum = theConfigRsrcEntry.getValue().getResourceChecksum();
+            if (theConfigRsrcChecksum.equals(mConfigurationContextChecksums.get(theConfigRsrcURL))) {
+                continue;
+            }
             try {
-                // Since Camel is used in MC mainly for externally triggered tasks,
-                // we need to get around the standard non-blocking startup behavior.
-                // Starting the Camel Context and wait for it to finish.
-                BlockingCamelStarter theBlockingCamelStarter = new BlockingCamelStarter(mCamelContext);
-                theBlockingCamelStarter.get();
-                // Create Camel "clients".
-                mConsumerTemplate = mCamelContext.createConsumerTemplate();
-                mProducerTemplate = mCamelContext.createProducerTemplate();
+                LOGGER.debug("Creating a Camel Spring Context from {}", theConfigRsrcURL);
+                // The parent context makes shared beans, like the pooled JMS connection factory, available.
+                final FileSystemXmlApplicationContext theContext =
+                    new FileSystemXmlApplicationContext(new String[] { theConfigRsrcURL }, mParentApplicationContext);
+                theContext.start();
+                theNewContexts.put(theConfigRsrcURL, theContext);
+            } catch (final RuntimeException theException) {
+                if (inInitialFlag) {
+                    closeConfigurationContexts(theNewContexts.values());
+                    throw theException;
+                }
+                LOGGER.error("Failed to create Camel Spring Context from " + theConfigRsrcURL
+                    + ", retaining current configuration", theException);
+            }
+        }
 
-            } catch (Exception e) {
-                LOGGER.error("Failed to start camel", e);
+        /* Application contexts to close are those of modified and removed configuration resources. */
+        final Map<String, FileSystemXmlApplicationContext> theObsoleteContexts =
+            new LinkedHashMap<String, FileSystemXmlApplicationContext>();
+        for (Map.Entry<String, FileSystemXmlApplicationContext> theEntry : mConfigurationContexts.entrySet()) {
+            if (theNewContexts.containsKey(theEntry.getKey()) || !theConfigRsrcInfos.containsKey(theEntry.getKey())) {
+                theObsoleteContexts.put(theEntry.getKey(), theEntry.getValue());
             }
-            LOGGER.info("Message Cowboy Transport using Apache Camel {} - Status: {}", mCamelContext.getVersion(),
-                mCamelContext.getStatus().toString());
-            LOGGER.debug("The following Camel components are available: {}",
-                StringUtils.join(mCamelContext.getComponentNames(), ","));
-        } else {
-            LOGGER.debug("No changes in configuration resources, skips refresh");
         }
+        if (theNewContexts.isEmpty() && theObsoleteContexts.isEmpty()) {
+            return;
+        }
+
+        /*
+         * Components supplied by obsolete application contexts, and components
+         * which new application contexts will supply instead, are to be resolved anew.
+         */
+        final Set<String> theAffectedComponentNames = new HashSet<String>();
+        for (FileSystemXmlApplicationContext theContext : theObsoleteContexts.values()) {
+            theAffectedComponentNames.addAll(mCamelRegistry.removeComponentNames(theContext));
+        }
+        for (String theComponentName : mCamelContext.getComponentNames()) {
+            for (FileSystemXmlApplicationContext theContext : theNewContexts.values()) {
+                if (theContext.containsLocalBean(theComponentName)) {
+                    theAffectedComponentNames.add(theComponentName);
+                }
+            }
+        }
+        final List<ContinuousMoveDefinition> theAffectedMoves = new ArrayList<ContinuousMoveDefinition>();
+        for (ContinuousMoveDefinition theMove : mContinuousMoves.values()) {
+            if (theAffectedComponentNames.contains(StringUtils.substringBefore(theMove.getInboundEndpointURI(), ":"))
+                || theAffectedComponentNames.contains(
+                    StringUtils.substringBefore(theMove.getOutboundEndpointURI(), ":"))) {
+                theAffectedMoves.add(theMove);
+            }
+        }
+
+        /*
+         * Wait for ongoing dispatches and receives to complete and prevent new
+         * ones from starting until the affected components have been removed.
+         */
+        mTransportEngineLock.writeLock().lock();
+        try {
+            for (ContinuousMoveDefinition theMove : theAffectedMoves) {
+                try {
+                    deactivateContinuousMove(theMove);
+                } catch (final TransportException theException) {
+                    LOGGER.error("Error stopping continuous move " + theMove, theException);
+                }
+            }
+            for (String theComponentName : theAffectedComponentNames) {
+                removeComponent(theComponentName);
+            }
+
+            for (String theConfigRsrcURL : theObsoleteContexts.keySet()) {
+                mConfigurationContexts.remove(theConfigRsrcURL);
+                mConfigurationContextChecksums.remove(theConfigRsrcURL);
+            }
+            for (Map.Entry<String, FileSystemXmlApplicationContext> theEntry : theNewContexts.entrySet()) {
+                mConfigurationContexts.put(theEntry.getKey(), theEntry.getValue());
+                mConfigurationContextChecksums.put(theEntry.getKey(),
+                    theConfigRsrcInfos.get(theEntry.getKey()).getResourceChecksum());
+            }
+            mCamelRegistry.setApplicationContexts(orderConfigurationContexts(theConfigRsrcInfos.keySet()));
+        } finally {
+            mTransportEngineLock.writeLock().unlock();
+        }
+
+        closeConfigurationContexts(theObsoleteContexts.values());
+        activateContinuousMoves(theAffectedMoves);
+        LOGGER.info("Refreshed {} and closed {} Camel configuration resource contexts, components affected: {}",
+            theNewContexts.size(), theObsoleteContexts.size(), theAffectedComponentNames);
     }
 
     /**
-     * Disposes the Camel context.
-     * First, it closes the templates, then the Camel context.
-     * Finally, it also closes the applications context with Components.
-     * @throws Exception thrown if there is an issue closing Camel.
+     * Removes the component with the supplied name, its endpoints, polling
+     * consumers, pooled producers and JMS connections from the Camel context,
+     * in order for the component to be resolved anew the next time it is used.<br/>
+     * Must be invoked while holding the write lock of the transport engine lock.
+     *
+     * @param inComponentName Name of component to remove.
      */
-    protected void killCamelInstance() throws Exception {
-        if (mProducerTemplate != null) {
-            mProducerTemplate.stop();
+    protected void removeComponent(final String inComponentName) {
+        try {
+            final Collection<Endpoint> theRemovedEndpoints = mCamelContext.removeEndpoints(inComponentName + ":*");
+            mProducerPool.clear(theRemovedEndpoints);
+            mPollingConsumers.clear(theRemovedEndpoints);
+            for (Endpoint theEndpoint : theRemovedEndpoints) {
+                ServiceHelper.stopService(theEndpoint);
+            }
+
+            final Component theComponent = mCamelContext.removeComponent(inComponentName);
+            if (theComponent instanceof JmsComponent) {
+                mJmsConnectionPools.remove(((JmsComponent) theComponent).getConfiguration().getConnectionFactory());
+            }
+            if (theComponent != null) {
+                ServiceHelper.stopService(theComponent);
+            }
+            LOGGER.debug("Removed Camel component {} and {} endpoints", inComponentName, theRemovedEndpoints.size());
+        } catch (final Exception theException) {
+            LOGGER.warn("Failed to remove Camel component " + inComponentName, theException);
+        }
+    }
+
+    /**
+     * Retrieves the configuration resource application contexts in the order
+     * of the supplied configuration resource URLs.
+     *
+     * @param inConfigRsrcURLs Configuration resource URLs in order.
+     * @return Application contexts in configuration resource order.
+     */
+    protected List<FileSystemXmlApplicationContext> orderConfigurationContexts(
+        final Collection<String> inConfigRsrcURLs) {
+        final List<FileSystemXmlApplicationContext> theContexts = new ArrayList<FileSystemXmlApplicationContext>();
+        for (String theConfigRsrcURL : inConfigRsrcURLs) {
+            final FileSystemXmlApplicationContext theContext = mConfigurationContexts.get(theConfigRsrcURL);
+            if (theContext != null) {
+                theContexts.add(theContext);
+            }
+        }
+        return theContexts;
+    }
+
+    /**
+     * Closes the supplied configuration resource application contexts,
+     * logging any errors.
+     *
+     * @param inContexts Application contexts to close.
+     */
+    protected void closeConfigurationContexts(final Collection<FileSystemXmlApplicationContext> inContexts) {
+        for (FileSystemXmlApplicationContext theContext : inContexts) {
+            try {
+                theContext.close();
+            } catch (final Exception theException) {
+                LOGGER.warn("Failed to close Camel Spring Context.", theException);
+            }
         }
-        if (mConsumerTemplate != null) {
-            mConsumerTemplate.stop();
+    }
+
+    /**
+     * Adds a route moving messages from the inbound to the outbound endpoint
+     * of the supplied continuous move.
+     * The listener of the continuous move is notified when the processing of
+     * each exchange has completed or failed.
+     */
+    @Override
+    protected void activateContinuousMove(final ContinuousMoveDefinition inMove) throws TransportException {
+        try {
+            mCamelContext.addRoutes(new RouteBuilder() {
+                @Override
+                public void configure() throws Exception {
+                    from(inMove.getInboundEndpointURI()).routeId(inMove.getMoveId())
+                        .process(new Processor() {
+                            @Override
+                            public void process(final Exchange inExchange) throws Exception {
+                                final long theStartTime = System.currentTimeMillis();
+                                inExchange.addOnCompletion(new SynchronizationAdapter() {
+                                    @Override
+                                    public void onComplete(final Exchange inCompletedExchange) {
+                                        inMove.notifyMessageMoved(theStartTime);
+                                    }
+
+                                    @Override
+                                    public void onFailure(final Exchange inFailedExchange) {
+                                        inMove.notifyMessageMoveFailed(inFailedExchange.getException(),
+                                            theStartTime);
+                                    }
+                                });
+                            }
+                        })
+                        .to(inMove.getOutboundEndpointURI());
+                }
+            });
+        } catch (Exception e) {
+            throw new TransportException("Error occurred starting continuous move " + inMove.getMoveId(), e);
         }
-        if (mCamelContext != null && !mCamelContext.isStopped()) {
-            mCamelContext.stop();
+    }
+
+    @Override
+    protected void deactivateContinuousMove(final ContinuousMoveDefinition inMove) throws TransportException {
+        try {
+            mCamelContext.stopRoute(inMove.getMoveId());
+            mCamelContext.removeRoute(inMove.getMoveId());
+        } catch (Exception e) {
+            throw new TransportException("Error occurred stopping continuous move " + inMove.getMoveId(), e);
         }
-        if (mCamelSpringContext != null) {
-            mCamelSpringContext.close(); // also unregisters shutdown hook.
+    }
+
+    /**
+     * Disposes the Camel context.
+     * First, it stops the polling consumers, pooled producers and JMS connections, then the Camel context.
+     * Finally, it also closes the application contexts with Components.
+     * @throws Exception thrown if there is an issue closing Camel.
+     */
+    protected void killCamelInstance() throws Exception {
+        mProducerPool.clear();
+        mPollingConsumers.clear();
+        mJmsConnectionPools.clear();
+        try {
+            if (mCamelContext != null && !mCamelContext.isStopped()) {
+                mCamelContext.stop();
+            }
+        } finally {
+            mCamelContext = null;
+            mCamelRegistry = null;
+            closeConfigurationContexts(mConfigurationContexts.values());
+            mConfigurationContexts.clear();
+            mConfigurationContextChecksums.clear();
         }
     }
 
@@ -0,0 +1,248 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the directories of file system configuration resource location
+ * patterns for changes.<br/>
+ * Changes are reported first when no further changes have been detected
+ * during the debounce period, in order for a series of rapid modifications
+ * to result in only one refresh.
+ * Only location patterns starting with "file:" can be watched.
+ *
+ * @author Ivan Krizsan
+ */
+class ConfigurationResourceWatcher implements Runnable {
+    /* Constant(s): */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurationResourceWatcher.class);
+    /** Prefix of location patterns that can be watched. */
+    protected static final String FILE_LOCATION_PREFIX = "file:";
+
+    /* Instance variable(s): */
+    protected final long mDebouncePeriod;
+    protected WatchService mWatchService;
+    protected Thread mWatcherThread;
+    /** Flag indicating whether subdirectories of watched directories are also to be watched. */
+    protected boolean mWatchSubdirectoriesFlag;
+    /** Flag indicating whether changes have been detected but not yet reported. */
+    protected boolean mChangesPendingFlag;
+    /** Time in milliseconds of the latest detected change. */
+    protected long mLastChangeTime;
+
+    /**
+     * Creates a watcher that reports changes when no further changes have
+     * been detected during the supplied period.
+     *
+     * @param inDebouncePeriod Debounce period in milliseconds.
+     */
+    public ConfigurationResourceWatcher(final long inDebouncePeriod) {
+        mDebouncePeriod = inDebouncePeriod;
+    }
+
+    /**
+     * Starts watching the directories of the supplied location patterns.
+     * Nothing is watched unless all location patterns can be watched, since
+     * changes to other resources would go undetected.
+     *
+     * @param inLocationPatterns Configuration resource location patterns.
+     * @return True if all location patterns are watched, false otherwise.
+     */
+    public synchronized boolean start(final List<String> inLocationPatterns) {
+        try {
+            mWatchService = FileSystems.getDefault().newWatchService();
+            for (String theLocationPattern : inLocationPatterns) {
+                final Path theDirectory = findRootDirectory(theLocationPattern);
+                if (theDirectory == null) {
+                    LOGGER.debug("Configuration resource location {} cannot be watched", theLocationPattern);
+                    stop();
+                    return false;
+                }
+
+                if (theLocationPattern.contains("**")) {
+                    mWatchSubdirectoriesFlag = true;
+                    registerDirectoryTree(theDirectory);
+                } else {
+                    theDirectory.register(mWatchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                }
+                LOGGER.debug("Watching directory {} for configuration changes", theDirectory);
+            }
+        } catch (final IOException theException) {
+            LOGGER.warn("Unable to watch configuration resources for changes", theException);
+            stop();
+            return false;
+        }
+
+        mWatcherThread = new Thread(this, "ConfigurationResourceWatcher");
+        mWatcherThread.setDaemon(true);
+        mWatcherThread.start();
+        return true;
+    }
+
+    /**
+     * Stops watching for changes.
+     */
+    public synchronized void stop() {
+        if (mWatchService != null) {
+            try {
+                mWatchService.close();
+            } catch (final IOException theException) {
+                LOGGER.warn("Error closing configuration resource watch service", theException);
+            }
+            mWatchService = null;
+        }
+        mWatcherThread = null;
+    }
+
+    /**
+     * Determines whether changes have been detected since the last time
+     * changes were reported and no further changes have been detected during
+     * the debounce period. Changes are only reported once.
+     *
+     * @return True if changes are to be reported, false otherwise.
+     */
+    public synchronized boolean consumeChanges() {
+        if (mChangesPendingFlag && System.currentTimeMillis() - mLastChangeTime >= mDebouncePeriod) {
+            mChangesPendingFlag = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether the watcher is watching for changes.
+     *
+     * @return True if watching, false otherwise.
+     */
+    public synchronized boolean isWatching() {
+        return mWatchService != null;
+    }
+
+    /**
+     * Waits for changes in the watched directories and records the time
+     * of the latest change.
+     */
+    @Override
+    public void run() {
+        final WatchService theWatchService;
+        synchronized (this) {
+            theWatchService = mWatchService;
+        }
+        if (theWatchService == null) {
+            return;
+        }
+
+        try {
+            while (true) {
+                final WatchKey theWatchKey = theWatchService.take();
+                for (WatchEvent<?> theEvent : theWatchKey.pollEvents()) {
+                    LOGGER.debug("Configuration resource change {} {}", theEvent.kind(), theEvent.context());
+                    if (mWatchSubdirectoriesFlag && theEvent.kind() == ENTRY_CREATE) {
+                        final Path theCreatedPath = ((Path) theWatchKey.watchable()).resolve((Path) theEvent.context());
+                        if (Files.isDirectory(theCreatedPath)) {
+                            registerDirectoryTree(theCreatedPath);
+                        }
+                    }
+                }
+                theWatchKey.reset();
+
+                synchronized (this) {
+                    mChangesPendingFlag = true;
+                    mLastChangeTime = System.currentTimeMillis();
+                }
+            }
+        } catch (final ClosedWatchServiceException theException) {
+            LOGGER.debug("Configuration resource watcher stopped");
+        } catch (final InterruptedException theException) {
+            LOGGER.debug("Configuration resource watcher interrupted");
+        } catch (final IOException theException) {
+            LOGGER.error("Configuration resource watcher failed, changes will not be detected", theException);
+        }
+    }
+
+    /**
+     * Registers the supplied directory and all its subdirectories with the watch service.
+     *
+     * @param inDirectory Root of directory tree to register.
+     * @throws IOException If error occurs registering directory.
+     */
+    protected void registerDirectoryTree(final Path inDirectory) throws IOException {
+        final WatchService theWatchService = mWatchService;
+        Files.walkFileTree(inDirectory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path inDir, final BasicFileAttributes inAttributes)
+                throws IOException {
+                inDir.register(theWatchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Finds the existing directory in which resources matching the supplied
+     * location pattern reside, that is the part of the pattern preceding
+     * the first path segment containing wildcards.
+     *
+     * @param inLocationPattern Location pattern.
+     * @return Directory, or null if the pattern is not a file location pattern
+     * or the directory does not exist.
+     */
+    protected static Path findRootDirectory(final String inLocationPattern) {
+        if (!inLocationPattern.startsWith(FILE_LOCATION_PREFIX)) {
+            return null;
+        }
+
+        String thePath = inLocationPattern.substring(FILE_LOCATION_PREFIX.length());
+        if (thePath.startsWith("//")) {
+            thePath = thePath.substring(2);
+        }
+        int theWildcardIndex = thePath.length();
+        for (char theWildcard : new char[] { '*', '?', '{', '[' }) {
+            final int theIndex = thePath.indexOf(theWildcard);
+            if (theIndex >= 0 && theIndex < theWildcardIndex) {
+                theWildcardIndex = theIndex;
+            }
+        }
+
+        /* Without wildcards the location is a file, which directory is watched. */
+        final int theLastSeparatorIndex = thePath.lastIndexOf('/', theWildcardIndex - 1);
+        final String theDirectoryPath =
+            theLastSeparatorIndex < 0 ? "." : thePath.substring(0, theLastSeparatorIndex + 1);
+        final Path theDirectory = Paths.get(theDirectoryPath).toAbsolutePath().normalize();
+        return Files.isDirectory(theDirectory) ? theDirectory : null;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the definition of one continuous move, that is an identifier,
+ * the URI of the endpoint from which messages are received and the URI of
+ * the endpoint to which received messages are dispatched.
+ * A continuous move definition may also hold a listener to be notified of
+ * moved messages, which is not part of the definition when comparing
+ * definitions.
+ * Instances of this class are immutable.
+ *
+ * @author Ivan Krizsan
+ */
+class ContinuousMoveDefinition {
+    /* Constant(s): */
+    /** Class logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContinuousMoveDefinition.class);
+
+    /* Instance variable(s): */
+    protected final String mMoveId;
+    protected final String mInboundEndpointURI;
+    protected final String mOutboundEndpointURI;
+    protected final ContinuousMoveListener mListener;
+
+    /**
+     * Creates a continuous move definition with the supplied id moving
+     * messages from the supplied inbound endpoint to the supplied outbound
+     * endpoint.
+     *
+     * @param inMoveId Id of continuous move.
+     * @param inInboundEndpointURI URI of endpoint to receive messages from.
+     * @param inOutboundEndpointURI URI of endpoint to dispatch messages to.
+     */
+    public ContinuousMoveDefinition(final String inMoveId, final String inInboundEndpointURI,
+        final String inOutboundEndpointURI) {
+        this(inMoveId, inInboundEndpointURI, inOutboundEndpointURI, null);
+    }
+
+    /**
+     * Creates a continuous move definition with the supplied id moving
+     * messages from the supplied inbound endpoint to the supplied outbound
+     * endpoint and notifying the supplied listener of moved messages.
+     *
+     * @param inMoveId Id of continuous move.
+     * @param inInboundEndpointURI URI of endpoint to receive messages from.
+     * @param inOutboundEndpointURI URI of endpoint to dispatch messages to.
+     * @param inListener Listener notified of moved messages, or null.
+     */
+    public ContinuousMoveDefinition(final String inMoveId, final String inInboundEndpointURI,
+        final String inOutboundEndpointURI, final ContinuousMoveListener inListener) {
+        if (inMoveId == null || inInboundEndpointURI == null || inOutboundEndpointURI == null) {
+            throw new IllegalArgumentException("Id, inbound and outbound endpoint URIs must not be null");
+        }
+
+        mMoveId = inMoveId;
+        mInboundEndpointURI = inInboundEndpointURI;
+        mOutboundEndpointURI = inOutboundEndpointURI;
+        mListener = inListener;
+    }
+
+    public String getMoveId() {
+        return mMoveId;
+    }
+
+    public String getInboundEndpointURI() {
+        return mInboundEndpointURI;
+    }
+
+    public String getOutboundEndpointURI() {
+        return mOutboundEndpointURI;
+    }
+
+    public ContinuousMoveListener getListener() {
+        return mListener;
+    }
+
+    /**
+     * Notifies the listener of the continuous move, if any, that a message
+     * has been moved.
+     * Exceptions thrown by the listener are logged and not propagated, since
+     * they are not to affect the move.
+     *
+     * @param inStartTime Time in milliseconds at which the move started.
+     */
+    public void notifyMessageMoved(final long inStartTime) {
+        if (mListener != null) {
+            try {
+                mListener.messageMoved(mMoveId, System.currentTimeMillis() - inStartTime);
+            } catch (final RuntimeException theException) {
+                LOGGER.warn("Error notifying listener of continuous move " + mMoveId, theException);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listener of the continuous move, if any, that a message
+     * could not be moved.
+     * Exceptions thrown by the listener are logged and not propagated.
+     *
+     * @param inException Exception that occurred moving the message, or null.
+     * @param inStartTime Time in milliseconds at which the move started.
+     */
+    public void notifyMessageMoveFailed(final Throwable inException, final long inStartTime) {
+        if (mListener != null) {
+            try {
+                mListener.messageMoveFailed(mMoveId, inException, System.currentTimeMillis() - inStartTime);
+            } catch (final RuntimeException theException) {
+                LOGGER.warn("Error notifying listener of continuous move " + mMoveId, theException);
+            }
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        final int thePrime = 31;
+        int theResult = 1;
+        theResult = thePrime * theResult + mMoveId.hashCode();
+        theResult = thePrime * theResult + mInboundEndpointURI.hashCode();
+        theResult = thePrime * theResult + mOutboundEndpointURI.hashCode();
+        return theResult;
+    }
+
+    @Override
+    public boolean equals(final Object inObjectToCompare) {
+        if (this == inObjectToCompare) {
+            return true;
+        }
+        if (inObjectToCompare == null) {
+            return false;
+        }
+        if (getClass() != inObjectToCompare.getClass()) {
+            return false;
+        }
+        final ContinuousMoveDefinition theOtherMoveDefinition = (ContinuousMoveDefinition) inObjectToCompare;
+        return mMoveId.equals(theOtherMoveDefinition.mMoveId)
+            && mInboundEndpointURI.equals(theOtherMoveDefinition.mInboundEndpointURI)
+            && mOutboundEndpointURI.equals(theOtherMoveDefinition.mOutboundEndpointURI);
+    }
+
+    @Override
+    public String toString() {
+        return mMoveId + " [" + mInboundEndpointURI + " -> " + mOutboundEndpointURI + "]";
+    }
+}
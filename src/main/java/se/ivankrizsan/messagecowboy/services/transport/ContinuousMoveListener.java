@@ -0,0 +1,47 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+/**
+ * Listener notified by the transport service each time a continuous move
+ * has moved, or failed to move, a message.<br/>
+ * Listeners are invoked by threads of the transport engine and must not
+ * block.
+ *
+ * @author Ivan Krizsan
+ */
+public interface ContinuousMoveListener {
+    /**
+     * Notifies the listener that the continuous move with the supplied id
+     * has moved one message.
+     *
+     * @param inMoveId Id of continuous move.
+     * @param inDuration Time in milliseconds it took to move the message.
+     */
+    abstract void messageMoved(final String inMoveId, final long inDuration);
+
+    /**
+     * Notifies the listener that the continuous move with the supplied id
+     * failed to move a message.
+     *
+     * @param inMoveId Id of continuous move.
+     * @param inException Exception that occurred moving the message, or null
+     * if not available.
+     * @param inDuration Time in milliseconds spent before the move failed.
+     */
+    abstract void messageMoveFailed(final String inMoveId, final Throwable inException, final long inDuration);
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import org.mule.api.MuleContext;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleException;
+import org.mule.api.construct.FlowConstruct;
+import org.mule.api.construct.FlowConstructAware;
+import org.mule.api.context.MuleContextAware;
+import org.mule.api.lifecycle.Disposable;
+import org.mule.api.lifecycle.Initialisable;
+import org.mule.api.lifecycle.InitialisationException;
+import org.mule.api.lifecycle.Lifecycle;
+import org.mule.api.lifecycle.Startable;
+import org.mule.api.lifecycle.Stoppable;
+import org.mule.api.processor.MessageProcessor;
+
+/**
+ * Mule message processor that dispatches messages of a continuous move
+ * using another message processor, commonly the outbound endpoint of the
+ * continuous move, and notifies the listener of the continuous move of
+ * each moved message.<br/>
+ * Injection of the flow construct and Mule context and lifecycle calls are
+ * passed on to the other message processor, as if it was part of the flow
+ * of the continuous move.
+ *
+ * @author Ivan Krizsan
+ */
+class ContinuousMoveMessageProcessor implements MessageProcessor, FlowConstructAware, MuleContextAware,
+    Lifecycle {
+    /* Constant(s): */
+
+    /* Instance variable(s): */
+    protected final ContinuousMoveDefinition mMove;
+    protected final MessageProcessor mDispatchingProcessor;
+
+    /**
+     * Creates a message processor dispatching messages of the supplied
+     * continuous move using the supplied message processor.
+     *
+     * @param inMove Continuous move which listener to notify of moved messages.
+     * @param inDispatchingProcessor Message processor dispatching messages.
+     */
+    public ContinuousMoveMessageProcessor(final ContinuousMoveDefinition inMove,
+        final MessageProcessor inDispatchingProcessor) {
+        mMove = inMove;
+        mDispatchingProcessor = inDispatchingProcessor;
+    }
+
+    @Override
+    public MuleEvent process(final MuleEvent inEvent) throws MuleException {
+        final long theStartTime = System.currentTimeMillis();
+        try {
+            final MuleEvent theResultEvent = mDispatchingProcessor.process(inEvent);
+            mMove.notifyMessageMoved(theStartTime);
+            return theResultEvent;
+        } catch (final MuleException | RuntimeException theException) {
+            mMove.notifyMessageMoveFailed(theException, theStartTime);
+            throw theException;
+        }
+    }
+
+    @Override
+    public void setFlowConstruct(final FlowConstruct inFlowConstruct) {
+        if (mDispatchingProcessor instanceof FlowConstructAware) {
+            ((FlowConstructAware) mDispatchingProcessor).setFlowConstruct(inFlowConstruct);
+        }
+    }
+
+    @Override
+    public void setMuleContext(final MuleContext inMuleContext) {
+        if (mDispatchingProcessor instanceof MuleContextAware) {
+            ((MuleContextAware) mDispatchingProcessor).setMuleContext(inMuleContext);
+        }
+    }
+
+    @Override
+    public void initialise() throws InitialisationException {
+        if (mDispatchingProcessor instanceof Initialisable) {
+            ((Initialisable) mDispatchingProcessor).initialise();
+        }
+    }
+
+    @Override
+    public void start() throws MuleException {
+        if (mDispatchingProcessor instanceof Startable) {
+            ((Startable) mDispatchingProcessor).start();
+        }
+    }
+
+    @Override
+    public void stop() throws MuleException {
+        if (mDispatchingProcessor instanceof Stoppable) {
+            ((Stoppable) mDispatchingProcessor).stop();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (mDispatchingProcessor instanceof Disposable) {
+            ((Disposable) mDispatchingProcessor).dispose();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of endpoint objects built by a transport engine, keyed by
+ * endpoint URI.<br/>
+ * When the cache is full, the least recently used endpoint is evicted.
+ * The cache keeps count of the number of lookups that found, respectively
+ * did not find, an endpoint in the cache.
+ *
+ * @param <E> Type of endpoints held in the cache.
+ * @author Ivan Krizsan
+ */
+class EndpointCache<E> {
+    /* Instance variable(s): */
+    /** Cached endpoints in least recently used first order. */
+    protected final Map<String, E> mEndpoints;
+    /** Number of lookups that found an endpoint in the cache. */
+    protected long mHitCount;
+    /** Number of lookups that did not find an endpoint in the cache. */
+    protected long mMissCount;
+
+    /**
+     * Creates a cache holding at most the supplied number of endpoints.
+     *
+     * @param inMaxSize Maximum number of endpoints in cache.
+     */
+    public EndpointCache(final int inMaxSize) {
+        if (inMaxSize < 1) {
+            throw new IllegalArgumentException("Maximum cache size must be at least one");
+        }
+
+        mEndpoints = new LinkedHashMap<String, E>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, E> inEldestEntry) {
+                return size() > inMaxSize;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the endpoint with the supplied URI from the cache.
+     *
+     * @param inEndpointURI Endpoint URI.
+     * @return Cached endpoint, or null if no endpoint with the URI in cache.
+     */
+    public synchronized E get(final String inEndpointURI) {
+        final E theEndpoint = mEndpoints.get(inEndpointURI);
+        if (theEndpoint != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return theEndpoint;
+    }
+
+    /**
+     * Adds the supplied endpoint to the cache, evicting the least recently
+     * used endpoint if the cache is full.
+     *
+     * @param inEndpointURI Endpoint URI.
+     * @param inEndpoint Endpoint to cache.
+     */
+    public synchronized void put(final String inEndpointURI, final E inEndpoint) {
+        mEndpoints.put(inEndpointURI, inEndpoint);
+    }
+
+    /**
+     * Removes all endpoints from the cache.<br/>
+     * Hit and miss counters are retained.
+     */
+    public synchronized void clear() {
+        mEndpoints.clear();
+    }
+
+    public synchronized int size() {
+        return mEndpoints.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+}
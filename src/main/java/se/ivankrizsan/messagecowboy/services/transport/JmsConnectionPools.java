@@ -0,0 +1,105 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jms.ConnectionFactory;
+
+import org.apache.activemq.jms.pool.PooledConnectionFactory;
+
+/**
+ * Pooled JMS connection factories used by the transport services when
+ * dispatching and receiving batches of messages, keyed by the connection
+ * factory of the JMS component or connector.<br/>
+ * Connection factories that already are pooled are used as they are, while
+ * other connection factories, of any JMS provider, are wrapped in a pooled
+ * connection factory created the first time the connection factory is used.
+ * Thus a connection need not be opened for every batch.
+ *
+ * @author Ivan Krizsan
+ */
+class JmsConnectionPools {
+    /* Instance variable(s): */
+    /** Pooled connection factories keyed by the connection factory they wrap. */
+    protected final Map<ConnectionFactory, PooledConnectionFactory> mPooledConnectionFactories =
+        new IdentityHashMap<ConnectionFactory, PooledConnectionFactory>();
+
+    /**
+     * Finds a pooled connection factory creating connections using the
+     * supplied connection factory.
+     * If the supplied connection factory is pooled, it is returned.
+     *
+     * @param inConnectionFactory Connection factory of JMS component or
+     * connector.
+     * @return Pooled connection factory.
+     */
+    public synchronized ConnectionFactory findPooledConnectionFactory(
+        final ConnectionFactory inConnectionFactory) {
+        if (inConnectionFactory instanceof PooledConnectionFactory) {
+            return inConnectionFactory;
+        }
+
+        PooledConnectionFactory thePooledConnectionFactory = mPooledConnectionFactories.get(inConnectionFactory);
+        if (thePooledConnectionFactory == null) {
+            thePooledConnectionFactory = new PooledConnectionFactory();
+            thePooledConnectionFactory.setConnectionFactory(inConnectionFactory);
+            thePooledConnectionFactory.start();
+            mPooledConnectionFactories.put(inConnectionFactory, thePooledConnectionFactory);
+        }
+        return thePooledConnectionFactory;
+    }
+
+    /**
+     * Stops the pooled connection factory wrapping the supplied connection
+     * factory, if any, closing its connections.<br/>
+     * Must not be invoked while a batch is being dispatched or received
+     * using the connection factory.
+     *
+     * @param inConnectionFactory Connection factory of JMS component or
+     * connector.
+     */
+    public void remove(final ConnectionFactory inConnectionFactory) {
+        final PooledConnectionFactory thePooledConnectionFactory;
+        synchronized (this) {
+            thePooledConnectionFactory = mPooledConnectionFactories.remove(inConnectionFactory);
+        }
+        if (thePooledConnectionFactory != null) {
+            thePooledConnectionFactory.stop();
+        }
+    }
+
+    /**
+     * Stops all the pooled connection factories created, closing their
+     * connections.<br/>
+     * Must not be invoked while a batch is being dispatched or received.
+     */
+    public void clear() {
+        final List<PooledConnectionFactory> thePooledConnectionFactories;
+        synchronized (this) {
+            thePooledConnectionFactories =
+                new ArrayList<PooledConnectionFactory>(mPooledConnectionFactories.values());
+            mPooledConnectionFactories.clear();
+        }
+        for (PooledConnectionFactory thePooledConnectionFactory : thePooledConnectionFactories) {
+            thePooledConnectionFactory.stop();
+        }
+    }
+}
@@ -17,11 +17,37 @@
 package se.ivankrizsan.messagecowboy.services.transport;
 
 import java.io.IOException;
+import java.net.BindException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
 
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.mule.DefaultMuleMessage;
+import org.mule.MessageExchangePattern;
 import org.mule.api.MuleContext;
 import org.mule.api.MuleException;
 import org.mule.api.MuleMessage;
+import org.mule.api.endpoint.EndpointBuilder;
+import org.mule.api.endpoint.EndpointFactory;
+import org.mule.api.endpoint.ImmutableEndpoint;
+import org.mule.api.endpoint.InboundEndpoint;
+import org.mule.api.endpoint.OutboundEndpoint;
+import org.mule.api.processor.MessageProcessor;
+import org.mule.config.spring.SpringXmlConfigurationBuilder;
+import org.mule.construct.Flow;
 import org.mule.module.client.MuleClient;
+import org.mule.transport.jms.JmsConnector;
+import org.mule.transport.jms.JmsMessageUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
@@ -44,9 +70,30 @@ import se.ivankrizsan.messagecowboy.services.transport.exceptions.TransportExcep
  * The second kind is a Mule flow. Such a flow handles a more complex scenario
  * which may involve delivering a message in a transaction, re-delivery of
  * failed messages etc.<br/>
- * Methods accessing the Mule client instance variable are synchronized in
- * order to prevent any changes to the Mule client while dispatching or
- * receiving a message and vice versa.
+ * Continuous moves are implemented as Mule flows, created programmatically,
+ * with an inbound endpoint as message source and an outbound endpoint as
+ * the only message processor.<br/>
+ * Batches of messages to or from endpoints using a Mule JMS connector are
+ * dispatched and received in one transacted JMS session, committing once per
+ * batch. The payload, JMS properties and correlation id of such messages are
+ * transferred. When moving a batch of messages from such an endpoint, the
+ * receiving JMS session is committed only after the messages have been
+ * dispatched. JMS connections are obtained from pooled connection factories
+ * wrapping the connection factories of the JMS connectors.<br/>
+ * Dispatching and receiving messages is done while holding the read lock of
+ * the transport engine lock, allowing multiple tasks to move messages in
+ * parallel. Any changes to the Mule client are made while holding the write
+ * lock, in order to prevent any changes to the Mule client while dispatching
+ * or receiving a message and vice versa. When the configuration is refreshed,
+ * the new Mule client is created before the write lock is acquired, so that
+ * dispatching and receiving is only held up while the clients are switched.
+ * If the new Mule client cannot be started while the current Mule client is
+ * running, for instance since both listen on the same port, the current Mule
+ * client is stopped before the new Mule client is created. A new
+ * configuration that fails for any other reason leaves the current Mule
+ * client running.<br/>
+ * Inbound and outbound endpoints are built once per endpoint URI and cached
+ * until the Mule client is replaced.
  *
  * @author Ivan Krizsan
  */
@@ -56,40 +103,62 @@ class MuleTransportService extends AbstractXmlConfigurerdTransportService {
     /** Class logger. */
     static final Logger LOGGER = LoggerFactory
         .getLogger(MuleTransportService.class);
+    /** Maximum number of inbound, respectively outbound, endpoints cached. */
+    public static final int ENDPOINT_CACHE_MAX_SIZE = 100;
+    /** Text of error messages telling that an address or port already is in use. */
+    protected static final String ALREADY_IN_USE_MESSAGE = "already in use";
 
     /* Instance variable(s): */
     /** Mule client used to transfer messages. */
     protected MuleClient mMuleClient;
+    /** Inbound endpoints built by the current Mule client, keyed by URI. */
+    protected final EndpointCache<InboundEndpoint> mInboundEndpointCache =
+        new EndpointCache<InboundEndpoint>(ENDPOINT_CACHE_MAX_SIZE);
+    /** One-way outbound endpoints built by the current Mule client, keyed by URI. */
+    protected final EndpointCache<OutboundEndpoint> mOutboundEndpointCache =
+        new EndpointCache<OutboundEndpoint>(ENDPOINT_CACHE_MAX_SIZE);
+    /** Pooled connection factories used when dispatching and receiving batches of JMS messages. */
+    protected final JmsConnectionPools mJmsConnectionPools =
+        new JmsConnectionPools();
+
     @SuppressWarnings("rawtypes")
     @Override
-    public synchronized void dispatch(final MoverMessage inMessage,
+    public void dispatch(final MoverMessage inMessage,
         final String inEndpointURI) throws TransportException {
+        mTransportEngineLock.readLock().lock();
         try {
             @SuppressWarnings("unchecked")
             final MoverMessage<MuleMessage> theMuleMoverMessage = inMessage;
-            mMuleClient.dispatch(inEndpointURI, theMuleMoverMessage
-                .getMessage());
+            mMuleClient.getMuleContext().getClient().process(
+                findOutboundEndpoint(inEndpointURI),
+                theMuleMoverMessage.getMessage());
 
             LOGGER.debug("Sent message: {}", inMessage);
         } catch (MuleException theException) {
             throw new TransportException("Error occurred sending message",
                 theException);
+        } finally {
+            mTransportEngineLock.readLock().unlock();
         }
     }
 
     @Override
-    public synchronized MoverMessage<MuleMessage> receive(
+    public MoverMessage<MuleMessage> receive(
         final String inEndpointURI, final long inTimeout)
         throws TransportException {
         MuleMessage theReceivedMsg = null;
         MoverMessage<MuleMessage> theMoverMessage = null;
+        mTransportEngineLock.readLock().lock();
         try {
-            theReceivedMsg = mMuleClient.request(inEndpointURI, inTimeout);
+            theReceivedMsg = mMuleClient.getMuleContext().getClient().request(
+                findInboundEndpoint(inEndpointURI), inTimeout);
 
             LOGGER.debug("Received message: {}", theReceivedMsg);
         } catch (MuleException theException) {
             throw new TransportException("Error occurred receiving message",
                 theException);
+        } finally {
+            mTransportEngineLock.readLock().unlock();
         }
 
         if (theReceivedMsg != null) {
@@ -98,6 +167,356 @@ class MuleTransportService extends AbstractXmlConfigurerdTransportService {
         return theMoverMessage;
     }
 
+    @SuppressWarnings("rawtypes")
+    @Override
+    public void dispatchBatch(final List<MoverMessage> inMessages,
+        final String inEndpointURI) throws TransportException {
+        mTransportEngineLock.readLock().lock();
+        try {
+            final ImmutableEndpoint theEndpoint =
+                findOutboundEndpoint(inEndpointURI);
+            if (theEndpoint.getConnector() instanceof JmsConnector) {
+                dispatchJmsBatch(inMessages, theEndpoint);
+            } else {
+                super.dispatchBatch(inMessages, inEndpointURI);
+            }
+        } catch (final MuleException theException) {
+            throw new TransportException("Error occurred sending messages",
+                theException);
+        } finally {
+            mTransportEngineLock.readLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public List<MoverMessage> receiveBatch(final String inEndpointURI,
+        final long inTimeout, final int inMaxMessages)
+        throws TransportException {
+        mTransportEngineLock.readLock().lock();
+        try {
+            final ImmutableEndpoint theEndpoint =
+                findInboundEndpoint(inEndpointURI);
+            if (theEndpoint.getConnector() instanceof JmsConnector) {
+                return receiveJmsBatch(theEndpoint, inTimeout, inMaxMessages,
+                    null);
+            } else {
+                return super.receiveBatch(inEndpointURI, inTimeout,
+                    inMaxMessages);
+            }
+        } catch (final MuleException theException) {
+            throw new TransportException("Error occurred receiving messages",
+                theException);
+        } finally {
+            mTransportEngineLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int moveBatch(final String inInboundEndpointURI,
+        final String inOutboundEndpointURI, final long inTimeout,
+        final int inMaxMessages) throws TransportException {
+        mTransportEngineLock.readLock().lock();
+        try {
+            final ImmutableEndpoint theEndpoint =
+                findInboundEndpoint(inInboundEndpointURI);
+            if (theEndpoint.getConnector() instanceof JmsConnector) {
+                return receiveJmsBatch(theEndpoint, inTimeout, inMaxMessages,
+                    inOutboundEndpointURI).size();
+            } else {
+                return super.moveBatch(inInboundEndpointURI,
+                    inOutboundEndpointURI, inTimeout, inMaxMessages);
+            }
+        } catch (final MuleException theException) {
+            throw new TransportException("Error occurred receiving messages",
+                theException);
+        } finally {
+            mTransportEngineLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the inbound endpoint with the supplied URI in the endpoint cache.
+     * If there is no such endpoint in the cache, the endpoint is built by
+     * the current Mule client and added to the cache.<br/>
+     * Must be invoked while holding the transport engine lock.
+     *
+     * @param inEndpointURI Inbound endpoint URI.
+     * @return Inbound endpoint.
+     * @throws MuleException If error occurs building endpoint.
+     */
+    protected InboundEndpoint findInboundEndpoint(final String inEndpointURI)
+        throws MuleException {
+        InboundEndpoint theEndpoint = mInboundEndpointCache.get(inEndpointURI);
+        if (theEndpoint == null) {
+            theEndpoint = mMuleClient.getMuleContext().getEndpointFactory()
+                .getInboundEndpoint(inEndpointURI);
+            mInboundEndpointCache.put(inEndpointURI, theEndpoint);
+        }
+        return theEndpoint;
+    }
+
+    /**
+     * Finds the one-way outbound endpoint with the supplied URI in the
+     * endpoint cache.
+     * If there is no such endpoint in the cache, the endpoint is built by
+     * the current Mule client and added to the cache.<br/>
+     * Must be invoked while holding the transport engine lock.
+     *
+     * @param inEndpointURI Outbound endpoint URI.
+     * @return Outbound endpoint.
+     * @throws MuleException If error occurs building endpoint.
+     */
+    protected OutboundEndpoint findOutboundEndpoint(final String inEndpointURI)
+        throws MuleException {
+        OutboundEndpoint theEndpoint = mOutboundEndpointCache.get(inEndpointURI);
+        if (theEndpoint == null) {
+            final EndpointFactory theEndpointFactory =
+                mMuleClient.getMuleContext().getEndpointFactory();
+            final EndpointBuilder theEndpointBuilder =
+                theEndpointFactory.getEndpointBuilder(inEndpointURI);
+            theEndpointBuilder.setExchangePattern(MessageExchangePattern.ONE_WAY);
+            theEndpoint = theEndpointFactory.getOutboundEndpoint(theEndpointBuilder);
+            mOutboundEndpointCache.put(inEndpointURI, theEndpoint);
+        }
+        return theEndpoint;
+    }
+
+    /**
+     * Removes all endpoints from the endpoint caches.<br/>
+     * Must be invoked while holding the write lock of the transport engine
+     * lock.
+     */
+    protected void clearEndpointCaches() {
+        mInboundEndpointCache.clear();
+        mOutboundEndpointCache.clear();
+    }
+
+    /**
+     * Dispatches the supplied messages to the supplied JMS endpoint in one
+     * transacted JMS session.
+     *
+     * @param inMessages Messages to dispatch.
+     * @param inEndpoint Endpoint using a JMS connector to dispatch messages to.
+     * @throws TransportException If error occurs dispatching messages. No
+     * messages have been dispatched.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected void dispatchJmsBatch(final List<MoverMessage> inMessages,
+        final ImmutableEndpoint inEndpoint) throws TransportException {
+        final JmsConnector theJmsConnector =
+            (JmsConnector) inEndpoint.getConnector();
+        Connection theConnection = null;
+        try {
+            theConnection = createJmsConnection(theJmsConnector);
+            final Session theSession =
+                theConnection.createSession(true, Session.SESSION_TRANSACTED);
+            try {
+                final MessageProducer theProducer =
+                    theSession.createProducer(theJmsConnector.getJmsSupport()
+                        .createDestination(theSession, inEndpoint));
+                for (MoverMessage theMoverMessage : inMessages) {
+                    final MoverMessage<MuleMessage> theMuleMoverMessage =
+                        theMoverMessage;
+                    theProducer.send(toJmsMessage(
+                        theMuleMoverMessage.getMessage(), theSession));
+                }
+                theSession.commit();
+            } catch (final JMSException theException) {
+                theSession.rollback();
+                throw theException;
+            } finally {
+                theSession.close();
+            }
+            LOGGER.debug("Sent {} messages to {}", inMessages.size(),
+                inEndpoint.getEndpointURI());
+        } catch (final Exception theException) {
+            throw new TransportException("Error occurred sending messages",
+                theException);
+        } finally {
+            closeJmsConnection(theConnection);
+        }
+    }
+
+    /**
+     * Receives up to the supplied maximum number of messages from the supplied
+     * JMS endpoint in one transacted JMS session.
+     * Waits for the first message at most the supplied timeout, then receives
+     * messages as long as they arrive within a short time.
+     * If an outbound endpoint URI is supplied, the received messages are
+     * dispatched to that endpoint before the JMS session is committed.
+     *
+     * @param inEndpoint Endpoint using a JMS connector to receive messages from.
+     * @param inTimeout Timeout in milliseconds waiting for the first message.
+     * @param inMaxMessages Maximum number of messages to receive.
+     * @param inOutboundEndpointURI URI of endpoint to dispatch received
+     * messages to, or null if received messages are not to be dispatched.
+     * @return Received messages, or empty list if receiving timed out.
+     * @throws TransportException If error occurs receiving or dispatching
+     * messages. No messages have been consumed.
+     */
+    @SuppressWarnings("rawtypes")
+    protected List<MoverMessage> receiveJmsBatch(
+        final ImmutableEndpoint inEndpoint, final long inTimeout,
+        final int inMaxMessages, final String inOutboundEndpointURI)
+        throws TransportException {
+        final List<MoverMessage> theReceivedMessages =
+            new ArrayList<MoverMessage>();
+        final JmsConnector theJmsConnector =
+            (JmsConnector) inEndpoint.getConnector();
+        final MuleContext theMuleContext = mMuleClient.getMuleContext();
+        Connection theConnection = null;
+        try {
+            theConnection = createJmsConnection(theJmsConnector);
+            theConnection.start();
+            final Session theSession =
+                theConnection.createSession(true, Session.SESSION_TRANSACTED);
+            try {
+                final MessageConsumer theConsumer =
+                    theSession.createConsumer(theJmsConnector.getJmsSupport()
+                        .createDestination(theSession, inEndpoint));
+                Message theJmsMessage = theConsumer.receive(inTimeout);
+                while (theJmsMessage != null) {
+                    theReceivedMessages.add(new MuleMoverMessage(
+                        toMuleMessage(theJmsMessage, theJmsConnector,
+                            theMuleContext)));
+
+                    theJmsMessage =
+                        (theReceivedMessages.size() < inMaxMessages)
+                            ? theConsumer.receive(BATCH_NEXT_MESSAGE_TIMEOUT) : null;
+                }
+                if (inOutboundEndpointURI != null
+                    && !theReceivedMessages.isEmpty()) {
+                    dispatchBatch(theReceivedMessages, inOutboundEndpointURI);
+                }
+                theSession.commit();
+            } catch (final Exception theException) {
+                /* Received messages are redelivered, since they were not dispatched. */
+                theSession.rollback();
+                throw theException;
+            } finally {
+                theSession.close();
+            }
+            LOGGER.debug("Received {} messages from {}",
+                theReceivedMessages.size(), inEndpoint.getEndpointURI());
+        } catch (final TransportException theException) {
+            throw theException;
+        } catch (final Exception theException) {
+            throw new TransportException("Error occurred receiving messages",
+                theException);
+        } finally {
+            closeJmsConnection(theConnection);
+        }
+        return theReceivedMessages;
+    }
+
+    /**
+     * Creates a Mule message from the supplied JMS message.
+     * The JMS properties and the correlation id of the JMS message are
+     * retained as outbound properties, respectively the correlation id, of
+     * the Mule message so that they are dispatched with the message.
+     *
+     * @param inJmsMessage JMS message.
+     * @param inJmsConnector Mule JMS connector the message was received by.
+     * @param inMuleContext Mule context of the new Mule message.
+     * @return New Mule message.
+     * @throws Exception If error occurs reading JMS message.
+     */
+    protected MuleMessage toMuleMessage(final Message inJmsMessage,
+        final JmsConnector inJmsConnector, final MuleContext inMuleContext)
+        throws Exception {
+        final Object thePayload = JmsMessageUtils.toObject(inJmsMessage,
+            inJmsConnector.getSpecification(),
+            inMuleContext.getConfiguration().getDefaultEncoding());
+        final MuleMessage theMuleMessage =
+            new DefaultMuleMessage(thePayload, inMuleContext);
+
+        final Enumeration<?> thePropertyNames =
+            inJmsMessage.getPropertyNames();
+        while (thePropertyNames.hasMoreElements()) {
+            final String thePropertyName =
+                (String) thePropertyNames.nextElement();
+            theMuleMessage.setOutboundProperty(
+                JmsMessageUtils.decodeHeader(thePropertyName),
+                inJmsMessage.getObjectProperty(thePropertyName));
+        }
+        if (inJmsMessage.getJMSCorrelationID() != null) {
+            theMuleMessage.setCorrelationId(inJmsMessage.getJMSCorrelationID());
+        }
+        return theMuleMessage;
+    }
+
+    /**
+     * Creates a JMS message in the supplied session from the supplied Mule
+     * message.
+     * Outbound properties of the Mule message are set as JMS properties,
+     * except for properties with names reserved by JMS and properties with
+     * values that cannot be JMS property values.
+     *
+     * @param inMuleMessage Mule message.
+     * @param inSession JMS session in which to create JMS message.
+     * @return New JMS message.
+     * @throws JMSException If error occurs creating JMS message.
+     */
+    protected Message toJmsMessage(final MuleMessage inMuleMessage,
+        final Session inSession) throws JMSException {
+        final Message theJmsMessage =
+            JmsMessageUtils.toMessage(inMuleMessage.getPayload(), inSession);
+
+        for (String thePropertyName : inMuleMessage.getOutboundPropertyNames()) {
+            if (!thePropertyName.startsWith("JMS")) {
+                try {
+                    theJmsMessage.setObjectProperty(
+                        JmsMessageUtils.encodeHeader(thePropertyName),
+                        inMuleMessage.getOutboundProperty(thePropertyName));
+                } catch (final JMSException theException) {
+                    LOGGER.debug("Property {} cannot be set on JMS message",
+                        thePropertyName, theException);
+                }
+            }
+        }
+        if (inMuleMessage.getCorrelationId() != null) {
+            theJmsMessage.setJMSCorrelationID(inMuleMessage.getCorrelationId());
+        }
+        return theJmsMessage;
+    }
+
+    /**
+     * Creates a JMS connection using the credentials of the supplied Mule JMS
+     * connector and the pooled connection factory wrapping the connection
+     * factory of the connector.
+     *
+     * @param inJmsConnector Mule JMS connector.
+     * @return JMS connection, to be closed when no longer used.
+     * @throws JMSException If error occurs creating connection.
+     */
+    protected Connection createJmsConnection(final JmsConnector inJmsConnector)
+        throws JMSException {
+        final ConnectionFactory theConnectionFactory =
+            mJmsConnectionPools.findPooledConnectionFactory(
+                inJmsConnector.getConnectionFactory());
+        if (inJmsConnector.getUsername() != null) {
+            return theConnectionFactory.createConnection(
+                inJmsConnector.getUsername(), inJmsConnector.getPassword());
+        }
+        return theConnectionFactory.createConnection();
+    }
+
+    /**
+     * Closes the supplied JMS connection, if any, logging any errors.
+     *
+     * @param inConnection JMS connection to close, or null.
+     */
+    protected void closeJmsConnection(final Connection inConnection) {
+        if (inConnection != null) {
+            try {
+                inConnection.close();
+            } catch (final JMSException theException) {
+                LOGGER.warn("Failed to close JMS connection", theException);
+            }
+        }
+    }
+
     /**
      * Starts the transport service.
      */
@@ -117,10 +536,36 @@ class MuleTransportService extends AbstractXmlConfigurerdTransportService {
     @Override
     public synchronized void stop() {
         LOGGER.info("Mule transport service stopping...");
-        mMuleClient.dispose();
+        mTransportEngineLock.writeLock().lock();
+        try {
+            if (mMuleClient != null) {
+                mMuleClient.dispose();
+                mMuleClient = null;
+            }
+            clearEndpointCaches();
+            mJmsConnectionPools.clear();
+            /* Make sure a new Mule client is created if the service is started again. */
+            mConfigurationResourceInfos.clear();
+            stopWatchingConfigurationResources();
+        } finally {
+            mTransportEngineLock.writeLock().unlock();
+        }
         LOGGER.info("Mule transport service stopped.");
     }
 
+    /**
+     * Refreshes the Mule client if the configuration resources have changed.
+     * The new Mule client is created and started while the current Mule
+     * client keeps serving dispatches and receives. The Mule clients are
+     * switched once ongoing dispatches and receives have completed, after
+     * which the old Mule client is disposed of.<br/>
+     * If the new Mule client cannot be created because it conflicts with the
+     * current Mule client, for instance by binding to the same port, the
+     * refresh is retried after having stopped the current Mule client. If the
+     * new Mule client cannot be created for any other reason, such as a
+     * malformed configuration, the current Mule client is retained.
+     * Without a current Mule client, an error is thrown.
+     */
     @Override
     public synchronized void refreshConnectors() throws IOException {
         final boolean theConfigRsrcChangedFlag =
@@ -130,29 +575,179 @@ class MuleTransportService extends AbstractXmlConfigurerdTransportService {
             LOGGER
                 .debug("Detected change in configuration resources, refreshing");
 
-            if (mMuleClient != null) {
-                mMuleClient.dispose();
+            final MuleClient theNewMuleClient;
+            try {
+                theNewMuleClient = createMuleClient();
+            } catch (final Exception theException) {
+                final String theErrorMsg = "Error creating Mule client";
+                if (mMuleClient == null) {
+                    LOGGER.error(theErrorMsg, theException);
+                    throw new Error(theErrorMsg, theException);
+                }
+                if (!isResourceConflict(theException)) {
+                    LOGGER.error(theErrorMsg + ", retaining current Mule client", theException);
+                    return;
+                }
+                LOGGER.warn(theErrorMsg + " alongside current Mule client, retrying after stopping it",
+                    theException);
+                refreshConnectorsStoppingCurrentMuleClient();
+                return;
             }
 
+            /*
+             * Wait for ongoing dispatches and receives to complete and
+             * prevent new ones from starting until the Mule client has
+             * been replaced.
+             */
+            final MuleClient theOldMuleClient;
+            mTransportEngineLock.writeLock().lock();
             try {
-                final String theMuleConfigResourcesString =
-                    buildMuleConfigResourcesString();
-
-                mMuleClient = new MuleClient(theMuleConfigResourcesString);
-                mMuleClient.getMuleContext().start();
+                theOldMuleClient = mMuleClient;
+                mMuleClient = theNewMuleClient;
+                /* Endpoints and connectors of the old Mule client must not be used. */
+                clearEndpointCaches();
+                mJmsConnectionPools.clear();
+            } finally {
+                mTransportEngineLock.writeLock().unlock();
+            }
 
-                LOGGER.debug("Mule client created and started");
-            } catch (final Exception theException) {
-                final String theErrorMsg = "Error creating Mule client";
-                LOGGER.error(theErrorMsg, theException);
-                throw new Error(theErrorMsg, theException);
+            /* Disposing the old Mule client also stops its continuous moves. */
+            if (theOldMuleClient != null) {
+                theOldMuleClient.dispose();
             }
+            activateAllContinuousMoves();
         } else {
             LOGGER
                 .debug("No changes in configuration resources, skips refresh");
         }
     }
 
+    /**
+     * Determines whether the supplied exception, thrown when creating a new
+     * Mule client, or any of its causes tells that a resource, such as an
+     * address or a port, is in use by the current Mule client.
+     *
+     * @param inException Exception thrown creating Mule client.
+     * @return True if resource conflict, false otherwise.
+     */
+    protected boolean isResourceConflict(final Throwable inException) {
+        for (Throwable theCause = inException; theCause != null; theCause = theCause.getCause()) {
+            if (theCause instanceof BindException || (theCause.getMessage() != null
+                && theCause.getMessage().toLowerCase(Locale.ENGLISH).contains(ALREADY_IN_USE_MESSAGE))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the current Mule client by first stopping it and then creating
+     * and starting a new Mule client, for configurations that cannot run
+     * alongside the current configuration.<br/>
+     * Dispatching and receiving is held up until the new Mule client has been
+     * started. If the new Mule client cannot be created, the current Mule
+     * client is started again and retained. Should the current Mule client
+     * fail to start again, it is retained stopped and the error is logged.
+     */
+    protected void refreshConnectorsStoppingCurrentMuleClient() {
+        final MuleClient theOldMuleClient;
+        mTransportEngineLock.writeLock().lock();
+        try {
+            theOldMuleClient = mMuleClient;
+            try {
+                theOldMuleClient.getMuleContext().stop();
+            } catch (final MuleException theException) {
+                LOGGER.warn("Error stopping current Mule client", theException);
+            }
+
+            final MuleClient theNewMuleClient;
+            try {
+                theNewMuleClient = createMuleClient();
+            } catch (final Exception theException) {
+                LOGGER.error("Error creating Mule client, retaining current Mule client", theException);
+                try {
+                    theOldMuleClient.getMuleContext().start();
+                } catch (final MuleException theStartException) {
+                    LOGGER.error("Error restarting current Mule client", theStartException);
+                }
+                return;
+            }
+
+            mMuleClient = theNewMuleClient;
+            /* Endpoints and connectors of the old Mule client must not be used. */
+            clearEndpointCaches();
+            mJmsConnectionPools.clear();
+        } finally {
+            mTransportEngineLock.writeLock().unlock();
+        }
+
+        theOldMuleClient.dispose();
+        activateAllContinuousMoves();
+    }
+
+    /**
+     * Creates and starts a new Mule client using the current configuration
+     * resources.
+     * If the Mule client cannot be started, it is disposed of.
+     *
+     * @return New started Mule client.
+     * @throws Exception If error occurs creating or starting Mule client.
+     */
+    protected MuleClient createMuleClient() throws Exception {
+        final String theMuleConfigResourcesString =
+            buildMuleConfigResourcesString();
+
+        final SpringXmlConfigurationBuilder theConfigurationBuilder =
+            new SpringXmlConfigurationBuilder(theMuleConfigResourcesString);
+        /* Make beans shared by the transport engines available to the Mule configurations. */
+        theConfigurationBuilder.setParentContext(mParentApplicationContext);
+        final MuleClient theMuleClient =
+            new MuleClient(theMuleConfigResourcesString, theConfigurationBuilder);
+        try {
+            theMuleClient.getMuleContext().start();
+        } catch (final Exception theException) {
+            theMuleClient.dispose();
+            throw theException;
+        }
+
+        LOGGER.debug("Mule client created and started");
+        return theMuleClient;
+    }
+
+    @Override
+    protected void activateContinuousMove(final ContinuousMoveDefinition inMove)
+        throws TransportException {
+        try {
+            final MuleContext theMuleContext = mMuleClient.getMuleContext();
+            final Flow theFlow = new Flow(inMove.getMoveId(), theMuleContext);
+            theFlow.setMessageSource(theMuleContext.getEndpointFactory()
+                .getInboundEndpoint(inMove.getInboundEndpointURI()));
+            /* The outbound endpoint is wrapped in order to notify the listener of the move. */
+            theFlow.setMessageProcessors(Collections
+                .<MessageProcessor> singletonList(new ContinuousMoveMessageProcessor(inMove,
+                    theMuleContext.getEndpointFactory().getOutboundEndpoint(inMove.getOutboundEndpointURI()))));
+
+            /* Registering the flow will initialise and start it. */
+            theMuleContext.getRegistry().registerFlowConstruct(theFlow);
+        } catch (final MuleException theException) {
+            throw new TransportException("Error occurred starting continuous move "
+                + inMove.getMoveId(), theException);
+        }
+    }
+
+    @Override
+    protected void deactivateContinuousMove(final ContinuousMoveDefinition inMove)
+        throws TransportException {
+        try {
+            /* Unregistering the flow will stop and dispose it. */
+            mMuleClient.getMuleContext().getRegistry()
+                .unregisterFlowConstruct(inMove.getMoveId());
+        } catch (final MuleException theException) {
+            throw new TransportException("Error occurred stopping continuous move "
+                + inMove.getMoveId(), theException);
+        }
+    }
+
     /**
      * Builds a string containing the Mule configuration resources the transport
      * service is to be configured with.
@@ -189,6 +784,28 @@ class MuleTransportService extends AbstractXmlConfigurerdTransportService {
         return theMuleConfigResource.toString();
     }
     
+    /**
+     * Retrieves the number of endpoint lookups that found the endpoint in
+     * the endpoint cache.
+     *
+     * @return Number of endpoint cache hits.
+     */
+    public long getEndpointCacheHitCount() {
+        return mInboundEndpointCache.getHitCount()
+            + mOutboundEndpointCache.getHitCount();
+    }
+
+    /**
+     * Retrieves the number of endpoint lookups that required an endpoint
+     * to be built.
+     *
+     * @return Number of endpoint cache misses.
+     */
+    public long getEndpointCacheMissCount() {
+        return mInboundEndpointCache.getMissCount()
+            + mOutboundEndpointCache.getMissCount();
+    }
+
     /**
      * Retrieves the Mule context.<br/>
      * For testing purposes only.
@@ -196,11 +813,16 @@ class MuleTransportService extends AbstractXmlConfigurerdTransportService {
      * @return Mule context of the started Mule transport service, or null
      * if no context is available.
      */
-    synchronized MuleContext getMuleContext() {
+    MuleContext getMuleContext() {
         MuleContext theMuleContext = null;
 
-        if (mMuleClient != null) {
-            theMuleContext = mMuleClient.getMuleContext();
+        mTransportEngineLock.readLock().lock();
+        try {
+            if (mMuleClient != null) {
+                theMuleContext = mMuleClient.getMuleContext();
+            }
+        } finally {
+            mTransportEngineLock.readLock().unlock();
         }
         return theMuleContext;
     }
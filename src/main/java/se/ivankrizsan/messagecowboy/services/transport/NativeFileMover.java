@@ -0,0 +1,437 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves files from a file endpoint to another file endpoint without
+ * involving the Mule or Camel transport service, thus without reading the
+ * contents of the files into memory.<br/>
+ * Files are moved with an atomic rename when source and destination are
+ * located in the same file system. Otherwise files are copied using
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * after which the source file is deleted.
+ * <br/><br/>
+ * The semantics of the file connectors in the Mule production configuration
+ * are preserved: Files keep their original filename in the destination
+ * directory, existing destination files are overwritten and source files
+ * are deleted after having been moved.
+ * Source files are retained if the inbound endpoint URI contains the
+ * {@code autoDelete=false} (Mule) or {@code noop=true} (Camel) parameter.
+ * A retained source file is copied once and is only copied again when it
+ * has been modified, like the Camel file component does with {@code noop=true}.
+ * Endpoint URIs may name a known file connector using the {@code connector}
+ * parameter. Inbound file connectors must delete files after having read
+ * them and outbound file connectors must write files with their original
+ * filename, which the file connectors in the Mule production configuration do.
+ * Moves between endpoints which URIs contain any other parameter, such as
+ * {@code moveToDirectory}, {@code fileAge} or {@code outputPattern}, or name
+ * another connector, are left to the transport service, since the file
+ * mover does not implement the behaviour of such parameters.
+ * Paths in endpoint URIs are URL-decoded.<br/>
+ * Multiple tasks may move files from the same directory concurrently; a file
+ * that has been moved by another task is skipped.
+ *
+ * @author Ivan Krizsan
+ */
+public class NativeFileMover {
+    /* Constant(s): */
+    /** Class logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativeFileMover.class);
+    /** Prefix of URIs of file endpoints. */
+    protected static final String FILE_URI_PREFIX = "file://";
+    /** Inbound endpoint URI parameters that prevent the source file from being deleted. */
+    protected static final List<String> RETAIN_SOURCE_FILE_PARAMETERS = Arrays.asList("autoDelete=false",
+        "noop=true");
+    /** Endpoint URI parameters which behaviour is implemented by the file mover. */
+    protected static final List<String> SUPPORTED_PARAMETERS = Arrays.asList("autoDelete=false",
+        "autoDelete=true", "noop=true", "noop=false");
+    /** Character encoding of URL-encoded endpoint URI paths. */
+    protected static final String URI_PATH_ENCODING = "UTF-8";
+    /** Suffix of temporary files written while copying across file systems. */
+    protected static final String TEMPORARY_FILE_SUFFIX = ".mctmp";
+    /** Endpoint URI parameter naming the connector of the endpoint. */
+    protected static final String CONNECTOR_PARAMETER_PREFIX = "connector=";
+    /**
+     * Names of the file connectors in the Mule production configuration that
+     * delete files after having read them and thus may be used by inbound endpoints.
+     */
+    public static final List<String> PRODUCTION_INBOUND_FILE_CONNECTOR_NAMES = Arrays.asList(
+        "streamingFileConnectorInbound", "nonStreamingFileConnectorInbound", "streamingFileConnectorOutbound",
+        "nonStreamingFileConnectorOutbound");
+    /**
+     * Names of the file connectors in the Mule production configuration that
+     * write files with their original filename and thus may be used by outbound endpoints.
+     */
+    public static final List<String> PRODUCTION_OUTBOUND_FILE_CONNECTOR_NAMES = Arrays.asList(
+        "streamingFileConnectorOutbound", "nonStreamingFileConnectorOutbound");
+    /** Maximum number of retained source files remembered as copied. */
+    protected static final int MAX_COPIED_FILES = 10000;
+
+    /* Instance variable(s): */
+    /** Flag indicating whether native file moves are enabled. */
+    protected boolean mEnabledFlag = false;
+    /** Names of file connectors that inbound endpoints may use. */
+    protected Set<String> mInboundFileConnectorNames =
+        new HashSet<String>(PRODUCTION_INBOUND_FILE_CONNECTOR_NAMES);
+    /** Names of file connectors that outbound endpoints may use. */
+    protected Set<String> mOutboundFileConnectorNames =
+        new HashSet<String>(PRODUCTION_OUTBOUND_FILE_CONNECTOR_NAMES);
+    /**
+     * Last modification times of retained source files that have been copied,
+     * keyed by source file path and destination directory path.
+     * The least recently copied files are forgotten first.
+     */
+    protected final Map<String, Long> mCopiedFiles =
+        Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Long> inEldestEntry) {
+                return size() > MAX_COPIED_FILES;
+            }
+        });
+
+    /**
+     * Determines whether a move from the supplied inbound endpoint to the
+     * supplied outbound endpoint is to be performed by this file mover.
+     *
+     * @param inInboundEndpointURI Inbound endpoint URI.
+     * @param inOutboundEndpointURI Outbound endpoint URI.
+     * @return True if native file moves are enabled, both endpoints are
+     * file endpoints and neither endpoint URI contains unsupported parameters,
+     * false otherwise.
+     */
+    public boolean isFileToFileMove(final String inInboundEndpointURI, final String inOutboundEndpointURI) {
+        return mEnabledFlag && isFileEndpointURI(inInboundEndpointURI) && isFileEndpointURI(inOutboundEndpointURI)
+            && hasOnlySupportedParameters(inInboundEndpointURI, mInboundFileConnectorNames)
+            && hasOnlySupportedParameters(inOutboundEndpointURI, mOutboundFileConnectorNames);
+    }
+
+    /**
+     * Moves up to the supplied maximum number of files from the supplied
+     * inbound file endpoint to the supplied outbound file endpoint.<br/>
+     * The inbound endpoint may specify a single file or a directory.
+     * Files in an inbound directory are moved in filename order.
+     * Retained source files that already have been copied to the destination
+     * directory, and not modified since, are skipped.
+     *
+     * @param inInboundEndpointURI URI of file or directory to move files from.
+     * @param inOutboundEndpointURI URI of directory to move files to.
+     * @param inMaxFiles Maximum number of files to move.
+     * @return Number of moved files.
+     * @throws IOException If error occurs moving a file.
+     */
+    public int moveFiles(final String inInboundEndpointURI, final String inOutboundEndpointURI, final int inMaxFiles)
+        throws IOException {
+        final File theSource = new File(extractPath(inInboundEndpointURI));
+        final File theDestinationDirectory = new File(extractPath(inOutboundEndpointURI));
+        final boolean theRetainSourceFlag = shallRetainSourceFile(inInboundEndpointURI);
+
+        final List<File> theSourceFiles =
+            findSourceFiles(theSource, theDestinationDirectory, theRetainSourceFlag, inMaxFiles);
+        if (theSourceFiles.isEmpty()) {
+            return 0;
+        }
+
+        if (!theDestinationDirectory.isDirectory() && !theDestinationDirectory.mkdirs()) {
+            throw new IOException("Unable to create destination directory " + theDestinationDirectory);
+        }
+
+        int theMovedFileCount = 0;
+        for (File theSourceFile : theSourceFiles) {
+            final File theDestinationFile = new File(theDestinationDirectory, theSourceFile.getName());
+            try {
+                if (theRetainSourceFlag) {
+                    if (!copyRetainedFile(theSourceFile, theDestinationFile)) {
+                        continue;
+                    }
+                } else {
+                    moveFile(theSourceFile, theDestinationFile);
+                }
+                theMovedFileCount++;
+                LOGGER.debug("Moved file {} to {}", theSourceFile, theDestinationFile);
+            } catch (final NoSuchFileException theException) {
+                LOGGER.debug("File {} was moved by another task", theSourceFile);
+            }
+        }
+        return theMovedFileCount;
+    }
+
+    /**
+     * Moves the supplied source file to the supplied destination file.
+     * Uses an atomic rename if possible, otherwise copies the file and
+     * deletes the source file.
+     *
+     * @param inSourceFile File to move.
+     * @param inDestinationFile Destination file, which is replaced if it exists.
+     * @throws IOException If error occurs moving file.
+     */
+    protected void moveFile(final File inSourceFile, final File inDestinationFile) throws IOException {
+        try {
+            Files.move(inSourceFile.toPath(), inDestinationFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException theException) {
+            /* Source and destination are located in different file systems. */
+            copyFile(inSourceFile, inDestinationFile);
+            Files.delete(inSourceFile.toPath());
+        }
+    }
+
+    /**
+     * Copies the supplied retained source file to the supplied destination
+     * file, unless the source file already has been copied to the destination
+     * directory and not modified since.
+     *
+     * @param inSourceFile File to copy.
+     * @param inDestinationFile Destination file, which is replaced if it exists.
+     * @return True if the file was copied, false if it already had been copied.
+     * @throws IOException If error occurs copying file.
+     */
+    protected boolean copyRetainedFile(final File inSourceFile, final File inDestinationFile) throws IOException {
+        final String theCopiedFileKey = createCopiedFileKey(inSourceFile, inDestinationFile.getParentFile());
+        final Long theLastModified = Long.valueOf(inSourceFile.lastModified());
+        /* Record the copy before copying, so that concurrent tasks do not copy the same file. */
+        if (theLastModified.equals(mCopiedFiles.put(theCopiedFileKey, theLastModified))) {
+            return false;
+        }
+        try {
+            copyFile(inSourceFile, inDestinationFile);
+        } catch (final IOException theException) {
+            mCopiedFiles.remove(theCopiedFileKey);
+            throw theException;
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the supplied retained source file has been copied to
+     * the supplied destination directory and not been modified since.
+     *
+     * @param inSourceFile Retained source file.
+     * @param inDestinationDirectory Destination directory.
+     * @return True if the file has been copied, false otherwise.
+     */
+    protected boolean isCopiedFile(final File inSourceFile, final File inDestinationDirectory) {
+        final Long theLastModified = mCopiedFiles.get(createCopiedFileKey(inSourceFile, inDestinationDirectory));
+        return theLastModified != null && theLastModified.longValue() == inSourceFile.lastModified();
+    }
+
+    /**
+     * Creates the key of the supplied retained source file copied to the
+     * supplied destination directory.
+     *
+     * @param inSourceFile Retained source file.
+     * @param inDestinationDirectory Destination directory.
+     * @return Key of copied file.
+     */
+    protected String createCopiedFileKey(final File inSourceFile, final File inDestinationDirectory) {
+        return inSourceFile.getAbsolutePath() + File.pathSeparator + inDestinationDirectory.getAbsolutePath();
+    }
+
+    /**
+     * Copies the supplied source file to the supplied destination file.
+     * The contents is first written to a uniquely named temporary file in the
+     * destination directory, which then is renamed, so that a partially
+     * written destination file is never visible.
+     *
+     * @param inSourceFile File to copy.
+     * @param inDestinationFile Destination file, which is replaced if it exists.
+     * @throws IOException If error occurs copying file.
+     */
+    protected void copyFile(final File inSourceFile, final File inDestinationFile) throws IOException {
+        final File theTemporaryFile = Files.createTempFile(inDestinationFile.getParentFile().toPath(),
+            inDestinationFile.getName(), TEMPORARY_FILE_SUFFIX).toFile();
+        try {
+            try (FileChannel theSourceChannel = FileChannel.open(inSourceFile.toPath(), StandardOpenOption.READ);
+                FileChannel theDestinationChannel = FileChannel.open(theTemporaryFile.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final long theSize = theSourceChannel.size();
+                long thePosition = 0;
+                /* Transfer may transfer fewer bytes than requested. */
+                while (thePosition < theSize) {
+                    thePosition +=
+                        theSourceChannel.transferTo(thePosition, theSize - thePosition, theDestinationChannel);
+                }
+            }
+            Files.move(theTemporaryFile.toPath(), inDestinationFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(theTemporaryFile.toPath());
+        }
+    }
+
+    /**
+     * Finds up to the supplied maximum number of files to move from the
+     * supplied source, which is either a file or a directory.
+     * Retained source files already copied to the destination directory are
+     * not included.
+     *
+     * @param inSource Source file or directory.
+     * @param inDestinationDirectory Directory to move files to.
+     * @param inRetainSourceFlag True if source files are retained.
+     * @param inMaxFiles Maximum number of files to find.
+     * @return Files to move, empty list if no files.
+     */
+    protected List<File> findSourceFiles(final File inSource, final File inDestinationDirectory,
+        final boolean inRetainSourceFlag, final int inMaxFiles) {
+        final List<File> theSourceFiles = new ArrayList<File>();
+        if (inSource.isFile()) {
+            if (!inRetainSourceFlag || !isCopiedFile(inSource, inDestinationDirectory)) {
+                theSourceFiles.add(inSource);
+            }
+        } else if (inSource.isDirectory()) {
+            final File[] theDirectoryFiles = inSource.listFiles();
+            if (theDirectoryFiles != null) {
+                Arrays.sort(theDirectoryFiles);
+                for (File theFile : theDirectoryFiles) {
+                    if (theSourceFiles.size() >= inMaxFiles) {
+                        break;
+                    }
+                    if (theFile.isFile() && !theFile.isHidden()
+                        && !theFile.getName().endsWith(TEMPORARY_FILE_SUFFIX)
+                        && (!inRetainSourceFlag || !isCopiedFile(theFile, inDestinationDirectory))) {
+                        theSourceFiles.add(theFile);
+                    }
+                }
+            }
+        }
+        return theSourceFiles;
+    }
+
+    /**
+     * Determines whether the supplied URI is the URI of a file endpoint.
+     *
+     * @param inEndpointURI Endpoint URI.
+     * @return True if file endpoint URI, false otherwise.
+     */
+    protected boolean isFileEndpointURI(final String inEndpointURI) {
+        return inEndpointURI != null && inEndpointURI.startsWith(FILE_URI_PREFIX);
+    }
+
+    /**
+     * Determines whether the supplied endpoint URI contains parameters which
+     * behaviour is implemented by the file mover only.
+     *
+     * @param inEndpointURI File endpoint URI.
+     * @param inSupportedConnectorNames Names of file connectors the endpoint may use.
+     * @return True if all parameters are supported or no parameters, false
+     * otherwise.
+     */
+    protected boolean hasOnlySupportedParameters(final String inEndpointURI,
+        final Set<String> inSupportedConnectorNames) {
+        final int theParametersIndex = inEndpointURI.indexOf('?');
+        if (theParametersIndex >= 0) {
+            for (String theParameter : inEndpointURI.substring(theParametersIndex + 1).split("&")) {
+                if (theParameter.startsWith(CONNECTOR_PARAMETER_PREFIX)) {
+                    if (!inSupportedConnectorNames.contains(
+                        theParameter.substring(CONNECTOR_PARAMETER_PREFIX.length()))) {
+                        return false;
+                    }
+                } else if (!theParameter.isEmpty() && !SUPPORTED_PARAMETERS.contains(theParameter)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extracts the URL-decoded file system path from the supplied file
+     * endpoint URI.
+     *
+     * @param inEndpointURI File endpoint URI.
+     * @return File system path.
+     * @throws IOException If the path cannot be decoded.
+     */
+    protected String extractPath(final String inEndpointURI) throws IOException {
+        String thePath = inEndpointURI.substring(FILE_URI_PREFIX.length());
+        final int theParametersIndex = thePath.indexOf('?');
+        if (theParametersIndex >= 0) {
+            thePath = thePath.substring(0, theParametersIndex);
+        }
+        try {
+            /* A plus sign in a URI path is not an encoded space. */
+            return URLDecoder.decode(thePath.replace("+", "%2B"), URI_PATH_ENCODING);
+        } catch (final IllegalArgumentException theException) {
+            throw new IOException("Malformed path in endpoint URI " + inEndpointURI, theException);
+        }
+    }
+
+    /**
+     * Determines whether the parameters of the supplied inbound endpoint URI
+     * specifies that source files are to be retained.
+     *
+     * @param inInboundEndpointURI Inbound file endpoint URI.
+     * @return True if source files are not to be deleted, false otherwise.
+     */
+    protected boolean shallRetainSourceFile(final String inInboundEndpointURI) {
+        final int theParametersIndex = inInboundEndpointURI.indexOf('?');
+        if (theParametersIndex >= 0) {
+            for (String theParameter : inInboundEndpointURI.substring(theParametersIndex + 1).split("&")) {
+                if (RETAIN_SOURCE_FILE_PARAMETERS.contains(theParameter)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean getEnabledFlag() {
+        return mEnabledFlag;
+    }
+
+    public void setEnabledFlag(final boolean inEnabledFlag) {
+        mEnabledFlag = inEnabledFlag;
+    }
+
+    public Set<String> getInboundFileConnectorNames() {
+        return mInboundFileConnectorNames;
+    }
+
+    public void setInboundFileConnectorNames(final Set<String> inInboundFileConnectorNames) {
+        mInboundFileConnectorNames = inInboundFileConnectorNames;
+    }
+
+    public Set<String> getOutboundFileConnectorNames() {
+        return mOutboundFileConnectorNames;
+    }
+
+    public void setOutboundFileConnectorNames(final Set<String> inOutboundFileConnectorNames) {
+        mOutboundFileConnectorNames = inOutboundFileConnectorNames;
+    }
+}
@@ -17,6 +17,8 @@
 package se.ivankrizsan.messagecowboy.services.transport;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 
 import se.ivankrizsan.messagecowboy.domain.entities.MoverMessage;
 import se.ivankrizsan.messagecowboy.services.transport.exceptions.TransportException;
@@ -70,6 +72,68 @@ public interface TransportService {
         final String inEndpointURI, final long inTimeout)
         throws TransportException;
 
+    /**
+     * Dispatches the supplied messages to the endpoint with the supplied URI.
+     * If the endpoint supports transactions, such as JMS endpoints, all the
+     * messages are dispatched in one single transaction. Otherwise
+     * the messages are dispatched one by one.
+     *
+     * @param inMessages Messages to dispatch.
+     * @param inEndpointURI URI of endpoint to which to dispatch messages to.
+     * @throws TransportException If an error occurred dispatching messages.
+     */
+    @SuppressWarnings("rawtypes")
+    abstract void dispatchBatch(
+        final List<MoverMessage> inMessages, final String inEndpointURI)
+        throws TransportException;
+
+    /**
+     * Receives up to the supplied maximum number of messages from the endpoint
+     * with the supplied URI, timing out after the supplied timeout-time if
+     * no message is available.
+     * If the endpoint supports transactions, such as JMS endpoints, all the
+     * messages are received in one single transaction. Otherwise messages
+     * are received one by one until no message is received or the maximum
+     * number of messages has been received.
+     *
+     * @param inEndpointURI URI of endpoint from which to receive messages.
+     * @param inTimeout Timeout in milliseconds.
+     * @param inMaxMessages Maximum number of messages to receive.
+     * @return Received messages, or empty list if receiving timed out.
+     * @throws TransportException If an error occurred receiving messages.
+     */
+    @SuppressWarnings("rawtypes")
+    abstract List<MoverMessage> receiveBatch(final String inEndpointURI,
+        final long inTimeout, final int inMaxMessages)
+        throws TransportException;
+
+    /**
+     * Moves up to the supplied maximum number of messages from the endpoint
+     * with the supplied inbound URI to the endpoint with the supplied
+     * outbound URI, timing out after the supplied timeout-time if no message
+     * is available.
+     * Messages are received as by {@link #receiveBatch(String, long, int)}
+     * and dispatched as by {@link #dispatchBatch(List, String)}.
+     * If the inbound endpoint supports transactions, such as JMS endpoints,
+     * the messages are received in one single transaction which is committed
+     * only after all the messages have been dispatched and rolled back if
+     * dispatching fails. Otherwise received messages that could not be
+     * dispatched are lost.
+     *
+     * @param inInboundEndpointURI URI of endpoint from which to receive
+     * messages.
+     * @param inOutboundEndpointURI URI of endpoint to which to dispatch
+     * messages.
+     * @param inTimeout Timeout in milliseconds.
+     * @param inMaxMessages Maximum number of messages to move.
+     * @return Number of moved messages, zero if receiving timed out.
+     * @throws TransportException If an error occurred receiving or
+     * dispatching messages.
+     */
+    abstract int moveBatch(final String inInboundEndpointURI,
+        final String inOutboundEndpointURI, final long inTimeout,
+        final int inMaxMessages) throws TransportException;
+
     /**
      * Refreshes the connectors-configuration for the service by, if necessary,
      * re-reading the connector definition resources.
@@ -77,4 +141,43 @@ public interface TransportService {
      * @throws IOException If error occurs accessing configuration resource.
      */
     abstract void refreshConnectors() throws IOException;
+
+    /**
+     * Starts continuously moving messages from the endpoint with the supplied
+     * inbound URI to the endpoint with the supplied outbound URI.
+     * Messages are moved as they arrive at the inbound endpoint, as opposed to
+     * being requested when a task is executed.<br/>
+     * If a continuous move with the supplied id and the same endpoints already
+     * has been started, nothing happens. If a continuous move with the supplied
+     * id but with other endpoints has been started, it is replaced.
+     * The supplied listener is notified each time a message has been moved
+     * or could not be moved.
+     *
+     * @param inMoveId Id that uniquely identifies the continuous move.
+     * @param inInboundEndpointURI URI of endpoint from which to receive messages.
+     * @param inOutboundEndpointURI URI of endpoint to which to dispatch messages.
+     * @param inListener Listener notified of moved messages, or null.
+     * @throws TransportException If an error occurred starting continuous move.
+     */
+    abstract void startContinuousMove(final String inMoveId,
+        final String inInboundEndpointURI, final String inOutboundEndpointURI,
+        final ContinuousMoveListener inListener) throws TransportException;
+
+    /**
+     * Stops the continuous move with the supplied id.
+     * If there is no such continuous move, nothing happens.
+     *
+     * @param inMoveId Id of continuous move to stop.
+     * @throws TransportException If an error occurred stopping continuous move.
+     */
+    abstract void stopContinuousMove(final String inMoveId)
+        throws TransportException;
+
+    /**
+     * Finds the ids of all continuous moves that currently are started.
+     *
+     * @return Set containing continuous move ids, empty set if no
+     * continuous moves.
+     */
+    abstract Set<String> findContinuousMoveIds();
 }
@@ -43,6 +43,9 @@ public class TransportServiceConfiguration {
 	/** Possible values: {@value #MULE_TRANSPORT_TYPE}, {@value #CAMEL_TRANSPORT_TYPE}. */
 	@Value("${messagecowboy.transport}")
 	protected String mTransportType = MULE_TRANSPORT_TYPE;
+	/** Flag indicating whether files are to be moved natively between file endpoints. */
+	@Value("${NATIVE_FILE_MOVER_ENABLED_FLAG:false}")
+	protected boolean mNativeFileMoverEnabledFlag = false;
 	
     /**
      * Transport service implementation.
@@ -67,6 +70,20 @@ public class TransportServiceConfiguration {
         
     }
 
+    /**
+     * File mover that moves files between file endpoints without involving
+     * the transport service.
+     * 
+     * @return File mover instance.
+     */
+    @Bean
+    @Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+    public NativeFileMover nativeFileMover() {
+        final NativeFileMover theFileMover = new NativeFileMover();
+        theFileMover.setEnabledFlag(mNativeFileMoverEnabledFlag);
+        return theFileMover;
+    }
+
     /**
      * Location of connector and transport service configuration files
      * for the Mule implementation of the transport service.<br/>
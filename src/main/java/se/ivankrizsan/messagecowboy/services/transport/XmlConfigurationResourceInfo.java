@@ -18,7 +18,10 @@ package se.ivankrizsan.messagecowboy.services.transport;
 
 /**
  * Holds information about one XML configuration resource, such as name and a
- * checksum of the resource.
+ * checksum of the resource.<br/>
+ * The length and last modification time of the resource, if known, allow
+ * for determining whether the resource may have changed without calculating
+ * a new checksum. They are not considered when comparing instances.
  * Instances of this class are immutable.
  *
  * @author Ivan Krizsan
@@ -29,6 +32,8 @@ class XmlConfigurationResourceInfo implements Comparable<XmlConfigurationResourc
     /* Instance variable(s): */
     protected final String mResourceName;
     protected final String mResourceChecksum;
+    protected final long mResourceLength;
+    protected final long mResourceLastModified;
 
     /**
      * Creates a resource info instance for configuration resource with supplied name
@@ -39,12 +44,30 @@ class XmlConfigurationResourceInfo implements Comparable<XmlConfigurationResourc
      */
     public XmlConfigurationResourceInfo(final String inResourceName,
         final String inResourceChecksum) {
+        this(inResourceName, inResourceChecksum, -1L, 0L);
+    }
+
+    /**
+     * Creates a resource info instance for configuration resource with supplied name
+     * having supplied checksum, length and last modification time.
+     *
+     * @param inResourceName Name of configuration resource.
+     * @param inResourceChecksum Checksum of configuration resource.
+     * @param inResourceLength Length of configuration resource in bytes, or -1 if not known.
+     * @param inResourceLastModified Last modification time of configuration resource in
+     * milliseconds, or 0 if not known.
+     */
+    public XmlConfigurationResourceInfo(final String inResourceName,
+        final String inResourceChecksum, final long inResourceLength,
+        final long inResourceLastModified) {
         if (inResourceName == null || inResourceChecksum == null) {
             throw new IllegalArgumentException("Name and checksum must not be null");
         }
 
         mResourceName = inResourceName;
         mResourceChecksum = inResourceChecksum;
+        mResourceLength = inResourceLength;
+        mResourceLastModified = inResourceLastModified;
     }
 
     public String getResourceName() {
@@ -55,6 +78,29 @@ class XmlConfigurationResourceInfo implements Comparable<XmlConfigurationResourc
         return mResourceChecksum;
     }
 
+    public long getResourceLength() {
+        return mResourceLength;
+    }
+
+    public long getResourceLastModified() {
+        return mResourceLastModified;
+    }
+
+    /**
+     * Determines whether the configuration resource is unchanged, judging
+     * by its length and last modification time.
+     *
+     * @param inResourceLength Current length of configuration resource.
+     * @param inResourceLastModified Current last modification time of configuration resource.
+     * @return True if length and last modification time are known and
+     * unchanged, false otherwise.
+     */
+    public boolean hasSameLengthAndLastModified(final long inResourceLength,
+        final long inResourceLastModified) {
+        return mResourceLength >= 0 && mResourceLastModified > 0
+            && mResourceLength == inResourceLength && mResourceLastModified == inResourceLastModified;
+    }
+
     @Override
     public int hashCode() {
         final int thePrime = 31;
@@ -0,0 +1,159 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import ru.yandex.qatools.allure.annotations.Features;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
+/**
+ * Tests the {@code MonitoredPooledDataSource} class.
+ *
+ * @author Ivan Krizsan
+ */
+@Features("Persistence")
+public class MonitoredPooledDataSourceTest {
+    /* Constant(s): */
+    protected static final String DATABASE_URL = "jdbc:hsqldb:mem:pooltest";
+    protected static final int POOL_MAX_SIZE = 2;
+    protected static final int CHECKOUT_TIMEOUT = 2000;
+    /** Maximum time to wait for connections to be returned to the pool. */
+    protected static final long CHECKIN_MAX_WAIT = 5000L;
+
+    /* Instance variable(s): */
+    protected MonitoredPooledDataSource mInstanceUnderTest;
+
+    /**
+     * Sets up before each test by creating a data source with a small connection pool.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Before
+    public void setUpBeforeTest() throws Exception {
+        final ComboPooledDataSource theConnectionPool = new ComboPooledDataSource();
+        theConnectionPool.setDriverClass("org.hsqldb.jdbcDriver");
+        theConnectionPool.setJdbcUrl(DATABASE_URL);
+        theConnectionPool.setUser("sa");
+        theConnectionPool.setPassword("");
+        theConnectionPool.setMinPoolSize(1);
+        theConnectionPool.setInitialPoolSize(1);
+        theConnectionPool.setMaxPoolSize(POOL_MAX_SIZE);
+        theConnectionPool.setAcquireIncrement(1);
+        theConnectionPool.setCheckoutTimeout(CHECKOUT_TIMEOUT);
+        mInstanceUnderTest = new MonitoredPooledDataSource(theConnectionPool);
+    }
+
+    /**
+     * Closes the data source after each test.
+     */
+    @After
+    public void tearDownAfterTest() {
+        mInstanceUnderTest.close();
+    }
+
+    /**
+     * Tests the active and idle connection metrics.
+     * Expected result: Connections obtained should be reported as active and,
+     * after having been closed, as idle.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testActiveAndIdleConnections() throws Exception {
+        final Connection theFirstConnection = mInstanceUnderTest.getConnection();
+        final Connection theSecondConnection = mInstanceUnderTest.getConnection();
+
+        Assert.assertEquals("Both connections should be active", 2, mInstanceUnderTest.getActiveConnectionCount());
+        Assert.assertEquals("There should be two connection requests", 2,
+            mInstanceUnderTest.getConnectionRequestCount());
+
+        theFirstConnection.close();
+        theSecondConnection.close();
+        waitForConnectionsReturnedToPool();
+
+        Assert.assertEquals("No connection should be active", 0, mInstanceUnderTest.getActiveConnectionCount());
+        Assert.assertEquals("Both connections should be idle", 2, mInstanceUnderTest.getIdleConnectionCount());
+        Assert.assertEquals("Pool should contain both connections", 2, mInstanceUnderTest.getConnectionCount());
+    }
+
+    /**
+     * Tests reusing a connection returned to the pool.
+     * Expected result: The pool should not grow beyond its maximum size when
+     * connections are obtained and closed one at a time.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testReuseConnection() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            final Connection theConnection = mInstanceUnderTest.getConnection();
+            theConnection.close();
+        }
+
+        Assert.assertTrue("Pool should not exceed its maximum size",
+            mInstanceUnderTest.getConnectionCount() <= POOL_MAX_SIZE);
+        Assert.assertEquals("There should be ten connection requests", 10,
+            mInstanceUnderTest.getConnectionRequestCount());
+    }
+
+    /**
+     * Tests requesting a connection when all connections in the pool are in use.
+     * Expected result: The request should fail after the checkout timeout and
+     * be counted as a failed connection request.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testConnectionRequestTimeout() throws Exception {
+        final Connection theFirstConnection = mInstanceUnderTest.getConnection();
+        final Connection theSecondConnection = mInstanceUnderTest.getConnection();
+        try {
+            mInstanceUnderTest.getConnection();
+            Assert.fail("Connection request should time out when pool is exhausted");
+        } catch (final SQLException theException) {
+            /* Expected exception. */
+        } finally {
+            theFirstConnection.close();
+            theSecondConnection.close();
+        }
+
+        Assert.assertEquals("There should be one failed connection request", 1,
+            mInstanceUnderTest.getFailedConnectionRequestCount());
+        Assert.assertEquals("There should be two successful connection requests", 2,
+            mInstanceUnderTest.getConnectionRequestCount());
+    }
+
+    /**
+     * Waits until no connections are active, since the connection pool
+     * returns connections to the pool asynchronously.
+     *
+     * @throws Exception If error occurs waiting.
+     */
+    protected void waitForConnectionsReturnedToPool() throws Exception {
+        final long theDeadline = System.currentTimeMillis() + CHECKIN_MAX_WAIT;
+        while (mInstanceUnderTest.getActiveConnectionCount() > 0 && System.currentTimeMillis() < theDeadline) {
+            Thread.sleep(10L);
+        }
+    }
+}
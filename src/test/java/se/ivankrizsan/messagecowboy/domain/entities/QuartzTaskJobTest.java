@@ -16,11 +16,13 @@
  */
 package se.ivankrizsan.messagecowboy.domain.entities;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.AdditionalAnswers;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.quartz.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,11 +35,16 @@ import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusError
 import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusNoMessageReceived;
 import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusSuccess;
 import se.ivankrizsan.messagecowboy.services.taskconfiguration.TaskConfigurationService;
+import se.ivankrizsan.messagecowboy.services.taskexecutionstatus.TaskExecutionStatusService;
+import se.ivankrizsan.messagecowboy.services.transport.NativeFileMover;
 import se.ivankrizsan.messagecowboy.services.transport.TransportService;
 import se.ivankrizsan.messagecowboy.services.transport.exceptions.TransportException;
 import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Tests the {@link QuartzTaskJob} class.
@@ -52,7 +59,9 @@ public class QuartzTaskJobTest extends AbstractTestBaseClass {
 
     /* Instance variable(s): */
     private TransportService mTransportService;
-    private TaskConfigurationService mTaskConfigurationService;
+    private TaskExecutionStatusService mTaskExecutionStatusService;
+    /** Task execution statuses saved by the task execution status service mock. */
+    private List<TaskExecutionStatus> mSavedTaskExecutionStatuses;
     /** Contains configuration for test-task. */
     private MessageCowboySchedulableTaskConfig mMoverTask;
     /** Task job under test. */
@@ -75,15 +84,17 @@ public class QuartzTaskJobTest extends AbstractTestBaseClass {
             mTransportService.receive(Mockito.anyString(), Mockito.anyLong()))
             .thenReturn(new MuleMoverMessage());
 
-        /* Create task configuration service mock. */
-        mTaskConfigurationService =
-            Mockito.mock(TaskConfigurationService.class);
-        Mockito
-            .when(
-                mTaskConfigurationService
-                    .save((MessageCowboySchedulableTaskConfig) Mockito
-                        .anyObject())).thenAnswer(
-                AdditionalAnswers.returnsFirstArg());
+        /* Create task execution status service mock that records saved statuses. */
+        mSavedTaskExecutionStatuses = new ArrayList<TaskExecutionStatus>();
+        mTaskExecutionStatusService =
+            Mockito.mock(TaskExecutionStatusService.class);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock inInvocation) {
+                mSavedTaskExecutionStatuses.add((TaskExecutionStatus) inInvocation.getArguments()[0]);
+                return null;
+            }
+        }).when(mTaskExecutionStatusService).save(Mockito.any(TaskExecutionStatus.class));
 
         mMoverTask =
             createFileMoverTask("/SomeInputDir/", "/SomeDestinationDir/");
@@ -125,9 +136,11 @@ public class QuartzTaskJobTest extends AbstractTestBaseClass {
 
     /**
      * Creates a Quartz job execution context configured to be executed by a
-     * {@code QuartzTaskJob} with supplied mover task.
+     * {@code QuartzTaskJob} with supplied mover task.<br/>
+     * The services used by the task job, including a task configuration
+     * service that supplies the mover task, are set on the task job under test.
      *
-     * @param inMoverTask Mover task to insert into the job execution context.
+     * @param inMoverTask Mover task to be executed by the job.
      * @return Quartz job execution context.
      */
     private JobExecutionContext createJobExecutionContextWithMoverTask(
@@ -135,17 +148,21 @@ public class QuartzTaskJobTest extends AbstractTestBaseClass {
         final JobKey theJobKey =
             new JobKey("MoverTaskJobTest_Job", "MoverTaskJobTest_Group");
 
+        /* Create task configuration service mock that returns the mover task. */
+        final TaskConfigurationService theTaskConfigurationService =
+            Mockito.mock(TaskConfigurationService.class);
+        Mockito.when(theTaskConfigurationService.find(inMoverTask.getName()))
+            .thenReturn(inMoverTask);
+        mTaskJobUnderTest.setTaskConfigurationService(theTaskConfigurationService);
+        mTaskJobUnderTest.setTransportService(mTransportService);
+        mTaskJobUnderTest.setTaskExecutionStatusService(mTaskExecutionStatusService);
+
         /* Create job detail mock that returns our job key and job data map. */
         final JobDetail theJobDetail = Mockito.mock(JobDetail.class);
         Mockito.when(theJobDetail.getKey()).thenReturn(theJobKey);
         final JobDataMap theJobDataMap = new JobDataMap();
-        theJobDataMap.put(QuartzTaskJob.TASK_CONFIGURATION_JOB_DATA_KEY,
-            inMoverTask);
-        theJobDataMap.put(QuartzTaskJob.TRANSPORT_SERVICE_JOB_DATA_KEY,
-            mTransportService);
-        theJobDataMap.put(
-            QuartzTaskJob.TASK_CONFIGURATION_SERVICE_JOB_DATA_KEY,
-            mTaskConfigurationService);
+        theJobDataMap.put(QuartzTaskJob.TASK_NAME_JOB_DATA_KEY,
+            inMoverTask.getName());
         Mockito.when(theJobDetail.getJobDataMap()).thenReturn(theJobDataMap);
 
         /* Create a job execution context that returns our job detail mock. */
@@ -156,6 +173,25 @@ public class QuartzTaskJobTest extends AbstractTestBaseClass {
         return theJobExecContext;
     }
 
+    /**
+     * Tests executing a job which task configuration no longer is available
+     * from the task configuration service.<br/>
+     * Expected result:<br/>
+     * No messages should be moved and no task execution status should be recorded.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testExecuteTaskJobRemovedTask() throws Exception {
+        Mockito.when(mTaskJobUnderTest.getTaskConfigurationService().find(mMoverTask.getName()))
+            .thenReturn(null);
+
+        mTaskJobUnderTest.execute(mJobExecContext);
+
+        Mockito.verifyZeroInteractions(mTransportService);
+        Assert.assertTrue("No task status should have been recorded", mSavedTaskExecutionStatuses.isEmpty());
+    }
+
     /**
      * Tests executing a job which should perform a request for a message
      * and dispatch the received message.<br/>
@@ -178,10 +214,9 @@ public class QuartzTaskJobTest extends AbstractTestBaseClass {
             Mockito.any(MoverMessage.class), Mockito.anyString());
 
         /* Check task status, which should be success with a message. */
-        Assert.assertTrue("Task should have a status", mMoverTask
-            .getTaskExecutionStatuses().size() > 0);
+        Assert.assertTrue("Task should have a status", mSavedTaskExecutionStatuses.size() > 0);
         final Object theStatusObject =
-            mMoverTask.getTaskExecutionStatuses().get(0);
+            mSavedTaskExecutionStatuses.get(0);
         Assert.assertTrue("Task status should be success",
             theStatusObject instanceof TaskExecutionStatusSuccess);
         final TaskExecutionStatus theStatus =
@@ -193,6 +228,81 @@ public class QuartzTaskJobTest extends AbstractTestBaseClass {
         Assert.assertTrue(
             "Last execution time should be after test start time",
             mBeforeTestTime.before(theStatus.getTaskExecutionTime()));
+
+        /* Status should reference the task but not have been added to it. */
+        Assert.assertEquals("Task status should reference task by name",
+            mMoverTask.getName(), theStatus.getTaskName());
+        Assert.assertTrue("Task configuration should not have been modified",
+            mMoverTask.getTaskExecutionStatuses().isEmpty());
+    }
+
+    /**
+     * Tests executing a job moving files between two file endpoints when a
+     * native file mover is available in the job data map.<br/>
+     * Expected result:<br/>
+     * The files should be moved by the native file mover and the transport
+     * service should not be used.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testExecuteTaskJobNativeFileMove() throws Exception {
+        final NativeFileMover theNativeFileMover = Mockito.mock(NativeFileMover.class);
+        Mockito.when(theNativeFileMover.isFileToFileMove(Mockito.anyString(), Mockito.anyString()))
+            .thenReturn(true);
+        Mockito.when(theNativeFileMover.moveFiles(Mockito.anyString(), Mockito.anyString(), Mockito.anyInt()))
+            .thenReturn(3, 0);
+        mTaskJobUnderTest.setNativeFileMover(theNativeFileMover);
+        mMoverTask.setMaxMessagesPerExecution(10);
+
+        mTaskJobUnderTest.execute(mJobExecContext);
+
+        Mockito.verify(theNativeFileMover, Mockito.times(2)).moveFiles(Mockito.anyString(), Mockito.anyString(),
+            Mockito.anyInt());
+        Mockito.verifyZeroInteractions(mTransportService);
+
+        final TaskExecutionStatus theStatus = mSavedTaskExecutionStatuses.get(0);
+        Assert.assertTrue("Task status should be success", theStatus instanceof TaskExecutionStatusSuccess);
+        Assert.assertEquals("Three files should have been moved", 3, theStatus.getMessageCount());
+    }
+
+    /**
+     * Tests executing a job copying files between two file endpoints using
+     * the native file mover when the inbound endpoint retains source files.<br/>
+     * Expected result:<br/>
+     * Each file should be copied once, in the first execution of the job,
+     * and the message count should be the number of files.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testExecuteTaskJobNativeFileCopyRetainedSource() throws Exception {
+        createTestFileWithContent();
+        createTestDestinationDirectory();
+        FileUtils.writeStringToFile(new File(mTestInputDirectory, "inputfile2.txt"), TEST_FILE_CONTENTS);
+        FileUtils.writeStringToFile(new File(mTestInputDirectory, "inputfile3.txt"), TEST_FILE_CONTENTS);
+        final NativeFileMover theNativeFileMover = new NativeFileMover();
+        theNativeFileMover.setEnabledFlag(true);
+        mTaskJobUnderTest.setNativeFileMover(theNativeFileMover);
+        mMoverTask.setInboundEndpointURI("file://"
+            + mTestInputDirectory.getAbsolutePath().replaceAll("\\" + File.separator, "/") + "?noop=true");
+        mMoverTask.setOutboundEndpoint("file://"
+            + mTestDestinationDirectory.getAbsolutePath().replaceAll("\\" + File.separator, "/"));
+        mMoverTask.setMaxMessagesPerExecution(10);
+
+        mTaskJobUnderTest.execute(mJobExecContext);
+        mTaskJobUnderTest.execute(mJobExecContext);
+
+        Mockito.verifyZeroInteractions(mTransportService);
+        final TaskExecutionStatus theStatus = mSavedTaskExecutionStatuses.get(0);
+        Assert.assertTrue("Task status should be success", theStatus instanceof TaskExecutionStatusSuccess);
+        Assert.assertEquals("Each file should have been copied once", 3, theStatus.getMessageCount());
+        Assert.assertEquals("All files should be in the destination directory", 3,
+            mTestDestinationDirectory.listFiles().length);
+        Assert.assertEquals("All files should be left in the input directory", 3,
+            mTestInputDirectory.listFiles().length);
+        Assert.assertTrue("No file should have been copied in the second execution",
+            mSavedTaskExecutionStatuses.get(1) instanceof TaskExecutionStatusNoMessageReceived);
     }
 
     /**
@@ -241,10 +351,9 @@ public class QuartzTaskJobTest extends AbstractTestBaseClass {
      */
     private void checkFailedTaskExecutionStatus() {
         /* Check task status, which should be error with a message. */
-        Assert.assertTrue("Task should have a status", mMoverTask
-            .getTaskExecutionStatuses().size() > 0);
+        Assert.assertTrue("Task should have a status", mSavedTaskExecutionStatuses.size() > 0);
         final Object theStatusObject =
-            mMoverTask.getTaskExecutionStatuses().get(0);
+            mSavedTaskExecutionStatuses.get(0);
         Assert.assertTrue("Task status should be success",
             theStatusObject instanceof TaskExecutionStatusError);
         final TaskExecutionStatus theStatus =
@@ -320,10 +429,9 @@ public class QuartzTaskJobTest extends AbstractTestBaseClass {
             Mockito.anyLong());
 
         /* Check task status, which should be success with a message. */
-        Assert.assertTrue("Task should have a status", mMoverTask
-            .getTaskExecutionStatuses().size() > 0);
+        Assert.assertTrue("Task should have a status", mSavedTaskExecutionStatuses.size() > 0);
         final Object theStatusObject =
-            mMoverTask.getTaskExecutionStatuses().get(0);
+            mSavedTaskExecutionStatuses.get(0);
         Assert.assertTrue("Task status should be no message received",
             theStatusObject instanceof TaskExecutionStatusNoMessageReceived);
         final TaskExecutionStatus theStatus =
@@ -336,4 +444,108 @@ public class QuartzTaskJobTest extends AbstractTestBaseClass {
             "Last execution time should be after test start time",
             mBeforeTestTime.before(theStatus.getTaskExecutionTime()));
     }
+
+    /**
+     * Tests executing a job which is allowed to move multiple messages
+     * during one execution and the inbound endpoint runs out of messages
+     * before the limit is reached.<br/>
+     * Expected result:<br/>
+     * Messages should be moved until no message is received and one single
+     * task execution status holding the number of moved messages should
+     * be generated.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testExecuteTaskJobDrainUntilNoMessage() throws Exception {
+        mMoverTask.setMaxMessagesPerExecution(10);
+        mTransportService = Mockito.mock(TransportService.class);
+        Mockito.when(
+            mTransportService.moveBatch(Mockito.anyString(), Mockito.anyString(),
+                Mockito.anyLong(), Mockito.anyInt()))
+            .thenReturn(3).thenReturn(0);
+        mJobExecContext = createJobExecutionContextWithMoverTask(mMoverTask);
+
+        mTaskJobUnderTest.execute(mJobExecContext);
+
+        /* Verify outcome. */
+        Mockito.verify(mTransportService).moveBatch(Mockito.anyString(),
+            Mockito.anyString(), Mockito.anyLong(), Mockito.eq(10));
+        Mockito.verify(mTransportService).moveBatch(Mockito.anyString(),
+            Mockito.anyString(), Mockito.anyLong(), Mockito.eq(7));
+        Assert.assertEquals("Task should have one single status", 1,
+            mSavedTaskExecutionStatuses.size());
+        final TaskExecutionStatus theStatus =
+            mSavedTaskExecutionStatuses.get(0);
+        Assert.assertTrue("Task status should be success",
+            theStatus instanceof TaskExecutionStatusSuccess);
+        Assert.assertEquals("Task status should hold number of moved messages",
+            3, theStatus.getMessageCount());
+    }
+
+    /**
+     * Tests executing a job which is allowed to move multiple messages
+     * during one execution and the inbound endpoint holds more messages
+     * than the limit.<br/>
+     * Expected result:<br/>
+     * The maximum number of messages per execution should be moved, with
+     * also the last message being moved in a batch.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testExecuteTaskJobMaxMessagesPerExecution() throws Exception {
+        mMoverTask.setMaxMessagesPerExecution(5);
+        Mockito.when(
+            mTransportService.moveBatch(Mockito.anyString(), Mockito.anyString(),
+                Mockito.anyLong(), Mockito.anyInt()))
+            .thenReturn(2).thenReturn(2).thenReturn(1);
+
+        mTaskJobUnderTest.execute(mJobExecContext);
+
+        /* Verify outcome. */
+        Mockito.verify(mTransportService).moveBatch(Mockito.anyString(),
+            Mockito.anyString(), Mockito.anyLong(), Mockito.eq(5));
+        Mockito.verify(mTransportService).moveBatch(Mockito.anyString(),
+            Mockito.anyString(), Mockito.anyLong(), Mockito.eq(3));
+        Mockito.verify(mTransportService).moveBatch(Mockito.anyString(),
+            Mockito.anyString(), Mockito.anyLong(), Mockito.eq(1));
+        Mockito.verify(mTransportService, Mockito.never()).receive(
+            Mockito.anyString(), Mockito.anyLong());
+        Assert.assertEquals("Task should have one single status", 1,
+            mSavedTaskExecutionStatuses.size());
+        Assert.assertEquals("Task status should hold number of moved messages",
+            5, mSavedTaskExecutionStatuses.get(0).getMessageCount());
+    }
+
+    /**
+     * Tests executing a job which is allowed to move an unlimited number of
+     * messages during a limited duration.<br/>
+     * Expected result:<br/>
+     * The execution should stop after the maximum execution duration has
+     * elapsed, although there are more messages to receive.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testExecuteTaskJobMaxExecutionDuration() throws Exception {
+        mMoverTask.setMaxMessagesPerExecution(Integer.MAX_VALUE);
+        mMoverTask.setMaxExecutionDuration(200L);
+        Mockito.when(
+            mTransportService.moveBatch(Mockito.anyString(), Mockito.anyString(),
+                Mockito.anyLong(), Mockito.eq(QuartzTaskJob.MAX_MESSAGES_PER_BATCH)))
+            .thenReturn(QuartzTaskJob.MAX_MESSAGES_PER_BATCH);
+
+        final long theStartTime = System.currentTimeMillis();
+        mTaskJobUnderTest.execute(mJobExecContext);
+        final long theExecutionTime = System.currentTimeMillis() - theStartTime;
+
+        /* Verify outcome. */
+        Assert.assertTrue("Execution should stop after maximum duration",
+            theExecutionTime < 5000L);
+        Assert.assertEquals("Task should have one single status", 1,
+            mSavedTaskExecutionStatuses.size());
+        Assert.assertTrue("Task status should hold number of moved messages",
+            mSavedTaskExecutionStatuses.get(0).getMessageCount() > 0);
+    }
 }
@@ -32,6 +32,7 @@ import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
 import se.ivankrizsan.messagecowboy.testutils.InvocationLoggerMethodInterceptor;
 import se.ivankrizsan.messagecowboy.testutils.InvocationLoggerMethodInterceptor.InvocationLogEntry;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -72,14 +73,19 @@ public class TaskExecutionStatusCleanupTest extends AbstractTestBaseClass {
         final List<InvocationLogEntry> theInvocationLogEntries =
             mTaskExecutionStatusServiceInvocationLogger.getInvocationLogEntries();
 
-        /* Wait until there are at least two invocations. */
-        while (theInvocationLogEntries.size() < 2) {
+        /*
+         * Wait until there are at least two invocations of the task execution status cleanup.
+         * Invocations of other methods, such as the task execution rollup cleanup, are ignored.
+         */
+        List<InvocationLogEntry> theCleanupInvocationLogEntries = findCleanupInvocations(theInvocationLogEntries);
+        while (theCleanupInvocationLogEntries.size() < 2) {
             delay(300L);
+            theCleanupInvocationLogEntries = findCleanupInvocations(theInvocationLogEntries);
         }
 
         /* Verify the invocation interval. */
-        final InvocationLogEntry theInvocationLogEntryOne = theInvocationLogEntries.get(0);
-        final InvocationLogEntry theInvocationLogEntryTwo = theInvocationLogEntries.get(1);
+        final InvocationLogEntry theInvocationLogEntryOne = theCleanupInvocationLogEntries.get(0);
+        final InvocationLogEntry theInvocationLogEntryTwo = theCleanupInvocationLogEntries.get(1);
         final long theInvocationTimeDiff =
             theInvocationLogEntryTwo.getInvocationTime().getTime()
                 - theInvocationLogEntryOne.getInvocationTime().getTime();
@@ -87,4 +93,21 @@ public class TaskExecutionStatusCleanupTest extends AbstractTestBaseClass {
         /* Job is configured to execute with 5 second intervals*/
         Assert.assertTrue("At least 4 seconds between job executions", theInvocationTimeDiff > 4000);
     }
+
+    /**
+     * Finds the invocations of the task execution status cleanup in the supplied invocation log entries.
+     *
+     * @param inInvocationLogEntries Invocation log entries.
+     * @return Invocation log entries of the task execution status cleanup.
+     */
+    protected List<InvocationLogEntry> findCleanupInvocations(final List<InvocationLogEntry> inInvocationLogEntries) {
+        final List<InvocationLogEntry> theCleanupInvocationLogEntries = new ArrayList<>();
+        /* Copy the log entries, since invocations may be logged while searching. */
+        for (InvocationLogEntry theInvocationLogEntry : new ArrayList<>(inInvocationLogEntries)) {
+            if (theInvocationLogEntry.getMethodName().contains(".deleteIfOlderThanDays(")) {
+                theCleanupInvocationLogEntries.add(theInvocationLogEntry);
+            }
+        }
+        return theCleanupInvocationLogEntries;
+    }
 }
@@ -21,6 +21,11 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.quartz.CronExpression;
+import org.quartz.JobKey;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
@@ -32,11 +37,15 @@ import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskKey;
 import se.ivankrizsan.messagecowboy.services.scheduling.exceptions.SchedulingException;
 import se.ivankrizsan.messagecowboy.services.scheduling.helpers.JPATestMoverTask;
 import se.ivankrizsan.messagecowboy.services.scheduling.helpers.QuartzTestTaskJob;
+import se.ivankrizsan.messagecowboy.testconfig.PropertyPlaceholderTestConfiguration;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Tests the {@code QuartzSchedulingService} class.
@@ -45,12 +54,17 @@ import java.util.Map;
  */
 @Features("Scheduling")
 @RunWith(SpringJUnit4ClassRunner.class)
-@ContextConfiguration(classes = {SchedulingServiceConfiguration.class})
+@ContextConfiguration(classes = {SchedulingServiceConfiguration.class, PropertyPlaceholderTestConfiguration.class})
 @DirtiesContext(classMode = ClassMode.AFTER_CLASS)
 public class QuartzSchedulingServiceTest {
     /* Constant(s): */
     private final static String TASK_NAME = "QuartzMuleTaskJobTest";
     private final static String TASK_GROUP_NAME = "TestGroup";
+    /** Cron expression that will not trigger during the tests. */
+    private final static String FAR_FUTURE_CRON_EXPRESSION = "0 0 0 1 1 ? 2099";
+    private final static String REFRESH_COUNT_KEY = "RefreshCount";
+    /** Cron expression firing once per day. */
+    private final static String DAILY_CRON_EXPRESSION = "0 0 0 * * ?";
 
     /* Instance variable(s): */
     private MessageCowboySchedulableTaskConfig mTestTask;
@@ -77,11 +91,13 @@ public class QuartzSchedulingServiceTest {
     }
 
     /**
-     * Cleans up after each test by unscheduling all tasks.
+     * Cleans up after each test by unscheduling all tasks and disabling staggering.
      */
     @After
     public void cleanUp() {
         mSchedulingService.unscheduleAllTasks();
+        mSchedulingService.setStaggeringFlag(false);
+        mSchedulingService.getGroupMaxStaggerOffsets().clear();
     }
 
     /**
@@ -100,6 +116,51 @@ public class QuartzSchedulingServiceTest {
         Assert.assertTrue("Task should have been executed at least once", theTaskInvocationCount.intValue() >= 1);
     }
 
+    /**
+     * Tests scheduling a task at a fixed rate with a sub-second interval.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testScheduleFixedRateTask() throws Exception {
+        mTestTask.setCronExpression(null);
+        mTestTask.setIntervalMillis(100);
+        mSchedulingService.scheduleTask(mTestTask, mJobDataMap);
+
+        Thread.sleep(1050);
+
+        final Integer theTaskInvocationCount = (Integer) mJobDataMap.get(QuartzTestTaskJob.INVOCATION_COUNTER_KEY);
+        Assert.assertTrue("Task should have been executed more than once per second",
+            theTaskInvocationCount.intValue() >= 5);
+    }
+
+    /**
+     * Tests scheduling a task with a fixed delay between executions.
+     * The task should be executed repeatedly, with at least the fixed
+     * delay between two consecutive executions.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testScheduleFixedDelayTask() throws Exception {
+        mTestTask.setCronExpression(null);
+        mTestTask.setIntervalMillis(100);
+        mTestTask.setFixedDelayFlag(true);
+        mSchedulingService.scheduleTask(mTestTask, mJobDataMap);
+
+        Thread.sleep(1050);
+        mSchedulingService.unscheduleTask(TASK_GROUP_NAME, TASK_NAME);
+
+        @SuppressWarnings("unchecked")
+        final List<Date> theInvocationTimes = new ArrayList<>(
+            (List<Date>) mJobDataMap.get(QuartzTestTaskJob.INVOCATION_TIME_LIST));
+        Assert.assertTrue("Task should have been executed repeatedly", theInvocationTimes.size() >= 3);
+        for (int i = 1; i < theInvocationTimes.size(); i++) {
+            final long theDelay = theInvocationTimes.get(i).getTime() - theInvocationTimes.get(i - 1).getTime();
+            Assert.assertTrue("Delay between executions should be at least the fixed delay", theDelay >= 100);
+        }
+    }
+
     /**
      * Tests scheduling a task with a bad CRON expression.
      *
@@ -239,6 +300,197 @@ public class QuartzSchedulingServiceTest {
         Assert.assertTrue("Task should not have been unscheduled earlier", theUnscheduledFlag);
     }
 
+    /**
+     * Tests refreshing a task which schedule has not changed.
+     * The task should keep its trigger and next fire time, while its
+     * job data should be replaced.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testScheduleOrUpdateUnchangedTask() throws Exception {
+        mTestTask.setCronExpression(FAR_FUTURE_CRON_EXPRESSION);
+        mJobDataMap.put(REFRESH_COUNT_KEY, 1);
+        boolean theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+        Assert.assertTrue("New task should have been scheduled", theScheduledFlag);
+
+        final Trigger theOriginalTrigger =
+            mSchedulingService.getQuartzSchedulerHelper().findTrigger(TASK_GROUP_NAME, TASK_NAME);
+        Assert.assertNotNull("Task should have a trigger", theOriginalTrigger);
+
+        Thread.sleep(100);
+
+        /* Refresh the task with an identical schedule but new job data. */
+        final Map<String, Object> theNewJobDataMap = new HashMap<>(mJobDataMap);
+        theNewJobDataMap.put(REFRESH_COUNT_KEY, 2);
+        theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, theNewJobDataMap);
+        Assert.assertFalse("Unchanged task should not have been rescheduled", theScheduledFlag);
+
+        final Trigger theRefreshedTrigger =
+            mSchedulingService.getQuartzSchedulerHelper().findTrigger(TASK_GROUP_NAME, TASK_NAME);
+        Assert.assertEquals("Trigger start time should be retained",
+            theOriginalTrigger.getStartTime(), theRefreshedTrigger.getStartTime());
+        Assert.assertEquals("Next fire time should be retained",
+            theOriginalTrigger.getNextFireTime(), theRefreshedTrigger.getNextFireTime());
+
+        final Map<String, Object> theJobDataMap = mSchedulingService.findJobDataMap(TASK_GROUP_NAME, TASK_NAME);
+        Assert.assertEquals("Job data should have been replaced", 2, theJobDataMap.get(REFRESH_COUNT_KEY));
+    }
+
+    /**
+     * Tests refreshing a task which cron expression has changed.
+     * The task should be rescheduled with a new trigger.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testScheduleOrUpdateChangedTask() throws Exception {
+        mTestTask.setCronExpression(FAR_FUTURE_CRON_EXPRESSION);
+        mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+        final Trigger theOriginalTrigger =
+            mSchedulingService.getQuartzSchedulerHelper().findTrigger(TASK_GROUP_NAME, TASK_NAME);
+
+        Thread.sleep(100);
+
+        mTestTask.setCronExpression("0 0 0 1 1 ? 2098");
+        final boolean theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+        Assert.assertTrue("Changed task should have been rescheduled", theScheduledFlag);
+
+        final Trigger theRescheduledTrigger =
+            mSchedulingService.getQuartzSchedulerHelper().findTrigger(TASK_GROUP_NAME, TASK_NAME);
+        Assert.assertNotEquals("Trigger should have a new next fire time",
+            theOriginalTrigger.getNextFireTime(), theRescheduledTrigger.getNextFireTime());
+    }
+
+    /**
+     * Tests refreshing a task scheduled at an interval.
+     * A task which interval is unchanged should keep its trigger, while a
+     * task which interval has changed should be rescheduled.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testScheduleOrUpdateIntervalTask() throws Exception {
+        mTestTask.setCronExpression(null);
+        mTestTask.setIntervalMillis(3600000L);
+        boolean theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+        Assert.assertTrue("New task should have been scheduled", theScheduledFlag);
+
+        theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+        Assert.assertFalse("Unchanged task should not have been rescheduled", theScheduledFlag);
+
+        mTestTask.setFixedDelayFlag(true);
+        theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+        Assert.assertTrue("Task changed to fixed delay should have been rescheduled", theScheduledFlag);
+
+        theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+        Assert.assertFalse("Unchanged fixed-delay task should not have been rescheduled", theScheduledFlag);
+
+        mTestTask.setIntervalMillis(0);
+        mTestTask.setCronExpression(FAR_FUTURE_CRON_EXPRESSION);
+        theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+        Assert.assertTrue("Task changed to cron schedule should have been rescheduled", theScheduledFlag);
+    }
+
+    /**
+     * Tests scheduling a cron task with staggering enabled.
+     * The task should fire its stagger offset after the times determined
+     * by its cron expression and the offset of the daily task should be less
+     * than the default maximum stagger offset.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testScheduleStaggeredCronTask() throws Exception {
+        mSchedulingService.setStaggeringFlag(true);
+        mTestTask.setCronExpression(DAILY_CRON_EXPRESSION);
+        final long theStaggerOffset = mSchedulingService.calculateStaggerOffset(mTestTask);
+        Assert.assertTrue("Stagger offset should be less than the default maximum stagger offset",
+            theStaggerOffset >= 0 && theStaggerOffset < QuartzSchedulingService.DEFAULT_MAX_STAGGER_OFFSET);
+        Assert.assertEquals("Stagger offset should be the same each time", theStaggerOffset,
+            mSchedulingService.calculateStaggerOffset(mTestTask));
+
+        mSchedulingService.scheduleTask(mTestTask, mJobDataMap);
+
+        final Trigger theTrigger = mSchedulingService.getQuartzSchedulerHelper().findTrigger(TASK_GROUP_NAME, TASK_NAME);
+        final Date theCronFireTime = new CronExpression(DAILY_CRON_EXPRESSION).getNextValidTimeAfter(
+            new Date(theTrigger.getNextFireTime().getTime() - theStaggerOffset - 1));
+        Assert.assertEquals("Task should fire the stagger offset after the cron fire time",
+            theCronFireTime.getTime() + theStaggerOffset, theTrigger.getNextFireTime().getTime());
+    }
+
+    /**
+     * Tests calculating stagger offsets of many tasks sharing the same cron
+     * expression, with and without a maximum stagger offset for their group.
+     * The offsets should be spread across the period of the cron expression
+     * and be less than the maximum stagger offset of the group, if any.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testStaggerOffsetSpread() throws Exception {
+        mSchedulingService.setStaggeringFlag(true);
+        mTestTask.setCronExpression("0/10 * * * * ?");
+
+        final Set<Long> theOffsetSeconds = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            mTestTask.setName("Task" + i);
+            final long theStaggerOffset = mSchedulingService.calculateStaggerOffset(mTestTask);
+            Assert.assertTrue("Stagger offset should be less than the period",
+                theStaggerOffset >= 0 && theStaggerOffset < 10000L);
+            theOffsetSeconds.add(theStaggerOffset / 1000);
+        }
+        Assert.assertEquals("Stagger offsets should be spread across the period", 10, theOffsetSeconds.size());
+
+        mSchedulingService.getGroupMaxStaggerOffsets().put(TASK_GROUP_NAME, 500L);
+        for (int i = 0; i < 100; i++) {
+            mTestTask.setName("Task" + i);
+            Assert.assertTrue("Stagger offset should be less than the group maximum",
+                mSchedulingService.calculateStaggerOffset(mTestTask) < 500L);
+        }
+    }
+
+    /**
+     * Tests refreshing a staggered task.
+     * The task should keep its trigger while the stagger offset is unchanged
+     * and be rescheduled when staggering is disabled.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testScheduleOrUpdateStaggeredTask() throws Exception {
+        mSchedulingService.setStaggeringFlag(true);
+        mTestTask.setCronExpression(DAILY_CRON_EXPRESSION);
+        boolean theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+        Assert.assertTrue("New task should have been scheduled", theScheduledFlag);
+
+        theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+        Assert.assertFalse("Unchanged staggered task should not have been rescheduled", theScheduledFlag);
+
+        mSchedulingService.setStaggeringFlag(false);
+        theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+        Assert.assertTrue("Task no longer staggered should have been rescheduled", theScheduledFlag);
+    }
+
+    /**
+     * Tests refreshing a task that has become disabled.
+     * The task should be unscheduled.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testScheduleOrUpdateDisabledTask() throws Exception {
+        mTestTask.setCronExpression(FAR_FUTURE_CRON_EXPRESSION);
+        mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+
+        mTestTask.setTaskEnabledFlag(false);
+        final boolean theScheduledFlag = mSchedulingService.scheduleOrUpdateTask(mTestTask, mJobDataMap);
+
+        Assert.assertFalse("Disabled task should not have been scheduled", theScheduledFlag);
+        Assert.assertNull("Disabled task should have been unscheduled",
+            mSchedulingService.findJobDataMap(TASK_GROUP_NAME, TASK_NAME));
+    }
+
     /**
      * Tests scheduling a task that invokes a method.
      *
@@ -254,6 +506,89 @@ public class QuartzSchedulingServiceTest {
         final Integer theTaskInvocationCount = (Integer) mJobDataMap.get(QuartzTestTaskJob.INVOCATION_COUNTER_KEY);
 
         Assert.assertTrue("Task should have been executed at least once", theTaskInvocationCount.intValue() >= 1);
+        Assert.assertTrue("Target object should not be kept in the job data map",
+            mSchedulingService.findJobDataMap(TASK_GROUP_NAME, TASK_NAME).isEmpty());
+    }
+
+    /**
+     * Tests scheduling a task that invokes a method taking a primitive parameter.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testScheduleMethodInvokingTaskWithParameter() throws Exception {
+        mSchedulingService.scheduleMethodInvocation(this, "methodWithParameterToBeInvoked",
+            new Object[] {Integer.valueOf(5)}, "* * * * * ?", TASK_NAME, TASK_GROUP_NAME);
+
+        Thread.sleep(1500);
+
+        final Integer theTaskInvocationCount = (Integer) mJobDataMap.get(QuartzTestTaskJob.INVOCATION_COUNTER_KEY);
+
+        Assert.assertEquals("Task should have been executed with the parameter", Integer.valueOf(5),
+            theTaskInvocationCount);
+    }
+
+    /**
+     * Tests scheduling a task that invokes a method that does not exist.
+     * The method should be resolved, and thus fail, when the task is scheduled.
+     *
+     * @throws Exception Expected result.
+     */
+    @Test(expected = SchedulingException.class)
+    public void testScheduleMethodInvokingTaskNoSuchMethod() throws Exception {
+        mSchedulingService.scheduleMethodInvocation(this, "noSuchMethod", null, "* * * * * ?", TASK_NAME,
+            TASK_GROUP_NAME);
+    }
+
+    /**
+     * Tests scheduling a task that invokes a method when scheduling the task fails.
+     * The method invocation registered for a previously scheduled task with the same
+     * name should be restored.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testScheduleMethodInvokingTaskSchedulingFails() throws Exception {
+        mSchedulingService.scheduleMethodInvocation(this, "methodToBeInvoked", null,
+            FAR_FUTURE_CRON_EXPRESSION, TASK_NAME, TASK_GROUP_NAME);
+        final JobKey theJobKey = new JobKey(TASK_NAME, TASK_GROUP_NAME);
+        final ScheduledMethodInvocation thePreviousMethodInvocation =
+            mSchedulingService.getMethodInvocationRegistry().find(theJobKey);
+
+        final QuartzSchedulerHelper theSchedulerHelper = mSchedulingService.getQuartzSchedulerHelper();
+        final QuartzSchedulerHelper theFailingSchedulerHelper = Mockito.mock(QuartzSchedulerHelper.class);
+        Mockito.doThrow(new SchedulerException("Scheduling failed")).when(theFailingSchedulerHelper)
+            .scheduleIntervalTask(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(),
+                Mockito.any(Class.class), Mockito.anyLong(), Mockito.anyBoolean(), Mockito.anyLong(),
+                Mockito.anyMap(), Mockito.any(Date.class), Mockito.any(Date.class));
+        mSchedulingService.setQuartzSchedulerHelper(theFailingSchedulerHelper);
+        try {
+            mSchedulingService.scheduleMethodInvocation(this, "methodWithParameterToBeInvoked",
+                new Object[] {Integer.valueOf(5)}, 1000L, false, TASK_NAME, TASK_GROUP_NAME);
+            Assert.fail("Scheduling the task should fail");
+        } catch (final SchedulingException theException) {
+            /* Expected exception. */
+        } finally {
+            mSchedulingService.setQuartzSchedulerHelper(theSchedulerHelper);
+        }
+
+        Assert.assertSame("The previously registered method invocation should be restored",
+            thePreviousMethodInvocation, mSchedulingService.getMethodInvocationRegistry().find(theJobKey));
+
+        final JobKey theOtherJobKey = new JobKey(TASK_NAME + "Other", TASK_GROUP_NAME);
+        mSchedulingService.setQuartzSchedulerHelper(theFailingSchedulerHelper);
+        try {
+            mSchedulingService.scheduleMethodInvocation(this, "methodToBeInvoked", null, 1000L, false,
+                theOtherJobKey.getName(), TASK_GROUP_NAME);
+            Assert.fail("Scheduling the task should fail");
+        } catch (final SchedulingException theException) {
+            /* Expected exception. */
+        } finally {
+            mSchedulingService.setQuartzSchedulerHelper(theSchedulerHelper);
+        }
+
+        Assert.assertNull("No method invocation should be registered for a task that failed to be scheduled",
+            mSchedulingService.getMethodInvocationRegistry().find(theOtherJobKey));
     }
 
     /**
@@ -263,4 +598,14 @@ public class QuartzSchedulingServiceTest {
     public void methodToBeInvoked() {
         mJobDataMap.put(QuartzTestTaskJob.INVOCATION_COUNTER_KEY, Integer.valueOf(1));
     }
+
+    /**
+     * Method that is to be invoked by scheduling service as part of the
+     * test "testScheduleMethodInvokingTaskWithParameter".
+     *
+     * @param inCount Value to insert as invocation count.
+     */
+    public void methodWithParameterToBeInvoked(final int inCount) {
+        mJobDataMap.put(QuartzTestTaskJob.INVOCATION_COUNTER_KEY, Integer.valueOf(inCount));
+    }
 }
@@ -0,0 +1,199 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.starter;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import ru.yandex.qatools.allure.annotations.Features;
+import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskKey;
+import se.ivankrizsan.messagecowboy.services.scheduling.SchedulingService;
+import se.ivankrizsan.messagecowboy.services.taskconfiguration.TaskConfigurationService;
+import se.ivankrizsan.messagecowboy.services.taskconfiguration.TaskConfigurationServiceConfiguration;
+import se.ivankrizsan.messagecowboy.services.taskexecutionstatus.TaskExecutionStatusService;
+import se.ivankrizsan.messagecowboy.services.transport.TransportService;
+import se.ivankrizsan.messagecowboy.testconfig.PersistenceTestConfiguration;
+import se.ivankrizsan.messagecowboy.testconfig.PropertyPlaceholderTestConfiguration;
+import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+/**
+ * Tests the refresh of scheduled tasks performed by the
+ * {@code MessageCowboyStarterServiceImpl} class.<br/>
+ * Task configurations are stored in an in-memory database while the
+ * scheduling, transport and task execution status services are mocked.
+ *
+ * @author Ivan Krizsan
+ */
+@Features("Scheduling")
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { PersistenceTestConfiguration.class, PropertyPlaceholderTestConfiguration.class,
+    TaskConfigurationServiceConfiguration.class })
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
+public class MessageCowboyStarterServiceImplTest {
+    /* Constant(s): */
+
+    /* Instance variable(s): */
+    @Autowired
+    private TaskConfigurationService mTaskConfigurationService;
+    @Autowired
+    private DataSource mDataSource;
+    private MessageCowboyStarterServiceImpl mServiceUnderTest;
+    private MessageCowboySchedulableTaskConfig mTaskConfiguration1;
+    private MessageCowboySchedulableTaskConfig mTaskConfiguration2;
+
+    /**
+     * Sets up before each test by creating the service under test with mock
+     * services and saving two task configurations.
+     */
+    @Before
+    public void setUp() {
+        mServiceUnderTest = new MessageCowboyStarterServiceImpl();
+        mServiceUnderTest.mSchedulingService = Mockito.mock(SchedulingService.class);
+        mServiceUnderTest.mTransportService = Mockito.mock(TransportService.class);
+        mServiceUnderTest.mTaskExecutionStatusService = Mockito.mock(TaskExecutionStatusService.class);
+        mServiceUnderTest.mTaskConfigurationService = mTaskConfigurationService;
+        Mockito.when(mServiceUnderTest.mSchedulingService.scheduleOrUpdateTask(
+            Matchers.any(MessageCowboySchedulableTaskConfig.class), Matchers.anyMapOf(String.class, Object.class)))
+            .thenReturn(true);
+
+        mTaskConfiguration1 = AbstractTestBaseClass.createOneTaskConfiguration();
+        mTaskConfiguration1 = mTaskConfigurationService.save(mTaskConfiguration1);
+        mTaskConfiguration2 = AbstractTestBaseClass.createOneTaskConfiguration();
+        mTaskConfiguration2 = mTaskConfigurationService.save(mTaskConfiguration2);
+    }
+
+    /**
+     * Tests that all tasks are scheduled at the first refresh, that no tasks
+     * are rescheduled by subsequent refreshes when no task configurations
+     * have been modified and that only a modified task is rescheduled.
+     */
+    @Test
+    public void testIncrementalTaskRefresh() {
+        final SchedulingService theSchedulingService = mServiceUnderTest.mSchedulingService;
+
+        mServiceUnderTest.scheduleTasks();
+        verifyScheduled(theSchedulingService, mTaskConfiguration1);
+        verifyScheduled(theSchedulingService, mTaskConfiguration2);
+
+        /* Task configurations within the retrieval overlap must not be rescheduled. */
+        Mockito.reset(theSchedulingService);
+        mServiceUnderTest.scheduleTasks();
+        mServiceUnderTest.scheduleTasks();
+        Mockito.verifyZeroInteractions(theSchedulingService);
+
+        /* Modify one task configuration. */
+        mTaskConfiguration1.setCronExpression("0/5 * * * * ?");
+        mTaskConfigurationService.save(mTaskConfiguration1);
+
+        mServiceUnderTest.scheduleTasks();
+        verifyScheduled(theSchedulingService, mTaskConfiguration1);
+        Mockito.verify(theSchedulingService, Mockito.never()).scheduleOrUpdateTask(
+            Matchers.argThat(new TaskNameMatcher(mTaskConfiguration2.getName())),
+            Matchers.anyMapOf(String.class, Object.class));
+
+        Mockito.reset(theSchedulingService);
+        mServiceUnderTest.scheduleTasks();
+        Mockito.verifyZeroInteractions(theSchedulingService);
+    }
+
+    /**
+     * Tests that the task of a removed task configuration is unscheduled
+     * while the task of the remaining task configuration is retained.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void testRemovedTaskConfiguration() {
+        final SchedulingService theSchedulingService = mServiceUnderTest.mSchedulingService;
+        mServiceUnderTest.scheduleTasks();
+        Mockito.reset(theSchedulingService);
+
+        new JdbcTemplate(mDataSource).update("delete from SchedulableTaskConfigurations where name = ?",
+            mTaskConfiguration2.getName());
+        mServiceUnderTest.scheduleTasks();
+
+        final ArgumentCaptor<List> theTasksNotToUnscheduleCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(theSchedulingService).unscheduleOtherTasks(theTasksNotToUnscheduleCaptor.capture());
+        final List<TaskKey> theTasksNotToUnschedule = theTasksNotToUnscheduleCaptor.getValue();
+        Assert.assertEquals("Only the remaining task should be retained", 1, theTasksNotToUnschedule.size());
+        Assert.assertEquals("The remaining task should be retained", mTaskConfiguration1.getName(),
+            theTasksNotToUnschedule.get(0).getTaskName());
+    }
+
+    /**
+     * Tests that task configurations lacking last modified time are assigned
+     * a last modified time when tasks are first scheduled.
+     */
+    @Test
+    public void testMissingLastModifiedAssigned() {
+        final JdbcTemplate theJdbcTemplate = new JdbcTemplate(mDataSource);
+        theJdbcTemplate.update("update SchedulableTaskConfigurations set lastModified = null");
+
+        mServiceUnderTest.scheduleTasks();
+
+        final Integer theMissingLastModifiedCount = theJdbcTemplate.queryForObject(
+            "select count(*) from SchedulableTaskConfigurations where lastModified is null", Integer.class);
+        Assert.assertEquals("All task configurations should have a last modified time", 0,
+            theMissingLastModifiedCount.intValue());
+    }
+
+    /**
+     * Verifies that the task with the supplied task configuration has been
+     * scheduled once.
+     *
+     * @param inSchedulingService Mock scheduling service.
+     * @param inTaskConfiguration Task configuration of task.
+     */
+    private void verifyScheduled(final SchedulingService inSchedulingService,
+        final MessageCowboySchedulableTaskConfig inTaskConfiguration) {
+        Mockito.verify(inSchedulingService).scheduleOrUpdateTask(
+            Matchers.argThat(new TaskNameMatcher(inTaskConfiguration.getName())),
+            Matchers.anyMapOf(String.class, Object.class));
+    }
+
+    /**
+     * Matches task configurations with a given task name.
+     */
+    private static class TaskNameMatcher extends ArgumentMatcher<MessageCowboySchedulableTaskConfig> {
+        private final String mTaskName;
+
+        TaskNameMatcher(final String inTaskName) {
+            mTaskName = inTaskName;
+        }
+
+        @Override
+        public boolean matches(final Object inArgument) {
+            return inArgument instanceof MessageCowboySchedulableTaskConfig
+                && mTaskName.equals(((MessageCowboySchedulableTaskConfig) inArgument).getName());
+        }
+    }
+}
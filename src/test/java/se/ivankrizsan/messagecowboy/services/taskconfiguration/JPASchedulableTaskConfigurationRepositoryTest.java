@@ -32,10 +32,14 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.qatools.allure.annotations.Features;
 import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
 import se.ivankrizsan.messagecowboy.testconfig.PersistenceTestConfiguration;
+import se.ivankrizsan.messagecowboy.testconfig.PropertyPlaceholderTestConfiguration;
 import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
 
+import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
 import javax.sql.DataSource;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -47,7 +51,7 @@ import java.util.Map.Entry;
  */
 @Features("Persistence")
 @RunWith(SpringJUnit4ClassRunner.class)
-@ContextConfiguration(classes = { PersistenceTestConfiguration.class,
+@ContextConfiguration(classes = { PersistenceTestConfiguration.class, PropertyPlaceholderTestConfiguration.class,
     TaskConfigurationServiceConfiguration.class })
 @TransactionConfiguration(transactionManager = "transactionManager", defaultRollback = true)
 @Transactional
@@ -65,6 +69,8 @@ AbstractTransactionalJUnit4SpringContextTests {
     private EntityManagerFactory mJpaEntitManagerFactory;
     @Autowired
     private DataSource mTestDBDataSource;
+    @PersistenceContext
+    private EntityManager mEntityManager;
 
     /**
      * Prepares for tests by inserting some data into the database.
@@ -149,6 +155,116 @@ AbstractTransactionalJUnit4SpringContextTests {
             MODIFIED_CRON_EXPRESSION, theTask.getCronExpression());
     }
 
+    /**
+     * Tests retrieval of task configurations modified after a point in time.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testFindModifiedAfter() throws Exception {
+        List<MessageCowboySchedulableTaskConfig> theResultList = mRepository.findModifiedAfter(new Date(0L));
+        Assert.assertEquals("All task configurations should have been modified", 2, theResultList.size());
+
+        MessageCowboySchedulableTaskConfig theTask = mRepository.findOne("FileToFileOne");
+        Assert.assertNotNull("Last modified time should have been set", theTask.getLastModified());
+        final Date theWatermark = theTask.getLastModified();
+        for (MessageCowboySchedulableTaskConfig theResult : theResultList) {
+            if (theResult.getLastModified().after(theWatermark)) {
+                theTask = theResult;
+            }
+        }
+        final Date theLatestModification = theTask.getLastModified();
+
+        theResultList = mRepository.findModifiedAfter(theLatestModification);
+        Assert.assertTrue("No task configuration should have been modified", theResultList.isEmpty());
+
+        Thread.sleep(10);
+        theTask.setCronExpression(MODIFIED_CRON_EXPRESSION);
+        mRepository.saveAndFlush(theTask);
+
+        theResultList = mRepository.findModifiedAfter(theLatestModification);
+        Assert.assertEquals("One task configuration should have been modified", 1, theResultList.size());
+        Assert.assertEquals(theTask.getName(), theResultList.get(0).getName());
+    }
+
+    /**
+     * Tests retrieval of a task configuration which interval columns are null,
+     * as in the case of task configurations created before intervals were introduced.
+     * Interval should be zero and the fixed delay flag false.
+     */
+    @Test
+    public void testFindNullInterval() {
+        mRepository.flush();
+        final JdbcTemplate theJdbcTemplate = new JdbcTemplate(mTestDBDataSource);
+        final int theUpdateCount = theJdbcTemplate.update("UPDATE SchedulableTaskConfigurations"
+            + " SET intervalMillis = NULL, fixedDelayFlag = NULL WHERE name = 'FileToFileOne'");
+        Assert.assertEquals("The task configuration should have been updated", 1, theUpdateCount);
+        mEntityManager.clear();
+        mJpaEntitManagerFactory.getCache().evictAll();
+
+        final MessageCowboySchedulableTaskConfig theTask = mRepository.findOne("FileToFileOne");
+
+        Assert.assertNotNull(theTask);
+        Assert.assertEquals("A null interval should be zero", 0L, theTask.getIntervalMillis());
+        Assert.assertFalse("A null fixed delay flag should be false", theTask.getFixedDelayFlag());
+    }
+
+    /**
+     * Tests retrieval of a task configuration which batch limit columns are null,
+     * as in the case of task configurations created before batch limits were introduced.
+     * At most one message should be moved per execution and the duration of an
+     * execution should not be limited.
+     */
+    @Test
+    public void testFindNullBatchLimits() {
+        mRepository.flush();
+        final JdbcTemplate theJdbcTemplate = new JdbcTemplate(mTestDBDataSource);
+        final int theUpdateCount = theJdbcTemplate.update("UPDATE SchedulableTaskConfigurations"
+            + " SET maxMessagesPerExecution = NULL, maxExecutionDuration = NULL WHERE name = 'FileToFileOne'");
+        Assert.assertEquals("The task configuration should have been updated", 1, theUpdateCount);
+        mEntityManager.clear();
+        mJpaEntitManagerFactory.getCache().evictAll();
+
+        final MessageCowboySchedulableTaskConfig theTask = mRepository.findOne("FileToFileOne");
+
+        Assert.assertNotNull(theTask);
+        Assert.assertEquals("A null maximum message count should be one", 1, theTask.getMaxMessagesPerExecution());
+        Assert.assertEquals("A null maximum execution duration should be zero", 0L,
+            theTask.getMaxExecutionDuration());
+    }
+
+    /**
+     * Tests retrieval of a task configuration which continuous mode flag column
+     * is null, as in the case of task configurations created before continuous
+     * mode was introduced. The task should not be in continuous mode.
+     */
+    @Test
+    public void testFindNullContinuousModeFlag() {
+        mRepository.flush();
+        final JdbcTemplate theJdbcTemplate = new JdbcTemplate(mTestDBDataSource);
+        final int theUpdateCount = theJdbcTemplate.update("UPDATE SchedulableTaskConfigurations"
+            + " SET continuousModeFlag = NULL WHERE name = 'FileToFileOne'");
+        Assert.assertEquals("The task configuration should have been updated", 1, theUpdateCount);
+        mEntityManager.clear();
+        mJpaEntitManagerFactory.getCache().evictAll();
+
+        final MessageCowboySchedulableTaskConfig theTask = mRepository.findOne("FileToFileOne");
+
+        Assert.assertNotNull(theTask);
+        Assert.assertFalse("A null continuous mode flag should be false", theTask.getContinuousModeFlag());
+    }
+
+    /**
+     * Tests retrieval of the names of all task configurations in the repository.
+     */
+    @Test
+    public void testFindAllNames() {
+        final List<String> theResultList = mRepository.findAllNames();
+        Assert.assertEquals(2, theResultList.size());
+        Assert.assertTrue(theResultList.contains("FileToFileOne"));
+        Assert.assertTrue(theResultList.contains("FileToFileTwo"));
+    }
+
     /**
      * Logs the SQL statements used to create the databasetable in the HSQL database.
      * Will always succeed as long as no error occurs.
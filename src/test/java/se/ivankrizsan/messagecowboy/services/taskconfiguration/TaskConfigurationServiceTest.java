@@ -21,6 +21,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.context.ContextConfiguration;
@@ -28,8 +29,10 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import ru.yandex.qatools.allure.annotations.Features;
 import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
 import se.ivankrizsan.messagecowboy.testconfig.PersistenceTestConfiguration;
+import se.ivankrizsan.messagecowboy.testconfig.PropertyPlaceholderTestConfiguration;
 import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
 
+import javax.sql.DataSource;
 import java.util.List;
 
 /**
@@ -42,7 +45,7 @@ import java.util.List;
  */
 @Features("Task Configuration")
 @RunWith(SpringJUnit4ClassRunner.class)
-@ContextConfiguration(classes = { PersistenceTestConfiguration.class,
+@ContextConfiguration(classes = { PersistenceTestConfiguration.class, PropertyPlaceholderTestConfiguration.class,
     TaskConfigurationServiceConfiguration.class })
 @DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
 public class TaskConfigurationServiceTest {
@@ -53,6 +56,8 @@ public class TaskConfigurationServiceTest {
     private TaskConfigurationService mServiceUnderTest;
     @Autowired
     private SchedulableTaskConfigurationRepository mTaskConfigurationRepository;
+    @Autowired
+    private DataSource mDataSource;
 
     /**
      * Sets up before each test by creating an instance of the service under
@@ -111,4 +116,130 @@ public class TaskConfigurationServiceTest {
         /* The name is the id and should stay the same. */
         Assert.assertEquals(theSaveTaskConfig.getName(), theSavedTaskConfig.getName());
     }
+
+    /**
+     * Tests retrieval of task configurations with the cache enabled when
+     * task configurations are removed from the database by other means than
+     * the service.
+     * Expected result: Cached task configurations should be retrieved until
+     * the cache is invalidated.
+     */
+    @Test
+    public void testCachedFindAll() {
+        final TaskConfigurationServiceImpl theService = (TaskConfigurationServiceImpl) mServiceUnderTest;
+        theService.setCacheTimeToLive(60000L);
+        Assert.assertEquals("All tasks expected", 2, mServiceUnderTest.findAll().size());
+
+        mTaskConfigurationRepository.delete("config2");
+        Assert.assertEquals("Cached tasks expected", 2, mServiceUnderTest.findAll().size());
+        Assert.assertNotNull(mServiceUnderTest.find("config2"));
+
+        mServiceUnderTest.invalidateCache();
+        Assert.assertEquals("Remaining tasks expected", 1, mServiceUnderTest.findAll().size());
+        Assert.assertNull(mServiceUnderTest.find("config2"));
+        Assert.assertEquals(1, mServiceUnderTest.findAllEnabled().size());
+    }
+
+    /**
+     * Tests saving a task configuration with the cache enabled.
+     * Expected result: The saved task configuration should immediately be
+     * retrievable.
+     */
+    @Test
+    public void testCachedSave() {
+        final TaskConfigurationServiceImpl theService = (TaskConfigurationServiceImpl) mServiceUnderTest;
+        theService.setCacheTimeToLive(60000L);
+        Assert.assertEquals(2, mServiceUnderTest.count());
+
+        final MessageCowboySchedulableTaskConfig theSaveTaskConfig =
+            AbstractTestBaseClass.createOneTaskConfiguration();
+        theSaveTaskConfig.setName("I was saved!");
+        mServiceUnderTest.save(theSaveTaskConfig);
+
+        Assert.assertEquals(3, mServiceUnderTest.count());
+        Assert.assertNotNull(mServiceUnderTest.find("I was saved!"));
+        Assert.assertTrue(mServiceUnderTest.findAllNames().contains("I was saved!"));
+    }
+
+    /**
+     * Tests modifying a task configuration retrieved with the cache enabled.
+     * Expected result: The modification should not be visible to other
+     * retrievals until the task configuration has been saved.
+     */
+    @Test
+    public void testCachedFindReturnsCopy() {
+        final TaskConfigurationServiceImpl theService = (TaskConfigurationServiceImpl) mServiceUnderTest;
+        theService.setCacheTimeToLive(60000L);
+        final String theOriginalCronExpression = mServiceUnderTest.find("config1").getCronExpression();
+
+        final MessageCowboySchedulableTaskConfig theTaskConfig = mServiceUnderTest.find("config1");
+        theTaskConfig.setCronExpression("0 0 0 1 1 ? 2098");
+        Assert.assertEquals("Unsaved modification should not be visible", theOriginalCronExpression,
+            mServiceUnderTest.find("config1").getCronExpression());
+
+        final MessageCowboySchedulableTaskConfig theSavedTaskConfig = mServiceUnderTest.save(theTaskConfig);
+        theSavedTaskConfig.setCronExpression("0 0 0 1 1 ? 2099");
+        Assert.assertEquals("Saved modification should be visible", "0 0 0 1 1 ? 2098",
+            mServiceUnderTest.find("config1").getCronExpression());
+        Assert.assertNotNull("Copy should have last modified time",
+            mServiceUnderTest.find("config1").getLastModified());
+    }
+
+    /**
+     * Tests retrieving modified task configurations using a change tracker
+     * after a task configuration has been modified directly in the database
+     * with its last modified time set to null.
+     * Expected result: The modified task configuration should be retrieved
+     * once, with a last modified time.
+     */
+    @Test
+    public void testChangeTrackerNullLastModified() {
+        final TaskConfigurationChangeTracker theChangeTracker = mServiceUnderTest.createChangeTracker();
+        Assert.assertEquals("All task configurations should be retrieved initially", 2,
+            theChangeTracker.findModifiedTaskConfigurations().size());
+        Assert.assertTrue("No task configuration should have been modified",
+            theChangeTracker.findModifiedTaskConfigurations().isEmpty());
+
+        final int theUpdateCount = new JdbcTemplate(mDataSource).update("UPDATE SchedulableTaskConfigurations"
+            + " SET cronExpression = '0 0 * * * ?', lastModified = NULL WHERE name = 'config1'");
+        Assert.assertEquals("The task configuration should have been updated", 1, theUpdateCount);
+
+        final List<MessageCowboySchedulableTaskConfig> theModifiedTaskConfigs =
+            theChangeTracker.findModifiedTaskConfigurations();
+        Assert.assertEquals("The modified task configuration should be retrieved", 1,
+            theModifiedTaskConfigs.size());
+        Assert.assertEquals("config1", theModifiedTaskConfigs.get(0).getName());
+        Assert.assertEquals("0 0 * * * ?", theModifiedTaskConfigs.get(0).getCronExpression());
+        Assert.assertNotNull("Last modified time should have been set",
+            theModifiedTaskConfigs.get(0).getLastModified());
+        Assert.assertTrue("No task configuration should have been modified again",
+            theChangeTracker.findModifiedTaskConfigurations().isEmpty());
+    }
+
+    /**
+     * Tests incremental refresh of an expired cache after task configurations
+     * have been added and removed by other means than the service.
+     * Expected result: The refreshed cache should contain the added task
+     * configuration and not the removed task configuration.
+     */
+    @Test
+    public void testIncrementalCacheRefresh() {
+        final TaskConfigurationServiceImpl theService = (TaskConfigurationServiceImpl) mServiceUnderTest;
+        theService.setCacheTimeToLive(60000L);
+        Assert.assertEquals(2, mServiceUnderTest.count());
+
+        final MessageCowboySchedulableTaskConfig theAddedTaskConfig =
+            AbstractTestBaseClass.createOneTaskConfiguration();
+        theAddedTaskConfig.setName("config3");
+        mTaskConfigurationRepository.save(theAddedTaskConfig);
+        mTaskConfigurationRepository.delete("config1");
+
+        /* Expire the cache. */
+        theService.mCacheExpiryTime = 0L;
+
+        final List<String> theTaskNames = mServiceUnderTest.findAllNames();
+        Assert.assertEquals("Refreshed tasks expected", 2, theTaskNames.size());
+        Assert.assertTrue(theTaskNames.contains("config2"));
+        Assert.assertTrue(theTaskNames.contains("config3"));
+    }
 }
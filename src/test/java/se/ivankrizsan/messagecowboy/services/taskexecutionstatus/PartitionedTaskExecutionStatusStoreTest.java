@@ -0,0 +1,190 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import ru.yandex.qatools.allure.annotations.Features;
+import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusError;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusNoMessageReceived;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusSuccess;
+import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * Tests the {@code PartitionedTaskExecutionStatusStore} class.
+ *
+ * @author Ivan Krizsan
+ */
+@Features("Task Execution Status")
+public class PartitionedTaskExecutionStatusStoreTest {
+    /* Instance variable(s): */
+    private EmbeddedDatabase mDataSource;
+    private MessageCowboySchedulableTaskConfig mTaskConfiguration;
+    private PartitionedTaskExecutionStatusStore mStoreUnderTest;
+
+    /**
+     * Sets up before each test by creating a store using daily partitions
+     * in an empty in-memory database.
+     */
+    @Before
+    public void setUp() {
+        mDataSource = new EmbeddedDatabaseBuilder().setName(UUID.randomUUID().toString()).build();
+        mTaskConfiguration = AbstractTestBaseClass.createOneTaskConfiguration();
+        mStoreUnderTest = new PartitionedTaskExecutionStatusStore(mDataSource,
+            PartitionedTaskExecutionStatusStore.PartitionPeriod.DAY);
+    }
+
+    /**
+     * Shuts down the in-memory database after each test.
+     */
+    @After
+    public void tearDown() {
+        mDataSource.shutdown();
+    }
+
+    /**
+     * Tests saving task execution statuses for different days and finding them.
+     * Expected result: One partition should be created per day and statuses
+     * should be found in task execution time order across partitions.
+     */
+    @Test
+    public void testSaveAndFindAcrossPartitions() {
+        final Date theTwoDaysAgo = daysAgo(2);
+        final Date theOneDayAgo = daysAgo(1);
+        final Date theNow = new Date();
+        mStoreUnderTest.save(Arrays.<TaskExecutionStatus>asList(
+            new TaskExecutionStatusSuccess(mTaskConfiguration, "Success", theNow, 3, 15L),
+            new TaskExecutionStatusError(mTaskConfiguration, "Error", theTwoDaysAgo),
+            new TaskExecutionStatusNoMessageReceived(mTaskConfiguration, "", theOneDayAgo, 5L)));
+
+        Assert.assertEquals("One partition per day should have been created", 3, countPartitionTables());
+
+        final List<TaskExecutionStatus> theStatuses =
+            mStoreUnderTest.findByTaskExecutionTime(daysAgo(3), new Date(theNow.getTime() + 1));
+        Assert.assertEquals("All statuses should be found", 3, theStatuses.size());
+        Assert.assertTrue(theStatuses.get(0) instanceof TaskExecutionStatusError);
+        Assert.assertNull(theStatuses.get(0).getExecutionDuration());
+        Assert.assertTrue(theStatuses.get(1) instanceof TaskExecutionStatusNoMessageReceived);
+        Assert.assertTrue(theStatuses.get(2) instanceof TaskExecutionStatusSuccess);
+        Assert.assertEquals(mTaskConfiguration.getName(), theStatuses.get(2).getTaskName());
+        Assert.assertEquals("Success", theStatuses.get(2).getStatusMessage());
+        Assert.assertEquals(3, theStatuses.get(2).getMessageCount());
+        Assert.assertEquals(Long.valueOf(15L), theStatuses.get(2).getExecutionDuration());
+        Assert.assertEquals(theNow, theStatuses.get(2).getTaskExecutionTime());
+
+        final List<TaskExecutionStatus> theOneDayStatuses =
+            mStoreUnderTest.findByTaskExecutionTime(new Date(theOneDayAgo.getTime() - 1), theNow);
+        Assert.assertEquals("Only status in time range should be found", 1, theOneDayStatuses.size());
+    }
+
+    /**
+     * Tests the hourly partition period at the end of daylight saving time in Europe.
+     * Expected result: Periods should be whole hours in UTC, regardless of the
+     * local time zone, and identified by the UTC hour.
+     */
+    @Test
+    public void testHourlyPartitionsInUtc() {
+        final Calendar theCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        theCalendar.clear();
+        theCalendar.set(2014, Calendar.OCTOBER, 26, 1, 30);
+        final Date theTime = theCalendar.getTime();
+        final PartitionedTaskExecutionStatusStore.PartitionPeriod thePeriod =
+            PartitionedTaskExecutionStatusStore.PartitionPeriod.HOUR;
+
+        final Date thePeriodStart = thePeriod.periodStart(theTime);
+
+        Assert.assertEquals("Period should start at the whole UTC hour",
+            theTime.getTime() - 30L * 60L * 1000L, thePeriodStart.getTime());
+        Assert.assertEquals("Next period should start one hour later", thePeriodStart.getTime() + 60L * 60L * 1000L,
+            thePeriod.nextPeriodStart(thePeriodStart).getTime());
+        Assert.assertEquals("Partition name should identify the UTC hour", "2014102601",
+            thePeriod.createTableNameDateFormat().format(thePeriodStart));
+    }
+
+    /**
+     * Tests deleting task execution statuses older than a point in time.
+     * Expected result: Partitions which entire period is older than the point
+     * in time should be dropped and the number of statuses in them reported.
+     */
+    @Test
+    public void testDeleteOlderThan() {
+        mStoreUnderTest.save(Arrays.<TaskExecutionStatus>asList(
+            new TaskExecutionStatusError(mTaskConfiguration, "Old error 1", daysAgo(5)),
+            new TaskExecutionStatusError(mTaskConfiguration, "Old error 2", daysAgo(5)),
+            new TaskExecutionStatusError(mTaskConfiguration, "Recent error", new Date())));
+
+        final int theDeletedCount = mStoreUnderTest.deleteOlderThan(daysAgo(3));
+
+        Assert.assertEquals("Statuses in dropped partition should be reported", 2, theDeletedCount);
+        Assert.assertEquals("One partition should remain", 1, countPartitionTables());
+        final List<TaskExecutionStatus> theStatuses =
+            mStoreUnderTest.findByTaskExecutionTime(daysAgo(10), new Date(System.currentTimeMillis() + 1000L));
+        Assert.assertEquals("Recent status should remain", 1, theStatuses.size());
+    }
+
+    /**
+     * Tests using partitions created by another store instance, as happens
+     * when Message Cowboy is restarted.
+     * Expected result: The existing partition should be used.
+     */
+    @Test
+    public void testUseExistingPartitions() {
+        final Date theNow = new Date();
+        mStoreUnderTest.save(Arrays.<TaskExecutionStatus>asList(
+            new TaskExecutionStatusError(mTaskConfiguration, "Error 1", theNow)));
+
+        final PartitionedTaskExecutionStatusStore theOtherStore = new PartitionedTaskExecutionStatusStore(
+            mDataSource, PartitionedTaskExecutionStatusStore.PartitionPeriod.DAY);
+        theOtherStore.save(Arrays.<TaskExecutionStatus>asList(
+            new TaskExecutionStatusError(mTaskConfiguration, "Error 2", theNow)));
+
+        Assert.assertEquals("Existing partition should be used", 1, countPartitionTables());
+        Assert.assertEquals("Both statuses should be found", 2,
+            theOtherStore.findByTaskExecutionTime(daysAgo(1), new Date(theNow.getTime() + 1)).size());
+    }
+
+    private int countPartitionTables() {
+        final List<String> thePartitionTables = new ArrayList<String>();
+        for (String theTableName : mStoreUnderTest.readTableNames()) {
+            if (theTableName.toUpperCase().startsWith(
+                PartitionedTaskExecutionStatusStore.PARTITION_TABLE_NAME_PREFIX.toUpperCase())) {
+                thePartitionTables.add(theTableName);
+            }
+        }
+        return thePartitionTables.size();
+    }
+
+    private static Date daysAgo(final int inDays) {
+        final Calendar theCalendar = Calendar.getInstance();
+        theCalendar.add(Calendar.DAY_OF_YEAR, -inDays);
+        return theCalendar.getTime();
+    }
+}
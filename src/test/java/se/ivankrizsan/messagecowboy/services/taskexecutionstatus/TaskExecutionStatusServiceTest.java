@@ -21,12 +21,14 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import ru.yandex.qatools.allure.annotations.Features;
 import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionRollup;
 import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
 import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusError;
 import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusNoMessageReceived;
@@ -34,10 +36,15 @@ import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusSucce
 import se.ivankrizsan.messagecowboy.services.taskconfiguration.TaskConfigurationService;
 import se.ivankrizsan.messagecowboy.services.taskconfiguration.TaskConfigurationServiceConfiguration;
 import se.ivankrizsan.messagecowboy.testconfig.PersistenceTestConfiguration;
+import se.ivankrizsan.messagecowboy.testconfig.PropertyPlaceholderTestConfiguration;
 import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
 
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * Tests the {@code TaskExecutionStatusService}.
@@ -46,8 +53,8 @@ import java.util.List;
  */
 @Features("Task Execution Status")
 @RunWith(SpringJUnit4ClassRunner.class)
-@ContextConfiguration(classes = {PersistenceTestConfiguration.class, TaskExecutionStatusServiceConfiguration.class,
-    TaskConfigurationServiceConfiguration.class})
+@ContextConfiguration(classes = {PersistenceTestConfiguration.class, PropertyPlaceholderTestConfiguration.class,
+    TaskExecutionStatusServiceConfiguration.class, TaskConfigurationServiceConfiguration.class})
 @DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
 public class TaskExecutionStatusServiceTest {
     /* Constant(s): */
@@ -58,7 +65,13 @@ public class TaskExecutionStatusServiceTest {
     @Autowired
     private TaskExecutionStatusRepository mTaskExecutionStatusRepository;
     @Autowired
+    private TaskExecutionRollupRepository mTaskExecutionRollupRepository;
+    @Autowired
     private TaskConfigurationService mTaskConfigurationService;
+    @Autowired
+    private DataSource mDataSource;
+    @Autowired
+    private EntityManagerFactory mEntityManagerFactory;
     private String mTestTaskConfigurationName;
 
     /**
@@ -95,19 +108,106 @@ public class TaskExecutionStatusServiceTest {
         mTaskConfigurationService.save(theTaskConfiguration);
     }
 
+    /**
+     * Tests retrieving task execution statuses which message count column is null,
+     * as in the case of statuses saved before message counts were introduced.
+     * Expected result: The message count of the statuses should be zero.
+     */
+    @Test
+    public void testFindNullMessageCount() {
+        final int theUpdateCount =
+            new JdbcTemplate(mDataSource).update("UPDATE TaskExecutionStatuses SET messageCount = NULL");
+        Assert.assertEquals("All task execution statuses should have been updated", 3, theUpdateCount);
+        mEntityManagerFactory.getCache().evictAll();
+
+        final List<TaskExecutionStatus> theTaskExecutionStatuses = mTaskExecutionStatusRepository.findAll();
+
+        Assert.assertEquals(3, theTaskExecutionStatuses.size());
+        for (TaskExecutionStatus theTaskExecutionStatus : theTaskExecutionStatuses) {
+            Assert.assertEquals("A null message count should be zero", 0, theTaskExecutionStatus.getMessageCount());
+        }
+    }
+
     /**
      * Tests deleting task execution status entries older than a certain number of days.
      * Expected result: One entry should be deleted, two should remain.
      */
     @Test
     public void testDeleteIfOlderThanDays() {
-        mServiceUnderTest.deleteIfOlderThanDays(3);
+        final int theDeletedCount = mServiceUnderTest.deleteIfOlderThanDays(3);
         final List<TaskExecutionStatus> theRemainingTaskExecutionStatuses = mTaskExecutionStatusRepository.findAll();
 
+        Assert.assertEquals("Number of deleted entries should be reported", 1, theDeletedCount);
+
         Assert.assertEquals("One task execution status should have been removed", 2,
             theRemainingTaskExecutionStatuses.size());
     }
 
+    /**
+     * Tests deleting more task execution status entries than fit in one chunk.
+     * Expected result: All entries older than the maximum age should be deleted
+     * in multiple chunks, the recent entries should remain.
+     */
+    @Test
+    public void testDeleteIfOlderThanDaysInChunks() {
+        final JpaTaskExecutionStatusStore theStore = (JpaTaskExecutionStatusStore)
+            ((TaskExecutionStatusServiceImpl) mServiceUnderTest).getTaskExecutionStatusStore();
+        theStore.setCleanupChunkSize(2);
+        theStore.setCleanupChunkPause(0L);
+        final MessageCowboySchedulableTaskConfig theTaskConfig =
+            mTaskConfigurationService.find(mTestTaskConfigurationName);
+        final Calendar theCalendar = Calendar.getInstance();
+        theCalendar.add(Calendar.DAY_OF_YEAR, -4);
+        for (int i = 0; i < 6; i++) {
+            mTaskExecutionStatusRepository.save(
+                new TaskExecutionStatusError(theTaskConfig, "Failure " + i, theCalendar.getTime()));
+        }
+
+        final int theDeletedCount = mServiceUnderTest.deleteIfOlderThanDays(3);
+
+        Assert.assertEquals("All old entries should have been deleted", 7, theDeletedCount);
+        Assert.assertEquals("Recent entries should remain", 2, mTaskExecutionStatusRepository.count());
+    }
+
+    /**
+     * Tests deleting task execution status entries while another deletion is in progress.
+     * Expected result: The deletion should be skipped and no entries should be deleted.
+     *
+     * @throws Exception If error occurs holding the cleanup lock in another thread.
+     */
+    @Test
+    public void testDeleteIfOlderThanDaysWhileInProgress() throws Exception {
+        final JpaTaskExecutionStatusStore theStore = (JpaTaskExecutionStatusStore)
+            ((TaskExecutionStatusServiceImpl) mServiceUnderTest).getTaskExecutionStatusStore();
+        final CountDownLatch theLockedLatch = new CountDownLatch(1);
+        final CountDownLatch theReleaseLatch = new CountDownLatch(1);
+        final Thread theCleanupThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                theStore.mCleanupDeleter.mLock.lock();
+                try {
+                    theLockedLatch.countDown();
+                    theReleaseLatch.await();
+                } catch (final InterruptedException theException) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    theStore.mCleanupDeleter.mLock.unlock();
+                }
+            }
+        });
+        theCleanupThread.start();
+        theLockedLatch.await();
+
+        try {
+            final int theDeletedCount = mServiceUnderTest.deleteIfOlderThanDays(3);
+            Assert.assertEquals("No entries should be deleted while cleanup in progress", 0, theDeletedCount);
+            Assert.assertEquals("All entries should remain", 3, mTaskExecutionStatusRepository.count());
+        } finally {
+            theReleaseLatch.countDown();
+            theCleanupThread.join();
+        }
+    }
+
     /**
      * Tests deleting task execution status entries older tha a certain number of days and then querying for
      * the task configuration containing the execution status entries and verify the remaining number of entries.
@@ -123,4 +223,184 @@ public class TaskExecutionStatusServiceTest {
         Assert.assertEquals("One task execution status should have been removed", 2,
             theRemainingTaskExecutionStatuses.size());
     }
+
+    /**
+     * Tests saving a task execution status independently of its task configuration.
+     * Expected result: The new entry should be stored and belong to the task configuration.
+     */
+    @Test
+    public void testSave() {
+        final MessageCowboySchedulableTaskConfig theTaskConfig =
+            mTaskConfigurationService.find(mTestTaskConfigurationName);
+        final TaskExecutionStatus theTaskExecutionStatus =
+            new TaskExecutionStatusSuccess(theTaskConfig, "Success 2", new Date(), 1);
+
+        mServiceUnderTest.save(theTaskExecutionStatus);
+        mServiceUnderTest.flush();
+
+        Assert.assertEquals("One task execution status should have been added", 4,
+            mTaskExecutionStatusRepository.count());
+        final List<TaskExecutionStatus> theTaskExecutionStatuses =
+            mTaskConfigurationService.find(mTestTaskConfigurationName).getTaskExecutionStatuses();
+        Assert.assertEquals("Task configuration should have four execution statuses", 4,
+            theTaskExecutionStatuses.size());
+    }
+
+    /**
+     * Tests saving a task execution status indicating that no message was received.
+     * Expected result: No individual entry should be stored, but the execution
+     * should be counted in a rollup for the task.
+     */
+    @Test
+    public void testSaveNoMessageReceived() {
+        final MessageCowboySchedulableTaskConfig theTaskConfig =
+            mTaskConfigurationService.find(mTestTaskConfigurationName);
+
+        mServiceUnderTest.save(new TaskExecutionStatusNoMessageReceived(theTaskConfig, "", new Date(), 5L));
+        mServiceUnderTest.flush();
+
+        Assert.assertEquals("No task execution status should have been added", 3,
+            mTaskExecutionStatusRepository.count());
+        final List<TaskExecutionRollup> theRollups =
+            mTaskExecutionRollupRepository.findByTaskNameOrderByPeriodStartTimeAsc(mTestTaskConfigurationName);
+        Assert.assertEquals("One rollup should have been written", 1, theRollups.size());
+        Assert.assertEquals("Execution should be counted as no message received", 1,
+            theRollups.get(0).getNoMessageReceivedCount());
+    }
+
+    /**
+     * Tests the counters of a rollup summarizing multiple task executions.
+     * Expected result: The rollup should count each kind of outcome and hold
+     * the minimum, average and maximum execution duration.
+     */
+    @Test
+    public void testRollupCounters() {
+        final MessageCowboySchedulableTaskConfig theTaskConfig =
+            mTaskConfigurationService.find(mTestTaskConfigurationName);
+        final Date theTaskExecutionTime = new Date();
+
+        mServiceUnderTest.save(new TaskExecutionStatusSuccess(theTaskConfig, "", theTaskExecutionTime, 2, 10L));
+        mServiceUnderTest.save(new TaskExecutionStatusError(theTaskConfig, "", theTaskExecutionTime, 1, 30L));
+        mServiceUnderTest.save(new TaskExecutionStatusNoMessageReceived(theTaskConfig, "", theTaskExecutionTime, 20L));
+        mServiceUnderTest.flush();
+
+        final List<TaskExecutionRollup> theRollups =
+            mTaskExecutionRollupRepository.findByTaskNameOrderByPeriodStartTimeAsc(mTestTaskConfigurationName);
+        Assert.assertEquals("One rollup should have been written", 1, theRollups.size());
+        final TaskExecutionRollup theRollup = theRollups.get(0);
+        Assert.assertEquals(1, theRollup.getSuccessCount());
+        Assert.assertEquals(1, theRollup.getErrorCount());
+        Assert.assertEquals(1, theRollup.getNoMessageReceivedCount());
+        Assert.assertEquals(3, theRollup.getMessageCount());
+        Assert.assertEquals(Long.valueOf(10L), theRollup.getMinExecutionDuration());
+        Assert.assertEquals(Long.valueOf(20L), theRollup.getAverageExecutionDuration());
+        Assert.assertEquals(Long.valueOf(30L), theRollup.getMaxExecutionDuration());
+        Assert.assertFalse("Task execution time should be within rollup period",
+            theTaskExecutionTime.before(theRollup.getPeriodStartTime())
+                || !theTaskExecutionTime.before(theRollup.getPeriodEndTime()));
+
+        Assert.assertEquals("Individual entries should only be added for success and error", 5,
+            mTaskExecutionStatusRepository.count());
+    }
+
+    /**
+     * Tests saving task execution statuses while the service is not started.
+     * Expected result: Rollups should only be written when their period has
+     * ended and when the service is stopped, not each time a status is saved.
+     */
+    @Test
+    public void testSaveNotStartedWritesEndedRollups() {
+        final TaskExecutionStatusServiceImpl theServiceImpl = (TaskExecutionStatusServiceImpl) mServiceUnderTest;
+        theServiceImpl.stop();
+        final MessageCowboySchedulableTaskConfig theTaskConfig =
+            mTaskConfigurationService.find(mTestTaskConfigurationName);
+        final Date theTaskExecutionTime = new Date();
+
+        mServiceUnderTest.save(new TaskExecutionStatusNoMessageReceived(theTaskConfig, "", theTaskExecutionTime));
+        mServiceUnderTest.save(new TaskExecutionStatusNoMessageReceived(theTaskConfig, "", theTaskExecutionTime));
+        Assert.assertEquals("No rollup should be written while its period has not ended", 0,
+            mTaskExecutionRollupRepository.count());
+
+        final Calendar theCalendar = Calendar.getInstance();
+        theCalendar.add(Calendar.DAY_OF_YEAR, -1);
+        mServiceUnderTest.save(new TaskExecutionStatusNoMessageReceived(theTaskConfig, "", theCalendar.getTime()));
+        Assert.assertEquals("Rollup which period has ended should be written", 1,
+            mTaskExecutionRollupRepository.count());
+
+        theServiceImpl.stop();
+        final List<TaskExecutionRollup> theRollups =
+            mTaskExecutionRollupRepository.findByTaskNameOrderByPeriodStartTimeAsc(mTestTaskConfigurationName);
+        Assert.assertEquals("Remaining rollup should be written when stopped", 2, theRollups.size());
+        Assert.assertEquals("Executions in current period should be counted in one rollup", 2,
+            theRollups.get(1).getNoMessageReceivedCount());
+    }
+
+    /**
+     * Tests deleting task execution rollups older than a certain number of days.
+     * Expected result: The old rollup should be deleted, the recent rollup should remain.
+     */
+    @Test
+    public void testDeleteRollupsIfOlderThanDays() {
+        final MessageCowboySchedulableTaskConfig theTaskConfig =
+            mTaskConfigurationService.find(mTestTaskConfigurationName);
+        final Calendar theCalendar = Calendar.getInstance();
+        theCalendar.add(Calendar.DAY_OF_YEAR, -40);
+        mServiceUnderTest.save(new TaskExecutionStatusNoMessageReceived(theTaskConfig, "", theCalendar.getTime()));
+        mServiceUnderTest.save(new TaskExecutionStatusNoMessageReceived(theTaskConfig, "", new Date()));
+        mServiceUnderTest.flush();
+
+        mServiceUnderTest.deleteRollupsIfOlderThanDays(30);
+
+        final List<TaskExecutionRollup> theRollups =
+            mTaskExecutionRollupRepository.findByTaskNameOrderByPeriodStartTimeAsc(mTestTaskConfigurationName);
+        Assert.assertEquals("One rollup should have been removed", 1, theRollups.size());
+        Assert.assertEquals("Task execution status entries should not be removed", 3,
+            mTaskExecutionStatusRepository.count());
+    }
+
+    /**
+     * Tests deleting more task execution rollups than fit in one chunk.
+     * Expected result: All rollups older than the maximum age should be deleted
+     * in multiple chunks, the recent rollup should remain.
+     */
+    @Test
+    public void testDeleteRollupsIfOlderThanDaysInChunks() {
+        final TaskExecutionStatusServiceImpl theServiceImpl = (TaskExecutionStatusServiceImpl) mServiceUnderTest;
+        theServiceImpl.setRollupCleanupChunkSize(2);
+        theServiceImpl.setRollupCleanupChunkPause(0L);
+        final MessageCowboySchedulableTaskConfig theTaskConfig =
+            mTaskConfigurationService.find(mTestTaskConfigurationName);
+        final Calendar theCalendar = Calendar.getInstance();
+        theCalendar.add(Calendar.DAY_OF_YEAR, -40);
+        for (int i = 0; i < 5; i++) {
+            /* One execution in each of five different rollup periods. */
+            theCalendar.add(Calendar.HOUR_OF_DAY, 1);
+            mServiceUnderTest.save(new TaskExecutionStatusNoMessageReceived(theTaskConfig, "", theCalendar.getTime()));
+        }
+        mServiceUnderTest.save(new TaskExecutionStatusNoMessageReceived(theTaskConfig, "", new Date()));
+        mServiceUnderTest.flush();
+
+        final int theDeletedCount = mServiceUnderTest.deleteRollupsIfOlderThanDays(30);
+
+        Assert.assertEquals("All old rollups should have been deleted", 5, theDeletedCount);
+        Assert.assertEquals("Recent rollup should remain", 1, mTaskExecutionRollupRepository.count());
+    }
+
+    /**
+     * Tests finding task execution status entries in a time range.
+     * Expected result: Only the entry in the time range should be found.
+     */
+    @Test
+    public void testFindByTaskExecutionTime() {
+        final Calendar theFromCalendar = Calendar.getInstance();
+        theFromCalendar.add(Calendar.DAY_OF_YEAR, -3);
+        final Calendar theToCalendar = Calendar.getInstance();
+        theToCalendar.add(Calendar.DAY_OF_YEAR, -1);
+
+        final List<TaskExecutionStatus> theFoundStatuses =
+            mServiceUnderTest.findByTaskExecutionTime(theFromCalendar.getTime(), theToCalendar.getTime());
+
+        Assert.assertEquals("One task execution status should be found", 1, theFoundStatuses.size());
+        Assert.assertEquals("Failure 1", theFoundStatuses.get(0).getStatusMessage());
+    }
 }
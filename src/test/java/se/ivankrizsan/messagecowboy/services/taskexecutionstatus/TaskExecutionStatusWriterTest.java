@@ -0,0 +1,286 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.taskexecutionstatus;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import ru.yandex.qatools.allure.annotations.Features;
+import se.ivankrizsan.messagecowboy.domain.entities.impl.MessageCowboySchedulableTaskConfig;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatus;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusError;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusNoMessageReceived;
+import se.ivankrizsan.messagecowboy.domain.valueobjects.TaskExecutionStatusSuccess;
+import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@code TaskExecutionStatusWriter} class.
+ *
+ * @author Ivan Krizsan
+ */
+@Features("Task Execution Status")
+public class TaskExecutionStatusWriterTest {
+    /* Constant(s): */
+    private static final long LONG_FLUSH_INTERVAL = 10000L;
+
+    /* Instance variable(s): */
+    private TaskExecutionStatusStore mStore;
+    /** Batches written to the store mock. */
+    private List<List<TaskExecutionStatus>> mWrittenBatches;
+    /** Latch that, when set, write operations wait for before completing. */
+    private volatile CountDownLatch mWriteLatch;
+    private MessageCowboySchedulableTaskConfig mTaskConfiguration;
+    private TaskExecutionStatusWriter mWriterUnderTest;
+
+    /**
+     * Sets up before each test by creating a store mock that records
+     * written batches.
+     */
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        mWrittenBatches = Collections.synchronizedList(new ArrayList<List<TaskExecutionStatus>>());
+        mStore = Mockito.mock(TaskExecutionStatusStore.class);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock inInvocation) throws Exception {
+                final List<TaskExecutionStatus> theBatch =
+                    new ArrayList<TaskExecutionStatus>((List<TaskExecutionStatus>) inInvocation.getArguments()[0]);
+                final CountDownLatch theWriteLatch = mWriteLatch;
+                if (theWriteLatch != null) {
+                    theWriteLatch.await(LONG_FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+                }
+                mWrittenBatches.add(theBatch);
+                return null;
+            }
+        }).when(mStore).save(Mockito.anyListOf(TaskExecutionStatus.class));
+        mTaskConfiguration = AbstractTestBaseClass.createOneTaskConfiguration();
+    }
+
+    /**
+     * Stops the writer under test after each test.
+     */
+    @After
+    public void tearDown() {
+        mWriteLatch = null;
+        if (mWriterUnderTest != null) {
+            mWriterUnderTest.stop();
+        }
+    }
+
+    /**
+     * Tests that reports are written in one batch when the batch is full.
+     * Expected result: One batch containing all reports should be written
+     * long before the flush interval elapses.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testWriteFullBatch() throws Exception {
+        mWriterUnderTest = new TaskExecutionStatusWriter(mStore, 100, 3, LONG_FLUSH_INTERVAL);
+        mWriterUnderTest.start();
+
+        for (int i = 0; i < 3; i++) {
+            mWriterUnderTest.enqueue(createSuccessStatus());
+        }
+
+        waitForWrittenBatches(2000L);
+        Assert.assertEquals("One batch should have been written", 1, mWrittenBatches.size());
+        Assert.assertEquals("Batch should contain all reports", 3, mWrittenBatches.get(0).size());
+    }
+
+    /**
+     * Tests that a batch that is not full is written when the flush interval elapses.
+     * Expected result: The single report should be written without any flush.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testWriteAfterFlushInterval() throws Exception {
+        mWriterUnderTest = new TaskExecutionStatusWriter(mStore, 100, 100, 100L);
+        mWriterUnderTest.start();
+
+        mWriterUnderTest.enqueue(createSuccessStatus());
+
+        waitForWrittenBatches(2000L);
+        Assert.assertEquals("Batch should contain the report", 1, mWrittenBatches.get(0).size());
+    }
+
+    /**
+     * Tests that stopping the writer writes all queued reports.
+     * Expected result: All reports should have been written when stop returns.
+     */
+    @Test
+    public void testStopWritesQueuedReports() {
+        mWriterUnderTest = new TaskExecutionStatusWriter(mStore, 100, 100, LONG_FLUSH_INTERVAL);
+        mWriterUnderTest.start();
+        for (int i = 0; i < 5; i++) {
+            mWriterUnderTest.enqueue(createSuccessStatus());
+        }
+
+        mWriterUnderTest.stop();
+
+        Assert.assertEquals("All reports should have been written", 5, countWrittenReports());
+        Assert.assertEquals("No reports should remain in the queue", 0, mWriterUnderTest.getQueueSize());
+    }
+
+    /**
+     * Tests enqueuing reports when the queue is full.
+     * Expected result: Reports that no message was received should be discarded,
+     * first the enqueued report and then reports already in the queue, in order to
+     * make room for other reports.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testQueueFullDiscardsNoMessageReceived() throws Exception {
+        mWriterUnderTest = new TaskExecutionStatusWriter(mStore, 2, 1, LONG_FLUSH_INTERVAL);
+        mWriteLatch = new CountDownLatch(1);
+        mWriterUnderTest.start();
+
+        /* Writer thread takes the first report and waits for the write latch. */
+        final TaskExecutionStatus theFirstStatus = createSuccessStatus();
+        mWriterUnderTest.enqueue(theFirstStatus);
+        Mockito.verify(mStore, Mockito.timeout(2000)).save(Mockito.anyListOf(TaskExecutionStatus.class));
+
+        /* Fill the queue. */
+        final TaskExecutionStatus theFirstNoMessageStatus =
+            new TaskExecutionStatusNoMessageReceived(mTaskConfiguration, "", new Date());
+        final TaskExecutionStatus theSecondNoMessageStatus =
+            new TaskExecutionStatusNoMessageReceived(mTaskConfiguration, "", new Date());
+        mWriterUnderTest.enqueue(theFirstNoMessageStatus);
+        mWriterUnderTest.enqueue(theSecondNoMessageStatus);
+
+        /* Queue full, report that no message was received is discarded. */
+        mWriterUnderTest.enqueue(new TaskExecutionStatusNoMessageReceived(mTaskConfiguration, "", new Date()));
+        Assert.assertEquals("Enqueued report should have been discarded", 1, mWriterUnderTest.getDiscardedCount());
+
+        /* Queue full, error report replaces queued report that no message was received. */
+        final TaskExecutionStatus theErrorStatus = new TaskExecutionStatusError(mTaskConfiguration, "Error", new Date());
+        mWriterUnderTest.enqueue(theErrorStatus);
+        Assert.assertEquals("Queued report should have been discarded", 2, mWriterUnderTest.getDiscardedCount());
+
+        mWriteLatch.countDown();
+        mWriterUnderTest.stop();
+
+        final List<TaskExecutionStatus> theWrittenReports = new ArrayList<TaskExecutionStatus>();
+        for (List<TaskExecutionStatus> theBatch : mWrittenBatches) {
+            theWrittenReports.addAll(theBatch);
+        }
+        Assert.assertEquals("Three reports should have been written", 3, theWrittenReports.size());
+        Assert.assertTrue(theWrittenReports.contains(theFirstStatus));
+        Assert.assertTrue(theWrittenReports.contains(theSecondNoMessageStatus));
+        Assert.assertTrue(theWrittenReports.contains(theErrorStatus));
+        Assert.assertFalse(theWrittenReports.contains(theFirstNoMessageStatus));
+    }
+
+    /**
+     * Tests enqueuing a report when the writer is not started.
+     * Expected result: The report should be written immediately.
+     */
+    @Test
+    public void testEnqueueWhenNotStarted() {
+        mWriterUnderTest = new TaskExecutionStatusWriter(mStore, 100, 100, LONG_FLUSH_INTERVAL);
+
+        mWriterUnderTest.enqueue(createSuccessStatus());
+
+        Assert.assertEquals("Report should have been written", 1, countWrittenReports());
+    }
+
+    /**
+     * Tests stopping the writer while other threads are enqueuing reports.
+     * Expected result: All reports should have been written when the enqueuing
+     * threads and the stopping of the writer have finished.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testStopWhileEnqueuing() throws Exception {
+        final int theThreadCount = 4;
+        final int theReportsPerThread = 1000;
+        mWriterUnderTest = new TaskExecutionStatusWriter(mStore, 100, 10, LONG_FLUSH_INTERVAL);
+        mWriterUnderTest.start();
+
+        final CountDownLatch theStartLatch = new CountDownLatch(1);
+        final ExecutorService theExecutorService = Executors.newFixedThreadPool(theThreadCount);
+        final List<Future<Void>> theFutures = new ArrayList<Future<Void>>();
+        for (int i = 0; i < theThreadCount; i++) {
+            theFutures.add(theExecutorService.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    theStartLatch.await();
+                    for (int j = 0; j < theReportsPerThread; j++) {
+                        mWriterUnderTest.enqueue(createSuccessStatus());
+                    }
+                    return null;
+                }
+            }));
+        }
+        theStartLatch.countDown();
+        mWriterUnderTest.stop();
+
+        for (Future<Void> theFuture : theFutures) {
+            theFuture.get(LONG_FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        theExecutorService.shutdown();
+        Assert.assertEquals("All reports should have been written", theThreadCount * theReportsPerThread,
+            countWrittenReports());
+    }
+
+    private TaskExecutionStatus createSuccessStatus() {
+        return new TaskExecutionStatusSuccess(mTaskConfiguration, "Success", new Date(), 1);
+    }
+
+    /**
+     * Waits for at least one batch to have been written to the store mock.
+     * Verifying the store mock with a timeout does not suffice, since the
+     * invocation is registered before the batch is recorded.
+     *
+     * @param inTimeout Maximum time in milliseconds to wait.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private void waitForWrittenBatches(final long inTimeout) throws InterruptedException {
+        final long theEndTime = System.currentTimeMillis() + inTimeout;
+        while (mWrittenBatches.isEmpty() && System.currentTimeMillis() < theEndTime) {
+            Thread.sleep(10L);
+        }
+        Assert.assertFalse("A batch should have been written", mWrittenBatches.isEmpty());
+    }
+
+    private int countWrittenReports() {
+        int theCount = 0;
+        for (List<TaskExecutionStatus> theBatch : mWrittenBatches) {
+            theCount += theBatch.size();
+        }
+        return theCount;
+    }
+}
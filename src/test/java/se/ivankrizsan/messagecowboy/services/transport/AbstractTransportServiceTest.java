@@ -0,0 +1,153 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.broker.BrokerRegistry;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.region.Destination;
+import org.junit.Assert;
+import org.junit.Test;
+
+import se.ivankrizsan.messagecowboy.domain.entities.MoverMessage;
+import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
+
+/**
+ * Abstract base-class containing tests common to all transport service
+ * implementations.<br/>
+ * Subclasses supply the transport service under test and create messages
+ * that can be dispatched using it.
+ *
+ * @author Ivan Krizsan
+ */
+public abstract class AbstractTransportServiceTest extends AbstractTestBaseClass {
+    /* Constant(s): */
+    /**
+     * Timeout in milliseconds of the receive that is to be blocked while
+     * another receive is performed. Only reached if receives are serialized.
+     */
+    protected static final long BLOCKED_RECEIVE_TIMEOUT = 60000L;
+    /** Timeout in milliseconds of receives expected to complete promptly. */
+    protected static final long RECEIVE_TIMEOUT = 5000L;
+    /** Maximum time in milliseconds to wait for a receive to start waiting for a message. */
+    protected static final long RECEIVE_START_TIMEOUT = 10000L;
+
+    /**
+     * Retrieves the transport service under test.
+     *
+     * @return Transport service under test.
+     */
+    protected abstract TransportService getTransportService();
+
+    /**
+     * Creates a message with the supplied payload that can be dispatched
+     * using the transport service under test.
+     *
+     * @param inPayload Message payload.
+     * @return New message.
+     */
+    @SuppressWarnings("rawtypes")
+    protected abstract MoverMessage createMessage(final String inPayload);
+
+    /**
+     * Starts the transport service under test.
+     * Subclasses override this method if the transport service is not ready
+     * for use immediately after having been started.
+     */
+    protected void startTransportService() {
+        getTransportService().start();
+    }
+
+    /**
+     * Tests that a receive can complete while another receive, from a
+     * different endpoint, is blocked waiting for a message.<br/>
+     * The first receive is known to be waiting for a message when the JMS
+     * broker reports a consumer on its queue. If receives were serialized,
+     * the second receive would not complete until the first receive has
+     * timed out and the first receive would be done when the second receive
+     * completes.
+     *
+     * @throws Exception If error occurs receiving messages. Indicates test failure.
+     */
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void testParallelReceive() throws Exception {
+        final String theBlockedQueueName = getClass().getSimpleName().toLowerCase() + ".parallel.blocked";
+        final String theBlockedEndpointUri = "jms://queue:" + theBlockedQueueName;
+        final String theOtherEndpointUri =
+            "jms://queue:" + getClass().getSimpleName().toLowerCase() + ".parallel.other";
+        final TransportService theTransportService = getTransportService();
+        startTransportService();
+
+        final ExecutorService theExecutorService = Executors.newSingleThreadExecutor();
+        try {
+            final Future<MoverMessage> theBlockedReceive = theExecutorService.submit(new Callable<MoverMessage>() {
+                @Override
+                public MoverMessage call() throws Exception {
+                    return theTransportService.receive(theBlockedEndpointUri, BLOCKED_RECEIVE_TIMEOUT);
+                }
+            });
+            waitForQueueConsumer(theBlockedQueueName);
+
+            theTransportService.dispatch(createMessage("other"), theOtherEndpointUri);
+            final MoverMessage theOtherMessage = theTransportService.receive(theOtherEndpointUri, RECEIVE_TIMEOUT);
+
+            /* Verify outcome. */
+            Assert.assertNotNull("A message should have been received while another receive is blocked",
+                theOtherMessage);
+            Assert.assertFalse("The blocked receive should still be waiting for a message",
+                theBlockedReceive.isDone());
+
+            theTransportService.dispatch(createMessage("blocked"), theBlockedEndpointUri);
+            Assert.assertNotNull("The blocked receive should receive the message dispatched to its endpoint",
+                theBlockedReceive.get(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        } finally {
+            theExecutorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits until an embedded JMS broker reports at least one consumer on the
+     * queue with the supplied name.<br/>
+     * All the embedded brokers are examined, since the configurations of the
+     * transport services may connect to embedded brokers of their own.
+     *
+     * @param inQueueName Name of queue.
+     * @throws Exception If error occurs retrieving queue from broker.
+     */
+    protected void waitForQueueConsumer(final String inQueueName) throws Exception {
+        final long theWaitEndTime = System.currentTimeMillis() + RECEIVE_START_TIMEOUT;
+        while (System.currentTimeMillis() < theWaitEndTime) {
+            for (BrokerService theBroker : BrokerRegistry.getInstance().getBrokers().values()) {
+                for (Destination theDestination : theBroker.getBroker().getDestinationMap().values()) {
+                    if (theDestination.getActiveMQDestination().isQueue()
+                        && theDestination.getActiveMQDestination().getPhysicalName().endsWith(inQueueName)
+                        && !theDestination.getConsumers().isEmpty()) {
+                        return;
+                    }
+                }
+            }
+            delay(20L);
+        }
+        Assert.fail("No consumer on queue " + inQueueName + " within " + RECEIVE_START_TIMEOUT + " milliseconds");
+    }
+}
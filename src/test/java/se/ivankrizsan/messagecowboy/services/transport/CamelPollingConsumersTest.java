@@ -0,0 +1,106 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import java.util.Collections;
+
+import org.apache.camel.Endpoint;
+import org.apache.camel.PollingConsumer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import ru.yandex.qatools.allure.annotations.Features;
+
+/**
+ * Tests the {@code CamelPollingConsumers} class.
+ *
+ * @author Ivan Krizsan
+ */
+@Features("Camel")
+public class CamelPollingConsumersTest {
+    /* Constant(s): */
+    protected static final String ENDPOINT_URI = "file://consumerstest";
+
+    /* Instance variable(s): */
+    protected CamelPollingConsumers mInstanceUnderTest;
+    protected Endpoint mEndpoint;
+
+    /**
+     * Sets up before each test.
+     *
+     * @throws Exception If error occurs setting up mocks.
+     */
+    @Before
+    public void setUpBeforeTest() throws Exception {
+        mEndpoint = Mockito.mock(Endpoint.class);
+        Mockito.when(mEndpoint.getEndpointUri()).thenReturn(ENDPOINT_URI);
+        Mockito.when(mEndpoint.createPollingConsumer()).thenReturn(Mockito.mock(PollingConsumer.class),
+            Mockito.mock(PollingConsumer.class));
+
+        mInstanceUnderTest = new CamelPollingConsumers();
+    }
+
+    /**
+     * Tests that the same started polling consumer is acquired each time a
+     * polling consumer is acquired for an endpoint and that it is not stopped.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testSharedConsumer() throws Exception {
+        final PollingConsumer theConsumer = mInstanceUnderTest.acquire(mEndpoint);
+        final PollingConsumer theSharedConsumer = mInstanceUnderTest.acquire(mEndpoint);
+
+        Assert.assertSame("Same polling consumer should be acquired", theConsumer, theSharedConsumer);
+        Assert.assertEquals("One polling consumer should be kept", 1, mInstanceUnderTest.getConsumerCount());
+        Mockito.verify(theConsumer).start();
+        Mockito.verify(theConsumer, Mockito.never()).stop();
+    }
+
+    /**
+     * Tests that a discarded polling consumer is stopped and replaced by a new
+     * polling consumer.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testDiscardConsumer() throws Exception {
+        final PollingConsumer theConsumer = mInstanceUnderTest.acquire(mEndpoint);
+
+        mInstanceUnderTest.discard(mEndpoint, theConsumer);
+        final PollingConsumer theNewConsumer = mInstanceUnderTest.acquire(mEndpoint);
+
+        Mockito.verify(theConsumer).stop();
+        Assert.assertNotSame("A new polling consumer should be created", theConsumer, theNewConsumer);
+    }
+
+    /**
+     * Tests stopping the polling consumers of removed endpoints.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testClearEndpoints() throws Exception {
+        final PollingConsumer theConsumer = mInstanceUnderTest.acquire(mEndpoint);
+
+        mInstanceUnderTest.clear(Collections.singletonList(mEndpoint));
+
+        Assert.assertEquals("No polling consumers should be kept", 0, mInstanceUnderTest.getConsumerCount());
+        Mockito.verify(theConsumer).stop();
+    }
+}
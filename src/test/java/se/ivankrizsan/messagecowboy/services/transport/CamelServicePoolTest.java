@@ -0,0 +1,153 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import org.apache.camel.Endpoint;
+import org.apache.camel.Service;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import ru.yandex.qatools.allure.annotations.Features;
+
+/**
+ * Tests the {@code CamelServicePool} class.
+ *
+ * @author Ivan Krizsan
+ */
+@Features("Camel")
+public class CamelServicePoolTest {
+    /* Constant(s): */
+    protected static final int MAX_IDLE_PER_ENDPOINT = 2;
+    protected static final long MAX_IDLE_TIME = 200L;
+    protected static final String ENDPOINT_URI = "jms://queue:pooltest";
+
+    /* Instance variable(s): */
+    protected CamelServicePool<Service> mInstanceUnderTest;
+    protected Endpoint mEndpoint;
+
+    /**
+     * Sets up before each test.
+     */
+    @Before
+    public void setUpBeforeTest() {
+        mEndpoint = Mockito.mock(Endpoint.class);
+        Mockito.when(mEndpoint.getEndpointUri()).thenReturn(ENDPOINT_URI);
+
+        mInstanceUnderTest = new CamelServicePool<Service>(MAX_IDLE_PER_ENDPOINT, MAX_IDLE_TIME) {
+            @Override
+            protected Service createService(final Endpoint inEndpoint) throws Exception {
+                return Mockito.mock(Service.class);
+            }
+        };
+    }
+
+    /**
+     * Tests that a released service is reused when acquiring a service for
+     * the same endpoint.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testReuseReleasedService() throws Exception {
+        final Service theService = mInstanceUnderTest.acquire(mEndpoint);
+        Mockito.verify(theService).start();
+
+        mInstanceUnderTest.release(mEndpoint, theService);
+        final Service theReusedService = mInstanceUnderTest.acquire(mEndpoint);
+
+        Assert.assertSame("Released service should be reused", theService, theReusedService);
+        Mockito.verify(theService, Mockito.never()).stop();
+    }
+
+    /**
+     * Tests that services released when the maximum number of idle services
+     * have been reached are stopped.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testMaxIdlePerEndpoint() throws Exception {
+        final Service theService1 = mInstanceUnderTest.acquire(mEndpoint);
+        final Service theService2 = mInstanceUnderTest.acquire(mEndpoint);
+        final Service theService3 = mInstanceUnderTest.acquire(mEndpoint);
+
+        mInstanceUnderTest.release(mEndpoint, theService1);
+        mInstanceUnderTest.release(mEndpoint, theService2);
+        mInstanceUnderTest.release(mEndpoint, theService3);
+
+        Assert.assertEquals("Pool should not exceed maximum idle services", MAX_IDLE_PER_ENDPOINT,
+            mInstanceUnderTest.getIdleCount());
+        Mockito.verify(theService3).stop();
+    }
+
+    /**
+     * Tests eviction of services that have been idle too long.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testEvictIdleServices() throws Exception {
+        final Service theService1 = mInstanceUnderTest.acquire(mEndpoint);
+        final Service theService2 = mInstanceUnderTest.acquire(mEndpoint);
+        mInstanceUnderTest.release(mEndpoint, theService1);
+
+        Thread.sleep(MAX_IDLE_TIME * 2);
+        mInstanceUnderTest.release(mEndpoint, theService2);
+
+        Assert.assertEquals("Only recently released service should be pooled", 1, mInstanceUnderTest.getIdleCount());
+        Mockito.verify(theService1).stop();
+        Mockito.verify(theService2, Mockito.never()).stop();
+    }
+
+    /**
+     * Tests periodic eviction of services that have been idle too long,
+     * without any services being acquired or released.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testPeriodicEviction() throws Exception {
+        final Service theService = mInstanceUnderTest.acquire(mEndpoint);
+        mInstanceUnderTest.release(mEndpoint, theService);
+
+        mInstanceUnderTest.evictIdleServices();
+        Assert.assertEquals("Recently released service should be pooled", 1, mInstanceUnderTest.getIdleCount());
+
+        Thread.sleep(MAX_IDLE_TIME * 2);
+        mInstanceUnderTest.evictIdleServices();
+
+        Assert.assertEquals("Pool should be empty", 0, mInstanceUnderTest.getIdleCount());
+        Mockito.verify(theService).stop();
+    }
+
+    /**
+     * Tests clearing the pool, which should stop all idle services.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testClear() throws Exception {
+        final Service theService = mInstanceUnderTest.acquire(mEndpoint);
+        mInstanceUnderTest.release(mEndpoint, theService);
+
+        mInstanceUnderTest.clear();
+
+        Assert.assertEquals("Pool should be empty", 0, mInstanceUnderTest.getIdleCount());
+        Mockito.verify(theService).stop();
+    }
+}
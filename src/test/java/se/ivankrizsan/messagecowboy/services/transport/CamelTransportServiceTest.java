@@ -16,14 +16,20 @@
  */
 package se.ivankrizsan.messagecowboy.services.transport;
 
+import org.apache.activemq.pool.PooledConnectionFactory;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Component;
 import org.apache.camel.Exchange;
 import org.apache.camel.Message;
+import org.apache.camel.component.file.FileComponent;
+import org.apache.camel.component.jms.JmsComponent;
 import org.apache.camel.impl.DefaultExchange;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,13 +37,16 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.FileCopyUtils;
 import ru.yandex.qatools.allure.annotations.Features;
 import se.ivankrizsan.messagecowboy.domain.entities.MoverMessage;
 import se.ivankrizsan.messagecowboy.domain.entities.impl.CamelMoverMessage;
+import se.ivankrizsan.messagecowboy.services.transport.exceptions.TransportException;
 import se.ivankrizsan.messagecowboy.testconfig.JmsBrokerTestConfiguration;
-import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
+import se.ivankrizsan.messagecowboy.testconfig.PooledJmsConnectionFactoryTestConfiguration;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -51,16 +60,22 @@ import java.util.List;
 @Features("Camel")
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes = {JmsBrokerTestConfiguration.class,
-    CamelTransportServiceTestConfiguration.class})
+    PooledJmsConnectionFactoryTestConfiguration.class, CamelTransportServiceTestConfiguration.class})
 @DirtiesContext(classMode = ClassMode.AFTER_CLASS)
-public class CamelTransportServiceTest extends AbstractTestBaseClass {
+public class CamelTransportServiceTest extends AbstractTransportServiceTest {
     /* Constant(s): */
     private static final Logger LOGGER = LoggerFactory.getLogger(CamelTransportServiceTest.class);
     private static final String TEST_MESSAGE_PAYLOAD = "some payload åäöÅÄÖ";
+    /** Start element of Spring XML configuration files created by tests. */
+    private static final String BEANS_START_ELEMENT = "<beans xmlns=\"http://www.springframework.org/schema/beans\" "
+        + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\""
+        + "http://www.springframework.org/schema/beans http://www.springframework.org/schema/beans/spring-beans.xsd\">";
 
     /* Instance variable(s): */
     @Autowired
     private CamelTransportService mServiceUnderTest;
+    @Autowired
+    private PooledConnectionFactory mSharedConnectionFactory;
     private String mInboundFileEndpointUri;
     private String mOutboundFileEndpointUri;
 
@@ -94,6 +109,18 @@ public class CamelTransportServiceTest extends AbstractTestBaseClass {
         }
     }
 
+    @Override
+    protected TransportService getTransportService() {
+        return mServiceUnderTest;
+    }
+
+    @Override
+    protected MoverMessage<Exchange> createMessage(final String inPayload) {
+        final Exchange theExchange = new DefaultExchange(mServiceUnderTest.getCamelContext());
+        theExchange.getIn().setBody(inPayload);
+        return new CamelMoverMessage(theExchange);
+    }
+
     /**
      * Tests dispatching of a message to a file endpoint.
      */
@@ -169,6 +196,85 @@ public class CamelTransportServiceTest extends AbstractTestBaseClass {
             .getBody());
     }
 
+    /**
+     * Tests that one polling consumer per endpoint is kept and that producers
+     * are pooled per endpoint and reused between requests, that consumers and
+     * pools are retained when configuration resources not defining the
+     * endpoints' component are refreshed and that consumers and pools are
+     * emptied when the component is removed.
+     *
+     * @throws IOException If error occurs refreshing connectors. Indicates test failure.
+     */
+    @Test
+    public void testPooledConsumersAndProducers() throws IOException {
+        final List<String> theLocationsList = new ArrayList<>();
+        theLocationsList.add("classpath:connectors/camel/jms-connector.xml");
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.start();
+        delay(1000L);
+
+        performAndVerifyJmsTest();
+        performAndVerifyJmsTest();
+
+        Assert.assertEquals("One consumer should be kept", 1, mServiceUnderTest.mPollingConsumers.getConsumerCount());
+        Assert.assertEquals("One producer should be pooled", 1, mServiceUnderTest.mProducerPool.getIdleCount());
+
+        /* Refresh with an added connector resource, which does not affect the JMS component. */
+        theLocationsList.add("classpath:connectors/camel/file-connectors.xml");
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.refreshConnectors();
+
+        Assert.assertEquals("Consumer should remain after refresh", 1,
+            mServiceUnderTest.mPollingConsumers.getConsumerCount());
+        Assert.assertEquals("Producer should remain pooled after refresh", 1,
+            mServiceUnderTest.mProducerPool.getIdleCount());
+
+        /* Refresh with the JMS connector resource removed. */
+        theLocationsList.remove("classpath:connectors/camel/jms-connector.xml");
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.refreshConnectors();
+
+        Assert.assertEquals("Consumers should be stopped after refresh", 0,
+            mServiceUnderTest.mPollingConsumers.getConsumerCount());
+        Assert.assertEquals("Producer pool should be empty after refresh", 0,
+            mServiceUnderTest.mProducerPool.getIdleCount());
+    }
+
+    /**
+     * Tests using the shared pooled JMS connection factory defined in the application
+     * context of the transport service from the Camel configuration and that the
+     * same connection factory, and its pooled connections, are used after the Camel
+     * context is refreshed.
+     *
+     * @throws IOException If error occurs refreshing connectors. Indicates test failure.
+     */
+    @Test
+    public void testSharedJmsConnectionFactory() throws IOException {
+        final List<String> theLocationsList = new ArrayList<>();
+        theLocationsList.add("classpath:connectors/camel/shared-jms-connector.xml");
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.start();
+
+        performAndVerifyJmsTest();
+        Assert.assertSame("Shared connection factory should be used", mSharedConnectionFactory,
+            ((JmsComponent) mServiceUnderTest.getCamelContext().getComponent("jms")).getConfiguration()
+                .getConnectionFactory());
+        Assert.assertEquals("The pooled connection should have been created", 1,
+            mSharedConnectionFactory.getNumConnections());
+
+        /* Refresh with modified configuration resources. */
+        theLocationsList.add("classpath:connectors/camel/file-connectors.xml");
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.refreshConnectors();
+
+        performAndVerifyJmsTest();
+        Assert.assertSame("Shared connection factory should be used after refresh", mSharedConnectionFactory,
+            ((JmsComponent) mServiceUnderTest.getCamelContext().getComponent("jms")).getConfiguration()
+                .getConnectionFactory());
+        Assert.assertEquals("The pooled connection should be retained after refresh", 1,
+            mSharedConnectionFactory.getNumConnections());
+    }
+
     /**
      * Tests restarting the Mule transport service after it has been stopped.
      */
@@ -201,4 +307,264 @@ public class CamelTransportServiceTest extends AbstractTestBaseClass {
 
         performAndVerifyJmsTest();
     }
+
+    /**
+     * Tests refresh of connector resources when a broken configuration
+     * resource has been added, followed by the broken configuration resource
+     * being corrected.
+     * Expected result: The current configuration should be retained when the
+     * new configuration is broken and the corrected configuration resource
+     * should be loaded into the same Camel context.
+     *
+     * @throws IOException If error occurs refreshing connectors. Indicates test failure.
+     */
+    @Test
+    public void testBrokenConfigurationRefresh() throws IOException {
+        final List<String> theLocationsList = new ArrayList<>();
+        theLocationsList.add("classpath:connectors/camel/jms-connector.xml");
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.start();
+        final CamelContext theOriginalCamelContext = mServiceUnderTest.getCamelContext();
+
+        /* Add a configuration resource referring to a non-existing class. */
+        final File theConfigurationFile = File.createTempFile("camel-connectors", ".xml");
+        theConfigurationFile.deleteOnExit();
+        FileCopyUtils.copy(BEANS_START_ELEMENT + "<bean id=\"broken\" class=\"does.not.Exist\"/></beans>",
+            new FileWriter(theConfigurationFile));
+        theLocationsList.add("file:" + theConfigurationFile.getAbsolutePath());
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.refreshConnectors();
+
+        Assert.assertSame("Camel context should be retained", theOriginalCamelContext,
+            mServiceUnderTest.getCamelContext());
+        Assert.assertTrue("Camel context should still be started",
+            mServiceUnderTest.getCamelContext().getStatus().isStarted());
+        performAndVerifyJmsTest();
+
+        /* Correct the configuration resource. */
+        FileCopyUtils.copy(BEANS_START_ELEMENT
+            + "<bean id=\"phile\" class=\"org.apache.camel.component.file.FileComponent\"/></beans>",
+            new FileWriter(theConfigurationFile));
+        mServiceUnderTest.refreshConnectors();
+
+        Assert.assertSame("Camel context should be retained", theOriginalCamelContext,
+            mServiceUnderTest.getCamelContext());
+        Assert.assertTrue("Component from corrected configuration should be available",
+            mServiceUnderTest.getCamelContext().getComponent("phile") instanceof FileComponent);
+        performAndVerifyJmsTest();
+    }
+
+    /**
+     * Tests refresh of connector resources when one of the configuration
+     * resources has been modified and then removed.
+     * Expected result: Only the component of the modified configuration
+     * resource should be replaced and then removed, while the component of
+     * the unmodified configuration resource should be retained.
+     *
+     * @throws IOException If error occurs refreshing connectors. Indicates test failure.
+     */
+    @Test
+    public void testIncrementalRefresh() throws IOException {
+        final File theConfigurationFile = File.createTempFile("camel-connectors", ".xml");
+        theConfigurationFile.deleteOnExit();
+        FileCopyUtils.copy(BEANS_START_ELEMENT
+            + "<bean id=\"phile\" class=\"org.apache.camel.component.file.FileComponent\"/></beans>",
+            new FileWriter(theConfigurationFile));
+        final List<String> theLocationsList = new ArrayList<>();
+        theLocationsList.add("classpath:connectors/camel/jms-connector.xml");
+        theLocationsList.add("file:" + theConfigurationFile.getAbsolutePath());
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.start();
+
+        performAndVerifyJmsTest();
+        final Component theJmsComponent = mServiceUnderTest.getCamelContext().getComponent("jms");
+        final Component theFileComponent = mServiceUnderTest.getCamelContext().getComponent("phile");
+        Assert.assertNotNull(theFileComponent);
+
+        /* Modify the file component configuration resource. */
+        FileCopyUtils.copy(BEANS_START_ELEMENT
+            + "<bean id=\"phile\" class=\"org.apache.camel.component.file.FileComponent\"/>"
+            + "<bean id=\"phile2\" class=\"org.apache.camel.component.file.FileComponent\"/></beans>",
+            new FileWriter(theConfigurationFile));
+        mServiceUnderTest.refreshConnectors();
+
+        Assert.assertSame("JMS component should be retained", theJmsComponent,
+            mServiceUnderTest.getCamelContext().getComponent("jms"));
+        Assert.assertNotSame("File component should be replaced", theFileComponent,
+            mServiceUnderTest.getCamelContext().getComponent("phile"));
+        Assert.assertNotNull("Added file component should be available",
+            mServiceUnderTest.getCamelContext().getComponent("phile2"));
+        performAndVerifyJmsTest();
+
+        /* Remove the file component configuration resource. */
+        theLocationsList.remove(1);
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.refreshConnectors();
+
+        Assert.assertSame("JMS component should be retained", theJmsComponent,
+            mServiceUnderTest.getCamelContext().getComponent("jms"));
+        Assert.assertNull("Removed file component should not be available",
+            mServiceUnderTest.getCamelContext().getComponent("phile2"));
+    }
+
+    /**
+     * Tests refresh of connector resources when a configuration resource
+     * defining a component used under an alias has been modified.
+     * Expected result: The component used under the alias should be replaced.
+     *
+     * @throws IOException If error occurs refreshing connectors. Indicates test failure.
+     */
+    @Test
+    public void testIncrementalRefreshAliasedComponent() throws IOException {
+        final File theConfigurationFile = File.createTempFile("camel-connectors", ".xml");
+        theConfigurationFile.deleteOnExit();
+        FileCopyUtils.copy(BEANS_START_ELEMENT
+            + "<bean id=\"phile\" class=\"org.apache.camel.component.file.FileComponent\"/>"
+            + "<alias name=\"phile\" alias=\"fyle\"/></beans>",
+            new FileWriter(theConfigurationFile));
+        final List<String> theLocationsList = new ArrayList<>();
+        theLocationsList.add("file:" + theConfigurationFile.getAbsolutePath());
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.start();
+        /* Examine configuration resources at refresh instead of relying on asynchronous file system events. */
+        mServiceUnderTest.stopWatchingConfigurationResources();
+        final Component theAliasedComponent = mServiceUnderTest.getCamelContext().getComponent("fyle");
+        Assert.assertTrue(theAliasedComponent instanceof FileComponent);
+
+        /* Modify the configuration resource. */
+        FileCopyUtils.copy(BEANS_START_ELEMENT
+            + "<bean id=\"phile\" class=\"org.apache.camel.component.file.FileComponent\"/>"
+            + "<alias name=\"phile\" alias=\"fyle\"/><bean id=\"other\" class=\"java.lang.Object\"/></beans>",
+            new FileWriter(theConfigurationFile));
+        mServiceUnderTest.refreshConnectors();
+
+        Assert.assertNotSame("Component used under alias should be replaced", theAliasedComponent,
+            mServiceUnderTest.getCamelContext().getComponent("fyle"));
+    }
+
+    /**
+     * Tests dispatching a batch of messages to and receiving a batch of
+     * messages from a JMS queue.
+     */
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void testDispatchAndReceiveJmsBatch() {
+        final String theJmsEndpointUri = "jms://queue:cameltransportservice.batch";
+        mServiceUnderTest.start();
+
+        final List<MoverMessage> theMessages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final Exchange theExchange = new DefaultExchange(mServiceUnderTest.getCamelContext());
+            theExchange.getIn().setBody(TEST_MESSAGE_PAYLOAD + i);
+            theMessages.add(new CamelMoverMessage(theExchange));
+        }
+        mServiceUnderTest.dispatchBatch(theMessages, theJmsEndpointUri);
+
+        final List<MoverMessage> theFirstBatch = mServiceUnderTest.receiveBatch(theJmsEndpointUri, 5000, 3);
+        final List<MoverMessage> theSecondBatch = mServiceUnderTest.receiveBatch(theJmsEndpointUri, 5000, 3);
+
+        /* Verify outcome. */
+        Assert.assertEquals("First batch should contain the maximum number of messages", 3, theFirstBatch.size());
+        Assert.assertEquals("Second batch should contain the remaining messages", 2, theSecondBatch.size());
+        final MoverMessage<Exchange> theFirstMessage = theFirstBatch.get(0);
+        Assert.assertEquals("Payload of message should be unaltered", TEST_MESSAGE_PAYLOAD + 0,
+            theFirstMessage.getMessage().getIn().getBody());
+    }
+
+    /**
+     * Tests moving a batch of messages between two JMS queues.
+     */
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void testMoveJmsBatch() {
+        final String theInboundEndpointUri = "jms://queue:cameltransportservice.movebatch.in";
+        final String theOutboundEndpointUri = "jms://queue:cameltransportservice.movebatch.out";
+        mServiceUnderTest.start();
+        mServiceUnderTest.dispatchBatch(createBatch(5), theInboundEndpointUri);
+
+        final int theMovedMessageCount =
+            mServiceUnderTest.moveBatch(theInboundEndpointUri, theOutboundEndpointUri, 5000, 10);
+
+        /* Verify outcome. */
+        Assert.assertEquals("All messages should have been moved", 5, theMovedMessageCount);
+        final List<MoverMessage> theMovedMessages = mServiceUnderTest.receiveBatch(theOutboundEndpointUri, 5000, 10);
+        Assert.assertEquals("All messages should be at the outbound endpoint", 5, theMovedMessages.size());
+    }
+
+    /**
+     * Tests moving a batch of messages from a JMS queue to an endpoint to
+     * which the messages cannot be dispatched.<br/>
+     * Expected result:<br/>
+     * The messages should remain in the JMS queue.
+     */
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void testMoveJmsBatchFailedDispatch() {
+        final String theInboundEndpointUri = "jms://queue:cameltransportservice.movebatch.failed";
+        mServiceUnderTest.start();
+        mServiceUnderTest.dispatchBatch(createBatch(3), theInboundEndpointUri);
+
+        try {
+            mServiceUnderTest.moveBatch(theInboundEndpointUri, "nonexistingcomponent://nowhere", 5000, 10);
+            Assert.fail("Moving messages to a non-existing endpoint should fail");
+        } catch (final TransportException theException) {
+            /* Expected exception. */
+        }
+
+        /* Verify outcome. */
+        final List<MoverMessage> theMessages = mServiceUnderTest.receiveBatch(theInboundEndpointUri, 5000, 10);
+        Assert.assertEquals("Messages not dispatched should remain in inbound queue", 3, theMessages.size());
+    }
+
+    /**
+     * Creates a batch of the supplied number of messages.
+     *
+     * @param inMessageCount Number of messages.
+     * @return List of messages.
+     */
+    @SuppressWarnings("rawtypes")
+    private List<MoverMessage> createBatch(final int inMessageCount) {
+        final List<MoverMessage> theMessages = new ArrayList<>();
+        for (int i = 0; i < inMessageCount; i++) {
+            final Exchange theExchange = new DefaultExchange(mServiceUnderTest.getCamelContext());
+            theExchange.getIn().setBody(TEST_MESSAGE_PAYLOAD + i);
+            theMessages.add(new CamelMoverMessage(theExchange));
+        }
+        return theMessages;
+    }
+
+    /**
+     * Tests starting and stopping a continuous move between two JMS queues.
+     */
+    @Test
+    public void testContinuousMove() {
+        final String theInboundEndpointUri = "jms://queue:cameltransportservice.continuous.in";
+        final String theOutboundEndpointUri = "jms://queue:cameltransportservice.continuous.out";
+        final String theMoveId = "testgroup.continuousmove";
+        mServiceUnderTest.start();
+
+        final ContinuousMoveListener theListener = Mockito.mock(ContinuousMoveListener.class);
+        mServiceUnderTest.startContinuousMove(theMoveId, theInboundEndpointUri, theOutboundEndpointUri, theListener);
+
+        final Exchange theExchange = new DefaultExchange(mServiceUnderTest.getCamelContext());
+        theExchange.getIn().setBody(TEST_MESSAGE_PAYLOAD);
+        mServiceUnderTest.dispatch(new CamelMoverMessage(theExchange), theInboundEndpointUri);
+        final MoverMessage<Exchange> theReceivedMessage = mServiceUnderTest.receive(theOutboundEndpointUri, 5000);
+
+        /* Verify outcome. */
+        Assert.assertNotNull("A message should have been moved to the outbound endpoint", theReceivedMessage);
+        Assert.assertEquals("Payload of message should be unaltered", TEST_MESSAGE_PAYLOAD,
+            theReceivedMessage.getMessage().getIn().getBody());
+        Assert.assertTrue("The continuous move should be started",
+            mServiceUnderTest.findContinuousMoveIds().contains(theMoveId));
+        Mockito.verify(theListener, Mockito.timeout(5000)).messageMoved(Mockito.eq(theMoveId), Mockito.anyLong());
+        Mockito.verify(theListener, Mockito.never()).messageMoveFailed(Mockito.anyString(),
+            Mockito.any(Throwable.class), Mockito.anyLong());
+
+        mServiceUnderTest.stopContinuousMove(theMoveId);
+        Assert.assertTrue("There should be no continuous moves after having been stopped",
+            mServiceUnderTest.findContinuousMoveIds().isEmpty());
+        Assert.assertNull("The route of the continuous move should have been removed",
+            mServiceUnderTest.getCamelContext().getRoute(theMoveId));
+    }
 }
@@ -0,0 +1,163 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.FileCopyUtils;
+import ru.yandex.qatools.allure.annotations.Features;
+
+/**
+ * Tests the {@code ConfigurationResourceWatcher} class.
+ *
+ * @author Ivan Krizsan
+ */
+@Features("XML Configuration Metadata")
+public class ConfigurationResourceWatcherTest {
+    /* Constant(s): */
+    protected static final long DEBOUNCE_PERIOD = 200L;
+    protected static final long CHANGE_TIMEOUT = 10000L;
+
+    /* Instance variable(s): */
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+    protected ConfigurationResourceWatcher mWatcherUnderTest;
+    protected String mLocationPattern;
+
+    /**
+     * Sets up before each test by creating a watcher and a directory
+     * containing one configuration file.
+     *
+     * @throws IOException If error occurs creating configuration file.
+     */
+    @Before
+    public void setUp() throws IOException {
+        writeFile("connectors.xml", "<beans/>");
+        mLocationPattern = "file:" + mTemporaryFolder.getRoot().getAbsolutePath() + "/*.xml";
+        mWatcherUnderTest = new ConfigurationResourceWatcher(DEBOUNCE_PERIOD);
+    }
+
+    /**
+     * Stops the watcher after each test.
+     */
+    @After
+    public void tearDown() {
+        mWatcherUnderTest.stop();
+    }
+
+    /**
+     * Tests watching a directory in which no changes are made.
+     * Expected result: No changes should be reported.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testNoChanges() throws Exception {
+        Assert.assertTrue("File location should be watched",
+            mWatcherUnderTest.start(Arrays.asList(mLocationPattern)));
+
+        Thread.sleep(DEBOUNCE_PERIOD * 2);
+        Assert.assertFalse("No changes should be reported", mWatcherUnderTest.consumeChanges());
+    }
+
+    /**
+     * Tests modifying a configuration file in a watched directory.
+     * Expected result: The change should be reported once, after the
+     * debounce period.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testModifiedFile() throws Exception {
+        mWatcherUnderTest.start(Arrays.asList(mLocationPattern));
+
+        writeFile("connectors.xml", "<beans></beans>");
+        writeFile("connectors.xml", "<beans> </beans>");
+
+        Assert.assertTrue("Change should be reported", waitForChanges());
+        Assert.assertFalse("Change should only be reported once", mWatcherUnderTest.consumeChanges());
+    }
+
+    /**
+     * Tests adding a configuration file to a watched directory.
+     * Expected result: The change should not be reported until no further
+     * changes have been made during the debounce period.
+     *
+     * @throws Exception If error occurs. Indicates test failure.
+     */
+    @Test
+    public void testAddedFileDebounced() throws Exception {
+        mWatcherUnderTest.start(Arrays.asList(mLocationPattern));
+
+        writeFile("more-connectors.xml", "<beans/>");
+        final long theWriteTime = System.currentTimeMillis();
+        while (!mWatcherUnderTest.mChangesPendingFlag
+            && System.currentTimeMillis() - theWriteTime < CHANGE_TIMEOUT) {
+            Thread.sleep(10L);
+        }
+        if (System.currentTimeMillis() - theWriteTime < DEBOUNCE_PERIOD) {
+            Assert.assertFalse("Change should not be reported during the debounce period",
+                mWatcherUnderTest.consumeChanges());
+        }
+
+        Assert.assertTrue("Change should be reported", waitForChanges());
+    }
+
+    /**
+     * Tests watching location patterns which are not file location patterns.
+     * Expected result: Nothing should be watched.
+     */
+    @Test
+    public void testNonFileLocationPattern() {
+        Assert.assertFalse("Classpath location should not be watched",
+            mWatcherUnderTest.start(Arrays.asList(mLocationPattern, "classpath:connectors/*.xml")));
+        Assert.assertFalse(mWatcherUnderTest.isWatching());
+    }
+
+    /**
+     * Tests watching a file location pattern which directory does not exist.
+     * Expected result: Nothing should be watched.
+     */
+    @Test
+    public void testNonExistingDirectory() {
+        Assert.assertFalse("Non-existing directory should not be watched", mWatcherUnderTest.start(
+            Arrays.asList("file:" + mTemporaryFolder.getRoot().getAbsolutePath() + "/nonexisting/*.xml")));
+    }
+
+    private boolean waitForChanges() throws InterruptedException {
+        final long theStartTime = System.currentTimeMillis();
+        while (System.currentTimeMillis() - theStartTime < CHANGE_TIMEOUT) {
+            if (mWatcherUnderTest.consumeChanges()) {
+                return true;
+            }
+            Thread.sleep(50L);
+        }
+        return false;
+    }
+
+    private void writeFile(final String inFileName, final String inContents) throws IOException {
+        FileCopyUtils.copy(inContents.getBytes("UTF-8"), new File(mTemporaryFolder.getRoot(), inFileName));
+    }
+}
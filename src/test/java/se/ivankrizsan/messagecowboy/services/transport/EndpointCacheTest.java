@@ -0,0 +1,102 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import ru.yandex.qatools.allure.annotations.Features;
+
+/**
+ * Tests the {@code EndpointCache} class.
+ *
+ * @author Ivan Krizsan
+ */
+@Features("Endpoint Cache")
+public class EndpointCacheTest {
+    /* Constant(s): */
+    protected static final int CACHE_MAX_SIZE = 2;
+    protected static final String ENDPOINT_URI_1 = "jms://queue:first";
+    protected static final String ENDPOINT_URI_2 = "jms://queue:second";
+    protected static final String ENDPOINT_URI_3 = "jms://queue:third";
+
+    /* Instance variable(s): */
+    protected EndpointCache<String> mInstanceUnderTest;
+
+    /**
+     * Sets up before each test.
+     */
+    @Before
+    public void setUpBeforeTest() {
+        mInstanceUnderTest = new EndpointCache<String>(CACHE_MAX_SIZE);
+    }
+
+    /**
+     * Tests counting of cache hits and misses.
+     */
+    @Test
+    public void testHitAndMissCounters() {
+        Assert.assertNull("Empty cache should not contain endpoint", mInstanceUnderTest.get(ENDPOINT_URI_1));
+        mInstanceUnderTest.put(ENDPOINT_URI_1, ENDPOINT_URI_1);
+        Assert.assertEquals("Cached endpoint should be found", ENDPOINT_URI_1,
+            mInstanceUnderTest.get(ENDPOINT_URI_1));
+        mInstanceUnderTest.get(ENDPOINT_URI_1);
+
+        Assert.assertEquals("There should be one cache miss", 1, mInstanceUnderTest.getMissCount());
+        Assert.assertEquals("There should be two cache hits", 2, mInstanceUnderTest.getHitCount());
+    }
+
+    /**
+     * Tests eviction of the least recently used endpoint when the cache is full.
+     */
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        mInstanceUnderTest.put(ENDPOINT_URI_1, ENDPOINT_URI_1);
+        mInstanceUnderTest.put(ENDPOINT_URI_2, ENDPOINT_URI_2);
+        /* Use the first endpoint, making the second endpoint least recently used. */
+        mInstanceUnderTest.get(ENDPOINT_URI_1);
+        mInstanceUnderTest.put(ENDPOINT_URI_3, ENDPOINT_URI_3);
+
+        Assert.assertEquals("Cache should not exceed maximum size", CACHE_MAX_SIZE, mInstanceUnderTest.size());
+        Assert.assertNotNull("Recently used endpoint should be retained", mInstanceUnderTest.get(ENDPOINT_URI_1));
+        Assert.assertNull("Least recently used endpoint should be evicted", mInstanceUnderTest.get(ENDPOINT_URI_2));
+    }
+
+    /**
+     * Tests clearing the cache.
+     */
+    @Test
+    public void testClear() {
+        mInstanceUnderTest.put(ENDPOINT_URI_1, ENDPOINT_URI_1);
+        mInstanceUnderTest.get(ENDPOINT_URI_1);
+
+        mInstanceUnderTest.clear();
+
+        Assert.assertEquals("Cache should be empty", 0, mInstanceUnderTest.size());
+        Assert.assertNull("Endpoint should not be found after clear", mInstanceUnderTest.get(ENDPOINT_URI_1));
+        Assert.assertEquals("Hit counter should be retained after clear", 1, mInstanceUnderTest.getHitCount());
+    }
+
+    /**
+     * Tests creation of a cache with an invalid maximum size.
+     * Should result in an exception being thrown.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInstanceCreationWithInvalidMaxSize() {
+        new EndpointCache<String>(0);
+    }
+}
@@ -16,12 +16,15 @@
  */
 package se.ivankrizsan.messagecowboy.services.transport;
 
+import org.apache.activemq.pool.PooledConnectionFactory;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mockito;
 import org.mule.DefaultMuleMessage;
+import org.mule.api.MuleContext;
 import org.mule.api.MuleMessage;
 import org.mule.api.transport.PropertyScope;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,7 +36,7 @@ import ru.yandex.qatools.allure.annotations.Features;
 import se.ivankrizsan.messagecowboy.domain.entities.MoverMessage;
 import se.ivankrizsan.messagecowboy.domain.entities.impl.MuleMoverMessage;
 import se.ivankrizsan.messagecowboy.testconfig.JmsBrokerTestConfiguration;
-import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
+import se.ivankrizsan.messagecowboy.testconfig.PooledJmsConnectionFactoryTestConfiguration;
 
 import java.io.File;
 import java.io.IOException;
@@ -48,15 +51,18 @@ import java.util.List;
 @Features("Mule")
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes = {JmsBrokerTestConfiguration.class,
+    PooledJmsConnectionFactoryTestConfiguration.class,
     MuleTransportServiceTestConfiguration.class})
 @DirtiesContext(classMode = ClassMode.AFTER_CLASS)
-public class MuleTransportServiceTest extends AbstractTestBaseClass {
+public class MuleTransportServiceTest extends AbstractTransportServiceTest {
     /* Constant(s): */
     private static final String TEST_MESSAGE_PAYLOAD = "some payload åäöÅÄÖ";
 
     /* Instance variable(s): */
     @Autowired
     private MuleTransportService mServiceUnderTest;
+    @Autowired
+    private PooledConnectionFactory mSharedConnectionFactory;
     private String mInboundFileEndpointUri;
     private String mOutboundFileEndpointUri;
 
@@ -91,6 +97,25 @@ public class MuleTransportServiceTest extends AbstractTestBaseClass {
         }
     }
 
+    @Override
+    protected TransportService getTransportService() {
+        return mServiceUnderTest;
+    }
+
+    @Override
+    protected MoverMessage<MuleMessage> createMessage(final String inPayload) {
+        return new MuleMoverMessage(new DefaultMuleMessage(inPayload, mServiceUnderTest.getMuleContext()));
+    }
+
+    /**
+     * Starts the Mule transport service and waits for the JMS connector to connect.
+     */
+    @Override
+    protected void startTransportService() {
+        mServiceUnderTest.start();
+        delay(1500L);
+    }
+
     /**
      * Tests dispatching of a message to a file endpoint.
      */
@@ -201,4 +226,172 @@ public class MuleTransportServiceTest extends AbstractTestBaseClass {
         performAndVerifyJmsTest();
 
     }
+
+    /**
+     * Tests refresh of connector resources when a connector resource is
+     * malformed.
+     * The current Mule client should never be stopped and should keep
+     * moving messages.
+     *
+     * @throws Exception If error occurs refreshing connectors. Indicates test failure.
+     */
+    @Test
+    public void testConnectorResourcesRefreshMalformedConfiguration() throws Exception {
+        final List<String> theLocationsList = new ArrayList<>();
+        theLocationsList.add("classpath:connectors/mule/file-connectors.xml");
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.start();
+        final MuleContext theMuleContext = mServiceUnderTest.getMuleContext();
+
+        /* Add a malformed connector resource after the service has been started. */
+        theLocationsList.add("classpath:connectors/mule/broken-connector.xml");
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        final MuleContext theSpyMuleContext = Mockito.spy(theMuleContext);
+        mServiceUnderTest.mMuleClient = Mockito.spy(mServiceUnderTest.mMuleClient);
+        Mockito.when(mServiceUnderTest.mMuleClient.getMuleContext()).thenReturn(theSpyMuleContext);
+
+        mServiceUnderTest.refreshConnectors();
+
+        Mockito.verify(theSpyMuleContext, Mockito.never()).stop();
+        Assert.assertSame("The current Mule client should be retained", theSpyMuleContext,
+            mServiceUnderTest.getMuleContext());
+        Assert.assertTrue("The current Mule client should be running", theMuleContext.isStarted());
+
+        final MoverMessage<MuleMessage> theReceivedMessage = mServiceUnderTest.receive(mInboundFileEndpointUri, 5000);
+        Assert.assertNotNull("The current Mule client should receive messages", theReceivedMessage);
+    }
+
+    /**
+     * Tests using the shared pooled JMS connection factory defined in the
+     * application context of the transport service from the Mule
+     * configuration and that its pooled connection is retained when the
+     * Mule configuration is refreshed.
+     *
+     * @throws IOException If error occurs refreshing connectors. Indicates test failure.
+     */
+    @Test
+    public void testSharedJmsConnectionFactory() throws IOException {
+        final List<String> theLocationsList = new ArrayList<>();
+        theLocationsList.add("classpath:connectors/mule/shared-jms-connector.xml");
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.start();
+        delay(1500L);
+
+        performAndVerifyJmsTest();
+        Assert.assertEquals("The pooled connection should have been created", 1,
+            mSharedConnectionFactory.getNumConnections());
+
+        /* Refresh with modified connector resources, which creates a new Mule context. */
+        theLocationsList.add("classpath:connectors/mule/file-connectors.xml");
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.refreshConnectors();
+
+        performAndVerifyJmsTest();
+        Assert.assertEquals("The pooled connection should be retained after refresh", 1,
+            mSharedConnectionFactory.getNumConnections());
+    }
+
+    /**
+     * Tests that endpoints are built once per endpoint URI and that the
+     * endpoint cache is invalidated when the connectors are refreshed.
+     *
+     * @throws IOException If error occurs refreshing connectors. Indicates test failure.
+     */
+    @Test
+    public void testEndpointCache() throws IOException {
+        final List<String> theLocationsList = new ArrayList<>();
+        theLocationsList.add("classpath:connectors/mule/file-connectors.xml");
+        theLocationsList.add("classpath:connectors/mule/jms-connector.xml");
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.start();
+        delay(1500L);
+
+        final long theInitialMissCount = mServiceUnderTest.getEndpointCacheMissCount();
+        final long theInitialHitCount = mServiceUnderTest.getEndpointCacheHitCount();
+        performAndVerifyJmsTest();
+        performAndVerifyJmsTest();
+
+        /* First dispatch and receive build endpoints, second use cached endpoints. */
+        Assert.assertEquals("Two endpoints should have been built", theInitialMissCount + 2,
+            mServiceUnderTest.getEndpointCacheMissCount());
+        Assert.assertEquals("Two endpoints should have been found in the cache", theInitialHitCount + 2,
+            mServiceUnderTest.getEndpointCacheHitCount());
+
+        /* Refresh with modified connector resources, which creates a new Mule client. */
+        theLocationsList.remove(0);
+        mServiceUnderTest.setConnectorsResourcesLocationPattern(theLocationsList);
+        mServiceUnderTest.refreshConnectors();
+        performAndVerifyJmsTest();
+
+        Assert.assertEquals("Endpoints should be rebuilt after refresh", theInitialMissCount + 4,
+            mServiceUnderTest.getEndpointCacheMissCount());
+    }
+
+    /**
+     * Tests dispatching a batch of messages to and receiving a batch of
+     * messages from a JMS queue.
+     */
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void testDispatchAndReceiveJmsBatch() {
+        final String theJmsEndpointUri = "jms://queue:muletransportservice.batch";
+        mServiceUnderTest.start();
+
+        delay(1500L);
+
+        final List<MoverMessage> theMessages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            theMessages.add(new MuleMoverMessage(
+                new DefaultMuleMessage(TEST_MESSAGE_PAYLOAD + i, mServiceUnderTest.getMuleContext())));
+        }
+        mServiceUnderTest.dispatchBatch(theMessages, theJmsEndpointUri);
+
+        final List<MoverMessage> theFirstBatch = mServiceUnderTest.receiveBatch(theJmsEndpointUri, 5000, 3);
+        final List<MoverMessage> theSecondBatch = mServiceUnderTest.receiveBatch(theJmsEndpointUri, 5000, 3);
+
+        /* Verify outcome. */
+        Assert.assertEquals("First batch should contain the maximum number of messages", 3, theFirstBatch.size());
+        Assert.assertEquals("Second batch should contain the remaining messages", 2, theSecondBatch.size());
+        final MoverMessage<MuleMessage> theFirstMessage = theFirstBatch.get(0);
+        Assert.assertEquals("Payload of message should be unaltered", TEST_MESSAGE_PAYLOAD + 0,
+            theFirstMessage.getMessage().getPayload());
+    }
+
+    /**
+     * Tests starting and stopping a continuous move between two JMS queues.
+     */
+    @Test
+    public void testContinuousMove() {
+        final String theInboundEndpointUri = "jms://queue:muletransportservice.continuous.in";
+        final String theOutboundEndpointUri = "jms://queue:muletransportservice.continuous.out";
+        final String theMoveId = "testgroup.continuousmove";
+        mServiceUnderTest.start();
+
+        delay(1500L);
+
+        final ContinuousMoveListener theListener = Mockito.mock(ContinuousMoveListener.class);
+        mServiceUnderTest.startContinuousMove(theMoveId, theInboundEndpointUri, theOutboundEndpointUri, theListener);
+
+        final MuleMessage theMuleMessage =
+            new DefaultMuleMessage(TEST_MESSAGE_PAYLOAD, mServiceUnderTest.getMuleContext());
+        mServiceUnderTest.dispatch(new MuleMoverMessage(theMuleMessage), theInboundEndpointUri);
+        final MoverMessage<MuleMessage> theReceivedMessage =
+            mServiceUnderTest.receive(theOutboundEndpointUri, 5000);
+
+        /* Verify outcome. */
+        Assert.assertNotNull("A message should have been moved to the outbound endpoint", theReceivedMessage);
+        Assert.assertEquals("Payload of message should be unaltered", TEST_MESSAGE_PAYLOAD,
+            theReceivedMessage.getMessage().getPayload());
+        Assert.assertTrue("The continuous move should be started",
+            mServiceUnderTest.findContinuousMoveIds().contains(theMoveId));
+        Mockito.verify(theListener, Mockito.timeout(5000)).messageMoved(Mockito.eq(theMoveId), Mockito.anyLong());
+        Mockito.verify(theListener, Mockito.never()).messageMoveFailed(Mockito.anyString(),
+            Mockito.any(Throwable.class), Mockito.anyLong());
+
+        mServiceUnderTest.stopContinuousMove(theMoveId);
+        Assert.assertTrue("There should be no continuous moves after having been stopped",
+            mServiceUnderTest.findContinuousMoveIds().isEmpty());
+        Assert.assertNull("The flow of the continuous move should have been removed",
+            mServiceUnderTest.getMuleContext().getRegistry().lookupFlowConstruct(theMoveId));
+    }
 }
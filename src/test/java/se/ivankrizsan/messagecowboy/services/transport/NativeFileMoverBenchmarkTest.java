@@ -0,0 +1,186 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import ru.yandex.qatools.allure.annotations.Features;
+import se.ivankrizsan.messagecowboy.domain.entities.MoverMessage;
+import se.ivankrizsan.messagecowboy.testconfig.JmsBrokerTestConfiguration;
+import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
+
+/**
+ * Compares the time needed to move files of different sizes between two
+ * file endpoints using the {@code NativeFileMover} and the Mule transport
+ * service with streaming file connectors.<br/>
+ * The 1 GB file size is only benchmarked if the system property
+ * {@value #LARGE_FILE_BENCHMARK_PROPERTY} is set to true.
+ *
+ * @author Ivan Krizsan
+ */
+@Features("Native File Mover")
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {JmsBrokerTestConfiguration.class,
+    MuleTransportServiceTestConfiguration.class})
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class NativeFileMoverBenchmarkTest extends AbstractTestBaseClass {
+    /* Constant(s): */
+    /** Class logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativeFileMoverBenchmarkTest.class);
+    /** System property enabling benchmark of large files. */
+    protected static final String LARGE_FILE_BENCHMARK_PROPERTY = "messagecowboy.benchmark.largefiles";
+    protected static final long ONE_KILOBYTE = 1024L;
+    protected static final long ONE_MEGABYTE = 1024L * ONE_KILOBYTE;
+    protected static final long ONE_GIGABYTE = 1024L * ONE_MEGABYTE;
+    /** Receive timeout in milliseconds used when moving files with Mule. */
+    protected static final long RECEIVE_TIMEOUT = 5000L;
+
+    /* Instance variable(s): */
+    @Autowired
+    private MuleTransportService mMuleTransportService;
+    private NativeFileMover mNativeFileMover;
+    private String mInboundDirectoryPath;
+    private String mOutboundDirectoryPath;
+
+    /**
+     * Performs preparations before each test.
+     *
+     * @throws IOException If error occurs creating test directories.
+     */
+    @Before
+    public void setUp() throws IOException {
+        mInboundDirectoryPath = mTemporaryFolder.newFolder("input").getAbsolutePath()
+            .replaceAll("\\" + File.separator, "/");
+        mOutboundDirectoryPath = createTestDestinationDirectory().replaceAll("\\" + File.separator, "/");
+        mNativeFileMover = new NativeFileMover();
+        mMuleTransportService.start();
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @After
+    public void tearDown() {
+        mMuleTransportService.stop();
+    }
+
+    /**
+     * Benchmarks moving a 1 KB file.
+     *
+     * @throws Exception If error occurs moving file. Indicates test failure.
+     */
+    @Test
+    public void testBenchmarkOneKilobyteFile() throws Exception {
+        benchmarkFileMove(ONE_KILOBYTE);
+    }
+
+    /**
+     * Benchmarks moving a 1 MB file.
+     *
+     * @throws Exception If error occurs moving file. Indicates test failure.
+     */
+    @Test
+    public void testBenchmarkOneMegabyteFile() throws Exception {
+        benchmarkFileMove(ONE_MEGABYTE);
+    }
+
+    /**
+     * Benchmarks moving a 1 GB file.
+     *
+     * @throws Exception If error occurs moving file. Indicates test failure.
+     */
+    @Test
+    public void testBenchmarkOneGigabyteFile() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean(LARGE_FILE_BENCHMARK_PROPERTY));
+        benchmarkFileMove(ONE_GIGABYTE);
+    }
+
+    /**
+     * Moves a file of the supplied size using the native file mover and using
+     * the Mule transport service, logging the time each move took.
+     *
+     * @param inFileSize Size of file to move in bytes.
+     * @throws Exception If error occurs moving file.
+     */
+    @SuppressWarnings("rawtypes")
+    protected void benchmarkFileMove(final long inFileSize) throws Exception {
+        /* Move file using native file mover. */
+        File theSourceFile = createFile("native.dat", inFileSize);
+        long theStartTime = System.nanoTime();
+        mNativeFileMover.moveFiles("file://" + mInboundDirectoryPath, "file://" + mOutboundDirectoryPath, 1);
+        final long theNativeMoveTime = (System.nanoTime() - theStartTime) / 1000000L;
+        verifyFileMoved(theSourceFile, inFileSize);
+
+        /* Move file using Mule transport service with streaming file connectors. */
+        theSourceFile = createFile("mule.dat", inFileSize);
+        theStartTime = System.nanoTime();
+        final MoverMessage theMessage = mMuleTransportService.receive(
+            "file://" + mInboundDirectoryPath + "?connector=streamingFileConnectorInbound", RECEIVE_TIMEOUT);
+        Assert.assertNotNull("A message should have been received", theMessage);
+        mMuleTransportService.dispatch(theMessage,
+            "file://" + mOutboundDirectoryPath + "?connector=streamingFileConnectorOutbound");
+        final long theMuleMoveTime = (System.nanoTime() - theStartTime) / 1000000L;
+        verifyFileMoved(theSourceFile, inFileSize);
+
+        LOGGER.info("Moving a file of {} bytes took {} ms natively and {} ms using Mule", inFileSize,
+            theNativeMoveTime, theMuleMoveTime);
+    }
+
+    /**
+     * Creates a file with the supplied name and size in the input directory.
+     *
+     * @param inFileName Name of file to create.
+     * @param inFileSize Size of file in bytes.
+     * @return Created file.
+     * @throws IOException If error occurs creating file.
+     */
+    protected File createFile(final String inFileName, final long inFileSize) throws IOException {
+        final File theFile = new File(mInboundDirectoryPath, inFileName);
+        try (RandomAccessFile theRandomAccessFile = new RandomAccessFile(theFile, "rw")) {
+            theRandomAccessFile.setLength(inFileSize);
+        }
+        return theFile;
+    }
+
+    /**
+     * Verifies that the supplied source file has been moved to the
+     * destination directory and that the moved file has the supplied size.
+     *
+     * @param inSourceFile Source file that is expected to have been moved.
+     * @param inFileSize Expected size of moved file.
+     */
+    protected void verifyFileMoved(final File inSourceFile, final long inFileSize) {
+        final File theDestinationFile = new File(mTestDestinationDirectory, inSourceFile.getName());
+        Assert.assertFalse("File should not be left in source directory", inSourceFile.exists());
+        Assert.assertEquals("Moved file should have the same size", inFileSize, theDestinationFile.length());
+    }
+}
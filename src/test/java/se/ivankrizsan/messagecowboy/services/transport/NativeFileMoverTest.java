@@ -0,0 +1,310 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.services.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import ru.yandex.qatools.allure.annotations.Features;
+import se.ivankrizsan.messagecowboy.testutils.AbstractTestBaseClass;
+
+/**
+ * Tests the {@code NativeFileMover} class.
+ *
+ * @author Ivan Krizsan
+ */
+@Features("Native File Mover")
+public class NativeFileMoverTest extends AbstractTestBaseClass {
+    /* Constant(s): */
+    /** Number of threads moving files concurrently. */
+    private static final int CONCURRENT_MOVERS = 4;
+
+    /* Instance variable(s): */
+    protected NativeFileMover mInstanceUnderTest;
+    private String mInboundFileEndpointUri;
+    private String mInboundDirectoryEndpointUri;
+    private String mOutboundFileEndpointUri;
+
+    /**
+     * Sets up before each test.
+     *
+     * @throws IOException If error occurs creating test files or directories.
+     */
+    @Before
+    public void setUp() throws IOException {
+        createTestDestinationDirectory();
+        createTestFileWithContent();
+
+        mInboundFileEndpointUri = "file://" + mTestFile.getAbsolutePath().replaceAll("\\" + File.separator, "/")
+            + "?connector=nonStreamingFileConnectorInbound";
+        mInboundDirectoryEndpointUri =
+            "file://" + mTestInputDirectory.getAbsolutePath().replaceAll("\\" + File.separator, "/");
+        mOutboundFileEndpointUri = "file://"
+            + mTestDestinationDirectory.getAbsolutePath().replaceAll("\\" + File.separator, "/")
+            + "?connector=nonStreamingFileConnectorOutbound";
+
+        mInstanceUnderTest = new NativeFileMover();
+    }
+
+    /**
+     * Tests determining whether a move is a move between two file endpoints.
+     */
+    @Test
+    public void testIsFileToFileMove() {
+        Assert.assertFalse("No move should be a file to file move unless enabled",
+            mInstanceUnderTest.isFileToFileMove(mInboundDirectoryEndpointUri, "file:///destination"));
+
+        mInstanceUnderTest.setEnabledFlag(true);
+        Assert.assertTrue("Move between file endpoints should be a file to file move",
+            mInstanceUnderTest.isFileToFileMove(mInboundDirectoryEndpointUri, "file:///destination"));
+        Assert.assertTrue("Supported parameters should not prevent a file to file move",
+            mInstanceUnderTest.isFileToFileMove(mInboundDirectoryEndpointUri + "?autoDelete=false",
+                "file:///destination?noop=true"));
+        Assert.assertFalse("Move to JMS endpoint should not be a file to file move",
+            mInstanceUnderTest.isFileToFileMove(mInboundDirectoryEndpointUri, "jms://queue"));
+    }
+
+    /**
+     * Tests determining whether a move between file endpoints which URIs
+     * contain parameters not implemented by the file mover is a move to be
+     * performed by the file mover.
+     */
+    @Test
+    public void testIsFileToFileMoveUnsupportedParameters() {
+        mInstanceUnderTest.setEnabledFlag(true);
+
+        Assert.assertFalse("Endpoints with unknown connectors should be left to the transport service",
+            mInstanceUnderTest.isFileToFileMove(mInboundDirectoryEndpointUri + "?connector=otherFileConnector",
+                "file:///destination"));
+        Assert.assertFalse("Outbound endpoint with connector not preserving filenames should be left to the "
+            + "transport service", mInstanceUnderTest.isFileToFileMove(mInboundFileEndpointUri,
+                "file:///destination?connector=nonStreamingFileConnectorInbound"));
+        Assert.assertFalse("Inbound endpoint moving files should be left to the transport service",
+            mInstanceUnderTest.isFileToFileMove(mInboundDirectoryEndpointUri + "?moveToDirectory=/tmp",
+                "file:///destination"));
+        Assert.assertFalse("Inbound endpoint with file age should be left to the transport service",
+            mInstanceUnderTest.isFileToFileMove(mInboundDirectoryEndpointUri + "?noop=true&fileAge=500",
+                "file:///destination"));
+        Assert.assertFalse("Outbound endpoint with output pattern should be left to the transport service",
+            mInstanceUnderTest.isFileToFileMove(mInboundDirectoryEndpointUri,
+                "file:///destination?outputPattern=out.txt"));
+        Assert.assertFalse("Camel file endpoint options should be left to the transport service",
+            mInstanceUnderTest.isFileToFileMove(mInboundDirectoryEndpointUri + "?include=.*\\.xml",
+                "file:///destination"));
+    }
+
+    /**
+     * Tests determining whether a move between file endpoints which URIs name
+     * file connectors of the Mule production configuration is a move to be
+     * performed by the file mover and performing the move.
+     *
+     * @throws IOException If error occurs moving file. Indicates test failure.
+     */
+    @Test
+    public void testMoveFileProductionConnectors() throws IOException {
+        mInstanceUnderTest.setEnabledFlag(true);
+        final String theInboundEndpointUri = mInboundDirectoryEndpointUri
+            + "?connector=nonStreamingFileConnectorInbound";
+
+        Assert.assertTrue("Endpoints with production file connectors should be a file to file move",
+            mInstanceUnderTest.isFileToFileMove(theInboundEndpointUri, mOutboundFileEndpointUri));
+        Assert.assertTrue("Endpoints with streaming production file connectors should be a file to file move",
+            mInstanceUnderTest.isFileToFileMove(mInboundDirectoryEndpointUri
+                + "?connector=streamingFileConnectorInbound",
+                "file:///destination?connector=streamingFileConnectorOutbound"));
+
+        final int theMovedFileCount =
+            mInstanceUnderTest.moveFiles(theInboundEndpointUri, mOutboundFileEndpointUri, 1);
+
+        Assert.assertEquals("One file should have been moved", 1, theMovedFileCount);
+        verifySuccessfulFileMove();
+    }
+
+    /**
+     * Tests moving a file to a destination directory which path contains
+     * URL-encoded characters in the endpoint URI.
+     *
+     * @throws IOException If error occurs moving file. Indicates test failure.
+     */
+    @Test
+    public void testMoveFileToUrlEncodedPath() throws IOException {
+        final File theDestinationDirectory = new File(mTestDestinationDirectory, "dest dir+1");
+        final String theOutboundEndpointUri = "file://"
+            + mTestDestinationDirectory.getAbsolutePath().replaceAll("\\" + File.separator, "/") + "/dest%20dir+1";
+
+        final int theMovedFileCount = mInstanceUnderTest.moveFiles(mInboundFileEndpointUri, theOutboundEndpointUri, 1);
+
+        Assert.assertEquals("One file should have been moved", 1, theMovedFileCount);
+        Assert.assertTrue("File should have been moved to decoded path",
+            new File(theDestinationDirectory, mTestFile.getName()).isFile());
+    }
+
+    /**
+     * Tests moving a single file specified by the inbound endpoint.
+     *
+     * @throws IOException If error occurs moving file. Indicates test failure.
+     */
+    @Test
+    public void testMoveSingleFile() throws IOException {
+        final int theMovedFileCount =
+            mInstanceUnderTest.moveFiles(mInboundFileEndpointUri, mOutboundFileEndpointUri, 1);
+
+        Assert.assertEquals("One file should have been moved", 1, theMovedFileCount);
+        verifySuccessfulFileMove();
+    }
+
+    /**
+     * Tests moving files from a directory, limiting the number of files
+     * moved in one invocation.
+     *
+     * @throws IOException If error occurs moving files. Indicates test failure.
+     */
+    @Test
+    public void testMoveFilesFromDirectory() throws IOException {
+        FileUtils.writeStringToFile(new File(mTestInputDirectory, "inputfile2.txt"), TEST_FILE_CONTENTS);
+        FileUtils.writeStringToFile(new File(mTestInputDirectory, "inputfile3.txt"), TEST_FILE_CONTENTS);
+
+        int theMovedFileCount =
+            mInstanceUnderTest.moveFiles(mInboundDirectoryEndpointUri, mOutboundFileEndpointUri, 2);
+        Assert.assertEquals("Two files should have been moved", 2, theMovedFileCount);
+        Assert.assertEquals("One file should be left in the input directory", 1,
+            mTestInputDirectory.listFiles().length);
+
+        theMovedFileCount = mInstanceUnderTest.moveFiles(mInboundDirectoryEndpointUri, mOutboundFileEndpointUri, 2);
+        Assert.assertEquals("The remaining file should have been moved", 1, theMovedFileCount);
+        Assert.assertEquals("All files should be in the destination directory", 3,
+            mTestDestinationDirectory.listFiles().length);
+
+        theMovedFileCount = mInstanceUnderTest.moveFiles(mInboundDirectoryEndpointUri, mOutboundFileEndpointUri, 2);
+        Assert.assertEquals("No file should have been moved from empty directory", 0, theMovedFileCount);
+    }
+
+    /**
+     * Tests moving a file when the inbound endpoint specifies that the source
+     * file is not to be deleted.
+     *
+     * @throws IOException If error occurs moving file. Indicates test failure.
+     */
+    @Test
+    public void testCopyFileWhenAutoDeleteDisabled() throws IOException {
+        final String theInboundEndpointUri = mInboundFileEndpointUri + "&autoDelete=false";
+
+        final int theMovedFileCount =
+            mInstanceUnderTest.moveFiles(theInboundEndpointUri, mOutboundFileEndpointUri, 1);
+
+        Assert.assertEquals("One file should have been moved", 1, theMovedFileCount);
+        Assert.assertTrue("File should be left in source directory", mTestFile.exists());
+        final File theDestinationFile = new File(mTestDestinationDirectory, mTestFile.getName());
+        Assert.assertEquals("Contents of copied file should be preserved", TEST_FILE_CONTENTS,
+            FileUtils.readFileToString(theDestinationFile));
+    }
+
+    /**
+     * Tests repeatedly moving files from a directory when the inbound endpoint
+     * specifies that source files are not to be deleted.
+     * Each file should be copied once, until it is modified.
+     *
+     * @throws IOException If error occurs moving files. Indicates test failure.
+     */
+    @Test
+    public void testCopyFilesOnceWhenSourceRetained() throws IOException {
+        final File theSecondFile = new File(mTestInputDirectory, "inputfile2.txt");
+        FileUtils.writeStringToFile(theSecondFile, TEST_FILE_CONTENTS);
+        final String theInboundEndpointUri = mInboundDirectoryEndpointUri + "?noop=true";
+
+        int theMovedFileCount = mInstanceUnderTest.moveFiles(theInboundEndpointUri, mOutboundFileEndpointUri, 1);
+        Assert.assertEquals("One file should have been copied", 1, theMovedFileCount);
+        theMovedFileCount = mInstanceUnderTest.moveFiles(theInboundEndpointUri, mOutboundFileEndpointUri, 1);
+        Assert.assertEquals("The file not yet copied should have been copied", 1, theMovedFileCount);
+        Assert.assertEquals("Both files should be in the destination directory", 2,
+            mTestDestinationDirectory.listFiles().length);
+        theMovedFileCount = mInstanceUnderTest.moveFiles(theInboundEndpointUri, mOutboundFileEndpointUri, 2);
+        Assert.assertEquals("No file should be copied again", 0, theMovedFileCount);
+        Assert.assertEquals("Both files should be left in the input directory", 2,
+            mTestInputDirectory.listFiles().length);
+
+        Assert.assertTrue(theSecondFile.setLastModified(theSecondFile.lastModified() + 60000L));
+        theMovedFileCount = mInstanceUnderTest.moveFiles(theInboundEndpointUri, mOutboundFileEndpointUri, 2);
+        Assert.assertEquals("The modified file should have been copied again", 1, theMovedFileCount);
+    }
+
+    /**
+     * Tests moving files from a directory with multiple threads concurrently.
+     * Each file should be moved exactly once.
+     *
+     * @throws Exception If error occurs moving files. Indicates test failure.
+     */
+    @Test
+    public void testConcurrentMoveFromDirectory() throws Exception {
+        final int theFileCount = 50;
+        for (int i = 0; i < theFileCount; i++) {
+            FileUtils.writeStringToFile(new File(mTestInputDirectory, "concurrentfile" + i + ".txt"),
+                TEST_FILE_CONTENTS);
+        }
+        /* Include the test file created during setup. */
+        final int theTotalFileCount = theFileCount + 1;
+
+        final ExecutorService theExecutorService = Executors.newFixedThreadPool(CONCURRENT_MOVERS);
+        final List<Future<Integer>> theResults = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < CONCURRENT_MOVERS; i++) {
+            theResults.add(theExecutorService.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return mInstanceUnderTest.moveFiles(mInboundDirectoryEndpointUri, mOutboundFileEndpointUri,
+                        theTotalFileCount);
+                }
+            }));
+        }
+        int theMovedFileCount = 0;
+        for (Future<Integer> theResult : theResults) {
+            theMovedFileCount += theResult.get();
+        }
+        theExecutorService.shutdown();
+
+        Assert.assertEquals("Each file should have been moved once", theTotalFileCount, theMovedFileCount);
+        Assert.assertEquals("All files should be in the destination directory", theTotalFileCount,
+            mTestDestinationDirectory.listFiles().length);
+        Assert.assertEquals("No file should be left in the input directory", 0,
+            mTestInputDirectory.listFiles().length);
+    }
+
+    /**
+     * Tests moving a file to a destination directory that already contains
+     * a file with the same name.
+     * The existing file should be replaced.
+     *
+     * @throws IOException If error occurs moving file. Indicates test failure.
+     */
+    @Test
+    public void testMoveFileReplacesExistingFile() throws IOException {
+        FileUtils.writeStringToFile(new File(mTestDestinationDirectory, mTestFile.getName()), "old contents");
+
+        mInstanceUnderTest.moveFiles(mInboundFileEndpointUri, mOutboundFileEndpointUri, 1);
+
+        verifySuccessfulFileMove();
+    }
+}
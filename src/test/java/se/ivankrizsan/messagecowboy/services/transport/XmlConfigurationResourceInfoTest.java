@@ -121,4 +121,25 @@ public class XmlConfigurationResourceInfoTest {
         Assert.assertTrue("Two instances with different name and same checksum should compare as not equal",
             mInstanceUnderTest.compareTo(theInstanceDifferentName) != 0);
     }
+
+    /**
+     * Tests determining whether a configuration resource is unchanged judging
+     * by its length and last modification time.
+     */
+    @Test
+    public void testHasSameLengthAndLastModified() {
+        final XmlConfigurationResourceInfo theInstance =
+            new XmlConfigurationResourceInfo(RESOURCE_NAME_1, RESOURCE_CHECKSUM_1, 100L, 123456789L);
+
+        Assert.assertTrue("Same length and last modification time should be unchanged",
+            theInstance.hasSameLengthAndLastModified(100L, 123456789L));
+        Assert.assertFalse("Different length should not be unchanged",
+            theInstance.hasSameLengthAndLastModified(101L, 123456789L));
+        Assert.assertFalse("Different last modification time should not be unchanged",
+            theInstance.hasSameLengthAndLastModified(100L, 123456790L));
+        Assert.assertFalse("Unknown length and last modification time should never be unchanged",
+            mInstanceUnderTest.hasSameLengthAndLastModified(-1L, 0L));
+        Assert.assertTrue("Length and last modification time should not affect equality",
+            theInstance.equals(mInstanceUnderTest));
+    }
 }
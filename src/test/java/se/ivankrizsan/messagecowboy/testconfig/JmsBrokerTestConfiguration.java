@@ -21,7 +21,7 @@ public class JmsBrokerTestConfiguration {
     /* Constant(s): */
 
     /* Configuration parameter(s): */
-    protected String mJmsBrokerUrl = "vm://0.0.0.0";
+    protected String mJmsBrokerUrl = "vm://0.0.0.0?broker.persistent=false";
 
     /**
      * Connection factory for the embedded ActiveMQ broker used in tests.
@@ -30,11 +30,10 @@ public class JmsBrokerTestConfiguration {
      */
     @Bean
     @DependsOn("embeddedTestActiveMqBroker")
-    public ConnectionFactory amqConnectionFactory(
-        final RedeliveryPolicy inRedeliveryPolicy) {
+    public ConnectionFactory amqConnectionFactory() {
         final ActiveMQConnectionFactory theConnectionFactory =
             new ActiveMQConnectionFactory(mJmsBrokerUrl);
-        theConnectionFactory.setRedeliveryPolicy(inRedeliveryPolicy);
+        theConnectionFactory.setRedeliveryPolicy(amqRedeliveryPolicy());
 
         return theConnectionFactory;
     }
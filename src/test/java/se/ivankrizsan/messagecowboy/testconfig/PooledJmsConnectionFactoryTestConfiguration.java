@@ -0,0 +1,64 @@
+/*
+ * This file is part of Message Cowboy.
+ * Copyright 2014 Ivan A Krizsan. All Rights Reserved.
+ * Message Cowboy is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.ivankrizsan.messagecowboy.testconfig;
+
+import java.util.Properties;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+
+import se.ivankrizsan.messagecowboy.EmbeddedActiveMQConfiguration;
+import se.ivankrizsan.messagecowboy.JmsConnectionFactoryConfiguration;
+
+/**
+ * Spring configuration providing the pooled JMS connection factory shared by
+ * the transport service configurations in tests.<br/>
+ * The Message Cowboy embedded ActiveMQ broker is disabled and the pooled
+ * connection factory connects to the broker of the
+ * {@link JmsBrokerTestConfiguration} instead.
+ *
+ * @author Ivan Krizsan
+ */
+@Configuration
+@Import({EmbeddedActiveMQConfiguration.class, JmsConnectionFactoryConfiguration.class})
+public class PooledJmsConnectionFactoryTestConfiguration {
+
+    /**
+     * Property placeholder configurer supplying the configuration properties
+     * of the embedded ActiveMQ broker and the pooled JMS connection factory.
+     *
+     * @return Property placeholder configurer bean.
+     */
+    @Bean
+    public static PropertySourcesPlaceholderConfigurer pooledJmsPropertyPlaceholderConfigurer() {
+        final Properties theProperties = new Properties();
+        theProperties.setProperty("ACTIVEMQ_USE_EMBEDDED_FLAG", "false");
+        theProperties.setProperty("ACTIVEMQ_URI", "vm://0.0.0.0?broker.persistent=false");
+        theProperties.setProperty("ACTIVEMQ_JMX_ENABLED_FLAG", "false");
+        theProperties.setProperty("ACTIVEMQ_PERSISTENCE_ENABLED_FLAG", "false");
+        theProperties.setProperty("JMS_POOL_MAX_CONNECTIONS", "1");
+        theProperties.setProperty("JMS_POOL_MAX_SESSIONS_PER_CONNECTION", "10");
+        theProperties.setProperty("JMS_POOL_IDLE_TIMEOUT", "30000");
+
+        final PropertySourcesPlaceholderConfigurer thePropertyPlaceholderConfigurer =
+            new PropertySourcesPlaceholderConfigurer();
+        thePropertyPlaceholderConfigurer.setProperties(theProperties);
+        return thePropertyPlaceholderConfigurer;
+    }
+}